@@ -17,12 +17,20 @@ package org.gradle.internal.hash;
 
 import org.gradle.api.UncheckedIOException;
 import org.gradle.internal.UncheckedException;
+import org.gradle.internal.os.OperatingSystem;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 public class HashUtil {
+    /**
+     * Files of at least this size are hashed by mapping their content into memory, rather than copying it through a stream buffer.
+     */
+    static final long MIN_MAPPED_FILE_SIZE = 1024 * 1024;
+    private static final long MAX_MAPPED_REGION_SIZE = 64 * 1024 * 1024;
+
     public static HashValue createHash(String scriptText, String algorithm) {
         MessageDigest messageDigest = createMessageDigest(algorithm);
         messageDigest.update(scriptText.getBytes());
@@ -31,6 +39,10 @@ public class HashUtil {
 
     public static HashValue createHash(File file, String algorithm) {
         try {
+            // A mapped file cannot be deleted on Windows until the mapping has been garbage collected, so always use a stream there
+            if (file.length() >= MIN_MAPPED_FILE_SIZE && !OperatingSystem.current().isWindows()) {
+                return createHashFromMappedFile(file, algorithm);
+            }
             return createHash(new FileInputStream(file), algorithm);
         } catch (UncheckedIOException e) {
             // Catch any unchecked io exceptions and add the file path for troubleshooting
@@ -62,6 +74,25 @@ public class HashUtil {
         return new HashValue(messageDigest.digest());
     }
 
+    private static HashValue createHashFromMappedFile(File file, String algorithm) {
+        MessageDigest messageDigest = createMessageDigest(algorithm);
+        try {
+            FileChannel channel = new FileInputStream(file).getChannel();
+            try {
+                long size = channel.size();
+                for (long position = 0; position < size; position += MAX_MAPPED_REGION_SIZE) {
+                    long regionSize = Math.min(MAX_MAPPED_REGION_SIZE, size - position);
+                    messageDigest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, regionSize));
+                }
+            } finally {
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new HashValue(messageDigest.digest());
+    }
+
     private static MessageDigest createMessageDigest(String algorithm) {
         try {
             return MessageDigest.getInstance(algorithm);
@@ -42,6 +42,23 @@ class HashUtilTest extends Specification {
         file.delete()
     }
 
+    def "createHash from large File returns same hash as from InputStream" () {
+        setup:
+        File file = File.createTempFile("HashUtilTest", null)
+        def content = new byte[size]
+        new Random(size).nextBytes(content)
+        file.bytes = content
+
+        expect:
+        HashUtil.createHash(file, "MD5") == HashUtil.createHash(new ByteArrayInputStream(content), "MD5")
+
+        cleanup:
+        file.delete()
+
+        where:
+        size << [HashUtil.MIN_MAPPED_FILE_SIZE - 1, HashUtil.MIN_MAPPED_FILE_SIZE, HashUtil.MIN_MAPPED_FILE_SIZE * 3 + 17]
+    }
+
     @Issue("http://issues.gradle.org/browse/GRADLE-2967")
     def "createHash from File adds filename to UncheckedIOException" () {
         setup:
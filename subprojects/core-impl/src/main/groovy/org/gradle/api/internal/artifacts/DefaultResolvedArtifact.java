@@ -88,6 +88,13 @@ public class DefaultResolvedArtifact implements ResolvedArtifact {
         return artifact.getClassifier();
     }
     
+    /**
+     * Returns true when the file of this artifact has already been resolved, so that calling {@link #getFile()} is cheap.
+     */
+    public boolean isResolved() {
+        return file != null;
+    }
+
     public File getFile() {
         if (file == null) {
             file = artifactSource.create();
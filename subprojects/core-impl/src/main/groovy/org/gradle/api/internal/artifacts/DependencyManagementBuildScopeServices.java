@@ -25,6 +25,7 @@ import org.gradle.api.internal.artifacts.ivyservice.dynamicversions.ModuleVersio
 import org.gradle.api.internal.artifacts.ivyservice.dynamicversions.SingleFileBackedModuleVersionsCache;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ResolveIvyFactory;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.StartParameterResolutionOverride;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.memcache.CrossBuildInMemoryMetaDataCache;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.memcache.InMemoryCachedRepositoryFactory;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.LatestStrategy;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.LatestVersionStrategy;
@@ -39,6 +40,7 @@ import org.gradle.api.internal.artifacts.ivyservice.projectmodule.DefaultProject
 import org.gradle.api.internal.artifacts.ivyservice.projectmodule.DefaultProjectPublicationRegistry;
 import org.gradle.api.internal.artifacts.ivyservice.projectmodule.ProjectPublicationRegistry;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.DefaultDependencyResolver;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graphcache.ResolvedGraphCache;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolutionResultsStoreFactory;
 import org.gradle.api.internal.artifacts.metadata.ModuleVersionArtifactMetaData;
 import org.gradle.api.internal.artifacts.mvnsettings.*;
@@ -55,6 +57,7 @@ import org.gradle.api.internal.project.ProjectRegistry;
 import org.gradle.cache.CacheRepository;
 import org.gradle.initialization.ProjectAccessListener;
 import org.gradle.internal.SystemProperties;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.reflect.Instantiator;
 import org.gradle.internal.resource.cached.ByUrlCachedExternalResourceIndex;
 import org.gradle.internal.resource.cached.ivy.ArtifactAtRepositoryCachedArtifactIndex;
@@ -70,8 +73,8 @@ import org.gradle.util.BuildCommencedTimeProvider;
  * The set of dependency management services that are created per build.
  */
 class DependencyManagementBuildScopeServices {
-    InMemoryCachedRepositoryFactory createInMemoryDependencyMetadataCache() {
-        return new InMemoryCachedRepositoryFactory();
+    InMemoryCachedRepositoryFactory createInMemoryDependencyMetadataCache(CrossBuildInMemoryMetaDataCache crossBuildInMemoryMetaDataCache, CacheLockingManager cacheLockingManager) {
+        return new InMemoryCachedRepositoryFactory(crossBuildInMemoryMetaDataCache, cacheLockingManager.createMetaDataStore().getParentFile());
     }
 
     DependencyManagementServices createDependencyManagementServices(ServiceRegistry parent) {
@@ -213,7 +216,8 @@ class DependencyManagementBuildScopeServices {
     ArtifactDependencyResolver createArtifactDependencyResolver(ResolveIvyFactory resolveIvyFactory, LocalComponentFactory publishModuleDescriptorConverter, DependencyDescriptorFactory dependencyDescriptorFactory,
                                                                 CacheLockingManager cacheLockingManager, IvyContextManager ivyContextManager, ResolutionResultsStoreFactory resolutionResultsStoreFactory,
                                                                 VersionMatcher versionMatcher, LatestStrategy latestStrategy, ProjectRegistry<ProjectInternal> projectRegistry,
-                                                                ComponentIdentifierFactory componentIdentifierFactory) {
+                                                                ComponentIdentifierFactory componentIdentifierFactory, ExecutorFactory executorFactory,
+                                                                BuildCommencedTimeProvider buildCommencedTimeProvider) {
         ArtifactDependencyResolver resolver = new DefaultDependencyResolver(
                 resolveIvyFactory,
                 publishModuleDescriptorConverter,
@@ -225,7 +229,11 @@ class DependencyManagementBuildScopeServices {
                 ivyContextManager,
                 resolutionResultsStoreFactory,
                 versionMatcher,
-                latestStrategy);
+                latestStrategy,
+                executorFactory,
+                Integer.getInteger(DefaultDependencyResolver.MAX_CONCURRENT_METADATA_FETCHES_PROPERTY, 1),
+                Integer.getInteger(DefaultDependencyResolver.MAX_CONCURRENT_ARTIFACT_DOWNLOADS_PROPERTY, 1),
+                Boolean.getBoolean(DefaultDependencyResolver.RESOLVED_GRAPH_CACHE_PROPERTY) ? new ResolvedGraphCache(cacheLockingManager, buildCommencedTimeProvider) : null);
         return new ErrorHandlingArtifactDependencyResolver(
                 new ShortcircuitEmptyConfigsArtifactDependencyResolver(
                         new SelfResolvingDependencyResolver(
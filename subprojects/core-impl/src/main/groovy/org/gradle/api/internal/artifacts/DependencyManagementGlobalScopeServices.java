@@ -21,6 +21,7 @@ import org.gradle.api.internal.artifacts.component.DefaultComponentIdentifierFac
 import org.gradle.api.internal.artifacts.ivyservice.DefaultIvyContextManager;
 import org.gradle.api.internal.artifacts.ivyservice.IvyContextManager;
 import org.gradle.api.internal.artifacts.ivyservice.LocalComponentFactory;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.memcache.CrossBuildInMemoryMetaDataCache;
 import org.gradle.api.internal.artifacts.ivyservice.moduleconverter.*;
 import org.gradle.api.internal.artifacts.ivyservice.moduleconverter.dependencies.*;
 
@@ -29,6 +30,10 @@ class DependencyManagementGlobalScopeServices {
         return new DefaultIvyContextManager();
     }
 
+    CrossBuildInMemoryMetaDataCache createCrossBuildInMemoryMetaDataCache() {
+        return new CrossBuildInMemoryMetaDataCache();
+    }
+
     ModuleDescriptorFactory createModuleDescriptorFactory() {
         return new DefaultModuleDescriptorFactory();
     }
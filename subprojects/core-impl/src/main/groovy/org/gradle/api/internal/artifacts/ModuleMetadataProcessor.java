@@ -19,4 +19,9 @@ import org.gradle.api.internal.artifacts.metadata.ModuleVersionMetaData;
 
 public interface ModuleMetadataProcessor {
     void process(ModuleVersionMetaData metadata);
+
+    /**
+     * Returns true when this processor may change the meta-data passed to {@link #process(ModuleVersionMetaData)}.
+     */
+    boolean hasRules();
 }
@@ -60,6 +60,10 @@ public class DefaultComponentMetadataHandler implements ComponentMetadataHandler
         }
     }
 
+    public boolean hasRules() {
+        return !ruleActions.isEmpty() || !ruleClosures.isEmpty();
+    }
+
     private void executeRuleClosures(ModuleVersionMetaData metadata, ComponentMetadataDetails details) {
         for (Closure<?> closure : ruleClosures) {
             executeRuleClosure(metadata, details, closure);
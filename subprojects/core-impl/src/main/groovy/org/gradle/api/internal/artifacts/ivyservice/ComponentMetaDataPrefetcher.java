@@ -0,0 +1,31 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.gradle.api.internal.artifacts.metadata.DependencyMetaData;
+
+import java.util.List;
+
+/**
+ * Fetches the meta-data of a batch of dependencies ahead of time, so that it is available when the dependencies are resolved.
+ */
+public interface ComponentMetaDataPrefetcher {
+    /**
+     * Fetches the meta-data for the given dependencies, and blocks until they have all been fetched. Failures are ignored, and are reported when the
+     * dependency is resolved.
+     */
+    void prefetch(List<DependencyMetaData> dependencies);
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.gradle.api.artifacts.ResolvedArtifact;
+import org.gradle.api.internal.artifacts.DefaultResolvedArtifact;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.StoppableExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Resolves the files of a set of artifacts concurrently, so that downloads from remote repositories overlap. The resolved file is kept by each artifact.
+ *
+ * <p>Failures are ignored, so that the artifact is resolved again, and the failure reported, when the caller asks for its file.</p>
+ */
+public class ParallelArtifactDownloader {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelArtifactDownloader.class);
+    private final CacheLockingManager cacheLockingManager;
+    private final ExecutorFactory executorFactory;
+    private final int maxConcurrentDownloads;
+
+    public ParallelArtifactDownloader(CacheLockingManager cacheLockingManager, ExecutorFactory executorFactory, int maxConcurrentDownloads) {
+        this.cacheLockingManager = cacheLockingManager;
+        this.executorFactory = executorFactory;
+        this.maxConcurrentDownloads = maxConcurrentDownloads;
+    }
+
+    /**
+     * Resolves the files of those of the given artifacts that have not been resolved yet. Blocks until all files have been resolved or have failed.
+     */
+    public void download(Collection<? extends ResolvedArtifact> artifacts) {
+        final Queue<DefaultResolvedArtifact> pending = new ConcurrentLinkedQueue<DefaultResolvedArtifact>();
+        for (ResolvedArtifact artifact : artifacts) {
+            if (artifact instanceof DefaultResolvedArtifact && !((DefaultResolvedArtifact) artifact).isResolved()) {
+                pending.add((DefaultResolvedArtifact) artifact);
+            }
+        }
+        if (maxConcurrentDownloads < 2 || pending.size() < 2) {
+            return;
+        }
+
+        final int workers = Math.min(maxConcurrentDownloads, pending.size());
+        LOGGER.debug("Resolving {} artifacts using {} threads.", pending.size(), workers);
+        cacheLockingManager.longRunningOperation(String.format("Download %s artifacts", pending.size()), new Runnable() {
+            public void run() {
+                final CountDownLatch finished = new CountDownLatch(workers);
+                StoppableExecutor executor = executorFactory.create("Artifact downloader");
+                try {
+                    for (int i = 0; i < workers; i++) {
+                        executor.execute(new Runnable() {
+                            public void run() {
+                                try {
+                                    downloadAll(pending);
+                                } finally {
+                                    finished.countDown();
+                                }
+                            }
+                        });
+                    }
+                    try {
+                        finished.await();
+                    } catch (InterruptedException e) {
+                        throw UncheckedException.throwAsUncheckedException(e);
+                    }
+                } finally {
+                    executor.stop();
+                }
+            }
+        });
+    }
+
+    private void downloadAll(Queue<DefaultResolvedArtifact> pending) {
+        DefaultResolvedArtifact artifact;
+        while ((artifact = pending.poll()) != null) {
+            try {
+                artifact.getFile();
+            } catch (Throwable t) {
+                LOGGER.debug(String.format("Could not resolve %s ahead of time.", artifact), t);
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve;
+
+import org.apache.ivy.Ivy;
+import org.gradle.api.Action;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.internal.artifacts.ivyservice.*;
+import org.gradle.api.internal.artifacts.metadata.DependencyMetaData;
+import org.gradle.internal.UncheckedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+/**
+ * A {@link DependencyToModuleVersionResolver} that can resolve a batch of module dependencies concurrently, ahead of when they are required. A prefetched
+ * result is used once, by the first request to resolve the same dependency. All other requests are passed on to the delegate.
+ *
+ * <p>Access to the caches is still serialized by the cache lock, so that only the requests to remote repositories run concurrently.</p>
+ */
+public class ParallelPrefetchingDependencyResolver implements DependencyToModuleVersionResolver, ComponentMetaDataPrefetcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelPrefetchingDependencyResolver.class);
+    private final DependencyToModuleVersionResolver delegate;
+    private final CacheLockingManager cacheLockingManager;
+    private final IvyContextManager ivyContextManager;
+    private final Executor executor;
+    private final int maxConcurrentFetches;
+    private final Map<DependencyMetaData, DefaultBuildableComponentResolveResult> prefetched = new IdentityHashMap<DependencyMetaData, DefaultBuildableComponentResolveResult>();
+
+    public ParallelPrefetchingDependencyResolver(DependencyToModuleVersionResolver delegate, CacheLockingManager cacheLockingManager, IvyContextManager ivyContextManager,
+                                                 Executor executor, int maxConcurrentFetches) {
+        this.delegate = delegate;
+        this.cacheLockingManager = cacheLockingManager;
+        this.ivyContextManager = ivyContextManager;
+        this.executor = executor;
+        this.maxConcurrentFetches = maxConcurrentFetches;
+    }
+
+    public void resolve(DependencyMetaData dependency, BuildableComponentResolveResult result) {
+        DefaultBuildableComponentResolveResult prefetchedResult;
+        synchronized (prefetched) {
+            prefetchedResult = prefetched.remove(dependency);
+        }
+        if (prefetchedResult == null) {
+            delegate.resolve(dependency, result);
+            return;
+        }
+        prefetchedResult.applyTo(result);
+        if (prefetchedResult.getFailure() != null) {
+            result.failed(prefetchedResult.getFailure());
+        } else {
+            result.resolved(prefetchedResult.getMetaData());
+        }
+    }
+
+    public void prefetch(List<DependencyMetaData> dependencies) {
+        final Queue<DependencyMetaData> pending = new ConcurrentLinkedQueue<DependencyMetaData>();
+        synchronized (prefetched) {
+            for (DependencyMetaData dependency : dependencies) {
+                // Project dependencies are not resolved using the repositories
+                if (dependency.getSelector() instanceof ModuleComponentSelector && !prefetched.containsKey(dependency)) {
+                    pending.add(dependency);
+                }
+            }
+        }
+        if (pending.size() < 2) {
+            // Nothing to gain from fetching a single dependency ahead of time
+            return;
+        }
+
+        final int workers = Math.min(maxConcurrentFetches, pending.size());
+        final CountDownLatch finished = new CountDownLatch(workers);
+        LOGGER.debug("Fetching meta-data for {} dependencies using {} threads.", pending.size(), workers);
+        cacheLockingManager.longRunningOperation(String.format("Fetch meta-data for %s dependencies", pending.size()), new Runnable() {
+            public void run() {
+                for (int i = 0; i < workers; i++) {
+                    executor.execute(new Runnable() {
+                        public void run() {
+                            try {
+                                fetchAll(pending);
+                            } finally {
+                                finished.countDown();
+                            }
+                        }
+                    });
+                }
+                try {
+                    finished.await();
+                } catch (InterruptedException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+        });
+    }
+
+    private void fetchAll(final Queue<DependencyMetaData> pending) {
+        ivyContextManager.withIvy(new Action<Ivy>() {
+            public void execute(Ivy ivy) {
+                DependencyMetaData dependency;
+                while ((dependency = pending.poll()) != null) {
+                    fetch(dependency);
+                }
+            }
+        });
+    }
+
+    private void fetch(final DependencyMetaData dependency) {
+        final DefaultBuildableComponentResolveResult result = new DefaultBuildableComponentResolveResult();
+        try {
+            cacheLockingManager.useCache(String.format("Resolve %s", dependency), new Runnable() {
+                public void run() {
+                    delegate.resolve(dependency, result);
+                }
+            });
+            // Check that there is a result
+            result.getFailure();
+        } catch (Throwable t) {
+            // Resolve it again when it is required, so that the failure is reported
+            LOGGER.debug(String.format("Could not fetch meta-data for %s ahead of time.", dependency), t);
+            return;
+        }
+        synchronized (prefetched) {
+            prefetched.put(dependency, result);
+        }
+    }
+}
@@ -71,6 +71,9 @@ public class ResolveIvyFactory {
 
         startParameterResolutionOverride.addResolutionRules(resolutionRules);
 
+        // Meta-data of static modules read from the file-backed cache is shared with later builds, unless it may be modified by rules or must be refreshed
+        boolean shareAcrossBuilds = !metadataProcessor.hasRules() && !startParameterResolutionOverride.isRefreshDependencies();
+
         UserResolverChain userResolverChain = new UserResolverChain(versionMatcher, latestStrategy);
         RepositoryChain parentLookupResolver = new ParentModuleLookupResolver(userResolverChain, cacheLockingManager);
 
@@ -97,7 +100,7 @@ public class ResolveIvyFactory {
             if (baseRepository.isDynamicResolveMode()) {
                 moduleComponentRepository = IvyDynamicResolveModuleComponentRepositoryAccess.wrap(moduleComponentRepository);
             }
-            moduleComponentRepository = inMemoryCache.cached(moduleComponentRepository);
+            moduleComponentRepository = inMemoryCache.cached(moduleComponentRepository, shareAcrossBuilds && !baseRepository.isLocal());
             userResolverChain.add(moduleComponentRepository);
         }
 
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.memcache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.BuildableModuleVersionMetaDataResolveResult;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Caches the meta-data of static, non-changing module versions in memory, so that it can be shared by all builds run by the daemon.
+ *
+ * <p>Entries are only kept for as long as the on-disk module meta-data cache is unchanged: it is checked at the start and at the end of each build,
+ * and all entries are discarded when any of its files have changed. The number of entries is bounded and entries are released under memory pressure.</p>
+ */
+public class CrossBuildInMemoryMetaDataCache {
+    private final static Logger LOG = Logging.getLogger(CrossBuildInMemoryMetaDataCache.class);
+    private static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    private final Cache<Key, CachedModuleVersionResult> metaData;
+    private File moduleCacheDir;
+    private String moduleCacheState;
+
+    public CrossBuildInMemoryMetaDataCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    CrossBuildInMemoryMetaDataCache(int maxEntries) {
+        metaData = CacheBuilder.newBuilder().maximumSize(maxEntries).softValues().build();
+    }
+
+    /**
+     * Called at the start of a build using the given module meta-data cache directory. Discards all entries when the directory has changed since the end of the previous build.
+     */
+    public synchronized void beginBuild(File moduleCacheDir) {
+        String state = readState(moduleCacheDir);
+        if (!moduleCacheDir.equals(this.moduleCacheDir) || !state.equals(moduleCacheState)) {
+            invalidate();
+        }
+        this.moduleCacheDir = moduleCacheDir;
+        this.moduleCacheState = state;
+    }
+
+    /**
+     * Called at the end of a build. Discards all entries when the module meta-data cache directory has changed during the build.
+     */
+    public synchronized void endBuild() {
+        if (moduleCacheDir == null) {
+            return;
+        }
+        String state = readState(moduleCacheDir);
+        if (!state.equals(moduleCacheState)) {
+            invalidate();
+        }
+        moduleCacheState = state;
+    }
+
+    boolean supplyMetaData(String repositoryId, ModuleComponentIdentifier requested, BuildableModuleVersionMetaDataResolveResult result) {
+        CachedModuleVersionResult fromCache = metaData.getIfPresent(new Key(repositoryId, requested));
+        if (fromCache == null) {
+            return false;
+        }
+        fromCache.supply(result);
+        return true;
+    }
+
+    void newDependencyResult(String repositoryId, ModuleComponentIdentifier requested, BuildableModuleVersionMetaDataResolveResult result) {
+        if (result.getState() == BuildableModuleVersionMetaDataResolveResult.State.Resolved && !result.getMetaData().isChanging()) {
+            metaData.put(new Key(repositoryId, requested), new CachedModuleVersionResult(result));
+        }
+    }
+
+    long size() {
+        return metaData.size();
+    }
+
+    private void invalidate() {
+        if (metaData.size() > 0) {
+            LOG.debug("Module meta-data cache has changed, discarding {} in-memory cross-build entries.", metaData.size());
+            metaData.invalidateAll();
+        }
+    }
+
+    private static String readState(File moduleCacheDir) {
+        File[] files = moduleCacheDir.listFiles();
+        if (files == null) {
+            return "";
+        }
+        Arrays.sort(files);
+        StringBuilder state = new StringBuilder();
+        for (File file : files) {
+            if (file.isFile() && !file.getName().endsWith(".lock")) {
+                state.append(file.getName()).append(':').append(file.length()).append(':').append(file.lastModified()).append(';');
+            }
+        }
+        return state.toString();
+    }
+
+    private static class Key {
+        private final String repositoryId;
+        private final ModuleComponentIdentifier id;
+
+        Key(String repositoryId, ModuleComponentIdentifier id) {
+            this.repositoryId = repositoryId;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != getClass()) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return repositoryId.equals(other.repositoryId) && id.equals(other.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return repositoryId.hashCode() ^ id.hashCode();
+        }
+    }
+}
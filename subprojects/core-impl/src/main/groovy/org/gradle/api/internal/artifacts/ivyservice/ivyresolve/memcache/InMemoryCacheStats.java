@@ -21,9 +21,11 @@ class InMemoryCacheStats {
     int reposWrapped;
     int metadataServed;
     int artifactsServed;
+    int crossBuildMetadataServed;
+    int crossBuildMetadataMissed;
     public String toString() {
         return String.format(
-                "Repos cached: %s, cache instances: %s, modules served from cache: %s, artifacts: %s",
-                reposWrapped, cacheInstances, metadataServed, artifactsServed);
+                "Repos cached: %s, cache instances: %s, modules served from cache: %s, artifacts: %s, modules served from cross-build cache: %s, cross-build cache misses: %s",
+                reposWrapped, cacheInstances, metadataServed, artifactsServed, crossBuildMetadataServed, crossBuildMetadataMissed);
     }
 }
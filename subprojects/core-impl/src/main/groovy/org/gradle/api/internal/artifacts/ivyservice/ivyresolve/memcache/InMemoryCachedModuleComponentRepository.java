@@ -29,10 +29,17 @@ class InMemoryCachedModuleComponentRepository extends BaseModuleComponentReposit
     private final ModuleComponentRepositoryAccess remoteAccess;
 
     public InMemoryCachedModuleComponentRepository(InMemoryModuleComponentRepositoryCaches cache, ModuleComponentRepository delegate) {
+        this(cache, delegate, null);
+    }
+
+    /**
+     * Creates a repository that, when the given cross-build cache is not null, also shares the meta-data of static modules found by the local access with later builds.
+     */
+    public InMemoryCachedModuleComponentRepository(InMemoryModuleComponentRepositoryCaches cache, ModuleComponentRepository delegate, CrossBuildInMemoryMetaDataCache crossBuildCache) {
         super(delegate);
         this.stats = cache.stats;
-        this.localAccess = new CachedAccess(delegate.getLocalAccess(), cache.localArtifactsCache, cache.localMetaDataCache);
-        this.remoteAccess = new CachedAccess(delegate.getRemoteAccess(), cache.remoteArtifactsCache, cache.remoteMetaDataCache);
+        this.localAccess = new CachedAccess(delegate.getLocalAccess(), cache.localArtifactsCache, cache.localMetaDataCache, crossBuildCache);
+        this.remoteAccess = new CachedAccess(delegate.getRemoteAccess(), cache.remoteArtifactsCache, cache.remoteMetaDataCache, null);
     }
 
     @Override
@@ -48,11 +55,13 @@ class InMemoryCachedModuleComponentRepository extends BaseModuleComponentReposit
     private class CachedAccess extends BaseModuleComponentRepositoryAccess {
         private final InMemoryMetaDataCache metaDataCache;
         private final InMemoryArtifactsCache artifactsCache;
+        private final CrossBuildInMemoryMetaDataCache crossBuildCache;
 
-        public CachedAccess(ModuleComponentRepositoryAccess access, InMemoryArtifactsCache artifactsCache, InMemoryMetaDataCache metaDataCache) {
+        public CachedAccess(ModuleComponentRepositoryAccess access, InMemoryArtifactsCache artifactsCache, InMemoryMetaDataCache metaDataCache, CrossBuildInMemoryMetaDataCache crossBuildCache) {
             super(access);
             this.artifactsCache = artifactsCache;
             this.metaDataCache = metaDataCache;
+            this.crossBuildCache = crossBuildCache;
         }
 
         public void listModuleVersions(DependencyMetaData dependency, BuildableModuleVersionSelectionResolveResult result) {
@@ -64,11 +73,25 @@ class InMemoryCachedModuleComponentRepository extends BaseModuleComponentReposit
 
         public void resolveComponentMetaData(DependencyMetaData dependency, ModuleComponentIdentifier moduleComponentIdentifier, BuildableModuleVersionMetaDataResolveResult result) {
             if(!metaDataCache.supplyMetaData(moduleComponentIdentifier, result)) {
-                super.resolveComponentMetaData(dependency, moduleComponentIdentifier, result);
+                if (crossBuildCache == null || dependency.isChanging()) {
+                    super.resolveComponentMetaData(dependency, moduleComponentIdentifier, result);
+                } else {
+                    resolveUsingCrossBuildCache(dependency, moduleComponentIdentifier, result);
+                }
                 metaDataCache.newDependencyResult(moduleComponentIdentifier, result);
             }
         }
 
+        private void resolveUsingCrossBuildCache(DependencyMetaData dependency, ModuleComponentIdentifier moduleComponentIdentifier, BuildableModuleVersionMetaDataResolveResult result) {
+            if (crossBuildCache.supplyMetaData(getId(), moduleComponentIdentifier, result)) {
+                stats.crossBuildMetadataServed++;
+                return;
+            }
+            stats.crossBuildMetadataMissed++;
+            super.resolveComponentMetaData(dependency, moduleComponentIdentifier, result);
+            crossBuildCache.newDependencyResult(getId(), moduleComponentIdentifier, result);
+        }
+
         public void resolveArtifact(ComponentArtifactMetaData artifact, ModuleSource moduleSource, BuildableArtifactResolveResult result) {
             if (!artifactsCache.supplyArtifact(artifact.getId(), result)) {
                 super.resolveArtifact(artifact, moduleSource, result);
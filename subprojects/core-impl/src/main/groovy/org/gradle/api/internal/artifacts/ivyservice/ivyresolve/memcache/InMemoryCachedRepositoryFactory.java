@@ -22,6 +22,7 @@ import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.internal.concurrent.Stoppable;
 
+import java.io.File;
 import java.util.Map;
 
 /**
@@ -37,7 +38,30 @@ public class InMemoryCachedRepositoryFactory implements Stoppable {
 
     final InMemoryCacheStats stats = new InMemoryCacheStats();
 
+    private final CrossBuildInMemoryMetaDataCache crossBuildCache;
+
+    public InMemoryCachedRepositoryFactory() {
+        this.crossBuildCache = null;
+    }
+
+    /**
+     * Creates a factory for a build that can share static module meta-data with other builds through the given cache. The module cache directory is used to detect changes to the on-disk meta-data.
+     */
+    public InMemoryCachedRepositoryFactory(CrossBuildInMemoryMetaDataCache crossBuildCache, File moduleCacheDir) {
+        this.crossBuildCache = crossBuildCache;
+        crossBuildCache.beginBuild(moduleCacheDir);
+    }
+
     public ModuleComponentRepository cached(ModuleComponentRepository input) {
+        return cached(input, false);
+    }
+
+    /**
+     * Wraps the given repository in an in-memory cache.
+     *
+     * @param shareAcrossBuilds whether the meta-data of static modules found by the local access of the repository may be shared with later builds.
+     */
+    public ModuleComponentRepository cached(ModuleComponentRepository input, boolean shareAcrossBuilds) {
         if ("false".equalsIgnoreCase(System.getProperty(TOGGLE_PROPERTY))) {
             return input;
         }
@@ -52,11 +76,14 @@ public class InMemoryCachedRepositoryFactory implements Stoppable {
         } else {
             LOG.debug("Reusing in-memory cache for repo '{}' [{}].", input.getName(), input.getId());
         }
-        return new InMemoryCachedModuleComponentRepository(caches, input);
+        return new InMemoryCachedModuleComponentRepository(caches, input, shareAcrossBuilds ? crossBuildCache : null);
     }
 
     public void stop() {
         cachePerRepo.clear();
+        if (crossBuildCache != null) {
+            crossBuildCache.endBuild();
+        }
         LOG.debug("In-memory dependency metadata cache closed. {}", stats);
     }
 }
@@ -0,0 +1,388 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import org.apache.ivy.core.module.descriptor.*;
+import org.apache.ivy.core.module.id.ArtifactId;
+import org.apache.ivy.core.module.id.ModuleRevisionId;
+import org.apache.ivy.plugins.matcher.PatternMatcher;
+import org.apache.ivy.plugins.parser.xml.XmlModuleDescriptorParser;
+import org.gradle.api.internal.artifacts.ivyservice.IvyUtil;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.ResolverStrategy;
+import org.gradle.internal.UncheckedException;
+import org.gradle.messaging.serialize.Decoder;
+import org.gradle.messaging.serialize.Encoder;
+import org.gradle.messaging.serialize.Serializer;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.*;
+
+/**
+ * Serializes a resolved {@link ModuleDescriptor} to a compact binary form. Retains the same information as the ivy.xml files written by
+ * {@link org.gradle.api.internal.artifacts.ivyservice.IvyXmlModuleDescriptorWriter}, and creates the same descriptor as parsing such a file would.
+ */
+class ModuleDescriptorSerializer implements Serializer<ModuleDescriptor> {
+    private final ResolverStrategy resolverStrategy;
+    private final Field dependencyConfigField;
+
+    public ModuleDescriptorSerializer(ResolverStrategy resolverStrategy) {
+        this.resolverStrategy = resolverStrategy;
+        try {
+            dependencyConfigField = DefaultDependencyDescriptor.class.getDeclaredField("confs");
+        } catch (NoSuchFieldException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        dependencyConfigField.setAccessible(true);
+    }
+
+    public void write(Encoder encoder, ModuleDescriptor md) throws Exception {
+        writeAttributes(encoder, md.getExtraAttributesNamespaces());
+        writeInfo(encoder, md);
+        writeConfigurations(encoder, md);
+        writePublications(encoder, md);
+        writeDependencies(encoder, md);
+        writeExcludeRules(encoder, md.getAllExcludeRules());
+    }
+
+    public ModuleDescriptor read(Decoder decoder) throws Exception {
+        DefaultModuleDescriptor md = new DefaultModuleDescriptor(XmlModuleDescriptorParser.getInstance(), null);
+        for (Map.Entry<String, String> namespace : readAttributes(decoder).entrySet()) {
+            md.addExtraAttributeNamespace(namespace.getKey(), namespace.getValue());
+        }
+        readInfo(decoder, md);
+        readConfigurations(decoder, md);
+        readPublications(decoder, md);
+        readDependencies(decoder, md);
+        for (ExcludeRule excludeRule : readExcludeRules(decoder)) {
+            md.addExcludeRule(excludeRule);
+        }
+        return md;
+    }
+
+    private void writeInfo(Encoder encoder, ModuleDescriptor md) throws IOException {
+        ModuleRevisionId moduleRevisionId = md.getModuleRevisionId();
+        ModuleRevisionId resolvedModuleRevisionId = md.getResolvedModuleRevisionId();
+        encoder.writeString(moduleRevisionId.getOrganisation());
+        encoder.writeString(moduleRevisionId.getName());
+        encoder.writeNullableString(resolvedModuleRevisionId.getBranch());
+        encoder.writeNullableString(resolvedModuleRevisionId.getRevision());
+        writeAttributes(encoder, md.getQualifiedExtraAttributes());
+        encoder.writeString(md.getStatus());
+        Date publicationDate = md.getResolvedPublicationDate();
+        encoder.writeBoolean(publicationDate != null);
+        if (publicationDate != null) {
+            encoder.writeLong(publicationDate.getTime());
+        }
+        encoder.writeBoolean(md.isDefault());
+
+        License[] licenses = md.getLicenses();
+        encoder.writeSmallInt(licenses.length);
+        for (License license : licenses) {
+            encoder.writeNullableString(license.getName());
+            encoder.writeNullableString(license.getUrl());
+        }
+        encoder.writeNullableString(md.getHomePage());
+        encoder.writeNullableString(md.getDescription());
+
+        Map<String, String> extraInfo = new LinkedHashMap<String, String>();
+        for (Object entry : md.getExtraInfo().entrySet()) {
+            Map.Entry extraDescr = (Map.Entry) entry;
+            if (extraDescr.getValue() != null && extraDescr.getValue().toString().length() > 0) {
+                extraInfo.put(extraDescr.getKey().toString(), extraDescr.getValue().toString());
+            }
+        }
+        writeAttributes(encoder, extraInfo);
+    }
+
+    private void readInfo(Decoder decoder, DefaultModuleDescriptor md) throws IOException {
+        String organisation = decoder.readString();
+        String module = decoder.readString();
+        String branch = decoder.readNullableString();
+        String revision = decoder.readNullableString();
+        md.setModuleRevisionId(IvyUtil.createModuleRevisionId(organisation, module, branch, revision, readAttributes(decoder)));
+        md.setStatus(decoder.readString());
+        if (decoder.readBoolean()) {
+            md.setPublicationDate(new Date(decoder.readLong()));
+        }
+        md.setDefault(decoder.readBoolean());
+
+        int licenses = decoder.readSmallInt();
+        for (int i = 0; i < licenses; i++) {
+            md.addLicense(new License(decoder.readNullableString(), decoder.readNullableString()));
+        }
+        md.setHomePage(decoder.readNullableString());
+        md.setDescription(decoder.readNullableString());
+
+        for (Map.Entry<String, String> extraInfo : readAttributes(decoder).entrySet()) {
+            md.addExtraInfo(extraInfo.getKey(), extraInfo.getValue());
+        }
+    }
+
+    private void writeConfigurations(Encoder encoder, ModuleDescriptor md) throws IOException {
+        Configuration[] configurations = md.getConfigurations();
+        encoder.writeSmallInt(configurations.length);
+        for (Configuration configuration : configurations) {
+            encoder.writeString(configuration.getName());
+            encoder.writeString(configuration.getVisibility().toString());
+            encoder.writeNullableString(configuration.getDescription());
+            writeStrings(encoder, configuration.getExtends());
+            encoder.writeBoolean(configuration.isTransitive());
+            encoder.writeNullableString(configuration.getDeprecated());
+        }
+    }
+
+    private void readConfigurations(Decoder decoder, DefaultModuleDescriptor md) throws IOException {
+        int configurations = decoder.readSmallInt();
+        for (int i = 0; i < configurations; i++) {
+            String name = decoder.readString();
+            Configuration.Visibility visibility = Configuration.Visibility.getVisibility(decoder.readString());
+            String description = decoder.readNullableString();
+            String[] extendsFrom = readStrings(decoder);
+            boolean transitive = decoder.readBoolean();
+            String deprecated = decoder.readNullableString();
+            md.addConfiguration(new Configuration(name, visibility, description, extendsFrom, transitive, deprecated));
+        }
+    }
+
+    private void writePublications(Encoder encoder, ModuleDescriptor md) throws IOException {
+        Artifact[] artifacts = md.getAllArtifacts();
+        encoder.writeSmallInt(artifacts.length);
+        for (Artifact artifact : artifacts) {
+            encoder.writeString(artifact.getName());
+            encoder.writeString(artifact.getType());
+            encoder.writeString(artifact.getExt());
+            writeStrings(encoder, artifact.getConfigurations());
+            writeAttributes(encoder, artifact.getQualifiedExtraAttributes());
+        }
+    }
+
+    private void readPublications(Decoder decoder, DefaultModuleDescriptor md) throws IOException {
+        int artifacts = decoder.readSmallInt();
+        for (int i = 0; i < artifacts; i++) {
+            String name = decoder.readString();
+            String type = decoder.readString();
+            String ext = decoder.readString();
+            String[] configurations = readStrings(decoder);
+            MDArtifact artifact = new MDArtifact(md, name, type, ext, null, readAttributes(decoder));
+            for (String configuration : configurations) {
+                artifact.addConfiguration(configuration);
+            }
+            for (String configuration : configurations) {
+                md.addArtifact(configuration, artifact);
+            }
+        }
+    }
+
+    private void writeDependencies(Encoder encoder, ModuleDescriptor md) throws Exception {
+        DependencyDescriptor[] dependencies = md.getDependencies();
+        encoder.writeSmallInt(dependencies.length);
+        for (DependencyDescriptor dependency : dependencies) {
+            writeModuleRevisionId(encoder, dependency.getDependencyRevisionId());
+            writeModuleRevisionId(encoder, dependency.getDynamicConstraintDependencyRevisionId());
+            encoder.writeBoolean(dependency.isForce());
+            encoder.writeBoolean(dependency.isChanging());
+            encoder.writeBoolean(dependency.isTransitive());
+
+            Map<String, List<String>> configMappings = getConfigMappings(dependency);
+            encoder.writeSmallInt(configMappings.size());
+            for (Map.Entry<String, List<String>> entry : configMappings.entrySet()) {
+                encoder.writeString(entry.getKey());
+                writeStrings(encoder, entry.getValue().toArray(new String[entry.getValue().size()]));
+            }
+
+            DependencyArtifactDescriptor[] artifacts = dependency.getAllDependencyArtifacts();
+            encoder.writeSmallInt(artifacts.length);
+            for (DependencyArtifactDescriptor artifact : artifacts) {
+                encoder.writeString(artifact.getName());
+                encoder.writeString(artifact.getType());
+                encoder.writeString(artifact.getExt());
+                writeStrings(encoder, artifact.getConfigurations());
+                writeAttributes(encoder, artifact.getQualifiedExtraAttributes());
+            }
+
+            IncludeRule[] includeRules = dependency.getAllIncludeRules();
+            encoder.writeSmallInt(includeRules.length);
+            for (IncludeRule includeRule : includeRules) {
+                writeArtifactId(encoder, includeRule.getId());
+                encoder.writeString(includeRule.getMatcher().getName());
+                writeStrings(encoder, includeRule.getConfigurations());
+            }
+
+            writeExcludeRules(encoder, dependency.getAllExcludeRules());
+        }
+    }
+
+    private void readDependencies(Decoder decoder, DefaultModuleDescriptor md) throws IOException {
+        int dependencies = decoder.readSmallInt();
+        for (int i = 0; i < dependencies; i++) {
+            ModuleRevisionId revisionId = readModuleRevisionId(decoder);
+            ModuleRevisionId dynamicRevisionId = readModuleRevisionId(decoder);
+            boolean force = decoder.readBoolean();
+            boolean changing = decoder.readBoolean();
+            boolean transitive = decoder.readBoolean();
+            DefaultDependencyDescriptor dependency = new DefaultDependencyDescriptor(md, revisionId, dynamicRevisionId, force, changing, transitive);
+            md.addDependency(dependency);
+
+            int configMappings = decoder.readSmallInt();
+            for (int j = 0; j < configMappings; j++) {
+                String moduleConfiguration = decoder.readString();
+                for (String dependencyConfiguration : readStrings(decoder)) {
+                    dependency.addDependencyConfiguration(moduleConfiguration, dependencyConfiguration);
+                }
+            }
+
+            int artifacts = decoder.readSmallInt();
+            for (int j = 0; j < artifacts; j++) {
+                String name = decoder.readString();
+                String type = decoder.readString();
+                String ext = decoder.readString();
+                String[] configurations = readStrings(decoder);
+                DefaultDependencyArtifactDescriptor artifact = new DefaultDependencyArtifactDescriptor(dependency, name, type, ext, null, readAttributes(decoder));
+                for (String configuration : configurations) {
+                    artifact.addConfiguration(configuration);
+                    dependency.addDependencyArtifact(configuration, artifact);
+                }
+            }
+
+            int includeRules = decoder.readSmallInt();
+            for (int j = 0; j < includeRules; j++) {
+                ArtifactId artifactId = readArtifactId(decoder);
+                PatternMatcher matcher = resolverStrategy.getPatternMatcher(decoder.readString());
+                DefaultIncludeRule includeRule = new DefaultIncludeRule(artifactId, matcher, new HashMap<String, String>());
+                for (String configuration : readStrings(decoder)) {
+                    includeRule.addConfiguration(configuration);
+                    dependency.addIncludeRule(configuration, includeRule);
+                }
+            }
+
+            for (ExcludeRule excludeRule : readExcludeRules(decoder)) {
+                for (String configuration : excludeRule.getConfigurations()) {
+                    dependency.addExcludeRule(configuration, excludeRule);
+                }
+            }
+        }
+    }
+
+    private Map<String, List<String>> getConfigMappings(DependencyDescriptor dependency) throws IllegalAccessException {
+        String[] moduleConfigurations = dependency.getModuleConfigurations();
+        Map<String, List<String>> configMappings = new LinkedHashMap<String, List<String>>();
+        if (dependency instanceof DefaultDependencyDescriptor) {
+            // Use the raw mappings, as `getDependencyConfigurations()` interprets mappings such as '*->@' and '*->#'
+            Map<String, List<String>> rawMappings = (Map<String, List<String>>) dependencyConfigField.get(dependency);
+            for (String moduleConfiguration : moduleConfigurations) {
+                configMappings.put(moduleConfiguration, rawMappings.get(moduleConfiguration));
+            }
+        } else {
+            for (String moduleConfiguration : moduleConfigurations) {
+                configMappings.put(moduleConfiguration, Arrays.asList(dependency.getDependencyConfigurations(moduleConfiguration)));
+            }
+        }
+        return configMappings;
+    }
+
+    private void writeExcludeRules(Encoder encoder, ExcludeRule[] excludeRules) throws IOException {
+        encoder.writeSmallInt(excludeRules.length);
+        for (ExcludeRule excludeRule : excludeRules) {
+            writeArtifactId(encoder, excludeRule.getId());
+            encoder.writeString(excludeRule.getMatcher().getName());
+            writeStrings(encoder, excludeRule.getConfigurations());
+            writeAttributes(encoder, excludeRule.getQualifiedExtraAttributes());
+        }
+    }
+
+    private List<ExcludeRule> readExcludeRules(Decoder decoder) throws IOException {
+        int size = decoder.readSmallInt();
+        List<ExcludeRule> excludeRules = new ArrayList<ExcludeRule>(size);
+        for (int i = 0; i < size; i++) {
+            ArtifactId artifactId = readArtifactId(decoder);
+            PatternMatcher matcher = resolverStrategy.getPatternMatcher(decoder.readString());
+            String[] configurations = readStrings(decoder);
+            DefaultExcludeRule excludeRule = new DefaultExcludeRule(artifactId, matcher, readAttributes(decoder));
+            for (String configuration : configurations) {
+                excludeRule.addConfiguration(configuration);
+            }
+            excludeRules.add(excludeRule);
+        }
+        return excludeRules;
+    }
+
+    private void writeModuleRevisionId(Encoder encoder, ModuleRevisionId id) throws IOException {
+        encoder.writeString(id.getOrganisation());
+        encoder.writeString(id.getName());
+        encoder.writeNullableString(id.getBranch());
+        encoder.writeNullableString(id.getRevision());
+        writeAttributes(encoder, id.getQualifiedExtraAttributes());
+    }
+
+    private ModuleRevisionId readModuleRevisionId(Decoder decoder) throws IOException {
+        String organisation = decoder.readString();
+        String name = decoder.readString();
+        String branch = decoder.readNullableString();
+        String revision = decoder.readNullableString();
+        return IvyUtil.createModuleRevisionId(organisation, name, branch, revision, readAttributes(decoder), false);
+    }
+
+    private void writeArtifactId(Encoder encoder, ArtifactId id) throws IOException {
+        encoder.writeString(id.getModuleId().getOrganisation());
+        encoder.writeString(id.getModuleId().getName());
+        encoder.writeString(id.getName());
+        encoder.writeString(id.getType());
+        encoder.writeString(id.getExt());
+    }
+
+    private ArtifactId readArtifactId(Decoder decoder) throws IOException {
+        String organisation = decoder.readString();
+        String module = decoder.readString();
+        return new ArtifactId(IvyUtil.createModuleId(organisation, module), decoder.readString(), decoder.readString(), decoder.readString());
+    }
+
+    private void writeStrings(Encoder encoder, String[] values) throws IOException {
+        encoder.writeSmallInt(values.length);
+        for (String value : values) {
+            encoder.writeString(value);
+        }
+    }
+
+    private String[] readStrings(Decoder decoder) throws IOException {
+        String[] values = new String[decoder.readSmallInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = decoder.readString();
+        }
+        return values;
+    }
+
+    private void writeAttributes(Encoder encoder, Map<?, ?> attributes) throws IOException {
+        if (attributes == null) {
+            encoder.writeSmallInt(0);
+            return;
+        }
+        encoder.writeSmallInt(attributes.size());
+        for (Map.Entry<?, ?> entry : attributes.entrySet()) {
+            encoder.writeString(entry.getKey().toString());
+            encoder.writeString(entry.getValue().toString());
+        }
+    }
+
+    private Map<String, String> readAttributes(Decoder decoder) throws IOException {
+        int size = decoder.readSmallInt();
+        Map<String, String> attributes = new LinkedHashMap<String, String>(size);
+        for (int i = 0; i < size; i++) {
+            attributes.put(decoder.readString(), decoder.readString());
+        }
+        return attributes;
+    }
+}
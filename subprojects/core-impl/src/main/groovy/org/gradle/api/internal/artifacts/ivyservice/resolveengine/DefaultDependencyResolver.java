@@ -17,6 +17,8 @@ package org.gradle.api.internal.artifacts.ivyservice.resolveengine;
 
 import org.apache.ivy.Ivy;
 import org.gradle.api.Action;
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.artifacts.ModuleDependency;
 import org.gradle.api.artifacts.ResolveException;
 import org.gradle.api.artifacts.result.ResolvedComponentResult;
 import org.gradle.api.internal.artifacts.ArtifactDependencyResolver;
@@ -27,6 +29,7 @@ import org.gradle.api.internal.artifacts.ivyservice.*;
 import org.gradle.api.internal.artifacts.ivyservice.clientmodule.ClientModuleResolver;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ErrorHandlingArtifactResolver;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.LazyDependencyToModuleResolver;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ParallelPrefetchingDependencyResolver;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.RepositoryChain;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ResolveIvyFactory;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.LatestStrategy;
@@ -37,6 +40,9 @@ import org.gradle.api.internal.artifacts.ivyservice.projectmodule.ProjectCompone
 import org.gradle.api.internal.artifacts.ivyservice.projectmodule.ProjectDependencyResolver;
 import org.gradle.api.internal.artifacts.ivyservice.resolutionstrategy.StrictConflictResolution;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphBuilder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graphcache.ResolvedGraphCache;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graphcache.ResolvedGraphKeyFactory;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graphcache.ResolvedGraphRecorder;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.DefaultResolvedConfigurationBuilder;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.TransientConfigurationResults;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.TransientConfigurationResultsBuilder;
@@ -47,12 +53,27 @@ import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.StoreSet
 import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
 import org.gradle.api.internal.cache.BinaryStore;
 import org.gradle.api.internal.cache.Store;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.StoppableExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class DefaultDependencyResolver implements ArtifactDependencyResolver {
+    /**
+     * System property to set the maximum number of dependencies to fetch the meta-data for concurrently. Fetching is sequential by default.
+     */
+    public static final String MAX_CONCURRENT_METADATA_FETCHES_PROPERTY = "org.gradle.dependency.metadata.maxConcurrentFetches";
+    /**
+     * System property to set the maximum number of artifacts to download concurrently when the files of a resolved configuration are requested. Downloads are sequential by default.
+     */
+    public static final String MAX_CONCURRENT_ARTIFACT_DOWNLOADS_PROPERTY = "org.gradle.dependency.artifacts.maxConcurrentDownloads";
+    /**
+     * System property to enable reusing the resolved dependency graphs of previous builds. Disabled by default.
+     */
+    public static final String RESOLVED_GRAPH_CACHE_PROPERTY = "org.gradle.dependency.resolvedGraphCache";
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultDependencyResolver.class);
     private final LocalComponentFactory localComponentFactory;
     private final DependencyDescriptorFactory dependencyDescriptorFactory;
@@ -63,10 +84,29 @@ public class DefaultDependencyResolver implements ArtifactDependencyResolver {
     private final ResolutionResultsStoreFactory storeFactory;
     private final VersionMatcher versionMatcher;
     private final LatestStrategy latestStrategy;
+    private final ExecutorFactory executorFactory;
+    private final int maxConcurrentMetaDataFetches;
+    private final int maxConcurrentArtifactDownloads;
+    private final ResolvedGraphCache resolvedGraphCache;
+    private final ResolvedGraphKeyFactory resolvedGraphKeyFactory = new ResolvedGraphKeyFactory();
 
     public DefaultDependencyResolver(ResolveIvyFactory ivyFactory, LocalComponentFactory localComponentFactory, DependencyDescriptorFactory dependencyDescriptorFactory,
                                      ProjectComponentRegistry projectComponentRegistry, CacheLockingManager cacheLockingManager, IvyContextManager ivyContextManager,
                                      ResolutionResultsStoreFactory storeFactory, VersionMatcher versionMatcher, LatestStrategy latestStrategy) {
+        this(ivyFactory, localComponentFactory, dependencyDescriptorFactory, projectComponentRegistry, cacheLockingManager, ivyContextManager, storeFactory, versionMatcher,
+                latestStrategy, null, 1, 1, null);
+    }
+
+    /**
+     * Creates a resolver that fetches the meta-data of up to the given number of dependencies concurrently, and downloads up to the given number of artifacts
+     * concurrently, using threads from the given executor factory. When the given graph cache is not null, the resolved graphs of configurations that contain
+     * only static versions are reused from previous builds.
+     */
+    public DefaultDependencyResolver(ResolveIvyFactory ivyFactory, LocalComponentFactory localComponentFactory, DependencyDescriptorFactory dependencyDescriptorFactory,
+                                     ProjectComponentRegistry projectComponentRegistry, CacheLockingManager cacheLockingManager, IvyContextManager ivyContextManager,
+                                     ResolutionResultsStoreFactory storeFactory, VersionMatcher versionMatcher, LatestStrategy latestStrategy,
+                                     ExecutorFactory executorFactory, int maxConcurrentMetaDataFetches, int maxConcurrentArtifactDownloads,
+                                     ResolvedGraphCache resolvedGraphCache) {
         this.ivyFactory = ivyFactory;
         this.localComponentFactory = localComponentFactory;
         this.dependencyDescriptorFactory = dependencyDescriptorFactory;
@@ -76,6 +116,10 @@ public class DefaultDependencyResolver implements ArtifactDependencyResolver {
         this.storeFactory = storeFactory;
         this.versionMatcher = versionMatcher;
         this.latestStrategy = latestStrategy;
+        this.executorFactory = executorFactory;
+        this.maxConcurrentMetaDataFetches = maxConcurrentMetaDataFetches;
+        this.maxConcurrentArtifactDownloads = maxConcurrentArtifactDownloads;
+        this.resolvedGraphCache = resolvedGraphCache;
     }
 
     public void resolve(final ConfigurationInternal configuration,
@@ -86,42 +130,88 @@ public class DefaultDependencyResolver implements ArtifactDependencyResolver {
         ivyContextManager.withIvy(new Action<Ivy>() {
             public void execute(Ivy ivy) {
                 RepositoryChain repositoryChain = ivyFactory.create(configuration, repositories, metadataProcessor);
+                String graphKey = resolvedGraphCache == null ? null : resolvedGraphKeyFactory.createKey(configuration, repositories, metadataProcessor);
+                StoppableExecutor executor = maxConcurrentMetaDataFetches > 1 ? executorFactory.create("Dependency meta-data fetcher") : null;
+                try {
+                    resolve(configuration, repositoryChain, executor, graphKey, results);
+                } finally {
+                    if (executor != null) {
+                        executor.stop();
+                    }
+                }
+            }
+        });
+    }
 
-                DependencyToModuleVersionResolver dependencyResolver = repositoryChain.getDependencyResolver();
-                dependencyResolver = new ClientModuleResolver(dependencyResolver, dependencyDescriptorFactory);
-                ProjectDependencyResolver projectDependencyResolver = new ProjectDependencyResolver(projectComponentRegistry, localComponentFactory, dependencyResolver);
-                dependencyResolver = projectDependencyResolver;
-                DependencyToModuleVersionIdResolver idResolver = new LazyDependencyToModuleResolver(dependencyResolver, versionMatcher);
-                idResolver = new VersionForcingDependencyToModuleResolver(idResolver, configuration.getResolutionStrategy().getDependencyResolveRule());
+    private void resolve(ConfigurationInternal configuration, RepositoryChain repositoryChain, StoppableExecutor executor, String graphKey, ResolverResults results) {
+        DependencyToModuleVersionResolver dependencyResolver = repositoryChain.getDependencyResolver();
+        ParallelPrefetchingDependencyResolver prefetchingResolver = null;
+        if (executor != null) {
+            prefetchingResolver = new ParallelPrefetchingDependencyResolver(dependencyResolver, cacheLockingManager, ivyContextManager, executor, maxConcurrentMetaDataFetches);
+            dependencyResolver = prefetchingResolver;
+        }
+        dependencyResolver = new ClientModuleResolver(dependencyResolver, dependencyDescriptorFactory);
+        ProjectDependencyResolver projectDependencyResolver = new ProjectDependencyResolver(projectComponentRegistry, localComponentFactory, dependencyResolver);
+        dependencyResolver = projectDependencyResolver;
+        DependencyToModuleVersionIdResolver idResolver = new LazyDependencyToModuleResolver(dependencyResolver, versionMatcher);
+        idResolver = new VersionForcingDependencyToModuleResolver(idResolver, configuration.getResolutionStrategy().getDependencyResolveRule());
 
-                ArtifactResolver artifactResolver = createArtifactResolver(repositoryChain);
+        ArtifactResolver artifactResolver = createArtifactResolver(repositoryChain);
 
-                ModuleConflictResolver conflictResolver;
-                if (configuration.getResolutionStrategy().getConflictResolution() instanceof StrictConflictResolution) {
-                    conflictResolver = new StrictConflictResolver();
-                } else {
-                    conflictResolver = new LatestModuleConflictResolver(latestStrategy);
-                }
-                conflictResolver = new VersionSelectionReasonResolver(conflictResolver);
+        ModuleConflictResolver conflictResolver;
+        if (configuration.getResolutionStrategy().getConflictResolution() instanceof StrictConflictResolution) {
+            conflictResolver = new StrictConflictResolver();
+        } else {
+            conflictResolver = new LatestModuleConflictResolver(latestStrategy);
+        }
+        conflictResolver = new VersionSelectionReasonResolver(conflictResolver);
 
-                DependencyGraphBuilder builder = new DependencyGraphBuilder(idResolver, projectDependencyResolver, artifactResolver, conflictResolver, new DefaultDependencyToConfigurationResolver());
+        DependencyGraphBuilder builder = new DependencyGraphBuilder(idResolver, projectDependencyResolver, artifactResolver, conflictResolver, new DefaultDependencyToConfigurationResolver(), prefetchingResolver);
 
-                StoreSet stores = storeFactory.createStoreSet();
+        StoreSet stores = storeFactory.createStoreSet();
 
-                BinaryStore newModelStore = stores.nextBinaryStore();
-                Store<ResolvedComponentResult> newModelCache = stores.oldModelStore();
-                ResolutionResultBuilder newModelBuilder = new StreamingResolutionResultBuilder(newModelStore, newModelCache);
+        BinaryStore newModelStore = stores.nextBinaryStore();
+        Store<ResolvedComponentResult> newModelCache = stores.oldModelStore();
+        ResolutionResultBuilder newModelBuilder = new StreamingResolutionResultBuilder(newModelStore, newModelCache);
 
-                BinaryStore oldModelStore = stores.nextBinaryStore();
-                Store<TransientConfigurationResults> oldModelCache = stores.newModelStore();
-                TransientConfigurationResultsBuilder oldTransientModelBuilder = new TransientConfigurationResultsBuilder(oldModelStore, oldModelCache);
-                DefaultResolvedConfigurationBuilder oldModelBuilder = new DefaultResolvedConfigurationBuilder(oldTransientModelBuilder);
+        BinaryStore oldModelStore = stores.nextBinaryStore();
+        Store<TransientConfigurationResults> oldModelCache = stores.newModelStore();
+        TransientConfigurationResultsBuilder oldTransientModelBuilder = new TransientConfigurationResultsBuilder(oldModelStore, oldModelCache);
+        DefaultResolvedConfigurationBuilder oldModelBuilder = new DefaultResolvedConfigurationBuilder(oldTransientModelBuilder);
+
+        if (graphKey == null) {
+            builder.resolve(configuration, newModelBuilder, oldModelBuilder);
+        } else {
+            resolveUsingGraphCache(configuration, graphKey, builder, artifactResolver, newModelBuilder, oldModelBuilder);
+        }
+        ParallelArtifactDownloader artifactDownloader = maxConcurrentArtifactDownloads > 1 ? new ParallelArtifactDownloader(cacheLockingManager, executorFactory, maxConcurrentArtifactDownloads) : null;
+        DefaultLenientConfiguration result = new DefaultLenientConfiguration(configuration, oldModelBuilder, cacheLockingManager, artifactDownloader);
+        results.resolved(new DefaultResolvedConfiguration(result), newModelBuilder.complete());
+    }
 
-                builder.resolve(configuration, newModelBuilder, oldModelBuilder);
-                DefaultLenientConfiguration result = new DefaultLenientConfiguration(configuration, oldModelBuilder, cacheLockingManager);
-                results.resolved(new DefaultResolvedConfiguration(result), newModelBuilder.complete());
+    private void resolveUsingGraphCache(ConfigurationInternal configuration, String graphKey, DependencyGraphBuilder builder, ArtifactResolver artifactResolver,
+                                        ResolutionResultBuilder newModelBuilder, DefaultResolvedConfigurationBuilder oldModelBuilder) {
+        List<ModuleDependency> declaredDependencies = new ArrayList<ModuleDependency>();
+        for (Dependency dependency : configuration.getAllDependencies()) {
+            if (dependency instanceof ModuleDependency) {
+                declaredDependencies.add((ModuleDependency) dependency);
             }
-        });
+        }
+
+        byte[] graph = resolvedGraphCache.get(graphKey, configuration.getResolutionStrategy().getCachePolicy());
+        if (graph != null) {
+            LOGGER.debug("Using resolved dependency graph of {} from cache", configuration);
+            ResolvedGraphRecorder.replay(graph, declaredDependencies, artifactResolver, newModelBuilder, oldModelBuilder);
+            return;
+        }
+
+        ResolvedGraphRecorder recorder = new ResolvedGraphRecorder(newModelBuilder, oldModelBuilder, declaredDependencies, versionMatcher);
+        builder.resolve(configuration, recorder, recorder);
+        if (recorder.isReplayable()) {
+            resolvedGraphCache.store(graphKey, recorder);
+        } else {
+            LOGGER.debug("Resolved dependency graph of {} cannot be cached", configuration);
+        }
     }
 
     private ArtifactResolver createArtifactResolver(RepositoryChain repositoryChain) {
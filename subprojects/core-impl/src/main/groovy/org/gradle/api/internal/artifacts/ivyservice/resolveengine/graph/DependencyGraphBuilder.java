@@ -51,17 +51,31 @@ public class DependencyGraphBuilder {
     private final InternalConflictResolver conflictResolver;
     private final ModuleToModuleVersionResolver moduleResolver;
     private final ArtifactResolver artifactResolver;
+    private final ComponentMetaDataPrefetcher metaDataPrefetcher;
 
     public DependencyGraphBuilder(DependencyToModuleVersionIdResolver dependencyResolver,
                                   ModuleToModuleVersionResolver moduleResolver,
                                   ArtifactResolver artifactResolver,
                                   ModuleConflictResolver conflictResolver,
                                   DependencyToConfigurationResolver dependencyToConfigurationResolver) {
+        this(dependencyResolver, moduleResolver, artifactResolver, conflictResolver, dependencyToConfigurationResolver, null);
+    }
+
+    /**
+     * Creates a builder that uses the given prefetcher, if not null, to fetch the meta-data of the dependencies of each level of the graph concurrently.
+     */
+    public DependencyGraphBuilder(DependencyToModuleVersionIdResolver dependencyResolver,
+                                  ModuleToModuleVersionResolver moduleResolver,
+                                  ArtifactResolver artifactResolver,
+                                  ModuleConflictResolver conflictResolver,
+                                  DependencyToConfigurationResolver dependencyToConfigurationResolver,
+                                  ComponentMetaDataPrefetcher metaDataPrefetcher) {
         this.dependencyResolver = dependencyResolver;
         this.moduleResolver = moduleResolver;
         this.artifactResolver = artifactResolver;
         this.dependencyToConfigurationResolver = dependencyToConfigurationResolver;
         this.conflictResolver = new InternalConflictResolver(conflictResolver);
+        this.metaDataPrefetcher = metaDataPrefetcher;
     }
 
     public void resolve(ConfigurationInternal configuration,
@@ -89,12 +103,16 @@ public class DependencyGraphBuilder {
      */
     private void traverseGraph(ResolveState resolveState) {
         Set<ModuleIdentifier> conflicts = new LinkedHashSet<ModuleIdentifier>();
+        Set<ConfigurationNode> prefetched = new HashSet<ConfigurationNode>();
 
         resolveState.onMoreSelected(resolveState.root);
 
         List<DependencyEdge> dependencies = new ArrayList<DependencyEdge>();
         while (resolveState.peek() != null || !conflicts.isEmpty()) {
             if (resolveState.peek() != null) {
+                if (metaDataPrefetcher != null && !prefetched.contains(resolveState.peek())) {
+                    prefetchMetaData(resolveState, prefetched);
+                }
                 ConfigurationNode node = resolveState.pop();
                 LOGGER.debug("Visiting configuration {}.", node);
 
@@ -156,6 +174,29 @@ public class DependencyGraphBuilder {
         }
     }
 
+    /**
+     * Fetches the meta-data for the dependencies of the configurations in the queue, which is the next level of the graph. This does not change the state
+     * of the graph, so that the graph is traversed in the same way as without prefetching.
+     */
+    private void prefetchMetaData(ResolveState resolveState, Set<ConfigurationNode> prefetched) {
+        List<DependencyMetaData> dependencies = new ArrayList<DependencyMetaData>();
+        Set<ModuleVersionSelector> requested = new HashSet<ModuleVersionSelector>();
+        for (ConfigurationNode node : resolveState.getQueued()) {
+            if (!prefetched.add(node)) {
+                continue;
+            }
+            for (DependencyMetaData dependency : node.getUntraversedDependencies()) {
+                // Only the first dependency with a given selector is resolved
+                if (!resolveState.hasSelector(dependency.getRequested()) && requested.add(dependency.getRequested())) {
+                    dependencies.add(dependency);
+                }
+            }
+        }
+        if (!dependencies.isEmpty()) {
+            metaDataPrefetcher.prefetch(dependencies);
+        }
+    }
+
     /**
      * Populates the result from the graph traversal state.
      */
@@ -364,6 +405,14 @@ public class DependencyGraphBuilder {
             return resolveState;
         }
 
+        public boolean hasSelector(ModuleVersionSelector requested) {
+            return selectors.containsKey(requested);
+        }
+
+        public Collection<ConfigurationNode> getQueued() {
+            return queue;
+        }
+
         public ConfigurationNode peek() {
             return queue.isEmpty() ? null : queue.getFirst();
         }
@@ -655,13 +704,7 @@ public class DependencyGraphBuilder {
                 return;
             }
 
-            List<DependencyEdge> transitiveIncoming = new ArrayList<DependencyEdge>();
-            for (DependencyEdge edge : incomingEdges) {
-                if (edge.isTransitive()) {
-                    transitiveIncoming.add(edge);
-                }
-            }
-
+            List<DependencyEdge> transitiveIncoming = getTransitiveIncomingEdges();
             if (transitiveIncoming.isEmpty() && this != resolveState.root) {
                 if (previousTraversal != null) {
                     removeOutgoingEdges();
@@ -697,6 +740,38 @@ public class DependencyGraphBuilder {
             previousTraversal = selectorSpec;
         }
 
+        /**
+         * Returns the dependencies that the next visit of this configuration would add outgoing edges for, when it has not been traversed before.
+         * Does not change the state of this configuration.
+         */
+        public List<DependencyMetaData> getUntraversedDependencies() {
+            if (moduleRevision.state != ModuleState.Selected || previousTraversal != null) {
+                return Collections.emptyList();
+            }
+            List<DependencyEdge> transitiveIncoming = getTransitiveIncomingEdges();
+            if (transitiveIncoming.isEmpty() && this != resolveState.root) {
+                return Collections.emptyList();
+            }
+            ModuleVersionSpec selectorSpec = getSelector(transitiveIncoming);
+            List<DependencyMetaData> dependencies = new ArrayList<DependencyMetaData>();
+            for (DependencyMetaData dependency : metaData.getDependencies()) {
+                if (selectorSpec.isSatisfiedBy(dependency.getDescriptor().getDependencyRevisionId().getModuleId())) {
+                    dependencies.add(dependency);
+                }
+            }
+            return dependencies;
+        }
+
+        private List<DependencyEdge> getTransitiveIncomingEdges() {
+            List<DependencyEdge> transitiveIncoming = new ArrayList<DependencyEdge>();
+            for (DependencyEdge edge : incomingEdges) {
+                if (edge.isTransitive()) {
+                    transitiveIncoming.add(edge);
+                }
+            }
+            return transitiveIncoming;
+        }
+
         public void addIncomingEdge(DependencyEdge dependencyEdge) {
             incomingEdges.add(dependencyEdge);
             resolveState.onMoreSelected(this);
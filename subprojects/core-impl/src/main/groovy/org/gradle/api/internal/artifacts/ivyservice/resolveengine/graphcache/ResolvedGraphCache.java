@@ -0,0 +1,115 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graphcache;
+
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier;
+import org.gradle.api.internal.artifacts.configurations.dynamicversion.CachePolicy;
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager;
+import org.gradle.api.internal.artifacts.ivyservice.dynamicversions.DefaultResolvedModuleVersion;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentIdentifierSerializer;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.messaging.serialize.Decoder;
+import org.gradle.messaging.serialize.Encoder;
+import org.gradle.messaging.serialize.Serializer;
+import org.gradle.util.BuildCommencedTimeProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.gradle.messaging.serialize.BaseSerializerFactory.STRING_SERIALIZER;
+
+/**
+ * A persistent cache of resolved dependency graphs, as recorded by {@link ResolvedGraphRecorder}. An entry is reused until the cache policy requires any of the
+ * modules in the graph to be refreshed.
+ */
+public class ResolvedGraphCache {
+    private final CacheLockingManager cacheLockingManager;
+    private final BuildCommencedTimeProvider timeProvider;
+    private PersistentIndexedCache<String, ResolvedGraphCacheEntry> cache;
+
+    public ResolvedGraphCache(CacheLockingManager cacheLockingManager, BuildCommencedTimeProvider timeProvider) {
+        this.cacheLockingManager = cacheLockingManager;
+        this.timeProvider = timeProvider;
+    }
+
+    private PersistentIndexedCache<String, ResolvedGraphCacheEntry> getCache() {
+        if (cache == null) {
+            cache = cacheLockingManager.createCache("resolved-graphs", STRING_SERIALIZER, new ResolvedGraphCacheEntrySerializer());
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the recorded graph for the given key, or null when there is no graph, or when the graph is stale according to the given cache policy.
+     */
+    public byte[] get(String key, CachePolicy cachePolicy) {
+        ResolvedGraphCacheEntry entry = getCache().get(key);
+        if (entry == null) {
+            return null;
+        }
+        long age = timeProvider.getCurrentTime() - entry.createTimestamp;
+        for (ModuleComponentIdentifier module : entry.modules) {
+            if (cachePolicy.mustRefreshModule(module, new DefaultResolvedModuleVersion(DefaultModuleVersionIdentifier.newId(module)), age)) {
+                return null;
+            }
+        }
+        return entry.graph;
+    }
+
+    public void store(String key, ResolvedGraphRecorder recorder) {
+        List<ModuleComponentIdentifier> modules = new ArrayList<ModuleComponentIdentifier>(recorder.getModules());
+        getCache().put(key, new ResolvedGraphCacheEntry(timeProvider.getCurrentTime(), modules, recorder.getData()));
+    }
+
+    private static class ResolvedGraphCacheEntry {
+        private final long createTimestamp;
+        private final List<ModuleComponentIdentifier> modules;
+        private final byte[] graph;
+
+        ResolvedGraphCacheEntry(long createTimestamp, List<ModuleComponentIdentifier> modules, byte[] graph) {
+            this.createTimestamp = createTimestamp;
+            this.modules = modules;
+            this.graph = graph;
+        }
+    }
+
+    private static class ResolvedGraphCacheEntrySerializer implements Serializer<ResolvedGraphCacheEntry> {
+        private final ComponentIdentifierSerializer componentIdentifierSerializer = new ComponentIdentifierSerializer();
+
+        public void write(Encoder encoder, ResolvedGraphCacheEntry value) throws Exception {
+            encoder.writeLong(value.createTimestamp);
+            encoder.writeSmallInt(value.modules.size());
+            for (ModuleComponentIdentifier module : value.modules) {
+                componentIdentifierSerializer.write(encoder, module);
+            }
+            encoder.writeBinary(value.graph);
+        }
+
+        public ResolvedGraphCacheEntry read(Decoder decoder) throws Exception {
+            long createTimestamp = decoder.readLong();
+            int size = decoder.readSmallInt();
+            List<ModuleComponentIdentifier> modules = new ArrayList<ModuleComponentIdentifier>(size);
+            for (int i = 0; i < size; i++) {
+                ComponentIdentifier module = componentIdentifierSerializer.read(decoder);
+                modules.add((ModuleComponentIdentifier) module);
+            }
+            byte[] graph = decoder.readBinary();
+            return new ResolvedGraphCacheEntry(createTimestamp, modules, graph);
+        }
+    }
+}
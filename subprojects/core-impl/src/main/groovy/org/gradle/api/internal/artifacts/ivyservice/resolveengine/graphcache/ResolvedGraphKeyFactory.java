@@ -0,0 +1,111 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graphcache;
+
+import org.gradle.api.Nullable;
+import org.gradle.api.artifacts.*;
+import org.gradle.api.internal.artifacts.ModuleMetadataProcessor;
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal;
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ConfiguredModuleComponentRepository;
+import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
+import org.gradle.internal.hash.HashUtil;
+import org.gradle.util.GradleVersion;
+
+import java.util.List;
+
+/**
+ * Calculates the key of the resolved graph of a configuration. The key is a hash of everything that is declared in the build and that affects the result of the
+ * resolution: the dependencies and exclude rules of the configuration and the configurations it extends, the resolution strategy and the repositories.
+ *
+ * <p>No key is calculated for a configuration whose result depends on build logic, such as dependency resolve rules or component meta-data rules, or on other
+ * projects of the build.</p>
+ *
+ * <p>No key is calculated when any of the repositories is local. The meta-data of a local repository is not cached, but read again on every resolution, so a
+ * module that is published again to a local repository with different dependencies would otherwise be replayed with its old dependencies.</p>
+ */
+public class ResolvedGraphKeyFactory {
+    // Increment when the format of the cache entries changes
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Returns the key for the given configuration, or null when its resolved graph cannot be cached.
+     */
+    @Nullable
+    public String createKey(ConfigurationInternal configuration, List<? extends ResolutionAwareRepository> repositories, ModuleMetadataProcessor metadataProcessor) {
+        ResolutionStrategyInternal resolutionStrategy = configuration.getResolutionStrategy();
+        if (resolutionStrategy.hasDependencyResolveRules() || metadataProcessor.hasRules()) {
+            return null;
+        }
+
+        StringBuilder key = new StringBuilder();
+        key.append(FORMAT_VERSION).append(';').append(GradleVersion.current().getVersion()).append(';');
+        key.append(configuration.getPath()).append(';');
+        Module module = configuration.getModule();
+        key.append(module.getGroup()).append(':').append(module.getName()).append(':').append(module.getVersion()).append(':').append(module.getStatus()).append(';');
+
+        for (Configuration hierarchy : configuration.getHierarchy()) {
+            key.append("configuration:").append(hierarchy.getName()).append(':').append(hierarchy.isTransitive()).append(';');
+            appendExcludeRules(hierarchy.getExcludeRules(), key);
+        }
+
+        for (Dependency dependency : configuration.getAllDependencies()) {
+            if (dependency instanceof ProjectDependency || dependency instanceof ClientModule) {
+                return null;
+            }
+            if (!(dependency instanceof ModuleDependency)) {
+                // Resolved outside of the dependency graph
+                continue;
+            }
+            if (dependency instanceof ExternalModuleDependency && ((ExternalModuleDependency) dependency).isChanging()) {
+                return null;
+            }
+            ModuleDependency moduleDependency = (ModuleDependency) dependency;
+            key.append("dependency:").append(moduleDependency.getGroup()).append(':').append(moduleDependency.getName()).append(':').append(moduleDependency.getVersion());
+            key.append(':').append(moduleDependency.getConfiguration()).append(':').append(moduleDependency.isTransitive());
+            if (moduleDependency instanceof ExternalDependency) {
+                key.append(':').append(((ExternalDependency) moduleDependency).isForce());
+            }
+            key.append(';');
+            for (DependencyArtifact artifact : moduleDependency.getArtifacts()) {
+                key.append("artifact:").append(artifact.getName()).append(':').append(artifact.getType()).append(':').append(artifact.getExtension());
+                key.append(':').append(artifact.getClassifier()).append(':').append(artifact.getUrl()).append(';');
+            }
+            appendExcludeRules(moduleDependency.getExcludeRules(), key);
+        }
+
+        for (ModuleVersionSelector forcedModule : resolutionStrategy.getForcedModules()) {
+            key.append("force:").append(forcedModule.getGroup()).append(':').append(forcedModule.getName()).append(':').append(forcedModule.getVersion()).append(';');
+        }
+        key.append("conflicts:").append(resolutionStrategy.getConflictResolution().getClass().getName()).append(';');
+
+        for (ResolutionAwareRepository repository : repositories) {
+            ConfiguredModuleComponentRepository resolver = repository.createResolver();
+            if (resolver.isLocal()) {
+                return null;
+            }
+            key.append("repository:").append(resolver.getId()).append(';');
+        }
+
+        return HashUtil.createHash(key.toString(), "MD5").asHexString();
+    }
+
+    private void appendExcludeRules(Iterable<ExcludeRule> excludeRules, StringBuilder key) {
+        for (ExcludeRule excludeRule : excludeRules) {
+            key.append("exclude:").append(excludeRule.getGroup()).append(':').append(excludeRule.getModule()).append(';');
+        }
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graphcache;
+
+import org.gradle.api.artifacts.ModuleDependency;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.ResolvedArtifact;
+import org.gradle.api.artifacts.UnresolvedDependency;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.artifacts.result.ResolutionResult;
+import org.gradle.api.internal.artifacts.ModuleVersionIdentifierSerializer;
+import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifier;
+import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifierSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.ArtifactResolver;
+import org.gradle.api.internal.artifacts.ivyservice.ModuleVersionResolveException;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ModuleSource;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionMatcher;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.DefaultResolvedConfigurationBuilder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.ResolvedConfigurationBuilder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.*;
+import org.gradle.api.internal.artifacts.metadata.*;
+import org.gradle.messaging.serialize.DefaultSerializer;
+import org.gradle.messaging.serialize.kryo.KryoBackedDecoder;
+import org.gradle.messaging.serialize.kryo.KryoBackedEncoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.*;
+
+import static org.gradle.internal.UncheckedException.throwAsUncheckedException;
+
+/**
+ * Passes the events of a dependency graph resolution on to the builders of the result models, and records them so that they can be replayed later using
+ * {@link #replay}. Artifacts are recorded using their identifier and module source, so that their files are resolved lazily when the result is replayed.
+ *
+ * <p>A resolution that has failures, that selects dynamic versions or changing modules, or that includes components that are not modules cannot be
+ * replayed. Recording stops as soon as any of these are found.</p>
+ */
+public class ResolvedGraphRecorder implements ResolutionResultBuilder, ResolvedConfigurationBuilder {
+    private static final byte ROOT = 1;
+    private static final byte MODULE = 2;
+    private static final byte DEPENDENCY = 3;
+    private static final byte NEW_DEP = 4;
+    private static final byte FIRST_LVL = 5;
+    private static final byte PARENT_CHILD = 6;
+    private static final byte PARENT_ARTIFACTS = 7;
+    private static final byte MODULE_SOURCE = 8;
+    private static final byte ARTIFACT = 9;
+    private static final byte DONE = 10;
+
+    private final ResolutionResultBuilder newModelBuilder;
+    private final ResolvedConfigurationBuilder oldModelBuilder;
+    private final List<ModuleDependency> declaredDependencies;
+    private final VersionMatcher versionMatcher;
+    private final Serializers serializers = new Serializers();
+    private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+    private final KryoBackedEncoder encoder = new KryoBackedEncoder(data);
+    private final Map<ResolvedArtifact, Integer> artifacts = new IdentityHashMap<ResolvedArtifact, Integer>();
+    private final Map<ModuleSource, Integer> moduleSources = new IdentityHashMap<ModuleSource, Integer>();
+    private final Set<ModuleComponentIdentifier> modules = new LinkedHashSet<ModuleComponentIdentifier>();
+    private boolean replayable = true;
+
+    public ResolvedGraphRecorder(ResolutionResultBuilder newModelBuilder, ResolvedConfigurationBuilder oldModelBuilder, List<ModuleDependency> declaredDependencies,
+                                 VersionMatcher versionMatcher) {
+        this.newModelBuilder = newModelBuilder;
+        this.oldModelBuilder = oldModelBuilder;
+        this.declaredDependencies = declaredDependencies;
+        this.versionMatcher = versionMatcher;
+    }
+
+    /**
+     * Returns true when the recorded events can be replayed.
+     */
+    public boolean isReplayable() {
+        return replayable;
+    }
+
+    /**
+     * Returns the module components that are part of the recorded graph.
+     */
+    public Set<ModuleComponentIdentifier> getModules() {
+        return modules;
+    }
+
+    public byte[] getData() {
+        encoder.flush();
+        return data.toByteArray();
+    }
+
+    public ResolutionResultBuilder start(ModuleVersionIdentifier root, ComponentIdentifier componentIdentifier) {
+        newModelBuilder.start(root, componentIdentifier);
+        if (replayable) {
+            try {
+                encoder.writeByte(ROOT);
+                serializers.moduleVersionIdentifierSerializer.write(encoder, root);
+                serializers.componentIdentifierSerializer.write(encoder, componentIdentifier);
+            } catch (Exception e) {
+                throw throwAsUncheckedException(e);
+            }
+        }
+        return this;
+    }
+
+    public void resolvedModuleVersion(ModuleVersionSelection moduleVersion) {
+        newModelBuilder.resolvedModuleVersion(moduleVersion);
+        if (replayable) {
+            if (moduleVersion.getComponentId() instanceof ModuleComponentIdentifier) {
+                modules.add((ModuleComponentIdentifier) moduleVersion.getComponentId());
+            }
+            try {
+                encoder.writeByte(MODULE);
+                serializers.moduleVersionSelectionSerializer.write(encoder, moduleVersion);
+            } catch (Exception e) {
+                throw throwAsUncheckedException(e);
+            }
+        }
+    }
+
+    public void resolvedConfiguration(ModuleVersionIdentifier id, Collection<? extends InternalDependencyResult> dependencies) {
+        newModelBuilder.resolvedConfiguration(id, dependencies);
+        for (InternalDependencyResult dependency : dependencies) {
+            if (dependency.getFailure() != null || isDynamic(dependency)) {
+                replayable = false;
+            }
+        }
+        if (replayable && !dependencies.isEmpty()) {
+            try {
+                encoder.writeByte(DEPENDENCY);
+                serializers.moduleVersionIdentifierSerializer.write(encoder, id);
+                encoder.writeSmallInt(dependencies.size());
+                for (InternalDependencyResult dependency : dependencies) {
+                    serializers.internalDependencyResultSerializer.write(encoder, dependency);
+                }
+            } catch (Exception e) {
+                throw throwAsUncheckedException(e);
+            }
+        }
+    }
+
+    private boolean isDynamic(InternalDependencyResult dependency) {
+        if (dependency.getRequested() instanceof ModuleComponentSelector) {
+            return versionMatcher.isDynamic(((ModuleComponentSelector) dependency.getRequested()).getVersion());
+        }
+        return false;
+    }
+
+    public ResolutionResult complete() {
+        return newModelBuilder.complete();
+    }
+
+    public void addFirstLevelDependency(ModuleDependency moduleDependency, ResolvedConfigurationIdentifier dependency) {
+        oldModelBuilder.addFirstLevelDependency(moduleDependency, dependency);
+        int index = indexOf(moduleDependency);
+        if (index < 0) {
+            replayable = false;
+        }
+        if (replayable) {
+            try {
+                encoder.writeByte(FIRST_LVL);
+                encoder.writeSmallInt(index);
+                serializers.resolvedConfigurationIdentifierSerializer.write(encoder, dependency);
+            } catch (Exception e) {
+                throw throwAsUncheckedException(e);
+            }
+        }
+    }
+
+    private int indexOf(ModuleDependency moduleDependency) {
+        for (int i = 0; i < declaredDependencies.size(); i++) {
+            if (declaredDependencies.get(i) == moduleDependency) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public void addUnresolvedDependency(UnresolvedDependency unresolvedDependency) {
+        oldModelBuilder.addUnresolvedDependency(unresolvedDependency);
+        replayable = false;
+    }
+
+    public void addChild(ResolvedConfigurationIdentifier parent, ResolvedConfigurationIdentifier child) {
+        oldModelBuilder.addChild(parent, child);
+        if (replayable) {
+            try {
+                encoder.writeByte(PARENT_CHILD);
+                serializers.resolvedConfigurationIdentifierSerializer.write(encoder, parent);
+                serializers.resolvedConfigurationIdentifierSerializer.write(encoder, child);
+            } catch (Exception e) {
+                throw throwAsUncheckedException(e);
+            }
+        }
+    }
+
+    public void done(ResolvedConfigurationIdentifier root) {
+        oldModelBuilder.done(root);
+        if (replayable) {
+            try {
+                encoder.writeByte(DONE);
+                serializers.resolvedConfigurationIdentifierSerializer.write(encoder, root);
+            } catch (Exception e) {
+                throw throwAsUncheckedException(e);
+            }
+        }
+    }
+
+    public void addParentSpecificArtifacts(ResolvedConfigurationIdentifier child, ResolvedConfigurationIdentifier parent, Set<ResolvedArtifact> artifacts) {
+        oldModelBuilder.addParentSpecificArtifacts(child, parent, artifacts);
+        for (ResolvedArtifact artifact : artifacts) {
+            if (!this.artifacts.containsKey(artifact)) {
+                replayable = false;
+            }
+        }
+        if (replayable) {
+            try {
+                encoder.writeByte(PARENT_ARTIFACTS);
+                serializers.resolvedConfigurationIdentifierSerializer.write(encoder, child);
+                serializers.resolvedConfigurationIdentifierSerializer.write(encoder, parent);
+                encoder.writeSmallInt(artifacts.size());
+                for (ResolvedArtifact artifact : artifacts) {
+                    encoder.writeSmallInt(this.artifacts.get(artifact));
+                }
+            } catch (Exception e) {
+                throw throwAsUncheckedException(e);
+            }
+        }
+    }
+
+    public void newResolvedDependency(ResolvedConfigurationIdentifier id) {
+        oldModelBuilder.newResolvedDependency(id);
+        if (replayable) {
+            try {
+                encoder.writeByte(NEW_DEP);
+                serializers.resolvedConfigurationIdentifierSerializer.write(encoder, id);
+            } catch (Exception e) {
+                throw throwAsUncheckedException(e);
+            }
+        }
+    }
+
+    public ResolvedArtifact newArtifact(ResolvedConfigurationIdentifier owner, ComponentMetaData component, ComponentArtifactMetaData artifact, ArtifactResolver artifactResolver) {
+        ResolvedArtifact resolvedArtifact = oldModelBuilder.newArtifact(owner, component, artifact, artifactResolver);
+        ModuleSource moduleSource = component.getSource();
+        if (!(artifact instanceof ModuleVersionArtifactMetaData) || moduleSource == null || component.isChanging()) {
+            replayable = false;
+        }
+        if (replayable) {
+            try {
+                Integer sourceIndex = moduleSources.get(moduleSource);
+                if (sourceIndex == null) {
+                    sourceIndex = moduleSources.size();
+                    moduleSources.put(moduleSource, sourceIndex);
+                    encoder.writeByte(MODULE_SOURCE);
+                    writeModuleSource(moduleSource);
+                }
+                encoder.writeByte(ARTIFACT);
+                serializers.resolvedConfigurationIdentifierSerializer.write(encoder, owner);
+                encoder.writeSmallInt(sourceIndex);
+                serializers.artifactIdentifierSerializer.write(encoder, ((ModuleVersionArtifactMetaData) artifact).getId());
+            } catch (Exception e) {
+                throw throwAsUncheckedException(e);
+            }
+            artifacts.put(resolvedArtifact, artifacts.size());
+        }
+        return resolvedArtifact;
+    }
+
+    private void writeModuleSource(ModuleSource moduleSource) throws Exception {
+        // Write the source as a nested binary value, so that the object stream does not read ahead into the following values
+        ByteArrayOutputStream sourceData = new ByteArrayOutputStream();
+        KryoBackedEncoder sourceEncoder = new KryoBackedEncoder(sourceData);
+        serializers.moduleSourceSerializer.write(sourceEncoder, moduleSource);
+        sourceEncoder.flush();
+        encoder.writeBinary(sourceData.toByteArray());
+    }
+
+    /**
+     * Replays the given recorded events into the given builders.
+     *
+     * @param declaredDependencies the declared dependencies of the configuration, in the same order as given to the recorder.
+     * @param artifactResolver the resolver used to resolve the files of the replayed artifacts.
+     */
+    public static void replay(byte[] recording, List<ModuleDependency> declaredDependencies, ArtifactResolver artifactResolver,
+                              ResolutionResultBuilder newModelBuilder, DefaultResolvedConfigurationBuilder oldModelBuilder) {
+        Serializers serializers = new Serializers();
+        Map<ComponentSelector, ModuleVersionResolveException> noFailures = Collections.emptyMap();
+        List<ModuleSource> moduleSources = new ArrayList<ModuleSource>();
+        List<ResolvedArtifact> artifacts = new ArrayList<ResolvedArtifact>();
+        KryoBackedDecoder decoder = new KryoBackedDecoder(new ByteArrayInputStream(recording));
+        byte type = -1;
+        try {
+            while (true) {
+                type = decoder.readByte();
+                switch (type) {
+                    case ROOT:
+                        ModuleVersionIdentifier rootId = serializers.moduleVersionIdentifierSerializer.read(decoder);
+                        newModelBuilder.start(rootId, serializers.componentIdentifierSerializer.read(decoder));
+                        break;
+                    case MODULE:
+                        newModelBuilder.resolvedModuleVersion(serializers.moduleVersionSelectionSerializer.read(decoder));
+                        break;
+                    case DEPENDENCY:
+                        ModuleVersionIdentifier from = serializers.moduleVersionIdentifierSerializer.read(decoder);
+                        int size = decoder.readSmallInt();
+                        List<InternalDependencyResult> dependencies = new ArrayList<InternalDependencyResult>(size);
+                        for (int i = 0; i < size; i++) {
+                            dependencies.add(serializers.internalDependencyResultSerializer.read(decoder, noFailures));
+                        }
+                        newModelBuilder.resolvedConfiguration(from, dependencies);
+                        break;
+                    case NEW_DEP:
+                        oldModelBuilder.newResolvedDependency(serializers.resolvedConfigurationIdentifierSerializer.read(decoder));
+                        break;
+                    case FIRST_LVL:
+                        ModuleDependency moduleDependency = declaredDependencies.get(decoder.readSmallInt());
+                        oldModelBuilder.addFirstLevelDependency(moduleDependency, serializers.resolvedConfigurationIdentifierSerializer.read(decoder));
+                        break;
+                    case PARENT_CHILD:
+                        ResolvedConfigurationIdentifier parent = serializers.resolvedConfigurationIdentifierSerializer.read(decoder);
+                        oldModelBuilder.addChild(parent, serializers.resolvedConfigurationIdentifierSerializer.read(decoder));
+                        break;
+                    case PARENT_ARTIFACTS:
+                        ResolvedConfigurationIdentifier child = serializers.resolvedConfigurationIdentifierSerializer.read(decoder);
+                        parent = serializers.resolvedConfigurationIdentifierSerializer.read(decoder);
+                        size = decoder.readSmallInt();
+                        Set<ResolvedArtifact> parentArtifacts = new LinkedHashSet<ResolvedArtifact>();
+                        for (int i = 0; i < size; i++) {
+                            parentArtifacts.add(artifacts.get(decoder.readSmallInt()));
+                        }
+                        oldModelBuilder.addParentSpecificArtifacts(child, parent, parentArtifacts);
+                        break;
+                    case MODULE_SOURCE:
+                        KryoBackedDecoder sourceDecoder = new KryoBackedDecoder(new ByteArrayInputStream(decoder.readBinary()));
+                        moduleSources.add(serializers.moduleSourceSerializer.read(sourceDecoder));
+                        break;
+                    case ARTIFACT:
+                        ResolvedConfigurationIdentifier owner = serializers.resolvedConfigurationIdentifierSerializer.read(decoder);
+                        ModuleSource moduleSource = moduleSources.get(decoder.readSmallInt());
+                        ModuleVersionArtifactMetaData artifact = new DefaultModuleVersionArtifactMetaData(serializers.artifactIdentifierSerializer.read(decoder));
+                        artifacts.add(oldModelBuilder.newArtifact(owner, moduleSource, artifact, artifactResolver));
+                        break;
+                    case DONE:
+                        oldModelBuilder.done(serializers.resolvedConfigurationIdentifierSerializer.read(decoder));
+                        return;
+                    default:
+                        throw new IOException("Unknown value type read from stream: " + type);
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Problems replaying the cached resolution result. Last value read was: " + type, e);
+        }
+    }
+
+    private static class Serializers {
+        final ModuleVersionIdentifierSerializer moduleVersionIdentifierSerializer = new ModuleVersionIdentifierSerializer();
+        final ComponentIdentifierSerializer componentIdentifierSerializer = new ComponentIdentifierSerializer();
+        final ModuleVersionSelectionSerializer moduleVersionSelectionSerializer = new ModuleVersionSelectionSerializer();
+        final InternalDependencyResultSerializer internalDependencyResultSerializer = new InternalDependencyResultSerializer();
+        final ResolvedConfigurationIdentifierSerializer resolvedConfigurationIdentifierSerializer = new ResolvedConfigurationIdentifierSerializer();
+        final ModuleVersionArtifactIdentifierSerializer artifactIdentifierSerializer = new ModuleVersionArtifactIdentifierSerializer();
+        final DefaultSerializer<ModuleSource> moduleSourceSerializer = new DefaultSerializer<ModuleSource>(ModuleSource.class.getClassLoader());
+    }
+}
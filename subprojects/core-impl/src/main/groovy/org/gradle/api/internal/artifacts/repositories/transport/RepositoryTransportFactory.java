@@ -19,6 +19,7 @@ import org.gradle.api.InvalidUserDataException;
 import org.gradle.api.artifacts.repositories.PasswordCredentials;
 import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager;
 import org.gradle.internal.resource.cached.CachedExternalResourceIndex;
+import org.gradle.internal.resource.transfer.DownloadProgressAggregator;
 import org.gradle.internal.resource.transport.file.FileTransport;
 import org.gradle.internal.resource.transport.http.HttpTransport;
 import org.gradle.internal.resource.transport.sftp.SftpClientFactory;
@@ -38,6 +39,7 @@ public class RepositoryTransportFactory {
     private final BuildCommencedTimeProvider timeProvider;
     private final SftpClientFactory sftpClientFactory;
     private final CacheLockingManager cacheLockingManager;
+    private final DownloadProgressAggregator progressAggregator;
 
     public RepositoryTransportFactory(ProgressLoggerFactory progressLoggerFactory,
                                       TemporaryFileProvider temporaryFileProvider,
@@ -51,10 +53,11 @@ public class RepositoryTransportFactory {
         this.timeProvider = timeProvider;
         this.sftpClientFactory = sftpClientFactory;
         this.cacheLockingManager = cacheLockingManager;
+        this.progressAggregator = new DownloadProgressAggregator(progressLoggerFactory);
     }
 
     private RepositoryTransport createHttpTransport(String name, PasswordCredentials credentials) {
-        return new HttpTransport(name, convertPasswordCredentials(credentials), progressLoggerFactory, temporaryFileProvider, cachedExternalResourceIndex, timeProvider, cacheLockingManager);
+        return new HttpTransport(name, convertPasswordCredentials(credentials), progressLoggerFactory, temporaryFileProvider, cachedExternalResourceIndex, timeProvider, cacheLockingManager, progressAggregator);
     }
 
     private RepositoryTransport createFileTransport(String name) {
@@ -62,7 +65,7 @@ public class RepositoryTransportFactory {
     }
 
     private RepositoryTransport createSftpTransport(String name, PasswordCredentials credentials) {
-        return new SftpTransport(name, convertPasswordCredentials(credentials), progressLoggerFactory, temporaryFileProvider, cachedExternalResourceIndex, timeProvider, sftpClientFactory, cacheLockingManager);
+        return new SftpTransport(name, convertPasswordCredentials(credentials), progressLoggerFactory, temporaryFileProvider, cachedExternalResourceIndex, timeProvider, sftpClientFactory, cacheLockingManager, progressAggregator);
     }
 
     public RepositoryTransport createTransport(String scheme, String name, PasswordCredentials credentials) {
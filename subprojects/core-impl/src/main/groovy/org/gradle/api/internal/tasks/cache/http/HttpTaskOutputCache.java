@@ -0,0 +1,101 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.cache.http;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.internal.tasks.cache.TaskOutputCache;
+import org.gradle.internal.Factory;
+import org.gradle.internal.resource.transport.http.HttpClientHelper;
+import org.gradle.internal.resource.transport.http.HttpResourceAccessor;
+import org.gradle.internal.resource.transport.http.HttpResourceUploader;
+import org.gradle.internal.resource.transport.http.HttpResponseResource;
+import org.gradle.internal.resource.transport.http.HttpSettings;
+
+import java.io.*;
+import java.net.URI;
+
+/**
+ * A task output cache stored on an HTTP server. Outputs are fetched with GET and stored with PUT, at the location of the cache key
+ * relative to the root URI.
+ */
+public class HttpTaskOutputCache implements TaskOutputCache {
+    private final URI root;
+    // HttpClientHelper uses a pooled connection manager and a separate context for each thread, so parallel tasks can load and store concurrently
+    private final HttpClientHelper client;
+
+    public HttpTaskOutputCache(URI root, HttpSettings settings) {
+        this.root = root.getPath().endsWith("/") ? root : URI.create(root.toString() + "/");
+        this.client = new HttpClientHelper(settings);
+    }
+
+    public String getDescription() {
+        return String.format("remote task output cache (%s)", root);
+    }
+
+    public boolean load(String key, TaskOutputReader reader) {
+        URI uri = root.resolve(key);
+        try {
+            HttpResponseResource resource = new HttpResourceAccessor(client).getResource(uri);
+            if (resource == null) {
+                return false;
+            }
+            try {
+                InputStream input = resource.openStream();
+                try {
+                    reader.readFrom(input);
+                } finally {
+                    input.close();
+                }
+            } finally {
+                resource.close();
+            }
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not load task outputs from %s.", uri), e);
+        }
+    }
+
+    public void store(String key, TaskOutputWriter writer) {
+        URI uri = root.resolve(key);
+        File file = null;
+        try {
+            file = File.createTempFile("task-output", ".tmp");
+            OutputStream output = new BufferedOutputStream(new FileOutputStream(file));
+            try {
+                writer.writeTo(output);
+            } finally {
+                output.close();
+            }
+            final File content = file;
+            new HttpResourceUploader(client).upload(new Factory<InputStream>() {
+                public InputStream create() {
+                    try {
+                        return new BufferedInputStream(new FileInputStream(content));
+                    } catch (FileNotFoundException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }, content.length(), uri);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not store task outputs in %s.", uri), e);
+        } finally {
+            if (file != null) {
+                file.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.cache.http;
+
+import org.gradle.api.internal.tasks.cache.RemoteTaskOutputCacheFactory;
+import org.gradle.api.internal.tasks.cache.TaskOutputCache;
+import org.gradle.internal.resource.PasswordCredentials;
+import org.gradle.internal.resource.transport.http.DefaultHttpSettings;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+/**
+ * Creates an {@link HttpTaskOutputCache} when the {@value #REMOTE_CACHE_URL_PROPERTY} system property is set. Credentials can be given as
+ * user info in the URL.
+ */
+public class HttpTaskOutputCacheFactory implements RemoteTaskOutputCacheFactory {
+    /**
+     * System property holding the URL of the remote task output cache.
+     */
+    public static final String REMOTE_CACHE_URL_PROPERTY = "org.gradle.cache.tasks.remote";
+
+    public TaskOutputCache createRemoteCache() {
+        String url = System.getProperty(REMOTE_CACHE_URL_PROPERTY);
+        if (url == null || url.length() == 0) {
+            return null;
+        }
+        return create(URI.create(url));
+    }
+
+    HttpTaskOutputCache create(URI uri) {
+        PasswordCredentials credentials = new PasswordCredentials();
+        String userInfo = uri.getUserInfo();
+        if (userInfo != null) {
+            int separator = userInfo.indexOf(':');
+            if (separator < 0) {
+                credentials = new PasswordCredentials(userInfo, null);
+            } else {
+                credentials = new PasswordCredentials(userInfo.substring(0, separator), userInfo.substring(separator + 1));
+            }
+            try {
+                uri = new URI(uri.getScheme(), null, uri.getHost(), uri.getPort(), uri.getPath(), uri.getQuery(), uri.getFragment());
+            } catch (URISyntaxException e) {
+                throw new IllegalArgumentException(String.format("Invalid remote task output cache URL '%s'.", uri), e);
+            }
+        }
+        return new HttpTaskOutputCache(uri, new DefaultHttpSettings(credentials));
+    }
+}
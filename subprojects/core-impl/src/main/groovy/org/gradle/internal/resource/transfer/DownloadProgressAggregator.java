@@ -0,0 +1,88 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.internal.resource.transfer;
+
+import org.gradle.internal.TimeProvider;
+import org.gradle.internal.TrueTimeProvider;
+import org.gradle.logging.ProgressLogger;
+import org.gradle.logging.ProgressLoggerFactory;
+
+/**
+ * Combines the progress of downloads that run at the same time into a single operation, which reports the number of active downloads and their combined
+ * throughput. Nothing is reported while only one download is active, as the progress of the download itself is reported.
+ */
+public class DownloadProgressAggregator {
+    private static final long REPORT_INTERVAL_MILLIS = 500;
+    private final ProgressLoggerFactory progressLoggerFactory;
+    private final TimeProvider timeProvider;
+    private ProgressLogger progressLogger;
+    private int activeDownloads;
+    private int completedDownloads;
+    private long startTime;
+    private long lastReportTime;
+    private long processedBytes;
+
+    public DownloadProgressAggregator(ProgressLoggerFactory progressLoggerFactory) {
+        this(progressLoggerFactory, new TrueTimeProvider());
+    }
+
+    DownloadProgressAggregator(ProgressLoggerFactory progressLoggerFactory, TimeProvider timeProvider) {
+        this.progressLoggerFactory = progressLoggerFactory;
+        this.timeProvider = timeProvider;
+    }
+
+    public synchronized void downloadStarted() {
+        activeDownloads++;
+        if (activeDownloads == 2 && progressLogger == null) {
+            progressLogger = progressLoggerFactory.newOperation(DownloadProgressAggregator.class);
+            progressLogger.setDescription("Download artifacts");
+            progressLogger.started();
+            startTime = timeProvider.getCurrentTime();
+            lastReportTime = startTime;
+            processedBytes = 0;
+            completedDownloads = 0;
+        }
+    }
+
+    public synchronized void bytesProcessed(long bytes) {
+        if (progressLogger == null) {
+            return;
+        }
+        processedBytes += bytes;
+        long now = timeProvider.getCurrentTime();
+        if (now - lastReportTime >= REPORT_INTERVAL_MILLIS) {
+            lastReportTime = now;
+            progressLogger.progress(String.format("%s downloads in progress, %s", activeDownloads, getThroughputText(now)));
+        }
+    }
+
+    public synchronized void downloadCompleted() {
+        activeDownloads--;
+        if (progressLogger == null) {
+            return;
+        }
+        completedDownloads++;
+        if (activeDownloads == 0) {
+            progressLogger.completed(String.format("%s downloads completed, %s", completedDownloads, getThroughputText(timeProvider.getCurrentTime())));
+            progressLogger = null;
+        }
+    }
+
+    private String getThroughputText(long now) {
+        long elapsed = Math.max(now - startTime, 1);
+        return String.format("%s at %s/s", ResourceOperation.getLengthText(processedBytes), ResourceOperation.getLengthText(processedBytes * 1000 / elapsed));
+    }
+}
@@ -29,10 +29,19 @@ import java.net.URI;
 
 public class ProgressLoggingExternalResourceAccessor extends AbstractProgressLoggingHandler implements ExternalResourceAccessor {
     private final ExternalResourceAccessor delegate;
+    private final DownloadProgressAggregator progressAggregator;
 
     public ProgressLoggingExternalResourceAccessor(ExternalResourceAccessor delegate, ProgressLoggerFactory progressLoggerFactory) {
+        this(delegate, progressLoggerFactory, new DownloadProgressAggregator(progressLoggerFactory));
+    }
+
+    /**
+     * Creates an accessor that also reports the progress of its downloads to the given aggregator, which may be shared with other accessors.
+     */
+    public ProgressLoggingExternalResourceAccessor(ExternalResourceAccessor delegate, ProgressLoggerFactory progressLoggerFactory, DownloadProgressAggregator progressAggregator) {
         super(progressLoggerFactory);
         this.delegate = delegate;
+        this.progressAggregator = progressAggregator;
     }
 
     public ExternalResource getResource(URI location) throws IOException {
@@ -76,9 +85,11 @@ public class ProgressLoggingExternalResourceAccessor extends AbstractProgressLog
         public void writeTo(OutputStream outputStream) throws IOException {
             final ResourceOperation downloadOperation = createResourceOperation(resource.getName(), ResourceOperation.Type.download, getClass(), resource.getContentLength());
             final ProgressLoggingOutputStream progressLoggingOutputStream = new ProgressLoggingOutputStream(outputStream, downloadOperation);
+            progressAggregator.downloadStarted();
             try {
                 resource.writeTo(progressLoggingOutputStream);
             } finally {
+                progressAggregator.downloadCompleted();
                 downloadOperation.completed();
             }
         }
@@ -144,11 +155,13 @@ public class ProgressLoggingExternalResourceAccessor extends AbstractProgressLog
         public void write(int b) throws IOException {
             outputStream.write(b);
             resourceOperation.logProcessedBytes(1l);
+            progressAggregator.bytesProcessed(1l);
         }
 
         public void write(byte b[], int off, int len) throws IOException {
             outputStream.write(b, off, len);
             resourceOperation.logProcessedBytes(len);
+            progressAggregator.bytesProcessed(len);
         }
     }
 }
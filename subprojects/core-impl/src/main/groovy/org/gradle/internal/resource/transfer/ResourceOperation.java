@@ -41,7 +41,7 @@ public class ResourceOperation {
         this.contentLengthString = getLengthText(contentLength != 0 ? contentLength : null);
     }
 
-    private String getLengthText(Long bytes) {
+    static String getLengthText(Long bytes) {
         if (bytes == null) {
             return "unknown size";
         }
@@ -21,6 +21,7 @@ import org.gradle.internal.resource.PasswordCredentials;
 import org.gradle.internal.resource.cached.CachedExternalResourceIndex;
 import org.gradle.internal.resource.transfer.CacheAwareExternalResourceAccessor;
 import org.gradle.internal.resource.transfer.DefaultCacheAwareExternalResourceAccessor;
+import org.gradle.internal.resource.transfer.DownloadProgressAggregator;
 import org.gradle.internal.resource.transfer.ProgressLoggingExternalResourceAccessor;
 import org.gradle.internal.resource.transfer.ProgressLoggingExternalResourceUploader;
 import org.gradle.internal.resource.transport.AbstractRepositoryTransport;
@@ -42,11 +43,12 @@ public class SftpTransport extends AbstractRepositoryTransport {
                          CachedExternalResourceIndex<String> cachedExternalResourceIndex,
                          BuildCommencedTimeProvider timeProvider,
                          SftpClientFactory sftpClientFactory,
-                         CacheLockingManager cacheLockingManager) {
+                         CacheLockingManager cacheLockingManager,
+                         DownloadProgressAggregator progressAggregator) {
         super(name);
         SftpResourceAccessor accessor = new SftpResourceAccessor(sftpClientFactory, credentials);
         SftpResourceUploader uploader = new SftpResourceUploader(sftpClientFactory, credentials);
-        ProgressLoggingExternalResourceAccessor loggingAccessor = new ProgressLoggingExternalResourceAccessor(accessor, progressLoggerFactory);
+        ProgressLoggingExternalResourceAccessor loggingAccessor = new ProgressLoggingExternalResourceAccessor(accessor, progressLoggerFactory, progressAggregator);
         resourceAccessor = new DefaultCacheAwareExternalResourceAccessor(loggingAccessor, cachedExternalResourceIndex, timeProvider, temporaryFileProvider, cacheLockingManager);
         repository = new DefaultExternalResourceRepository(
                 name,
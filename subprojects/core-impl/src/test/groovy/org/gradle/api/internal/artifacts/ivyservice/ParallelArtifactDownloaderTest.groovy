@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice
+
+import org.gradle.api.artifacts.ResolvedModuleVersion
+import org.gradle.api.internal.artifacts.DefaultResolvedArtifact
+import org.gradle.api.internal.artifacts.metadata.IvyArtifactName
+import org.gradle.internal.Factory
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import spock.lang.Specification
+
+class ParallelArtifactDownloaderTest extends Specification {
+    final cacheLockingManager = Mock(CacheLockingManager)
+    final executorFactory = new DefaultExecutorFactory()
+
+    def setup() {
+        _ * cacheLockingManager.longRunningOperation(_, _ as Runnable) >> { String name, Runnable action -> action.run() }
+    }
+
+    def cleanup() {
+        executorFactory.stop()
+    }
+
+    def "resolves the files of unresolved artifacts"() {
+        def downloader = new ParallelArtifactDownloader(cacheLockingManager, executorFactory, 4)
+        def source1 = Mock(Factory)
+        def source2 = Mock(Factory)
+        def artifact1 = artifact(source1)
+        def artifact2 = artifact(source2)
+        def file1 = new File("file1")
+        def file2 = new File("file2")
+
+        when:
+        downloader.download([artifact1, artifact2])
+
+        then:
+        1 * source1.create() >> file1
+        1 * source2.create() >> file2
+
+        and:
+        artifact1.resolved
+        artifact2.resolved
+
+        when:
+        def files = [artifact1.file, artifact2.file]
+
+        then:
+        files == [file1, file2]
+        0 * source1._
+        0 * source2._
+    }
+
+    def "does nothing when there is only one artifact to resolve"() {
+        def downloader = new ParallelArtifactDownloader(cacheLockingManager, executorFactory, 4)
+        def source1 = Mock(Factory)
+        def source2 = Mock(Factory)
+        def resolved = artifact(source1)
+        def unresolved = artifact(source2)
+
+        given:
+        source1.create() >> new File("file1")
+        resolved.file
+
+        when:
+        downloader.download([resolved, unresolved])
+
+        then:
+        0 * source2._
+        0 * cacheLockingManager._
+    }
+
+    def "does nothing when concurrent downloads are disabled"() {
+        def downloader = new ParallelArtifactDownloader(cacheLockingManager, executorFactory, 1)
+        def source1 = Mock(Factory)
+        def source2 = Mock(Factory)
+
+        when:
+        downloader.download([artifact(source1), artifact(source2)])
+
+        then:
+        0 * source1._
+        0 * source2._
+        0 * cacheLockingManager._
+    }
+
+    def "ignores failures so that they are reported when the file is requested"() {
+        def downloader = new ParallelArtifactDownloader(cacheLockingManager, executorFactory, 4)
+        def failure = new RuntimeException("broken")
+        def source1 = Mock(Factory)
+        def source2 = Mock(Factory)
+        def artifact1 = artifact(source1)
+        def artifact2 = artifact(source2)
+
+        when:
+        downloader.download([artifact1, artifact2])
+
+        then:
+        1 * source1.create() >> { throw failure }
+        1 * source2.create() >> new File("file2")
+
+        and:
+        !artifact1.resolved
+
+        when:
+        artifact1.file
+
+        then:
+        1 * source1.create() >> { throw failure }
+        RuntimeException e = thrown()
+        e == failure
+    }
+
+    def artifact(Factory<File> source) {
+        return new DefaultResolvedArtifact(Stub(ResolvedModuleVersion), Stub(IvyArtifactName), source, 0)
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve
+
+import org.gradle.api.artifacts.component.ModuleComponentSelector
+import org.gradle.api.artifacts.component.ProjectComponentSelector
+import org.gradle.api.internal.artifacts.ivyservice.BuildableComponentResolveResult
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager
+import org.gradle.api.internal.artifacts.ivyservice.DependencyToModuleVersionResolver
+import org.gradle.api.internal.artifacts.ivyservice.IvyContextManager
+import org.gradle.api.internal.artifacts.ivyservice.ModuleVersionResolveException
+import org.gradle.api.internal.artifacts.metadata.ComponentMetaData
+import org.gradle.api.internal.artifacts.metadata.DependencyMetaData
+import spock.lang.Specification
+
+import java.util.concurrent.Executor
+
+import static org.gradle.api.internal.artifacts.DefaultModuleVersionSelector.newSelector
+
+class ParallelPrefetchingDependencyResolverTest extends Specification {
+    final delegate = Mock(DependencyToModuleVersionResolver)
+    final cacheLockingManager = Mock(CacheLockingManager)
+    final ivyContextManager = Mock(IvyContextManager)
+    final executor = { Runnable r -> r.run() } as Executor
+    final resolver = new ParallelPrefetchingDependencyResolver(delegate, cacheLockingManager, ivyContextManager, executor, 4)
+
+    def setup() {
+        _ * cacheLockingManager.longRunningOperation(_, _ as Runnable) >> { String name, Runnable action -> action.run() }
+        _ * cacheLockingManager.useCache(_, _ as Runnable) >> { String name, Runnable action -> action.run() }
+        _ * ivyContextManager.withIvy(_) >> { args -> args[0].execute(null) }
+    }
+
+    def "uses prefetched meta-data when dependency is resolved"() {
+        def dep1 = moduleDependency()
+        def dep2 = moduleDependency()
+        def metaData1 = Stub(ComponentMetaData)
+        def metaData2 = Stub(ComponentMetaData)
+        def result = Mock(BuildableComponentResolveResult)
+
+        when:
+        resolver.prefetch([dep1, dep2])
+
+        then:
+        1 * delegate.resolve(dep1, _) >> { DependencyMetaData dep, BuildableComponentResolveResult r -> r.resolved(metaData1) }
+        1 * delegate.resolve(dep2, _) >> { DependencyMetaData dep, BuildableComponentResolveResult r -> r.resolved(metaData2) }
+        0 * delegate._
+
+        when:
+        resolver.resolve(dep2, result)
+
+        then:
+        1 * result.resolved(metaData2)
+        0 * delegate._
+    }
+
+    def "uses prefetched failure when dependency is resolved"() {
+        def dep1 = moduleDependency()
+        def dep2 = moduleDependency()
+        def failure = new ModuleVersionResolveException(newSelector("group", "module", "1.0"), "broken")
+        def result = Mock(BuildableComponentResolveResult)
+
+        given:
+        delegate.resolve(dep1, _) >> { DependencyMetaData dep, BuildableComponentResolveResult r -> r.failed(failure) }
+        delegate.resolve(dep2, _) >> { DependencyMetaData dep, BuildableComponentResolveResult r -> r.resolved(Stub(ComponentMetaData)) }
+        resolver.prefetch([dep1, dep2])
+
+        when:
+        resolver.resolve(dep1, result)
+
+        then:
+        1 * result.failed(failure)
+        0 * delegate._
+    }
+
+    def "prefetched result is used only once"() {
+        def dep1 = moduleDependency()
+        def dep2 = moduleDependency()
+        def result = Mock(BuildableComponentResolveResult)
+
+        given:
+        delegate.resolve(_, _) >> { DependencyMetaData dep, BuildableComponentResolveResult r -> r.resolved(Stub(ComponentMetaData)) }
+        resolver.prefetch([dep1, dep2])
+        resolver.resolve(dep1, Stub(BuildableComponentResolveResult))
+
+        when:
+        resolver.resolve(dep1, result)
+
+        then:
+        1 * delegate.resolve(dep1, result)
+    }
+
+    def "resolves dependency again when prefetching fails"() {
+        def dep1 = moduleDependency()
+        def dep2 = moduleDependency()
+        def result = Mock(BuildableComponentResolveResult)
+
+        given:
+        delegate.resolve(dep1, _) >> { throw new RuntimeException("broken") }
+        delegate.resolve(dep2, _) >> { DependencyMetaData dep, BuildableComponentResolveResult r -> r.resolved(Stub(ComponentMetaData)) }
+        resolver.prefetch([dep1, dep2])
+
+        when:
+        resolver.resolve(dep1, result)
+
+        then:
+        1 * delegate.resolve(dep1, result)
+    }
+
+    def "does not prefetch project dependencies or a single module dependency"() {
+        def projectDep = Stub(DependencyMetaData) {
+            getSelector() >> Stub(ProjectComponentSelector)
+        }
+
+        when:
+        resolver.prefetch([projectDep, moduleDependency()])
+
+        then:
+        0 * delegate._
+        0 * cacheLockingManager._
+    }
+
+    def moduleDependency() {
+        return Stub(DependencyMetaData) {
+            getSelector() >> Stub(ModuleComponentSelector)
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.memcache
+
+import org.gradle.api.internal.artifacts.component.DefaultModuleComponentIdentifier
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.BuildableModuleVersionMetaDataResolveResult
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ModuleSource
+import org.gradle.api.internal.artifacts.metadata.MutableModuleVersionMetaData
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class CrossBuildInMemoryMetaDataCacheTest extends Specification {
+
+    @Rule TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def moduleCacheDir
+    def cache = new CrossBuildInMemoryMetaDataCache()
+    def lib = DefaultModuleComponentIdentifier.newId("org", "lib", "1.0")
+
+    def setup() {
+        moduleCacheDir = tmpDir.createDir("metadata")
+        moduleCacheDir.file("module-metadata.bin").text = "initial"
+        cache.beginBuild(moduleCacheDir)
+    }
+
+    def resolved(boolean changing = false) {
+        return Stub(BuildableModuleVersionMetaDataResolveResult) {
+            getState() >> BuildableModuleVersionMetaDataResolveResult.State.Resolved
+            getMetaData() >> Stub(MutableModuleVersionMetaData) {
+                isChanging() >> changing
+            }
+            getModuleSource() >> Stub(ModuleSource)
+        }
+    }
+
+    def "caches and supplies static module meta-data per repository"() {
+        def result = Mock(BuildableModuleVersionMetaDataResolveResult)
+        def otherRepoResult = Mock(BuildableModuleVersionMetaDataResolveResult)
+
+        given:
+        cache.newDependencyResult("repo", lib, resolved())
+
+        when:
+        def found = cache.supplyMetaData("repo", lib, result)
+        def missing = cache.supplyMetaData("other", lib, otherRepoResult)
+
+        then:
+        found
+        1 * result.resolved(_, _)
+
+        and:
+        !missing
+        0 * otherRepoResult._
+    }
+
+    def "does not cache changing modules or unresolved results"() {
+        when:
+        cache.newDependencyResult("repo", lib, resolved(true))
+        cache.newDependencyResult("repo", lib, Stub(BuildableModuleVersionMetaDataResolveResult) {
+            getState() >> BuildableModuleVersionMetaDataResolveResult.State.Missing
+        })
+
+        then:
+        cache.size() == 0
+    }
+
+    def "keeps entries for later builds when module cache is unchanged"() {
+        given:
+        cache.newDependencyResult("repo", lib, resolved())
+
+        when:
+        cache.endBuild()
+        cache.beginBuild(moduleCacheDir)
+
+        then:
+        cache.size() == 1
+        cache.supplyMetaData("repo", lib, Mock(BuildableModuleVersionMetaDataResolveResult))
+    }
+
+    def "discards entries when module cache changes during a build"() {
+        given:
+        cache.newDependencyResult("repo", lib, resolved())
+        moduleCacheDir.file("module-metadata.bin").text = "changed during build"
+
+        when:
+        cache.endBuild()
+
+        then:
+        cache.size() == 0
+    }
+
+    def "discards entries when module cache changes between builds"() {
+        given:
+        cache.newDependencyResult("repo", lib, resolved())
+        cache.endBuild()
+        moduleCacheDir.file("module-versions.bin").text = "added by another process"
+
+        when:
+        cache.beginBuild(moduleCacheDir)
+
+        then:
+        cache.size() == 0
+    }
+
+    def "discards entries when a different module cache is used"() {
+        given:
+        cache.newDependencyResult("repo", lib, resolved())
+        cache.endBuild()
+
+        when:
+        cache.beginBuild(tmpDir.createDir("other"))
+
+        then:
+        cache.size() == 0
+    }
+
+    def "ignores changes to lock files"() {
+        given:
+        cache.newDependencyResult("repo", lib, resolved())
+        moduleCacheDir.file("metadata.lock").text = "locked"
+
+        when:
+        cache.endBuild()
+
+        then:
+        cache.size() == 1
+    }
+
+    def "number of entries is bounded"() {
+        def cache = new CrossBuildInMemoryMetaDataCache(2)
+
+        when:
+        cache.newDependencyResult("repo", DefaultModuleComponentIdentifier.newId("org", "a", "1.0"), resolved())
+        cache.newDependencyResult("repo", DefaultModuleComponentIdentifier.newId("org", "b", "1.0"), resolved())
+        cache.newDependencyResult("repo", DefaultModuleComponentIdentifier.newId("org", "c", "1.0"), resolved())
+
+        then:
+        cache.size() == 2
+    }
+}
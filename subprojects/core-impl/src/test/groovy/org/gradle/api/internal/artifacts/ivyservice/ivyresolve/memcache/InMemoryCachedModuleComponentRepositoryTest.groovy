@@ -118,6 +118,51 @@ class InMemoryCachedModuleComponentRepositoryTest extends Specification {
         0 * _
     }
 
+    def "shares local dependencies with later builds"() {
+        def crossBuildCache = Mock(CrossBuildInMemoryMetaDataCache)
+        def repo = new InMemoryCachedModuleComponentRepository(caches, delegate, crossBuildCache)
+
+        when:
+        repo.localAccess.resolveComponentMetaData(dep, lib, metaDataResult)
+
+        then:
+        1 * localMetaDataCache.supplyMetaData(lib, metaDataResult) >> false
+        2 * delegate.getId() >> "x"
+        1 * crossBuildCache.supplyMetaData("x", lib, metaDataResult) >> false
+        1 * localDelegate.resolveComponentMetaData(dep, lib, metaDataResult)
+        1 * crossBuildCache.newDependencyResult("x", lib, metaDataResult)
+        1 * localMetaDataCache.newDependencyResult(lib, metaDataResult)
+        0 * _
+        stats.crossBuildMetadataMissed == 1
+
+        when:
+        repo.localAccess.resolveComponentMetaData(dep, lib, metaDataResult)
+
+        then:
+        1 * localMetaDataCache.supplyMetaData(lib, metaDataResult) >> false
+        1 * delegate.getId() >> "x"
+        1 * crossBuildCache.supplyMetaData("x", lib, metaDataResult) >> true
+        1 * localMetaDataCache.newDependencyResult(lib, metaDataResult)
+        0 * _
+        stats.crossBuildMetadataServed == 1
+    }
+
+    def "does not share changing or remote dependencies with later builds"() {
+        def crossBuildCache = Mock(CrossBuildInMemoryMetaDataCache)
+        def repo = new InMemoryCachedModuleComponentRepository(caches, delegate, crossBuildCache)
+        def changingDep = Stub(DependencyMetaData) {
+            getRequested() >> selector
+            isChanging() >> true
+        }
+
+        when:
+        repo.localAccess.resolveComponentMetaData(changingDep, lib, metaDataResult)
+        repo.remoteAccess.resolveComponentMetaData(dep, lib, metaDataResult)
+
+        then:
+        0 * crossBuildCache._
+    }
+
     def "retrieves and caches dependencies"() {
         when:
         repo.remoteAccess.resolveComponentMetaData(dep, lib, metaDataResult)
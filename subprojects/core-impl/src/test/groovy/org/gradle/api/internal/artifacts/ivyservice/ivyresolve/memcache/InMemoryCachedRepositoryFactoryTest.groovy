@@ -66,6 +66,32 @@ class InMemoryCachedRepositoryFactoryTest extends Specification {
         cache.cachePerRepo.size() == 2
     }
 
+    def "shares meta-data across builds only for selected repositories"() {
+        def crossBuildCache = Mock(CrossBuildInMemoryMetaDataCache)
+        def moduleCacheDir = new File("metadata")
+
+        when:
+        def cache = new InMemoryCachedRepositoryFactory(crossBuildCache, moduleCacheDir)
+
+        then:
+        1 * crossBuildCache.beginBuild(moduleCacheDir)
+
+        when:
+        def shared = cache.cached(Mock(ModuleComponentRepository) { getId() >> "mavenCentral" }, true)
+        def notShared = cache.cached(Mock(ModuleComponentRepository) { getId() >> "ivyRepo" })
+
+        then:
+        shared.localAccess.crossBuildCache == crossBuildCache
+        shared.remoteAccess.crossBuildCache == null
+        notShared.localAccess.crossBuildCache == null
+
+        when:
+        cache.stop()
+
+        then:
+        1 * crossBuildCache.endBuild()
+    }
+
     def "cleans cache on close"() {
         when:
         cache.cached(Mock(ModuleComponentRepository) { getId() >> "x"} )
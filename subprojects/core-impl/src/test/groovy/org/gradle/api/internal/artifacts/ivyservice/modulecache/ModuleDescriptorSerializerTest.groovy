@@ -0,0 +1,114 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.modulecache
+
+import org.apache.ivy.core.module.descriptor.*
+import org.apache.ivy.core.module.id.ArtifactId
+import org.apache.ivy.plugins.matcher.ExactPatternMatcher
+import org.apache.ivy.plugins.matcher.GlobPatternMatcher
+import org.apache.ivy.plugins.matcher.RegexpPatternMatcher
+import org.gradle.api.internal.artifacts.ivyservice.IvyXmlModuleDescriptorWriter
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.ResolverStrategy
+import org.gradle.messaging.serialize.kryo.KryoBackedDecoder
+import org.gradle.messaging.serialize.kryo.KryoBackedEncoder
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import static org.gradle.api.internal.artifacts.ivyservice.IvyUtil.createModuleId
+import static org.gradle.api.internal.artifacts.ivyservice.IvyUtil.createModuleRevisionId
+
+class ModuleDescriptorSerializerTest extends Specification {
+    @Rule TestNameTestDirectoryProvider temporaryFolder
+    def serializer = new ModuleDescriptorSerializer(new ResolverStrategy())
+
+    def "serializes module descriptor"() {
+        def md = new DefaultModuleDescriptor(createModuleRevisionId("org.test", "projectA", null, "1.0", ["e:buildNr": "815"]), "release", new Date(1345204800000L))
+        md.addExtraAttributeNamespace("e", "http://ant.apache.org/ivy/extra")
+        md.addLicense(new License("ASL", "http://license"))
+        md.homePage = "http://home"
+        md.description = "some description"
+        md.addExtraInfo("e:info", "value")
+        md.addConfiguration(new Configuration("default", Configuration.Visibility.PUBLIC, "the default", ["runtime"] as String[], true, null))
+        md.addConfiguration(new Configuration("runtime", Configuration.Visibility.PRIVATE, null, [] as String[], false, "deprecated"))
+
+        def artifact = new MDArtifact(md, "projectA", "jar", "jar", null, ["e:classifier": "cls"])
+        ["default", "runtime"].each {
+            artifact.addConfiguration(it)
+            md.addArtifact(it, artifact)
+        }
+
+        def dependency = new DefaultDependencyDescriptor(md, createModuleRevisionId("org.test", "projectB", "2.0"), createModuleRevisionId("org.test", "projectB", "2.+"), true, false, false)
+        dependency.addDependencyConfiguration("default", "*")
+        dependency.addDependencyConfiguration("runtime", "@")
+        dependency.addDependencyConfiguration("runtime", "compile(default)")
+        def dependencyArtifact = new DefaultDependencyArtifactDescriptor(dependency, "projectB", "zip", "zip", null, null)
+        dependencyArtifact.addConfiguration("default")
+        dependency.addDependencyArtifact("default", dependencyArtifact)
+        def includeRule = new DefaultIncludeRule(new ArtifactId(createModuleId("*", "*"), "some", "*", "*"), GlobPatternMatcher.INSTANCE, null)
+        includeRule.addConfiguration("runtime")
+        dependency.addIncludeRule("runtime", includeRule)
+        def excludeRule = new DefaultExcludeRule(new ArtifactId(createModuleId("org.bad", "*"), "*", "*", "*"), ExactPatternMatcher.INSTANCE, null)
+        excludeRule.addConfiguration("default")
+        dependency.addExcludeRule("default", excludeRule)
+        md.addDependency(dependency)
+
+        def moduleExcludeRule = new DefaultExcludeRule(new ArtifactId(createModuleId("org.worse", "module"), "*", "*", "*"), RegexpPatternMatcher.INSTANCE, ["e:reason": "broken"])
+        moduleExcludeRule.addConfiguration("default")
+        moduleExcludeRule.addConfiguration("runtime")
+        md.addExcludeRule(moduleExcludeRule)
+
+        when:
+        def result = serialize(md)
+
+        then:
+        result.moduleRevisionId == md.moduleRevisionId
+        result.qualifiedExtraAttributes == ["e:buildNr": "815"]
+        result.dependencies.length == 1
+        result.dependencies[0].dependencyRevisionId == dependency.dependencyRevisionId
+        result.dependencies[0].dynamicConstraintDependencyRevisionId == dependency.dynamicConstraintDependencyRevisionId
+        result.dependencies[0].getExcludeRules("default")[0].matcher == ExactPatternMatcher.INSTANCE
+        result.allExcludeRules[0].qualifiedExtraAttributes == ["e:reason": "broken"]
+
+        and:
+        ivyXml(result) == ivyXml(md)
+    }
+
+    def "serializes module descriptor with no configurations or dependencies"() {
+        def md = DefaultModuleDescriptor.newDefaultInstance(createModuleRevisionId("org.test", "projectA", "1.0"))
+
+        when:
+        def result = serialize(md)
+
+        then:
+        result.moduleRevisionId == md.moduleRevisionId
+        ivyXml(result) == ivyXml(md)
+    }
+
+    ModuleDescriptor serialize(ModuleDescriptor md) {
+        def outstr = new ByteArrayOutputStream()
+        def encoder = new KryoBackedEncoder(outstr)
+        serializer.write(encoder, md)
+        encoder.flush()
+        return serializer.read(new KryoBackedDecoder(new ByteArrayInputStream(outstr.toByteArray())))
+    }
+
+    String ivyXml(ModuleDescriptor md) {
+        def file = temporaryFolder.file("ivy-${System.identityHashCode(md)}.xml")
+        new IvyXmlModuleDescriptorWriter().write(md, file)
+        return file.text
+    }
+}
@@ -19,12 +19,10 @@ package org.gradle.api.internal.artifacts.ivyservice.modulecache
 import org.apache.ivy.core.module.descriptor.ModuleDescriptor
 import org.apache.ivy.core.module.id.ModuleRevisionId
 import org.gradle.api.artifacts.component.ModuleComponentIdentifier
-import org.gradle.api.internal.artifacts.ivyservice.DependencyToModuleVersionResolver
-import org.gradle.api.internal.artifacts.ivyservice.IvyModuleDescriptorWriter
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ModuleComponentRepository
-import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.IvyXmlModuleDescriptorParser
 import org.gradle.internal.resource.local.PathKeyFileStore
 import org.gradle.internal.resource.local.LocallyAvailableResource
+import org.gradle.messaging.serialize.Serializer
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.junit.Rule
 import spock.lang.Specification
@@ -38,13 +36,11 @@ class ModuleDescriptorStoreTest extends Specification {
     ModuleComponentRepository repository = Mock()
     LocallyAvailableResource fileStoreEntry = Mock()
     ModuleDescriptor moduleDescriptor = Mock()
-    IvyModuleDescriptorWriter ivyModuleDescriptorWriter = Mock()
-    IvyXmlModuleDescriptorParser ivyXmlModuleDescriptorParser = Mock()
+    Serializer<ModuleDescriptor> descriptorSerializer = Mock()
     ModuleComponentIdentifier moduleComponentIdentifier = Mock()
-    def resolver = Mock(DependencyToModuleVersionResolver)
 
     def setup() {
-        store = new ModuleDescriptorStore(pathKeyFileStore, ivyModuleDescriptorWriter, ivyXmlModuleDescriptorParser);
+        store = new ModuleDescriptorStore(pathKeyFileStore, descriptorSerializer);
         _ * repository.getId() >> "repositoryId"
         _ * moduleComponentIdentifier.group >> "org.test"
         _ * moduleComponentIdentifier.module >> "testArtifact"
@@ -54,7 +50,7 @@ class ModuleDescriptorStoreTest extends Specification {
 
     def "getModuleDescriptorFile returns null for not cached descriptors"() {
         when:
-        pathKeyFileStore.get("org.test/testArtifact/1.0/repositoryId/ivy.xml") >> null
+        pathKeyFileStore.get("org.test/testArtifact/1.0/repositoryId/descriptor.bin") >> null
         then:
         null == store.getModuleDescriptor(repository, moduleComponentIdentifier)
     }
@@ -63,7 +59,7 @@ class ModuleDescriptorStoreTest extends Specification {
         when:
         store.getModuleDescriptor(repository, moduleComponentIdentifier);
         then:
-        1 * pathKeyFileStore.get("org.test/testArtifact/1.0/repositoryId/ivy.xml") >> null
+        1 * pathKeyFileStore.get("org.test/testArtifact/1.0/repositoryId/descriptor.bin") >> null
     }
 
     def "putModuleDescriptor uses PathKeyFileStore to write file"() {
@@ -75,9 +71,46 @@ class ModuleDescriptorStoreTest extends Specification {
         when:
         store.putModuleDescriptor(repository, moduleDescriptor);
         then:
-        1 * pathKeyFileStore.add("org.test/testArtifact/1.0/repositoryId/ivy.xml", _) >> { path, action ->
+        1 * pathKeyFileStore.add("org.test/testArtifact/1.0/repositoryId/descriptor.bin", _) >> { path, action ->
             action.execute(descriptorFile); fileStoreEntry
         };
-        1 * ivyModuleDescriptorWriter.write(moduleDescriptor, descriptorFile)
+        1 * descriptorSerializer.write(_, moduleDescriptor)
+    }
+
+    def "getModuleDescriptor reads descriptor written by putModuleDescriptor"() {
+        setup:
+        _ * moduleRevisionId.organisation >> "org.test"
+        _ * moduleRevisionId.name >> "testArtifact"
+        _ * moduleRevisionId.revision >> "1.0"
+        File descriptorFile = temporaryFolder.file("fileStoreEntry")
+        def readDescriptor = Mock(ModuleDescriptor)
+        _ * pathKeyFileStore.add("org.test/testArtifact/1.0/repositoryId/descriptor.bin", _) >> { path, action ->
+            action.execute(descriptorFile); fileStoreEntry
+        }
+        _ * pathKeyFileStore.get("org.test/testArtifact/1.0/repositoryId/descriptor.bin") >> fileStoreEntry
+        _ * fileStoreEntry.file >> descriptorFile
+        _ * descriptorSerializer.write(_, moduleDescriptor) >> { encoder, descriptor -> encoder.writeString("descriptor") }
+        _ * descriptorSerializer.read(_) >> { decoder -> assert decoder.readString() == "descriptor"; readDescriptor }
+
+        when:
+        store.putModuleDescriptor(repository, moduleDescriptor)
+
+        then:
+        store.getModuleDescriptor(repository, moduleComponentIdentifier) == readDescriptor
+    }
+
+    def "getModuleDescriptor returns null for descriptor written in different format"() {
+        setup:
+        File descriptorFile = temporaryFolder.createFile("fileStoreEntry")
+        descriptorFile.bytes = [0, 0, 0, 0] as byte[]
+        _ * pathKeyFileStore.get("org.test/testArtifact/1.0/repositoryId/descriptor.bin") >> fileStoreEntry
+        _ * fileStoreEntry.file >> descriptorFile
+
+        when:
+        def descriptor = store.getModuleDescriptor(repository, moduleComponentIdentifier)
+
+        then:
+        descriptor == null
+        0 * descriptorSerializer._
     }
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graphcache
+
+import org.gradle.api.internal.artifacts.component.DefaultModuleComponentIdentifier
+import org.gradle.api.internal.artifacts.configurations.dynamicversion.CachePolicy
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager
+import org.gradle.cache.PersistentIndexedCache
+import org.gradle.messaging.serialize.Serializer
+import org.gradle.messaging.serialize.SerializerSpec
+import org.gradle.util.BuildCommencedTimeProvider
+
+class ResolvedGraphCacheTest extends SerializerSpec {
+    def cacheLockingManager = Mock(CacheLockingManager)
+    def timeProvider = Stub(BuildCommencedTimeProvider)
+    def cachePolicy = Mock(CachePolicy)
+    def persistentCache = Stub(PersistentIndexedCache)
+    def cache = new ResolvedGraphCache(cacheLockingManager, timeProvider)
+    def module = DefaultModuleComponentIdentifier.newId("org", "dep", "2.0")
+    def recorder = Stub(ResolvedGraphRecorder) {
+        getModules() >> ([module] as Set)
+        getData() >> ([1, 2, 3] as byte[])
+    }
+    Map<String, byte[]> entries = [:]
+    Serializer serializer
+
+    def setup() {
+        _ * cacheLockingManager.createCache("resolved-graphs", _, _) >> { String name, Serializer keySerializer, Serializer valueSerializer ->
+            serializer = valueSerializer
+            persistentCache
+        }
+        persistentCache.put(_, _) >> { String key, def value -> entries[key] = toBytes(value, serializer) }
+        persistentCache.get(_) >> { String key -> entries[key] == null ? null : fromBytes(entries[key], serializer) }
+    }
+
+    def "returns the stored graph while its modules do not need to be refreshed"() {
+        timeProvider.currentTime >> 1000
+        cache.store("key", recorder)
+
+        when:
+        def graph = cache.get("key", cachePolicy)
+
+        then:
+        1 * cachePolicy.mustRefreshModule(module, { it.id.version == "2.0" }, 0) >> false
+
+        and:
+        graph == [1, 2, 3] as byte[]
+    }
+
+    def "does not return the stored graph when a module needs to be refreshed"() {
+        timeProvider.currentTime >>> [1000, 3000]
+        cache.store("key", recorder)
+
+        when:
+        def graph = cache.get("key", cachePolicy)
+
+        then:
+        1 * cachePolicy.mustRefreshModule(module, _, 2000) >> true
+
+        and:
+        graph == null
+    }
+
+    def "returns null when there is no stored graph"() {
+        expect:
+        cache.get("key", cachePolicy) == null
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graphcache
+
+import org.gradle.api.artifacts.Configuration
+import org.gradle.api.artifacts.Dependency
+import org.gradle.api.artifacts.DependencySet
+import org.gradle.api.artifacts.Module
+import org.gradle.api.artifacts.ProjectDependency
+import org.gradle.api.internal.artifacts.ModuleMetadataProcessor
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal
+import org.gradle.api.internal.artifacts.dependencies.DefaultExternalModuleDependency
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ConfiguredModuleComponentRepository
+import org.gradle.api.internal.artifacts.ivyservice.resolutionstrategy.LatestConflictResolution
+import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository
+import spock.lang.Specification
+
+class ResolvedGraphKeyFactoryTest extends Specification {
+    def keyFactory = new ResolvedGraphKeyFactory()
+    def metadataProcessor = Stub(ModuleMetadataProcessor)
+    def resolutionStrategy = Stub(ResolutionStrategyInternal) {
+        getForcedModules() >> ([] as Set)
+        getConflictResolution() >> new LatestConflictResolution()
+    }
+    def resolver = Stub(ConfiguredModuleComponentRepository) {
+        getId() >> "repo"
+    }
+    def repository = Stub(ResolutionAwareRepository) {
+        createResolver() >> resolver
+    }
+    List<Dependency> dependencies = [new DefaultExternalModuleDependency("org", "foo", "1.0")]
+    def configuration = Stub(ConfigurationInternal)
+
+    def setup() {
+        def module = Stub(Module) {
+            getGroup() >> "org"
+            getName() >> "root"
+            getVersion() >> "1.0"
+            getStatus() >> "integration"
+        }
+        def hierarchy = Stub(Configuration) {
+            getName() >> "compile"
+            isTransitive() >> true
+            getExcludeRules() >> ([] as Set)
+        }
+        def dependencySet = Stub(DependencySet)
+        dependencySet.iterator() >> { dependencies.iterator() }
+        configuration.getResolutionStrategy() >> resolutionStrategy
+        configuration.getPath() >> ":compile"
+        configuration.getModule() >> module
+        configuration.getHierarchy() >> ([hierarchy] as Set)
+        configuration.getAllDependencies() >> dependencySet
+    }
+
+    def "calculates the same key for the same declarations"() {
+        expect:
+        def key = keyFactory.createKey(configuration, [repository], metadataProcessor)
+        key != null
+        keyFactory.createKey(configuration, [repository], metadataProcessor) == key
+    }
+
+    def "calculates a different key when a dependency changes"() {
+        def key = keyFactory.createKey(configuration, [repository], metadataProcessor)
+
+        when:
+        dependencies = [new DefaultExternalModuleDependency("org", "foo", "2.0")]
+
+        then:
+        keyFactory.createKey(configuration, [repository], metadataProcessor) != key
+    }
+
+    def "does not calculate a key when a repository is local"() {
+        def localRepository = Stub(ResolutionAwareRepository) {
+            createResolver() >> Stub(ConfiguredModuleComponentRepository) {
+                getId() >> "local"
+                isLocal() >> true
+            }
+        }
+
+        expect:
+        keyFactory.createKey(configuration, [repository, localRepository], metadataProcessor) == null
+    }
+
+    def "does not calculate a key when the configuration has a project dependency"() {
+        dependencies << Stub(ProjectDependency)
+
+        expect:
+        keyFactory.createKey(configuration, [repository], metadataProcessor) == null
+    }
+
+    def "does not calculate a key when the configuration has dependency resolve rules"() {
+        resolutionStrategy.hasDependencyResolveRules() >> true
+
+        expect:
+        keyFactory.createKey(configuration, [repository], metadataProcessor) == null
+    }
+
+    def "does not calculate a key for a changing dependency"() {
+        def dependency = new DefaultExternalModuleDependency("org", "bar", "1.0")
+        dependency.changing = true
+        dependencies << dependency
+
+        expect:
+        keyFactory.createKey(configuration, [repository], metadataProcessor) == null
+    }
+}
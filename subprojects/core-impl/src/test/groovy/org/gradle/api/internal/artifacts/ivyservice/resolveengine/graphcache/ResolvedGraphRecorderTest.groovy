@@ -0,0 +1,195 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graphcache
+
+import org.gradle.api.artifacts.ModuleDependency
+import org.gradle.api.artifacts.ResolvedArtifact
+import org.gradle.api.artifacts.UnresolvedDependency
+import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifier
+import org.gradle.api.internal.artifacts.component.DefaultModuleComponentIdentifier
+import org.gradle.api.internal.artifacts.component.DefaultModuleComponentSelector
+import org.gradle.api.internal.artifacts.ivyservice.ArtifactResolver
+import org.gradle.api.internal.artifacts.ivyservice.ModuleVersionResolveException
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ModuleSource
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.ChainVersionMatcher
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.ExactVersionMatcher
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.SubVersionMatcher
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.DefaultResolvedConfigurationBuilder
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.ResolvedConfigurationBuilder
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DefaultInternalDependencyResult
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DummyBinaryStore
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DummyStore
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ModuleVersionSelection
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ResolutionResultBuilder
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.StreamingResolutionResultBuilder
+import org.gradle.api.internal.artifacts.metadata.ComponentArtifactMetaData
+import org.gradle.api.internal.artifacts.metadata.ComponentMetaData
+import org.gradle.api.internal.artifacts.metadata.DefaultModuleVersionArtifactIdentifier
+import org.gradle.api.internal.artifacts.metadata.DefaultModuleVersionArtifactMetaData
+import spock.lang.Specification
+
+import static org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier.newId
+import static org.gradle.api.internal.artifacts.DefaultModuleVersionSelector.newSelector
+import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ResolutionResultPrinter.printGraph
+import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.VersionSelectionReasons.REQUESTED
+
+class ResolvedGraphRecorderTest extends Specification {
+    def newModelBuilder = Mock(ResolutionResultBuilder)
+    def oldModelBuilder = Mock(ResolvedConfigurationBuilder)
+    def dependency1 = Mock(ModuleDependency)
+    def dependency2 = Mock(ModuleDependency)
+    def artifactResolver = Mock(ArtifactResolver)
+    def versionMatcher = new ChainVersionMatcher()
+    def recorder = new ResolvedGraphRecorder(newModelBuilder, oldModelBuilder, [dependency1, dependency2], versionMatcher)
+
+    def rootId = newId("org", "root", "1.0")
+    def root = new ResolvedConfigurationIdentifier(rootId, "compile")
+    def dep = new ResolvedConfigurationIdentifier(newId("org", "dep", "2.0"), "default")
+    def depComponentId = DefaultModuleComponentIdentifier.newId("org", "dep", "2.0")
+
+    def setup() {
+        versionMatcher.add(new SubVersionMatcher(new ExactVersionMatcher()))
+        versionMatcher.add(new ExactVersionMatcher())
+    }
+
+    def "passes events on to the builders"() {
+        def component = component(false)
+        def artifact = artifact()
+        def resolvedArtifact = Stub(ResolvedArtifact)
+
+        when:
+        recordGraph(component, artifact)
+
+        then:
+        1 * newModelBuilder.start(rootId, _)
+        1 * newModelBuilder.resolvedModuleVersion({ it.selectedId == newId("org", "dep", "2.0") })
+        1 * newModelBuilder.resolvedConfiguration(rootId, { it.size() == 1 })
+        1 * oldModelBuilder.newResolvedDependency(root)
+        1 * oldModelBuilder.newResolvedDependency(dep)
+        1 * oldModelBuilder.addFirstLevelDependency(dependency2, dep)
+        1 * oldModelBuilder.addChild(root, dep)
+        1 * oldModelBuilder.newArtifact(dep, component, artifact, artifactResolver) >> resolvedArtifact
+        1 * oldModelBuilder.addParentSpecificArtifacts(dep, root, [resolvedArtifact] as Set)
+        1 * oldModelBuilder.done(root)
+        0 * _
+
+        and:
+        recorder.replayable
+        recorder.modules == [depComponentId] as Set
+    }
+
+    def "replays recorded graph"() {
+        def replayedNewModel = new StreamingResolutionResultBuilder(new DummyBinaryStore(), new DummyStore())
+        def replayedOldModel = Mock(DefaultResolvedConfigurationBuilder)
+        def replayedArtifact = Stub(ResolvedArtifact)
+
+        given:
+        oldModelBuilder.newArtifact(_, _, _, _) >> Stub(ResolvedArtifact)
+        recordGraph(component(false), artifact())
+
+        when:
+        ResolvedGraphRecorder.replay(recorder.data, [dependency1, dependency2], artifactResolver, replayedNewModel, replayedOldModel)
+
+        then:
+        1 * replayedOldModel.newResolvedDependency(root)
+        1 * replayedOldModel.newResolvedDependency(dep)
+        1 * replayedOldModel.addFirstLevelDependency(dependency2, dep)
+        1 * replayedOldModel.addChild(root, dep)
+        1 * replayedOldModel.newArtifact(dep, { it instanceof TestModuleSource && it.value == "source" }, { it.id == artifact().id }, artifactResolver) >> replayedArtifact
+        1 * replayedOldModel.addParentSpecificArtifacts(dep, root, [replayedArtifact] as Set)
+        1 * replayedOldModel.done(root)
+        0 * replayedOldModel._
+
+        and:
+        printGraph(replayedNewModel.complete().root) == """org:root:1.0
+  org:dep:2.0 [root]
+"""
+    }
+
+    def "graph with changing module cannot be replayed"() {
+        when:
+        recordGraph(component(true), artifact())
+
+        then:
+        !recorder.replayable
+    }
+
+    def "graph with dynamic version cannot be replayed"() {
+        when:
+        recorder.start(rootId, DefaultModuleComponentIdentifier.newId("org", "root", "1.0"))
+        recorder.resolvedConfiguration(rootId, [
+                new DefaultInternalDependencyResult(DefaultModuleComponentSelector.newSelector("org", "dep", "2.+"), newId("org", "dep", "2.0"), REQUESTED, null)
+        ])
+
+        then:
+        !recorder.replayable
+    }
+
+    def "graph with failures cannot be replayed"() {
+        when:
+        recorder.start(rootId, DefaultModuleComponentIdentifier.newId("org", "root", "1.0"))
+        recorder.resolvedConfiguration(rootId, [
+                new DefaultInternalDependencyResult(DefaultModuleComponentSelector.newSelector("org", "dep", "2.0"), null, REQUESTED,
+                        new ModuleVersionResolveException(newSelector("org", "dep", "2.0"), new RuntimeException("broken")))
+        ])
+        recorder.addUnresolvedDependency(Stub(UnresolvedDependency))
+
+        then:
+        !recorder.replayable
+    }
+
+    def "graph with dependency that was not declared cannot be replayed"() {
+        when:
+        recorder.addFirstLevelDependency(Mock(ModuleDependency), dep)
+
+        then:
+        !recorder.replayable
+    }
+
+    private void recordGraph(ComponentMetaData component, ComponentArtifactMetaData artifact) {
+        recorder.start(rootId, DefaultModuleComponentIdentifier.newId("org", "root", "1.0"))
+        recorder.resolvedModuleVersion(Stub(ModuleVersionSelection) {
+            getSelectedId() >> newId("org", "dep", "2.0")
+            getSelectionReason() >> REQUESTED
+            getComponentId() >> depComponentId
+        })
+        recorder.resolvedConfiguration(rootId, [
+                new DefaultInternalDependencyResult(DefaultModuleComponentSelector.newSelector("org", "dep", "2.0"), newId("org", "dep", "2.0"), REQUESTED, null)
+        ])
+        recorder.newResolvedDependency(root)
+        recorder.newResolvedDependency(dep)
+        recorder.addFirstLevelDependency(dependency2, dep)
+        recorder.addChild(root, dep)
+        def resolvedArtifact = recorder.newArtifact(dep, component, artifact, artifactResolver)
+        recorder.addParentSpecificArtifacts(dep, root, [resolvedArtifact] as Set)
+        recorder.done(root)
+    }
+
+    private ComponentMetaData component(boolean changing) {
+        def component = Stub(ComponentMetaData)
+        component.source >> new TestModuleSource(value: "source")
+        component.changing >> changing
+        return component
+    }
+
+    private DefaultModuleVersionArtifactMetaData artifact() {
+        return new DefaultModuleVersionArtifactMetaData(new DefaultModuleVersionArtifactIdentifier(depComponentId, "dep", "jar", "jar"))
+    }
+
+    static class TestModuleSource implements ModuleSource {
+        String value
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.cache.http
+
+import org.gradle.api.UncheckedIOException
+import org.gradle.api.internal.tasks.cache.TaskOutputCache.TaskOutputReader
+import org.gradle.api.internal.tasks.cache.TaskOutputCache.TaskOutputWriter
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.test.fixtures.server.http.HttpServer
+import org.junit.Rule
+import spock.lang.Specification
+
+class HttpTaskOutputCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    @Rule
+    HttpServer server = new HttpServer()
+    def factory = new HttpTaskOutputCacheFactory()
+
+    def "loads outputs from server"() {
+        def cache = factory.create(new URI("${server.address}/cache"))
+        def entry = tmpDir.file("entry")
+        entry.text = "outputs"
+        server.expectGet("/cache/key", entry)
+
+        when:
+        String result = null
+        def found = cache.load("key", { InputStream input -> result = input.text } as TaskOutputReader)
+
+        then:
+        found
+        result == "outputs"
+    }
+
+    def "does not find outputs missing from server"() {
+        def cache = factory.create(new URI("${server.address}/cache/"))
+        server.expectGetMissing("/cache/key")
+
+        expect:
+        !cache.load("key", Mock(TaskOutputReader))
+    }
+
+    def "fails to load when server fails"() {
+        def cache = factory.create(new URI("${server.address}/cache/"))
+        server.expectGetBroken("/cache/key")
+
+        when:
+        cache.load("key", Mock(TaskOutputReader))
+
+        then:
+        thrown(UncheckedIOException)
+    }
+
+    def "stores outputs on server"() {
+        def cache = factory.create(new URI("${server.address}/cache/"))
+        def destFile = tmpDir.file("stored")
+        server.expectPut("/cache/key", destFile)
+
+        when:
+        cache.store("key", { OutputStream output -> output.write("outputs".bytes) } as TaskOutputWriter)
+
+        then:
+        destFile.text == "outputs"
+    }
+
+    def "uses credentials from URL"() {
+        def uri = new URI("${server.address}/cache/")
+        def cache = factory.create(new URI(uri.scheme, "user:secret", uri.host, uri.port, uri.path, null, null))
+        def destFile = tmpDir.file("stored")
+        server.expectPut("/cache/key", "user", "secret", destFile)
+
+        when:
+        cache.store("key", { OutputStream output -> output.write("outputs".bytes) } as TaskOutputWriter)
+
+        then:
+        destFile.text == "outputs"
+        !cache.description.contains("secret")
+    }
+}
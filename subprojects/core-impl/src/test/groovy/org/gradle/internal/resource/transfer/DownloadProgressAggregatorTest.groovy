@@ -0,0 +1,99 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.internal.resource.transfer
+
+import org.gradle.internal.TimeProvider
+import org.gradle.logging.ProgressLogger
+import org.gradle.logging.ProgressLoggerFactory
+import spock.lang.Specification
+
+class DownloadProgressAggregatorTest extends Specification {
+    final progressLoggerFactory = Mock(ProgressLoggerFactory)
+    final progressLogger = Mock(ProgressLogger)
+    final timeProvider = Mock(TimeProvider)
+    final aggregator = new DownloadProgressAggregator(progressLoggerFactory, timeProvider)
+
+    def "does not report progress for a single download"() {
+        when:
+        aggregator.downloadStarted()
+        aggregator.bytesProcessed(2048)
+        aggregator.downloadCompleted()
+
+        then:
+        0 * progressLoggerFactory._
+    }
+
+    def "reports combined progress of concurrent downloads"() {
+        given:
+        timeProvider.currentTime >>> [1000, 1600, 2000]
+
+        when:
+        aggregator.downloadStarted()
+        aggregator.downloadStarted()
+
+        then:
+        1 * progressLoggerFactory.newOperation(DownloadProgressAggregator) >> progressLogger
+        1 * progressLogger.started()
+
+        when:
+        aggregator.bytesProcessed(3072)
+
+        then:
+        1 * progressLogger.progress("2 downloads in progress, 3 KB at 5 KB/s")
+
+        when:
+        aggregator.downloadCompleted()
+        aggregator.bytesProcessed(1024)
+        aggregator.downloadCompleted()
+
+        then:
+        1 * progressLogger.completed("2 downloads completed, 4 KB at 4 KB/s")
+        0 * progressLogger.progress(_)
+    }
+
+    def "limits how often progress is reported"() {
+        given:
+        timeProvider.currentTime >>> [1000, 1100, 1200, 1500]
+        progressLoggerFactory.newOperation(_) >> progressLogger
+
+        when:
+        aggregator.downloadStarted()
+        aggregator.downloadStarted()
+        aggregator.bytesProcessed(1024)
+        aggregator.bytesProcessed(1024)
+        aggregator.bytesProcessed(1024)
+
+        then:
+        1 * progressLogger.progress(_)
+    }
+
+    def "starts a new operation once all concurrent downloads have completed"() {
+        given:
+        timeProvider.currentTime >> 1000
+
+        when:
+        aggregator.downloadStarted()
+        aggregator.downloadStarted()
+        aggregator.downloadCompleted()
+        aggregator.downloadCompleted()
+        aggregator.downloadStarted()
+        aggregator.downloadStarted()
+
+        then:
+        2 * progressLoggerFactory.newOperation(_) >> progressLogger
+        1 * progressLogger.completed(_)
+    }
+}
@@ -49,6 +49,11 @@ public interface ResolutionStrategyInternal extends ResolutionStrategy {
      */
     Action<DependencyResolveDetailsInternal> getDependencyResolveRule();
 
+    /**
+     * @return true if any dependency resolve rules have been added using {@link #eachDependency(org.gradle.api.Action)}
+     */
+    boolean hasDependencyResolveRules();
+
     /**
      * @return copy of this resolution strategy. See the contract of {@link org.gradle.api.artifacts.Configuration#copy()}.
      */
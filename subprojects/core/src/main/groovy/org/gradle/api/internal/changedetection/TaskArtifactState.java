@@ -15,6 +15,8 @@
  */
 package org.gradle.api.internal.changedetection;
 
+import com.google.common.hash.HashCode;
+import org.gradle.api.Nullable;
 import org.gradle.api.internal.TaskExecutionHistory;
 import org.gradle.api.tasks.incremental.IncrementalTaskInputs;
 
@@ -52,4 +54,11 @@ public interface TaskArtifactState {
      * Returns the history for this task.
      */
     TaskExecutionHistory getExecutionHistory();
+
+    /**
+     * Returns a key for the outputs of the task, calculated from the task type, input properties, input files and output files. Tasks with the same
+     * key produce the same outputs. Returns null when the outputs of the task cannot be reused.
+     */
+    @Nullable
+    HashCode calculateCacheKey();
 }
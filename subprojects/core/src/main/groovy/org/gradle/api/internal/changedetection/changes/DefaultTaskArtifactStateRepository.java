@@ -16,6 +16,7 @@
 
 package org.gradle.api.internal.changedetection.changes;
 
+import com.google.common.hash.*;
 import org.gradle.api.file.FileCollection;
 import org.gradle.api.internal.TaskExecutionHistory;
 import org.gradle.api.internal.TaskInternal;
@@ -31,11 +32,14 @@ import org.gradle.api.internal.file.collections.SimpleFileCollection;
 import org.gradle.api.tasks.incremental.IncrementalTaskInputs;
 import org.gradle.internal.reflect.Instantiator;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.*;
 
 public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepository {
+    private static final HashFunction CACHE_KEY_HASH = Hashing.md5();
 
     private final TaskHistoryRepository taskHistoryRepository;
     private final FileCollectionSnapshotter outputFilesSnapshotter;
@@ -106,6 +110,45 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
             return this;
         }
 
+        public HashCode calculateCacheKey() {
+            TaskUpToDateState states = getStates();
+            TaskExecution execution = history.getCurrentExecution();
+            Hasher hasher = CACHE_KEY_HASH.newHasher();
+            putString(hasher, execution.getTaskClass());
+            Map<String, Object> inputProperties = new TreeMap<String, Object>(execution.getInputProperties());
+            hasher.putInt(inputProperties.size());
+            for (Map.Entry<String, Object> entry : inputProperties.entrySet()) {
+                putString(hasher, entry.getKey());
+                try {
+                    OutputStream hasherStream = Funnels.asOutputStream(hasher);
+                    ObjectOutputStream objectStream = new ObjectOutputStream(hasherStream);
+                    objectStream.writeObject(entry.getValue());
+                    objectStream.close();
+                } catch (IOException e) {
+                    // Not serializable, so cannot tell whether the value has changed
+                    return null;
+                }
+            }
+            // Use paths relative to the root project, so that the key is the same for other checkouts of the build
+            File rootDir = task.getProject().getRootProject().getProjectDir();
+            hasher.putBytes(states.getInputFilesHash(rootDir).asBytes());
+            Set<File> outputFiles = new TreeSet<File>(task.getOutputs().getFiles().getFiles());
+            hasher.putInt(outputFiles.size());
+            String rootPath = rootDir.getAbsolutePath() + File.separator;
+            for (File outputFile : outputFiles) {
+                String path = outputFile.getAbsolutePath();
+                boolean relative = path.startsWith(rootPath);
+                hasher.putBoolean(relative);
+                putString(hasher, relative ? path.substring(rootPath.length()).replace(File.separatorChar, '/') : path);
+            }
+            return hasher.hash();
+        }
+
+        private void putString(Hasher hasher, String value) {
+            hasher.putInt(value.length());
+            hasher.putUnencodedChars(value);
+        }
+
         public void beforeTask() {
         }
 
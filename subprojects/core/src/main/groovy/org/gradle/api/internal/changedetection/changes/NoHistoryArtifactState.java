@@ -16,6 +16,7 @@
 
 package org.gradle.api.internal.changedetection.changes;
 
+import com.google.common.hash.HashCode;
 import org.gradle.api.file.FileCollection;
 import org.gradle.api.internal.TaskExecutionHistory;
 import org.gradle.api.internal.changedetection.TaskArtifactState;
@@ -37,6 +38,10 @@ class NoHistoryArtifactState implements TaskArtifactState, TaskExecutionHistory
         return this;
     }
 
+    public HashCode calculateCacheKey() {
+        return null;
+    }
+
     public void beforeTask() {
     }
 
@@ -15,6 +15,7 @@
  */
 package org.gradle.api.internal.changedetection.changes;
 
+import com.google.common.hash.HashCode;
 import org.gradle.StartParameter;
 import org.gradle.api.internal.TaskExecutionHistory;
 import org.gradle.api.internal.TaskInternal;
@@ -81,6 +82,11 @@ public class ShortCircuitTaskArtifactStateRepository implements TaskArtifactStat
             return delegate.getExecutionHistory();
         }
 
+        public HashCode calculateCacheKey() {
+            // The task should be executed, so do not reuse any outputs
+            return null;
+        }
+
         public void beforeTask() {
             delegate.beforeTask();
         }
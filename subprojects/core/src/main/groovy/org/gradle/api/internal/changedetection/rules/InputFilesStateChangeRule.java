@@ -30,6 +30,10 @@ class InputFilesStateChangeRule {
     public static TaskStateChanges create(final TaskExecution previousExecution, final TaskExecution currentExecution, final FileCollectionSnapshot inputFilesSnapshot) {
         return new TaskStateChanges() {
             public Iterator<TaskStateChange> iterator() {
+                if (inputFilesSnapshot.getHash().equals(previousExecution.getInputFilesHash())) {
+                    // Same files as last time, so no need to load the previous snapshot
+                    return Collections.<TaskStateChange>emptySet().iterator();
+                }
                 if (previousExecution.getInputFilesSnapshot() == null) {
                     return Collections.<TaskStateChange>singleton(new DescriptiveChange("Input file history is not available.")).iterator();
                 }
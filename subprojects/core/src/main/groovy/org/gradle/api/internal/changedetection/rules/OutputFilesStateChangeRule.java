@@ -36,6 +36,10 @@ class OutputFilesStateChangeRule {
         return new TaskStateChanges() {
 
             public Iterator<TaskStateChange> iterator() {
+                if (outputFilesBefore.getHash().equals(previousExecution.getOutputFilesHash())) {
+                    // Same files as after the last execution, so no need to load the previous snapshot
+                    return Collections.<TaskStateChange>emptySet().iterator();
+                }
                 if (previousExecution.getOutputFilesSnapshot() == null) {
                     return Collections.<TaskStateChange>singleton(new DescriptiveChange("Output file history is not available.")).iterator();
                 }
@@ -16,16 +16,20 @@
 
 package org.gradle.api.internal.changedetection.rules;
 
+import com.google.common.hash.HashCode;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.api.internal.TaskInternal;
 import org.gradle.api.internal.changedetection.state.*;
 
+import java.io.File;
+
 /**
  * Represents the complete changes in a tasks state
  */
 public class TaskUpToDateState {
     private static final int MAX_OUT_OF_DATE_MESSAGES = 3;
     private final FilesSnapshotSet inputFilesSnapshot;
+    private final FileCollectionSnapshot inputFiles;
 
     private TaskStateChanges noHistoryState;
     private TaskStateChanges inputFilesState;
@@ -54,6 +58,7 @@ public class TaskUpToDateState {
         try {
             FileCollectionSnapshot inputFilesSnapshot = inputFilesSnapshotter.snapshot(task.getInputs().getFiles());
             this.inputFilesSnapshot = inputFilesSnapshot.getSnapshot();
+            this.inputFiles = inputFilesSnapshot;
             inputFilesState = caching(InputFilesStateChangeRule.create(lastExecution, thisExecution, inputFilesSnapshot));
         } catch (UncheckedIOException e) {
             throw new UncheckedIOException(String.format("Failed to capture snapshot of input files for task '%s' during up-to-date check.  See stacktrace for details.", task.getName()), e);
@@ -82,4 +87,11 @@ public class TaskUpToDateState {
     public FilesSnapshotSet getInputFilesSnapshot() {
         return inputFilesSnapshot;
     }
+
+    /**
+     * Returns a hash of the input files, with their paths relative to the given directory.
+     */
+    public HashCode getInputFilesHash(File baseDir) {
+        return inputFiles.getRelativeHash(baseDir);
+    }
 }
@@ -15,13 +15,19 @@
  */
 package org.gradle.api.internal.changedetection.state;
 
+import com.google.common.hash.HashCode;
 import org.gradle.api.internal.TaskInternal;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.internal.Factory;
+import org.gradle.internal.UncheckedException;
 import org.gradle.messaging.serialize.Decoder;
 import org.gradle.messaging.serialize.Encoder;
 import org.gradle.messaging.serialize.Serializer;
+import org.gradle.messaging.serialize.kryo.KryoBackedDecoder;
+import org.gradle.messaging.serialize.kryo.KryoBackedEncoder;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.util.*;
 
@@ -47,6 +53,7 @@ public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
         if (previousExecution != null) {
             previousExecution.snapshotRepository = snapshotRepository;
             previousExecution.cacheAccess = cacheAccess;
+            previousExecution.classLoader = task.getClass().getClassLoader();
         }
 
         return new History() {
@@ -88,14 +95,8 @@ public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
     private TaskHistory loadHistory(final TaskInternal task) {
         return cacheAccess.useCache("Load task history", new Factory<TaskHistory>() {
             public TaskHistory create() {
-                ClassLoader original = serializer.getClassLoader();
-                serializer.setClassLoader(task.getClass().getClassLoader());
-                try {
-                    TaskHistory history = taskHistoryCache.get(task.getPath());
-                    return history == null ? new TaskHistory() : history;
-                } finally {
-                    serializer.setClassLoader(original);
-                }
+                TaskHistory history = taskHistoryCache.get(task.getPath());
+                return history == null ? new TaskHistory() : history;
             }
         });
     }
@@ -134,13 +135,11 @@ public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
     }
 
     private static class TaskHistorySerializer implements Serializer<TaskHistory> {
-
-        private ClassLoader classLoader;
+        private final LazyTaskExecution.TaskHistorySerializer executionSerializer = new LazyTaskExecution.TaskHistorySerializer();
 
         public TaskHistory read(Decoder decoder) throws Exception {
             byte executions = decoder.readByte();
             TaskHistory history = new TaskHistory();
-            LazyTaskExecution.TaskHistorySerializer executionSerializer = new LazyTaskExecution.TaskHistorySerializer(classLoader);
             for (int i = 0; i < executions; i++) {
                 LazyTaskExecution exec = executionSerializer.read(decoder);
                 history.configurations.add(exec);
@@ -151,19 +150,10 @@ public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
         public void write(Encoder encoder, TaskHistory value) throws Exception {
             int size = value.configurations.size();
             encoder.writeByte((byte) size);
-            LazyTaskExecution.TaskHistorySerializer executionSerializer = new LazyTaskExecution.TaskHistorySerializer(classLoader);
             for (LazyTaskExecution execution : value.configurations) {
                 executionSerializer.write(encoder, execution);
             }
         }
-
-        public ClassLoader getClassLoader() {
-            return classLoader;
-        }
-
-        public void setClassLoader(ClassLoader classLoader) {
-            this.classLoader = classLoader;
-        }
     }
 
     private static class TaskHistory {
@@ -178,18 +168,68 @@ public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
             for (LazyTaskExecution c : configurations) {
                 c.cacheAccess = null;
                 c.snapshotRepository = null;
+                c.classLoader = null;
             }
         }
     }
 
     //TODO SF extract & unit test
+    /**
+     * An execution whose file snapshots and input properties are only loaded when they are used. The up-to-date checks compare the file
+     * snapshot hashes first, so that the snapshots are only loaded when the files have changed.
+     */
     private static class LazyTaskExecution extends TaskExecution {
+        private static final byte[] NO_BYTES = new byte[0];
         private Long inputFilesSnapshotId;
         private Long outputFilesSnapshotId;
+        // The serialized input properties, kept so that they can be written back without being deserialized
+        private byte[] inputPropertiesBytes;
         private transient FileSnapshotRepository snapshotRepository;
         private transient FileCollectionSnapshot inputFilesSnapshot;
         private transient FileCollectionSnapshot outputFilesSnapshot;
         private transient TaskArtifactStateCacheAccess cacheAccess;
+        private transient ClassLoader classLoader;
+
+        @Override
+        public Map<String, Object> getInputProperties() {
+            if (super.getInputProperties() == null && inputPropertiesBytes != null) {
+                super.setInputProperties(readInputProperties());
+            }
+            return super.getInputProperties();
+        }
+
+        private Map<String, Object> readInputProperties() {
+            if (inputPropertiesBytes.length == 0) {
+                return new HashMap<String, Object>();
+            }
+            try {
+                return new InputPropertiesSerializer(classLoader).read(new KryoBackedDecoder(new ByteArrayInputStream(inputPropertiesBytes)));
+            } catch (Exception e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+
+        @Override
+        public void setInputProperties(Map<String, Object> inputProperties) {
+            super.setInputProperties(inputProperties);
+            inputPropertiesBytes = null;
+        }
+
+        private byte[] getInputPropertiesBytes() throws Exception {
+            if (inputPropertiesBytes == null) {
+                Map<String, Object> inputProperties = getInputProperties();
+                if (inputProperties == null || inputProperties.isEmpty()) {
+                    inputPropertiesBytes = NO_BYTES;
+                } else {
+                    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                    KryoBackedEncoder encoder = new KryoBackedEncoder(outputStream);
+                    new InputPropertiesSerializer(getClass().getClassLoader()).write(encoder, inputProperties);
+                    encoder.flush();
+                    inputPropertiesBytes = outputStream.toByteArray();
+                }
+            }
+            return inputPropertiesBytes;
+        }
 
         @Override
         public FileCollectionSnapshot getInputFilesSnapshot() {
@@ -207,6 +247,7 @@ public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
         public void setInputFilesSnapshot(FileCollectionSnapshot inputFilesSnapshot) {
             this.inputFilesSnapshot = inputFilesSnapshot;
             this.inputFilesSnapshotId = null;
+            setInputFilesHash(inputFilesSnapshot == null ? null : inputFilesSnapshot.getHash());
         }
 
         @Override
@@ -225,19 +266,16 @@ public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
         public void setOutputFilesSnapshot(FileCollectionSnapshot outputFilesSnapshot) {
             this.outputFilesSnapshot = outputFilesSnapshot;
             outputFilesSnapshotId = null;
+            setOutputFilesHash(outputFilesSnapshot == null ? null : outputFilesSnapshot.getHash());
         }
 
         static class TaskHistorySerializer implements Serializer<LazyTaskExecution> {
-            private InputPropertiesSerializer inputPropertiesSerializer;
-
-            public TaskHistorySerializer(ClassLoader classLoader) {
-                this.inputPropertiesSerializer = new InputPropertiesSerializer(classLoader);
-            }
-
             public LazyTaskExecution read(Decoder decoder) throws Exception {
                 LazyTaskExecution execution = new LazyTaskExecution();
                 execution.inputFilesSnapshotId = decoder.readLong();
                 execution.outputFilesSnapshotId = decoder.readLong();
+                execution.setInputFilesHash(readHash(decoder));
+                execution.setOutputFilesHash(readHash(decoder));
                 execution.setTaskClass(decoder.readString());
                 int outputFiles = decoder.readInt();
                 Set<String> files = new HashSet<String>();
@@ -245,31 +283,30 @@ public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
                     files.add(decoder.readString());
                 }
                 execution.setOutputFiles(files);
-
-                boolean inputProperties = decoder.readBoolean();
-                if (inputProperties) {
-                    Map<String, Object> map = inputPropertiesSerializer.read(decoder);
-                    execution.setInputProperties(map);
-                } else {
-                    execution.setInputProperties(new HashMap<String, Object>());
-                }
+                execution.inputPropertiesBytes = decoder.readBinary();
                 return execution;
             }
 
             public void write(Encoder encoder, LazyTaskExecution execution) throws Exception {
                 encoder.writeLong(execution.inputFilesSnapshotId);
                 encoder.writeLong(execution.outputFilesSnapshotId);
+                writeHash(encoder, execution.getInputFilesHash());
+                writeHash(encoder, execution.getOutputFilesHash());
                 encoder.writeString(execution.getTaskClass());
                 encoder.writeInt(execution.getOutputFiles().size());
                 for (String outputFile : execution.getOutputFiles()) {
                     encoder.writeString(outputFile);
                 }
-                if (execution.getInputProperties() == null || execution.getInputProperties().isEmpty()) {
-                    encoder.writeBoolean(false);
-                } else {
-                    encoder.writeBoolean(true);
-                    inputPropertiesSerializer.write(encoder, execution.getInputProperties());
-                }
+                encoder.writeBinary(execution.getInputPropertiesBytes());
+            }
+
+            private static HashCode readHash(Decoder decoder) throws Exception {
+                byte[] bytes = decoder.readBinary();
+                return bytes.length == 0 ? null : HashCode.fromBytes(bytes);
+            }
+
+            private static void writeHash(Encoder encoder, HashCode hash) throws Exception {
+                encoder.writeBinary(hash == null ? NO_BYTES : hash.asBytes());
             }
         }
     }
@@ -15,9 +15,12 @@
  */
 package org.gradle.api.internal.changedetection.state;
 
+import org.gradle.api.internal.hash.FileHashFunction;
+import org.gradle.api.internal.hash.FileHashListener;
 import org.gradle.api.internal.hash.Hasher;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.PersistentStore;
+import org.gradle.internal.Factory;
 import org.gradle.messaging.serialize.Decoder;
 import org.gradle.messaging.serialize.Encoder;
 import org.gradle.messaging.serialize.Serializer;
@@ -27,37 +30,102 @@ import java.io.File;
 public class CachingFileSnapshotter implements FileSnapshotter {
     private final PersistentIndexedCache<File, FileInfo> cache;
     private final Hasher hasher;
+    private final FileHashFunction hashFunction;
+    private final FileHashListener listener;
+    private final PersistentStore store;
+    private final InMemoryFileSnapshotCache recentSnapshots;
+    private final WatchedFileSnapshotCache watchedSnapshots;
     private final FileInfoSerializer serializer = new FileInfoSerializer();
 
     public CachingFileSnapshotter(Hasher hasher, PersistentStore store) {
+        this(hasher, FileHashFunction.MD5, store, new InMemoryFileSnapshotCache(), new WatchedFileSnapshotCache(null), null);
+    }
+
+    public CachingFileSnapshotter(FileHashFunction hashFunction, PersistentStore store, InMemoryFileSnapshotCache recentSnapshots, WatchedFileSnapshotCache watchedSnapshots,
+                                  FileHashListener listener) {
+        this(hashFunction.createHasher(), hashFunction, store, recentSnapshots, watchedSnapshots, listener);
+    }
+
+    private CachingFileSnapshotter(Hasher hasher, FileHashFunction hashFunction, PersistentStore store, InMemoryFileSnapshotCache recentSnapshots,
+                                   WatchedFileSnapshotCache watchedSnapshots, FileHashListener listener) {
         this.hasher = hasher;
+        this.hashFunction = hashFunction;
+        this.listener = listener;
+        this.store = store;
+        this.recentSnapshots = recentSnapshots;
+        this.watchedSnapshots = watchedSnapshots;
         this.cache = store.createCache("fileHashes", File.class, serializer);
     }
 
     public FileInfo snapshot(File file) {
-        FileInfo info = cache.get(file);
+        FileInfo info = watchedSnapshots.getUnchanged(file);
+        if (info != null && info.hashFunction == hashFunction) {
+            return info;
+        }
 
+        WatchedFileSnapshotCache.WatchedDirectory directory = watchedSnapshots.watchParent(file);
+        info = snapshotFile(file);
+        watchedSnapshots.retain(file, info, directory);
+        return info;
+    }
+
+    private FileInfo snapshotFile(final File file) {
         long length = file.length();
         long timestamp = file.lastModified();
-        if (info != null && length == info.length && timestamp == info.timestamp) {
+        String path = file.getAbsolutePath();
+
+        FileInfo info = recentSnapshots.get(path);
+        if (isUpToDate(info, length, timestamp)) {
             return info;
         }
 
-        byte[] hash = hasher.hash(file);
-        info = new FileInfo(hash, length, timestamp);
+        info = cache.get(file);
+        if (isUpToDate(info, length, timestamp)) {
+            recentSnapshots.put(path, info);
+            return info;
+        }
+
+        // Release the cache lock while hashing, so that other threads can use the cache in the meantime
+        byte[] hash = store.longRunningOperation(String.format("Hash %s", file), new Factory<byte[]>() {
+            public byte[] create() {
+                return hash(file);
+            }
+        });
+        info = new FileInfo(hash, length, timestamp, hashFunction);
         cache.put(file, info);
+        recentSnapshots.put(path, info);
         return info;
     }
 
+    private boolean isUpToDate(FileInfo info, long length, long timestamp) {
+        return info != null && length == info.length && timestamp == info.timestamp && hashFunction == info.hashFunction;
+    }
+
+    private byte[] hash(File file) {
+        if (listener == null) {
+            return hasher.hash(file);
+        }
+        long start = System.nanoTime();
+        byte[] hash = hasher.hash(file);
+        listener.fileHashed(file, file.length(), System.nanoTime() - start);
+        return hash;
+    }
+
     public static class FileInfo implements FileSnapshot {
         private final byte[] hash;
         private final long timestamp;
         private final long length;
+        private final FileHashFunction hashFunction;
 
         public FileInfo(byte[] hash, long length, long timestamp) {
+            this(hash, length, timestamp, FileHashFunction.MD5);
+        }
+
+        public FileInfo(byte[] hash, long length, long timestamp, FileHashFunction hashFunction) {
             this.hash = hash;
             this.length = length;
             this.timestamp = timestamp;
+            this.hashFunction = hashFunction;
         }
 
         public byte[] getHash() {
@@ -70,13 +138,16 @@ public class CachingFileSnapshotter implements FileSnapshotter {
             byte[] hash = decoder.readBinary();
             long timestamp = decoder.readLong();
             long length = decoder.readLong();
-            return new FileInfo(hash, length, timestamp);
+            // An unknown function is treated as stale, so that the file is hashed again
+            FileHashFunction hashFunction = FileHashFunction.fromId(decoder.readByte());
+            return new FileInfo(hash, length, timestamp, hashFunction);
         }
 
         public void write(Encoder encoder, FileInfo value) throws Exception {
             encoder.writeBinary(value.hash);
             encoder.writeLong(value.timestamp);
             encoder.writeLong(value.length);
+            encoder.writeByte(value.hashFunction.getId());
         }
     }
 }
@@ -0,0 +1,425 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.gradle.util.ChangeListener;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * An immutable map from absolute path to file snapshot, which uses much less heap than a {@link HashMap} for large file collections.
+ *
+ * <p>Each path is split into its parent directory and its name. The parent directory strings are interned, so that they are shared by the entries
+ * of the map and by other snapshots of files in the same directories. The entries are sorted by parent directory and then name, and are stored in
+ * parallel arrays, with the file hashes packed into a single array. Lookups use a binary search, and snapshot objects are created on demand.</p>
+ *
+ * <p>Because of this ordering, the entries of each directory, and of each directory tree, are stored next to each other. This is used to calculate
+ * a hash for the content of each directory and each directory tree, so that unchanged trees can be skipped with a single comparison when looking
+ * for changes. See {@link #getRootHash()} and {@link #iterateChangesSince(CompactFileSnapshotMap)}.</p>
+ */
+class CompactFileSnapshotMap extends AbstractMap<String, DefaultFileCollectionSnapshotter.IncrementalFileSnapshot> {
+    private static final Interner<String> DIRECTORIES = Interners.newWeakInterner();
+    private static final HashFunction TREE_HASH = Hashing.murmur3_128();
+    private static final byte DIR = 1;
+    private static final byte MISSING = 2;
+    private static final byte FILE = 3;
+    private static final DefaultFileCollectionSnapshotter.DirSnapshot DIR_SNAPSHOT = new DefaultFileCollectionSnapshotter.DirSnapshot();
+    private static final DefaultFileCollectionSnapshotter.MissingFileSnapshot MISSING_SNAPSHOT = new DefaultFileCollectionSnapshotter.MissingFileSnapshot();
+
+    private final String[] parents;
+    private final String[] names;
+    private final byte[] kinds;
+    private final int[] hashOffsets;
+    private final byte[] hashes;
+    private Set<Entry<String, DefaultFileCollectionSnapshotter.IncrementalFileSnapshot>> entrySet;
+    private DirectoryTree tree;
+
+    private CompactFileSnapshotMap(String[] parents, String[] names, byte[] kinds, int[] hashOffsets, byte[] hashes) {
+        this.parents = parents;
+        this.names = names;
+        this.kinds = kinds;
+        this.hashOffsets = hashOffsets;
+        this.hashes = hashes;
+    }
+
+    static CompactFileSnapshotMap of(Map<String, DefaultFileCollectionSnapshotter.IncrementalFileSnapshot> snapshots) {
+        if (snapshots instanceof CompactFileSnapshotMap) {
+            return (CompactFileSnapshotMap) snapshots;
+        }
+
+        List<SplitPath> paths = new ArrayList<SplitPath>(snapshots.size());
+        int hashesLength = 0;
+        for (Entry<String, DefaultFileCollectionSnapshotter.IncrementalFileSnapshot> entry : snapshots.entrySet()) {
+            SplitPath path = new SplitPath(entry.getKey(), entry.getValue());
+            paths.add(path);
+            if (entry.getValue() instanceof DefaultFileCollectionSnapshotter.FileHashSnapshot) {
+                hashesLength += ((DefaultFileCollectionSnapshotter.FileHashSnapshot) entry.getValue()).hash.length;
+            }
+        }
+        Collections.sort(paths);
+
+        int count = paths.size();
+        String[] parents = new String[count];
+        String[] names = new String[count];
+        byte[] kinds = new byte[count];
+        int[] hashOffsets = new int[count + 1];
+        byte[] hashes = new byte[hashesLength];
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            SplitPath path = paths.get(i);
+            parents[i] = DIRECTORIES.intern(path.parent);
+            names[i] = path.name;
+            hashOffsets[i] = offset;
+            if (path.snapshot instanceof DefaultFileCollectionSnapshotter.FileHashSnapshot) {
+                byte[] hash = ((DefaultFileCollectionSnapshotter.FileHashSnapshot) path.snapshot).hash;
+                System.arraycopy(hash, 0, hashes, offset, hash.length);
+                offset += hash.length;
+                kinds[i] = FILE;
+            } else if (path.snapshot instanceof DefaultFileCollectionSnapshotter.DirSnapshot) {
+                kinds[i] = DIR;
+            } else if (path.snapshot instanceof DefaultFileCollectionSnapshotter.MissingFileSnapshot) {
+                kinds[i] = MISSING;
+            } else {
+                throw new IllegalArgumentException(String.format("Unsupported file snapshot %s.", path.snapshot));
+            }
+        }
+        hashOffsets[count] = offset;
+        return new CompactFileSnapshotMap(parents, names, kinds, hashOffsets, hashes);
+    }
+
+    @Override
+    public int size() {
+        return names.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public DefaultFileCollectionSnapshotter.IncrementalFileSnapshot get(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : snapshotAt(index);
+    }
+
+    @Override
+    public Set<Entry<String, DefaultFileCollectionSnapshotter.IncrementalFileSnapshot>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Entry<String, DefaultFileCollectionSnapshotter.IncrementalFileSnapshot>>() {
+                @Override
+                public Iterator<Entry<String, DefaultFileCollectionSnapshotter.IncrementalFileSnapshot>> iterator() {
+                    return new Iterator<Entry<String, DefaultFileCollectionSnapshotter.IncrementalFileSnapshot>>() {
+                        private int next;
+
+                        public boolean hasNext() {
+                            return next < names.length;
+                        }
+
+                        public Entry<String, DefaultFileCollectionSnapshotter.IncrementalFileSnapshot> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            return entryAt(next++);
+                        }
+
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return names.length;
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    /**
+     * Returns a hash of all paths and file snapshots in this map. Two maps with the same root hash contain the same entries.
+     */
+    public HashCode getRootHash() {
+        return getTree().rootHash;
+    }
+
+    /**
+     * Returns a hash of all file snapshots in this map and of their paths relative to the given directory. The absolute paths of files outside the
+     * directory are used. Unlike the root hash, this hash does not change when the directory is moved, for example to another checkout of a build.
+     */
+    public HashCode getRelativeHash(File baseDir) {
+        String basePath = baseDir.getAbsolutePath();
+        if (!basePath.endsWith(File.separator)) {
+            basePath += File.separator;
+        }
+        Hasher hasher = TREE_HASH.newHasher();
+        hasher.putInt(names.length);
+        String parent = null;
+        String relativeParent = null;
+        boolean relative = false;
+        for (int i = 0; i < names.length; i++) {
+            if (!parents[i].equals(parent)) {
+                parent = parents[i];
+                relative = parent.startsWith(basePath);
+                relativeParent = relative ? parent.substring(basePath.length()).replace(File.separatorChar, '/') : parent;
+            }
+            hasher.putBoolean(relative);
+            hasher.putInt(relativeParent.length()).putUnencodedChars(relativeParent);
+            hasher.putInt(names[i].length()).putUnencodedChars(names[i]).putByte(kinds[i]);
+            hasher.putInt(hashOffsets[i + 1] - hashOffsets[i]).putBytes(hashes, hashOffsets[i], hashOffsets[i + 1] - hashOffsets[i]);
+        }
+        return hasher.hash();
+    }
+
+    /**
+     * Returns an iterator over the entries which have been added, removed or changed since the given map was created. Directories whose content
+     * has not changed are skipped without comparing their entries.
+     */
+    public ChangeIterator iterateChangesSince(CompactFileSnapshotMap oldMap) {
+        return new ChangeIterator(this, oldMap);
+    }
+
+    private DirectoryTree getTree() {
+        if (tree == null) {
+            tree = new DirectoryTree();
+        }
+        return tree;
+    }
+
+    private DefaultFileCollectionSnapshotter.IncrementalFileSnapshot snapshotAt(int index) {
+        switch (kinds[index]) {
+            case DIR:
+                return DIR_SNAPSHOT;
+            case MISSING:
+                return MISSING_SNAPSHOT;
+            default:
+                return new DefaultFileCollectionSnapshotter.FileHashSnapshot(Arrays.copyOfRange(hashes, hashOffsets[index], hashOffsets[index + 1]));
+        }
+    }
+
+    private Entry<String, DefaultFileCollectionSnapshotter.IncrementalFileSnapshot> entryAt(int index) {
+        return new SimpleImmutableEntry<String, DefaultFileCollectionSnapshotter.IncrementalFileSnapshot>(parents[index] + names[index], snapshotAt(index));
+    }
+
+    private int indexOf(Object key) {
+        if (!(key instanceof String)) {
+            return -1;
+        }
+        String path = (String) key;
+        int separator = path.lastIndexOf(File.separatorChar) + 1;
+        String parent = path.substring(0, separator);
+        String name = path.substring(separator);
+
+        int low = 0;
+        int high = names.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int diff = compare(parents[mid], names[mid], parent, name);
+            if (diff < 0) {
+                low = mid + 1;
+            } else if (diff > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private static int compare(String parent1, String name1, String parent2, String name2) {
+        int diff = parent1.compareTo(parent2);
+        return diff != 0 ? diff : name1.compareTo(name2);
+    }
+
+    /**
+     * The hashes of the directories of a map. A directory is the run of entries which share the same parent path. The tree of a directory is the
+     * directory plus the following directories whose parent paths start with its parent path.
+     */
+    private class DirectoryTree {
+        final int[] directoryStarts;
+        final int[] treeEnds;
+        final HashCode[] directoryHashes;
+        final HashCode[] treeHashes;
+        final HashCode rootHash;
+
+        DirectoryTree() {
+            List<Integer> starts = new ArrayList<Integer>();
+            for (int i = 0; i < names.length; i++) {
+                if (i == 0 || !parents[i].equals(parents[i - 1])) {
+                    starts.add(i);
+                }
+            }
+            int count = starts.size();
+            directoryStarts = new int[count + 1];
+            for (int i = 0; i < count; i++) {
+                directoryStarts[i] = starts.get(i);
+            }
+            directoryStarts[count] = names.length;
+
+            directoryHashes = new HashCode[count];
+            for (int directory = 0; directory < count; directory++) {
+                Hasher hasher = TREE_HASH.newHasher();
+                for (int i = directoryStarts[directory]; i < directoryStarts[directory + 1]; i++) {
+                    hasher.putInt(names[i].length()).putUnencodedChars(names[i]).putByte(kinds[i]);
+                    hasher.putInt(hashOffsets[i + 1] - hashOffsets[i]).putBytes(hashes, hashOffsets[i], hashOffsets[i + 1] - hashOffsets[i]);
+                }
+                directoryHashes[directory] = hasher.hash();
+            }
+
+            treeEnds = new int[count];
+            treeHashes = new HashCode[count];
+            for (int directory = 0; directory < count; directory++) {
+                String parent = parents[directoryStarts[directory]];
+                Hasher hasher = TREE_HASH.newHasher();
+                int end = directory;
+                while (end < count && parents[directoryStarts[end]].startsWith(parent)) {
+                    putDirectory(hasher, end);
+                    end++;
+                }
+                treeEnds[directory] = end;
+                treeHashes[directory] = hasher.hash();
+            }
+
+            Hasher hasher = TREE_HASH.newHasher();
+            for (int directory = 0; directory < count; directory++) {
+                putDirectory(hasher, directory);
+            }
+            rootHash = hasher.hash();
+        }
+
+        private void putDirectory(Hasher hasher, int directory) {
+            String parent = parents[directoryStarts[directory]];
+            hasher.putInt(parent.length()).putUnencodedChars(parent).putBytes(directoryHashes[directory].asBytes());
+        }
+    }
+
+    /**
+     * Walks two maps in their sort order, reporting one change at a time.
+     */
+    static class ChangeIterator {
+        private final CompactFileSnapshotMap current;
+        private final CompactFileSnapshotMap old;
+        private final DirectoryTree currentTree;
+        private final DirectoryTree oldTree;
+        private int currentIndex;
+        private int oldIndex;
+        private int currentDirectory;
+        private int oldDirectory;
+
+        ChangeIterator(CompactFileSnapshotMap current, CompactFileSnapshotMap old) {
+            this.current = current;
+            this.old = old;
+            this.currentTree = current.getTree();
+            this.oldTree = old.getTree();
+            if (currentTree.rootHash.equals(oldTree.rootHash)) {
+                currentIndex = current.size();
+                oldIndex = old.size();
+            }
+        }
+
+        /**
+         * Notifies the given listener of the next change, if any.
+         *
+         * @return true if a change was reported, false if there are no more changes.
+         */
+        boolean next(ChangeListener<Entry<String, DefaultFileCollectionSnapshotter.IncrementalFileSnapshot>> listener) {
+            while (currentIndex < current.size() || oldIndex < old.size()) {
+                if (oldIndex >= old.size()) {
+                    listener.added(current.entryAt(currentIndex++));
+                    return true;
+                }
+                if (currentIndex >= current.size()) {
+                    listener.removed(old.entryAt(oldIndex++));
+                    return true;
+                }
+                if (skipUnchangedDirectories()) {
+                    continue;
+                }
+                int diff = compare(current.parents[currentIndex], current.names[currentIndex], old.parents[oldIndex], old.names[oldIndex]);
+                if (diff < 0) {
+                    listener.added(current.entryAt(currentIndex++));
+                    return true;
+                }
+                if (diff > 0) {
+                    listener.removed(old.entryAt(oldIndex++));
+                    return true;
+                }
+                int index = currentIndex++;
+                oldIndex++;
+                if (!current.snapshotAt(index).isUpToDate(old.snapshotAt(oldIndex - 1))) {
+                    listener.changed(current.entryAt(index));
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Skips the current directory, or the tree of the current directory, when both maps are positioned at the start of the same directory
+         * and its content is the same in both.
+         */
+        private boolean skipUnchangedDirectories() {
+            while (currentTree.directoryStarts[currentDirectory + 1] <= currentIndex) {
+                currentDirectory++;
+            }
+            while (oldTree.directoryStarts[oldDirectory + 1] <= oldIndex) {
+                oldDirectory++;
+            }
+            if (currentTree.directoryStarts[currentDirectory] != currentIndex || oldTree.directoryStarts[oldDirectory] != oldIndex
+                    || !current.parents[currentIndex].equals(old.parents[oldIndex])) {
+                return false;
+            }
+            if (currentTree.treeHashes[currentDirectory].equals(oldTree.treeHashes[oldDirectory])) {
+                currentIndex = currentTree.directoryStarts[currentTree.treeEnds[currentDirectory]];
+                oldIndex = oldTree.directoryStarts[oldTree.treeEnds[oldDirectory]];
+                return true;
+            }
+            if (currentTree.directoryHashes[currentDirectory].equals(oldTree.directoryHashes[oldDirectory])) {
+                currentIndex = currentTree.directoryStarts[currentDirectory + 1];
+                oldIndex = oldTree.directoryStarts[oldDirectory + 1];
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static class SplitPath implements Comparable<SplitPath> {
+        final String parent;
+        final String name;
+        final DefaultFileCollectionSnapshotter.IncrementalFileSnapshot snapshot;
+
+        SplitPath(String path, DefaultFileCollectionSnapshotter.IncrementalFileSnapshot snapshot) {
+            int separator = path.lastIndexOf(File.separatorChar) + 1;
+            this.parent = path.substring(0, separator);
+            this.name = path.substring(separator);
+            this.snapshot = snapshot;
+        }
+
+        public int compareTo(SplitPath other) {
+            return compare(parent, name, other.parent, other.name);
+        }
+    }
+}
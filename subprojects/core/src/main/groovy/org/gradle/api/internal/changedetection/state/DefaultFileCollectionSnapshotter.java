@@ -16,8 +16,11 @@
 
 package org.gradle.api.internal.changedetection.state;
 
+import com.google.common.hash.HashCode;
 import org.gradle.api.file.FileCollection;
 import org.gradle.api.internal.file.collections.SimpleFileCollection;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.StoppableExecutor;
 import org.gradle.messaging.serialize.SerializerRegistry;
 import org.gradle.util.ChangeListener;
 import org.gradle.util.NoOpChangeListener;
@@ -27,12 +30,36 @@ import java.math.BigInteger;
 import java.util.*;
 
 public class DefaultFileCollectionSnapshotter implements FileCollectionSnapshotter {
+    /**
+     * The minimum number of files each worker should snapshot. Smaller inputs are snapshotted on the calling thread.
+     */
+    static final int MIN_FILES_PER_WORKER = 200;
+
     private final FileSnapshotter snapshotter;
     private TaskArtifactStateCacheAccess cacheAccess;
+    private final ExecutorFactory executorFactory;
+    private final int maxWorkers;
+    private final WatchedFileSnapshotCache watchedSnapshots;
 
     public DefaultFileCollectionSnapshotter(FileSnapshotter snapshotter, TaskArtifactStateCacheAccess cacheAccess) {
+        this(snapshotter, cacheAccess, null, 1, new WatchedFileSnapshotCache(null));
+    }
+
+    /**
+     * @param maxWorkers The maximum number of threads to use to snapshot a single file collection. When greater than 1, the files
+     * of large collections are snapshotted concurrently using threads created by the given executor factory.
+     * @param watchedSnapshots The snapshots retained from earlier builds. A file with a retained snapshot is known to still be a file.
+     */
+    public DefaultFileCollectionSnapshotter(FileSnapshotter snapshotter, TaskArtifactStateCacheAccess cacheAccess, ExecutorFactory executorFactory, int maxWorkers,
+                                            WatchedFileSnapshotCache watchedSnapshots) {
+        if (maxWorkers < 1) {
+            throw new IllegalArgumentException("Not a valid number of snapshot workers: " + maxWorkers);
+        }
         this.snapshotter = snapshotter;
         this.cacheAccess = cacheAccess;
+        this.executorFactory = executorFactory;
+        this.maxWorkers = maxWorkers;
+        this.watchedSnapshots = watchedSnapshots;
     }
 
     public void registerSerializers(SerializerRegistry<FileCollectionSnapshot> registry) {
@@ -40,29 +67,68 @@ public class DefaultFileCollectionSnapshotter implements FileCollectionSnapshott
     }
 
     public FileCollectionSnapshot emptySnapshot() {
-        return new FileCollectionSnapshotImpl(new HashMap<String, IncrementalFileSnapshot>());
+        return new FileCollectionSnapshotImpl(Collections.<String, IncrementalFileSnapshot>emptyMap());
     }
 
     public FileCollectionSnapshot snapshot(FileCollection input) {
-        final Set<File> files = input.getAsFileTree().getFiles();
+        Set<File> files = input.getAsFileTree().getFiles();
         if (files.isEmpty()) {
             return new FileCollectionSnapshotImpl(Collections.<String, IncrementalFileSnapshot>emptyMap());
         }
-        final Map<String, IncrementalFileSnapshot> snapshots = new HashMap<String, IncrementalFileSnapshot>();
+        List<File> fileList = new ArrayList<File>(files);
+        IncrementalFileSnapshot[] results = new IncrementalFileSnapshot[fileList.size()];
+        int workers = Math.min(maxWorkers, fileList.size() / MIN_FILES_PER_WORKER);
+        if (workers > 1) {
+            snapshotInParallel(fileList, results, workers);
+        } else {
+            snapshot(fileList, 0, fileList.size(), results);
+        }
+
+        // Merge in the order of the input files, regardless of which worker produced each snapshot
+        Map<String, IncrementalFileSnapshot> snapshots = new HashMap<String, IncrementalFileSnapshot>();
+        for (int i = 0; i < results.length; i++) {
+            snapshots.put(fileList.get(i).getAbsolutePath(), results[i]);
+        }
+        return new FileCollectionSnapshotImpl(snapshots);
+    }
+
+    private void snapshotInParallel(final List<File> files, final IncrementalFileSnapshot[] results, int workers) {
+        int batchSize = (files.size() + workers - 1) / workers;
+        StoppableExecutor executor = executorFactory.create("File snapshotter");
+        try {
+            for (int start = batchSize; start < files.size(); start += batchSize) {
+                final int batchStart = start;
+                final int batchEnd = Math.min(start + batchSize, files.size());
+                executor.execute(new Runnable() {
+                    public void run() {
+                        snapshot(files, batchStart, batchEnd, results);
+                    }
+                });
+            }
+            snapshot(files, 0, batchSize, results);
+        } finally {
+            executor.stop();
+        }
+    }
+
+    private void snapshot(final List<File> files, final int start, final int end, final IncrementalFileSnapshot[] results) {
         cacheAccess.useCache("Create file snapshot", new Runnable() {
             public void run() {
-                for (File file : files) {
-                    if (file.isFile()) {
-                        snapshots.put(file.getAbsolutePath(), new FileHashSnapshot(snapshotter.snapshot(file).getHash()));
-                    } else if (file.isDirectory()) {
-                        snapshots.put(file.getAbsolutePath(), new DirSnapshot());
-                    } else {
-                        snapshots.put(file.getAbsolutePath(), new MissingFileSnapshot());
-                    }
+                for (int i = start; i < end; i++) {
+                    results[i] = snapshot(files.get(i));
                 }
             }
         });
-        return new FileCollectionSnapshotImpl(snapshots);
+    }
+
+    private IncrementalFileSnapshot snapshot(File file) {
+        if (watchedSnapshots.getUnchanged(file) != null || file.isFile()) {
+            return new FileHashSnapshot(snapshotter.snapshot(file).getHash());
+        } else if (file.isDirectory()) {
+            return new DirSnapshot();
+        } else {
+            return new MissingFileSnapshot();
+        }
     }
 
     static interface IncrementalFileSnapshot {
@@ -108,10 +174,10 @@ public class DefaultFileCollectionSnapshotter implements FileCollectionSnapshott
     }
 
     static class FileCollectionSnapshotImpl implements FileCollectionSnapshot {
-        final Map<String, IncrementalFileSnapshot> snapshots;
+        final CompactFileSnapshotMap snapshots;
 
         public FileCollectionSnapshotImpl(Map<String, IncrementalFileSnapshot> snapshots) {
-            this.snapshots = snapshots;
+            this.snapshots = CompactFileSnapshotMap.of(snapshots);
         }
 
         public FileCollection getFiles() {
@@ -124,6 +190,14 @@ public class DefaultFileCollectionSnapshotter implements FileCollectionSnapshott
             return new SimpleFileCollection(files);
         }
 
+        public HashCode getHash() {
+            return snapshots.getRootHash();
+        }
+
+        public HashCode getRelativeHash(File baseDir) {
+            return snapshots.getRelativeHash(baseDir);
+        }
+
         public FilesSnapshotSet getSnapshot() {
             return new FilesSnapshotSet() {
                 public FileSnapshot findSnapshot(File file) {
@@ -138,37 +212,23 @@ public class DefaultFileCollectionSnapshotter implements FileCollectionSnapshott
 
         public ChangeIterator<String> iterateChangesSince(FileCollectionSnapshot oldSnapshot) {
             FileCollectionSnapshotImpl other = (FileCollectionSnapshotImpl) oldSnapshot;
-            final Map<String, IncrementalFileSnapshot> otherSnapshots = new HashMap<String, IncrementalFileSnapshot>(other.snapshots);
-            final Iterator<String> currentFiles = snapshots.keySet().iterator();
+            final CompactFileSnapshotMap.ChangeIterator changes = snapshots.iterateChangesSince(other.snapshots);
 
             return new ChangeIterator<String>() {
-                private Iterator<String> removedFiles;
-
-                public boolean next(ChangeListener<String> listener) {
-                    while (currentFiles.hasNext()) {
-                        String currentFile = currentFiles.next();
-                        IncrementalFileSnapshot otherFile = otherSnapshots.remove(currentFile);
-
-                        if (otherFile == null) {
-                            listener.added(currentFile);
-                            return true;
-                        } else if (!snapshots.get(currentFile).isUpToDate(otherFile)) {
-                            listener.changed(currentFile);
-                            return true;
+                public boolean next(final ChangeListener<String> listener) {
+                    return changes.next(new ChangeListener<Map.Entry<String, IncrementalFileSnapshot>>() {
+                        public void added(Map.Entry<String, IncrementalFileSnapshot> element) {
+                            listener.added(element.getKey());
                         }
-                    }
 
-                    // Create a single iterator to use for all of the removed files
-                    if (removedFiles == null) {
-                        removedFiles = otherSnapshots.keySet().iterator();
-                    }
-
-                    if (removedFiles.hasNext()) {
-                        listener.removed(removedFiles.next());
-                        return true;
-                    }
+                        public void removed(Map.Entry<String, IncrementalFileSnapshot> element) {
+                            listener.removed(element.getKey());
+                        }
 
-                    return false;
+                        public void changed(Map.Entry<String, IncrementalFileSnapshot> element) {
+                            listener.changed(element.getKey());
+                        }
+                    });
                 }
             };
         }
@@ -189,21 +249,12 @@ public class DefaultFileCollectionSnapshotter implements FileCollectionSnapshott
             };
         }
 
-        private void diff(Map<String, IncrementalFileSnapshot> snapshots, Map<String, IncrementalFileSnapshot> oldSnapshots,
+        private void diff(CompactFileSnapshotMap snapshots, CompactFileSnapshotMap oldSnapshots,
                           ChangeListener<Map.Entry<String, IncrementalFileSnapshot>> listener) {
-            Map<String, IncrementalFileSnapshot> otherSnapshots = new HashMap<String, IncrementalFileSnapshot>(oldSnapshots);
-            for (Map.Entry<String, IncrementalFileSnapshot> entry : snapshots.entrySet()) {
-                IncrementalFileSnapshot otherFile = otherSnapshots.remove(entry.getKey());
-                if (otherFile == null) {
-                    listener.added(entry);
-                } else if (!entry.getValue().isUpToDate(otherFile)) {
-                    listener.changed(entry);
-                }
-            }
-            for (Map.Entry<String, IncrementalFileSnapshot> entry : otherSnapshots.entrySet()) {
-                listener.removed(entry);
+            CompactFileSnapshotMap.ChangeIterator changes = snapshots.iterateChangesSince(oldSnapshots);
+            while (changes.next(listener)) {
+                // Keep going
             }
         }
-
     }
 }
@@ -15,6 +15,7 @@
  */
 package org.gradle.api.internal.changedetection.state;
 
+import com.google.common.collect.ImmutableSet;
 import org.gradle.api.invocation.Gradle;
 import org.gradle.cache.CacheRepository;
 import org.gradle.cache.PersistentCache;
@@ -25,9 +26,16 @@ import org.gradle.cache.internal.FileLockManager;
 import org.gradle.internal.Factory;
 import org.gradle.messaging.serialize.Serializer;
 
+import java.util.Set;
+
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
 public class DefaultTaskArtifactStateCacheAccess implements TaskArtifactStateCacheAccess {
+    /**
+     * System property to store the frequently updated caches in append-only logs.
+     */
+    public static final String LOG_STRUCTURED_CACHES_PROPERTY = "org.gradle.cache.logstructured";
+    private static final Set<String> WRITE_HEAVY_CACHES = ImmutableSet.of("fileSnapshots", "taskArtifacts");
     private final CacheDecorator inMemoryDecorator;
     private final PersistentCache cache;
 
@@ -47,6 +55,9 @@ public class DefaultTaskArtifactStateCacheAccess implements TaskArtifactStateCac
     public <K, V> PersistentIndexedCache<K, V> createCache(final String cacheName, final Class<K> keyType, final Serializer<V> valueSerializer) {
         PersistentIndexedCacheParameters<K, V> parameters = new PersistentIndexedCacheParameters<K, V>(cacheName, keyType, valueSerializer)
                 .cacheDecorator(inMemoryDecorator);
+        if (WRITE_HEAVY_CACHES.contains(cacheName) && Boolean.getBoolean(LOG_STRUCTURED_CACHES_PROPERTY)) {
+            parameters.logStructured();
+        }
         return cache.createCache(parameters);
     }
 
@@ -16,9 +16,12 @@
 
 package org.gradle.api.internal.changedetection.state;
 
+import com.google.common.hash.HashCode;
 import org.gradle.api.file.FileCollection;
 import org.gradle.util.ChangeListener;
 
+import java.io.File;
+
 /**
  * An immutable snapshot of the contents of a collection of files.
  */
@@ -32,6 +35,17 @@ public interface FileCollectionSnapshot {
 
     FilesSnapshotSet getSnapshot();
 
+    /**
+     * Returns a hash of the paths and contents of the files in this snapshot. Two snapshots with the same hash contain the same files.
+     */
+    HashCode getHash();
+
+    /**
+     * Returns a hash of the contents of the files in this snapshot and of their paths relative to the given directory, so that the hash does not
+     * change when the directory is moved. The absolute paths of files outside the directory are used.
+     */
+    HashCode getRelativeHash(File baseDir);
+
     public interface Diff {
         /**
          * Applies this diff to the given snapshot. Adds any added or changed files in this diff to the given snapshot.
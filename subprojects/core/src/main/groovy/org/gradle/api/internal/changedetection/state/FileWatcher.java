@@ -0,0 +1,57 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.internal.concurrent.Stoppable;
+
+import java.io.File;
+
+/**
+ * Watches directories for changes to their direct children.
+ */
+public interface FileWatcher extends Stoppable {
+    /**
+     * Starts watching the given directory, if not already watched. Any change made to the children of the directory after this method returns
+     * is reported by a later call to {@link #pollChanges(ChangeListener)}.
+     *
+     * @return true if the directory is being watched, false if it cannot be watched.
+     */
+    boolean watch(File directory);
+
+    /**
+     * Reports the changes that have been received since the previous call. Does not block.
+     */
+    void pollChanges(ChangeListener listener);
+
+    /**
+     * Reports all changes made to the watched directories before this method was called, waiting for them to be delivered if required. Reports
+     * lost changes when they are not delivered in time.
+     */
+    void waitForChanges(ChangeListener listener);
+
+    interface ChangeListener {
+        /**
+         * Called when one or more children of the given directory have changed. The directory is no longer watched if it has been removed.
+         */
+        void changed(File directory, boolean stillWatched);
+
+        /**
+         * Called when some changes have been lost, so that all watched directories must be considered changed.
+         */
+        void overflow();
+    }
+}
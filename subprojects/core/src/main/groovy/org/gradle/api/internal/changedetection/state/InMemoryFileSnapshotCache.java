@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.Task;
+import org.gradle.api.execution.TaskActionListener;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A build scoped, in-memory cache of the file snapshots that have been calculated or loaded during the current build, keyed by absolute path.
+ * Consulted before the persistent file hash cache, which saves a cache lookup when the same file is snapshotted for multiple tasks.
+ *
+ * <p>Entries are discarded once a task has executed for any file that the task declares as an output, or that lives in a directory the task declares
+ * as an output.</p>
+ */
+public class InMemoryFileSnapshotCache implements TaskActionListener {
+    private static final char MAX_PATH_CHAR = '\uffff';
+    private final ConcurrentNavigableMap<String, CachingFileSnapshotter.FileInfo> snapshots = new ConcurrentSkipListMap<String, CachingFileSnapshotter.FileInfo>();
+
+    public CachingFileSnapshotter.FileInfo get(String path) {
+        return snapshots.get(path);
+    }
+
+    public void put(String path, CachingFileSnapshotter.FileInfo info) {
+        snapshots.put(path, info);
+    }
+
+    /**
+     * Discards the snapshots for the given files, and any files beneath them.
+     */
+    public void invalidate(Iterable<File> roots) {
+        for (File root : roots) {
+            String path = root.getAbsolutePath();
+            snapshots.remove(path);
+            String prefix = path.endsWith(File.separator) ? path : path + File.separator;
+            snapshots.subMap(prefix, prefix + MAX_PATH_CHAR).clear();
+        }
+    }
+
+    public void beforeActions(Task task) {
+    }
+
+    public void afterActions(Task task) {
+        invalidate(task.getOutputs().getFiles());
+    }
+}
@@ -28,6 +28,12 @@ import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Keeps the entries of the task artifact caches in memory, so that they can be reused by later builds in the same process. The cached entries
+ * of a cache are discarded when another process has updated the cache since the entries were loaded.
+ *
+ * <p>Each cache is capped at a number of entries. The values are softly referenced, so that they are discarded when the heap runs low.</p>
+ */
 public class InMemoryTaskArtifactCache implements CacheDecorator {
     private final static Logger LOG = Logging.getLogger(InMemoryTaskArtifactCache.class);
     private final static Object NULL = new Object();
@@ -41,6 +47,7 @@ public class InMemoryTaskArtifactCache implements CacheDecorator {
         //like using the Weighter and relate the cache size to the available heap, etc.
         CACHE_CAPS.put("fileSnapshots", 10000);
         CACHE_CAPS.put("taskArtifacts", 2000);
+        CACHE_CAPS.put("taskDurations", 2000);
         CACHE_CAPS.put("outputFileStates", 3000);
         CACHE_CAPS.put("fileHashes", 140000);
         CACHE_CAPS.put("compilationState", 1000);
@@ -117,7 +124,7 @@ public class InMemoryTaskArtifactCache implements CacheDecorator {
             } else {
                 Integer maxSize = CACHE_CAPS.get(cacheName);
                 assert maxSize != null : "Unknown cache.";
-                theData = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+                theData = CacheBuilder.newBuilder().maximumSize(maxSize).softValues().recordStats().build();
                 this.cache.put(cacheId, theData);
             }
         }
@@ -16,6 +16,11 @@
 
 package org.gradle.api.internal.changedetection.state;
 
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import org.gradle.api.file.FileCollection;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.internal.id.IdGenerator;
@@ -90,6 +95,7 @@ public class OutputFilesCollectionSnapshotter implements FileCollectionSnapshott
     }
 
     static class OutputFilesSnapshot implements FileCollectionSnapshot {
+        private static final HashFunction ROOT_FILE_IDS_HASH = Hashing.murmur3_128();
         final Map<String, Long> rootFileIds;
         final FileCollectionSnapshot filesSnapshot;
 
@@ -106,6 +112,30 @@ public class OutputFilesCollectionSnapshotter implements FileCollectionSnapshott
             return filesSnapshot.getSnapshot();
         }
 
+        /**
+         * Includes the unique ids of the root files, so that two snapshots with the same hash have no changes between them.
+         */
+        public HashCode getHash() {
+            Hasher hasher = ROOT_FILE_IDS_HASH.newHasher();
+            hasher.putBytes(filesSnapshot.getHash().asBytes());
+            for (Map.Entry<String, Long> entry : new TreeMap<String, Long>(rootFileIds).entrySet()) {
+                hasher.putString(entry.getKey(), Charsets.UTF_8);
+                Long id = entry.getValue();
+                hasher.putBoolean(id != null);
+                if (id != null) {
+                    hasher.putLong(id);
+                }
+            }
+            return hasher.hash();
+        }
+
+        /**
+         * Does not include the unique ids of the root files, as these are specific to this machine.
+         */
+        public HashCode getRelativeHash(File baseDir) {
+            return filesSnapshot.getRelativeHash(baseDir);
+        }
+
         public Diff changesSince(final FileCollectionSnapshot oldSnapshot) {
             OutputFilesSnapshot other = (OutputFilesSnapshot) oldSnapshot;
             return new OutputFilesDiff(rootFileIds, other.rootFileIds, filesSnapshot.changesSince(other.filesSnapshot));
@@ -15,6 +15,8 @@
  */
 package org.gradle.api.internal.changedetection.state;
 
+import com.google.common.hash.HashCode;
+
 import java.util.Map;
 import java.util.Set;
 
@@ -25,6 +27,8 @@ public abstract class TaskExecution {
     private String taskClass;
     private Map<String, Object> inputProperties;
     private Set<String> outputFiles;
+    private HashCode inputFilesHash;
+    private HashCode outputFilesHash;
 
     public Set<String> getOutputFiles() {
         return outputFiles;
@@ -50,6 +54,32 @@ public abstract class TaskExecution {
         this.inputProperties = inputProperties;
     }
 
+    /**
+     * Returns the hash of the output files snapshot, which can be compared without loading the snapshot.
+     *
+     * @return May return null.
+     */
+    public HashCode getOutputFilesHash() {
+        return outputFilesHash;
+    }
+
+    public void setOutputFilesHash(HashCode outputFilesHash) {
+        this.outputFilesHash = outputFilesHash;
+    }
+
+    /**
+     * Returns the hash of the input files snapshot, which can be compared without loading the snapshot.
+     *
+     * @return May return null.
+     */
+    public HashCode getInputFilesHash() {
+        return inputFilesHash;
+    }
+
+    public void setInputFilesHash(HashCode inputFilesHash) {
+        this.inputFilesHash = inputFilesHash;
+    }
+
     /**
      * @return May return null.
      */
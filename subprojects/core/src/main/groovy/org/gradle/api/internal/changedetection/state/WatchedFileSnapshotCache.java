@@ -0,0 +1,201 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.Task;
+import org.gradle.api.execution.TaskActionListener;
+import org.gradle.internal.concurrent.Stoppable;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A process scoped cache of file snapshots that are retained between builds, for files whose parent directory is being watched for changes.
+ * A retained snapshot is trusted without looking at the file again for as long as no change to its directory has been reported, so that
+ * checking the inputs of a task costs time proportional to the number of changed files rather than the total number of files.
+ *
+ * <p>The watcher delivers changes asynchronously. Whenever files may have been changed without the watcher having caught up, such as at the start
+ * of a build or after a task has executed, all pending changes are drained before the next snapshot is served.</p>
+ *
+ * <p>The number of retained snapshots is bounded. When the bound is reached, all snapshots are discarded.</p>
+ *
+ * <p>When no {@link FileWatcher} is available, nothing is retained.</p>
+ */
+public class WatchedFileSnapshotCache implements TaskActionListener, Stoppable {
+    private static final char MAX_PATH_CHAR = '\uffff';
+    private static final int DEFAULT_MAX_SNAPSHOTS = 200000;
+    private final FileWatcher watcher;
+    private final int maxSnapshots;
+    private final AtomicInteger snapshotCount = new AtomicInteger();
+    private final Object drainLock = new Object();
+    private final AtomicInteger changesExpected = new AtomicInteger(1);
+    private volatile int changesDrained;
+    private final ConcurrentMap<String, WatchedDirectory> directories = new ConcurrentHashMap<String, WatchedDirectory>();
+    private final ConcurrentNavigableMap<String, CachingFileSnapshotter.FileInfo> snapshots = new ConcurrentSkipListMap<String, CachingFileSnapshotter.FileInfo>();
+    private final FileWatcher.ChangeListener changeListener = new FileWatcher.ChangeListener() {
+        public void changed(File directory, boolean stillWatched) {
+            String path = directory.getAbsolutePath();
+            // Replace the directory first, so that a snapshot retained concurrently is discarded by the snapshotting thread
+            if (stillWatched) {
+                directories.replace(path, new WatchedDirectory());
+            } else {
+                directories.remove(path);
+            }
+            discard(path);
+        }
+
+        public void overflow() {
+            directories.clear();
+            discardAll();
+        }
+    };
+
+    public WatchedFileSnapshotCache(FileWatcher watcher) {
+        this(watcher, DEFAULT_MAX_SNAPSHOTS);
+    }
+
+    WatchedFileSnapshotCache(FileWatcher watcher, int maxSnapshots) {
+        this.watcher = watcher;
+        this.maxSnapshots = maxSnapshots;
+    }
+
+    public boolean isEnabled() {
+        return watcher != null;
+    }
+
+    /**
+     * Returns the retained snapshot of the given file, provided no change has been reported for its directory. Returns null otherwise.
+     */
+    public CachingFileSnapshotter.FileInfo getUnchanged(File file) {
+        if (watcher == null) {
+            return null;
+        }
+        pollChanges();
+        return snapshots.get(file.getAbsolutePath());
+    }
+
+    /**
+     * Notes that files may have been changed without the watcher having reported it yet, so that all pending changes are drained before the next
+     * snapshot is served.
+     */
+    public void expectChanges() {
+        changesExpected.incrementAndGet();
+    }
+
+    private void pollChanges() {
+        int expected = changesExpected.get();
+        if (changesDrained == expected) {
+            watcher.pollChanges(changeListener);
+            return;
+        }
+        synchronized (drainLock) {
+            if (changesDrained - expected < 0) {
+                watcher.waitForChanges(changeListener);
+                changesDrained = expected;
+            }
+        }
+    }
+
+    /**
+     * Starts watching the directory that contains the given file. Must be called before the file is inspected, so that any change made while
+     * the file is being snapshotted is noticed.
+     *
+     * @return the watched directory, or null if the directory cannot be watched.
+     */
+    public WatchedDirectory watchParent(File file) {
+        if (watcher == null) {
+            return null;
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent == null) {
+            return null;
+        }
+        String path = parent.getAbsolutePath();
+        WatchedDirectory directory = directories.get(path);
+        if (directory != null) {
+            return directory;
+        }
+        if (!watcher.watch(parent)) {
+            return null;
+        }
+        directory = new WatchedDirectory();
+        WatchedDirectory existing = directories.putIfAbsent(path, directory);
+        return existing != null ? existing : directory;
+    }
+
+    /**
+     * Retains the given snapshot, unless a change to the directory has been reported since {@link #watchParent(java.io.File)} was called.
+     */
+    public void retain(File file, CachingFileSnapshotter.FileInfo info, WatchedDirectory directory) {
+        if (directory == null) {
+            return;
+        }
+        String path = file.getAbsolutePath();
+        if (snapshots.put(path, info) == null && snapshotCount.incrementAndGet() > maxSnapshots) {
+            discardAll();
+            return;
+        }
+        if (directories.get(file.getAbsoluteFile().getParent()) != directory) {
+            remove(path);
+        }
+    }
+
+    private void discard(String path) {
+        String prefix = path.endsWith(File.separator) ? path : path + File.separator;
+        for (String child : snapshots.subMap(prefix, prefix + MAX_PATH_CHAR).keySet()) {
+            remove(child);
+        }
+    }
+
+    private void remove(String path) {
+        if (snapshots.remove(path) != null) {
+            snapshotCount.decrementAndGet();
+        }
+    }
+
+    private void discardAll() {
+        snapshots.clear();
+        snapshotCount.set(0);
+    }
+
+    public void beforeActions(Task task) {
+    }
+
+    public void afterActions(Task task) {
+        // Don't wait for the watcher to report changes made by the task
+        for (File file : task.getOutputs().getFiles()) {
+            String path = file.getAbsolutePath();
+            remove(path);
+            discard(path);
+        }
+        // The task may also have changed files that it does not declare as outputs
+        expectChanges();
+    }
+
+    public void stop() {
+        if (watcher != null) {
+            watcher.stop();
+        }
+    }
+
+    public static class WatchedDirectory {
+    }
+}
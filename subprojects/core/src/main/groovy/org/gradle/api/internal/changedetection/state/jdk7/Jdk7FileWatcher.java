@@ -0,0 +1,189 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state.jdk7;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.internal.changedetection.state.FileWatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * A {@link FileWatcher} backed by the JDK 7 {@link WatchService}.
+ *
+ * <p>The watch service delivers events asynchronously. To find out about all changes made up to a given point in time, a sentinel file in a private
+ * directory is modified and events are consumed until the change to the sentinel file has been delivered.</p>
+ *
+ * <p>A watch key stays attached to a directory when the directory is moved, and keeps reporting changes under its original path. So whenever a
+ * watched directory is removed from its parent, or turns out to have moved, all watches are cancelled and lost changes are reported.</p>
+ */
+public class Jdk7FileWatcher implements FileWatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Jdk7FileWatcher.class);
+    private static final long SYNC_TIMEOUT_MILLIS = 2000;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> keys = new HashMap<WatchKey, Path>();
+    private final Map<Path, WatchKey> directories = new HashMap<Path, WatchKey>();
+    private Path sentinelDir;
+    private WatchKey sentinelKey;
+    private long sentinelValue;
+    private boolean changesLost;
+
+    public Jdk7FileWatcher() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public synchronized boolean watch(File directory) {
+        Path path = directory.toPath();
+        try {
+            // Registering a directory that is already watched returns the existing key
+            WatchKey key = path.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+            Path watchedPath = keys.get(key);
+            if (watchedPath != null && !watchedPath.equals(path)) {
+                // The directory has been moved since it was first watched, and the key still reports changes under the old path
+                LOGGER.debug("Watched directory {} has moved to {}.", watchedPath, path);
+                changesLost = true;
+                cancelAll();
+                key = path.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+            }
+            keys.put(key, path);
+            directories.put(path, key);
+            return true;
+        } catch (ClosedWatchServiceException e) {
+            return false;
+        } catch (IOException e) {
+            // Most likely the directory does not exist, or the limit on the number of watches has been reached
+            LOGGER.debug("Could not watch {} for changes.", directory, e);
+            return false;
+        }
+    }
+
+    public synchronized void pollChanges(ChangeListener listener) {
+        try {
+            for (WatchKey key = watchService.poll(); key != null; key = watchService.poll()) {
+                handle(key, listener);
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Stopped
+        }
+        reportLostChanges(listener);
+    }
+
+    public synchronized void waitForChanges(ChangeListener listener) {
+        try {
+            touchSentinel();
+            long waitUntil = System.currentTimeMillis() + SYNC_TIMEOUT_MILLIS;
+            while (true) {
+                long timeout = waitUntil - System.currentTimeMillis();
+                WatchKey key = timeout > 0 ? watchService.poll(timeout, TimeUnit.MILLISECONDS) : null;
+                if (key == null) {
+                    LOGGER.debug("Timed out waiting for file system changes to be delivered.");
+                    changesLost = true;
+                    break;
+                }
+                if (key == sentinelKey) {
+                    key.pollEvents();
+                    key.reset();
+                    break;
+                }
+                handle(key, listener);
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Stopped
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            changesLost = true;
+        } catch (IOException e) {
+            LOGGER.debug("Could not wait for file system changes to be delivered.", e);
+            changesLost = true;
+        }
+        reportLostChanges(listener);
+    }
+
+    private void handle(WatchKey key, ChangeListener listener) {
+        Path directory = keys.get(key);
+        if (directory == null) {
+            // Either the sentinel, or a key that has been cancelled
+            key.pollEvents();
+            key.reset();
+            return;
+        }
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                changesLost = true;
+            } else if (event.kind() == ENTRY_DELETE && directories.containsKey(directory.resolve((Path) event.context()))) {
+                // A watched directory has been removed or moved away, and its key may now report changes under a stale path
+                changesLost = true;
+            }
+        }
+        boolean stillWatched = key.reset();
+        if (!stillWatched) {
+            keys.remove(key);
+            directories.remove(directory);
+        }
+        if (!changesLost) {
+            listener.changed(directory.toFile(), stillWatched);
+        }
+    }
+
+    private void reportLostChanges(ChangeListener listener) {
+        if (changesLost) {
+            cancelAll();
+            changesLost = false;
+            listener.overflow();
+        }
+    }
+
+    private void cancelAll() {
+        for (WatchKey key : keys.keySet()) {
+            key.cancel();
+        }
+        keys.clear();
+        directories.clear();
+    }
+
+    private void touchSentinel() throws IOException {
+        if (sentinelDir == null) {
+            sentinelDir = Files.createTempDirectory("gradle-watch");
+            sentinelKey = sentinelDir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+        }
+        Files.write(sentinelDir.resolve("sentinel"), String.valueOf(++sentinelValue).getBytes());
+    }
+
+    public synchronized void stop() {
+        try {
+            watchService.close();
+            if (sentinelDir != null) {
+                Files.deleteIfExists(sentinelDir.resolve("sentinel"));
+                Files.deleteIfExists(sentinelDir);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
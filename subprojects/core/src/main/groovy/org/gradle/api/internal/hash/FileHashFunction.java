@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.hash;
+
+import org.gradle.api.GradleException;
+
+/**
+ * The hash functions that can be used to detect changes to the content of files.
+ */
+public enum FileHashFunction {
+    MD5(0) {
+        @Override
+        public Hasher createHasher() {
+            return new DefaultHasher();
+        }
+    },
+    MURMUR3_128(1) {
+        @Override
+        public Hasher createHasher() {
+            return new Murmur3Hasher();
+        }
+    };
+
+    /**
+     * System property used to select the hash function. Defaults to {@link #MD5}.
+     */
+    public static final String SYSTEM_PROPERTY = "org.gradle.file.hash";
+
+    private final byte id;
+
+    FileHashFunction(int id) {
+        this.id = (byte) id;
+    }
+
+    /**
+     * Returns a stable identifier for this function, suitable for persisting alongside the hashes it has produced.
+     */
+    public byte getId() {
+        return id;
+    }
+
+    public abstract Hasher createHasher();
+
+    public static FileHashFunction fromId(byte id) {
+        for (FileHashFunction function : values()) {
+            if (function.id == id) {
+                return function;
+            }
+        }
+        return null;
+    }
+
+    public static FileHashFunction fromSystemProperty() {
+        String value = System.getProperty(SYSTEM_PROPERTY);
+        if (value == null) {
+            return MD5;
+        }
+        for (FileHashFunction function : values()) {
+            if (function.name().replace("_", "").equalsIgnoreCase(value.replace("_", "").replace("-", ""))) {
+                return function;
+            }
+        }
+        throw new GradleException(String.format("Unknown file hash function '%s' specified by system property '%s'.", value, SYSTEM_PROPERTY));
+    }
+}
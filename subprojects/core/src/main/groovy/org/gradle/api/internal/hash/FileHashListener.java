@@ -0,0 +1,32 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.hash;
+
+import java.io.File;
+
+/**
+ * Receives notifications when the content of a file has been hashed to detect changes.
+ */
+public interface FileHashListener {
+    /**
+     * Called after the given file has been hashed.
+     *
+     * @param length The number of bytes hashed.
+     * @param elapsedNanos The time taken to hash the file, in nanoseconds.
+     */
+    void fileHashed(File file, long length, long elapsedNanos);
+}
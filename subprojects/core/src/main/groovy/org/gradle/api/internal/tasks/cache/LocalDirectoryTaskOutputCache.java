@@ -0,0 +1,208 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.cache;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.CacheRepository;
+import org.gradle.cache.PersistentCache;
+import org.gradle.cache.internal.FileLockManager;
+import org.gradle.internal.Factory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
+
+/**
+ * Stores task outputs as files in a cache directory under the Gradle user home. When the total size of the stored outputs exceeds the given
+ * maximum, the least recently used outputs are deleted.
+ *
+ * <p>Outputs are read and written outside the cache lock, which is only held to look up and to replace the file for an entry, so that parallel
+ * tasks do not wait for each other's IO.</p>
+ */
+public class LocalDirectoryTaskOutputCache implements TaskOutputCache, Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalDirectoryTaskOutputCache.class);
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final String PART_SUFFIX = ".part";
+    public static final long DEFAULT_MAX_SIZE = 2L * 1024 * 1024 * 1024;
+
+    private final CacheRepository cacheRepository;
+    private final long maxSize;
+    private PersistentCache cache;
+    // The total size of the stored outputs, or -1 when not yet known. Only accessed while holding the cache lock
+    private long totalSize = -1;
+
+    public LocalDirectoryTaskOutputCache(CacheRepository cacheRepository, long maxSize) {
+        this.cacheRepository = cacheRepository;
+        this.maxSize = maxSize;
+    }
+
+    public String getDescription() {
+        return "local task output cache";
+    }
+
+    private synchronized PersistentCache getCache() {
+        if (cache == null) {
+            cache = cacheRepository
+                    .cache("taskOutputs")
+                    .withDisplayName(getDescription())
+                    .withLockOptions(mode(FileLockManager.LockMode.None)) // Lock on demand
+                    .open();
+        }
+        return cache;
+    }
+
+    public boolean load(final String key, final TaskOutputReader reader) {
+        final PersistentCache cache = getCache();
+        final File file = new File(cache.getBaseDir(), key + ENTRY_SUFFIX);
+        InputStream input = cache.useCache("Load task output", new Factory<InputStream>() {
+            public InputStream create() {
+                if (!file.isFile()) {
+                    return null;
+                }
+                // Mark as recently used
+                file.setLastModified(System.currentTimeMillis());
+                try {
+                    return new FileInputStream(file);
+                } catch (FileNotFoundException e) {
+                    throw new UncheckedIOException(String.format("Could not load task outputs from %s.", file), e);
+                }
+            }
+        });
+        if (input == null) {
+            return false;
+        }
+        // Read outside the cache lock. Entries are never modified in place, and an open entry can still be read after it has been deleted
+        try {
+            try {
+                reader.readFrom(new BufferedInputStream(input));
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not load task outputs from %s.", file), e);
+        }
+        return true;
+    }
+
+    public void store(final String key, final TaskOutputWriter writer) {
+        final PersistentCache cache = getCache();
+        final File file = new File(cache.getBaseDir(), key + ENTRY_SUFFIX);
+        // Write to a file with a unique name outside the cache lock, and only hold the lock while moving the file into place
+        final File partFile;
+        try {
+            partFile = File.createTempFile(key + "-", PART_SUFFIX, cache.getBaseDir());
+            try {
+                OutputStream output = new BufferedOutputStream(new FileOutputStream(partFile));
+                try {
+                    writer.writeTo(output);
+                } finally {
+                    output.close();
+                }
+            } catch (IOException e) {
+                partFile.delete();
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not store task outputs in %s.", file), e);
+        }
+        cache.useCache("Store task output", new Runnable() {
+            public void run() {
+                long replacedSize = file.length();
+                file.delete();
+                if (!partFile.renameTo(file)) {
+                    partFile.delete();
+                    throw new UncheckedIOException(String.format("Could not rename %s to %s.", partFile, file));
+                }
+                entryStored(cache.getBaseDir(), file.length() - replacedSize);
+            }
+        });
+    }
+
+    /**
+     * Keeps track of the total size of the stored outputs, and evicts outputs when the maximum size is exceeded. The cache directory is only listed
+     * the first time outputs are stored, and when the total size appears to exceed the maximum size. The total size does not include outputs
+     * stored by other processes since the directory was last listed, so these are picked up the next time the directory is listed.
+     */
+    private void entryStored(File baseDir, long sizeChange) {
+        if (totalSize < 0) {
+            totalSize = evict(baseDir);
+        } else {
+            totalSize += sizeChange;
+            if (totalSize > maxSize) {
+                totalSize = evict(baseDir);
+            }
+        }
+    }
+
+    /**
+     * Deletes the least recently used outputs until the total size of the stored outputs is no more than the maximum size.
+     *
+     * @return The total size of the remaining outputs.
+     */
+    private long evict(File baseDir) {
+        File[] files = baseDir.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.endsWith(ENTRY_SUFFIX);
+            }
+        });
+        if (files == null) {
+            return 0;
+        }
+        long totalSize = 0;
+        for (File file : files) {
+            totalSize += file.length();
+        }
+        if (totalSize <= maxSize) {
+            return totalSize;
+        }
+        List<File> entries = new ArrayList<File>(Arrays.asList(files));
+        Collections.sort(entries, new Comparator<File>() {
+            public int compare(File file1, File file2) {
+                long lastModified1 = file1.lastModified();
+                long lastModified2 = file2.lastModified();
+                return lastModified1 < lastModified2 ? -1 : lastModified1 == lastModified2 ? 0 : 1;
+            }
+        });
+        for (File file : entries) {
+            if (totalSize <= maxSize) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                LOGGER.debug("Evicted {} from {}.", file.getName(), getDescription());
+                totalSize -= length;
+            }
+        }
+        return totalSize;
+    }
+
+    public synchronized void close() {
+        if (cache != null) {
+            try {
+                cache.close();
+            } finally {
+                cache = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.cache;
+
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.StoppableExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+
+/**
+ * Looks up task outputs in the local cache first, and falls back to the remote cache. Outputs found in the remote cache are copied to the
+ * local cache. Stored outputs are written to the local cache and uploaded to the remote cache in the background.
+ *
+ * <p>When the remote cache fails, it is not used for the rest of the build. Failures of the local cache do not affect the remote cache.</p>
+ */
+public class LocalFirstTaskOutputCache implements TaskOutputCache, Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalFirstTaskOutputCache.class);
+
+    private final TaskOutputCache local;
+    private final TaskOutputCache remote;
+    private final StoppableExecutor uploader;
+    private volatile boolean remoteDisabled;
+
+    public LocalFirstTaskOutputCache(TaskOutputCache local, TaskOutputCache remote, ExecutorFactory executorFactory) {
+        this.local = local;
+        this.remote = remote;
+        this.uploader = executorFactory.create("Task output uploader");
+    }
+
+    public String getDescription() {
+        return String.format("%s backed by %s", local.getDescription(), remote.getDescription());
+    }
+
+    public boolean load(final String key, TaskOutputReader reader) {
+        if (local.load(key, reader)) {
+            return true;
+        }
+        if (remoteDisabled) {
+            return false;
+        }
+        File downloaded = download(key);
+        if (downloaded == null) {
+            return false;
+        }
+        try {
+            try {
+                local.store(key, new CopyFromFile(downloaded));
+            } catch (RuntimeException e) {
+                // The remote cache is fine, so keep using it, and use the downloaded outputs directly
+                LOGGER.warn(String.format("Could not store task outputs from %s in %s: %s", remote.getDescription(), local.getDescription(), e.getMessage()));
+                LOGGER.debug("Local task output cache failure.", e);
+                return readFromFile(downloaded, reader);
+            }
+            return local.load(key, reader);
+        } finally {
+            downloaded.delete();
+        }
+    }
+
+    /**
+     * Downloads the outputs for the given key from the remote cache to a temporary file. Only failures to read from the remote cache disable it.
+     *
+     * @return the temporary file, or null if the outputs were not found or could not be downloaded.
+     */
+    private File download(String key) {
+        final File file;
+        try {
+            file = File.createTempFile("task-output", ".tmp");
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not create a temporary file to load task outputs from %s: %s", remote.getDescription(), e.getMessage()));
+            return null;
+        }
+        boolean found = false;
+        try {
+            found = remote.load(key, new TaskOutputReader() {
+                public void readFrom(InputStream input) throws IOException {
+                    OutputStream output = openLocal(file);
+                    boolean copied = false;
+                    try {
+                        byte[] buffer = new byte[8192];
+                        int count;
+                        while ((count = input.read(buffer)) >= 0) {
+                            writeLocal(output, buffer, count);
+                        }
+                        copied = true;
+                    } finally {
+                        if (!copied) {
+                            IOUtils.closeQuietly(output);
+                        }
+                    }
+                    closeLocal(output);
+                }
+            });
+        } catch (LocalFileException e) {
+            LOGGER.warn(String.format("Could not write task outputs from %s to a temporary file: %s", remote.getDescription(), e.getCause().getMessage()));
+        } catch (Exception e) {
+            disableRemote("load task outputs from", e);
+        } finally {
+            if (!found) {
+                file.delete();
+            }
+        }
+        return found ? file : null;
+    }
+
+    private static OutputStream openLocal(File file) {
+        try {
+            return new BufferedOutputStream(new FileOutputStream(file));
+        } catch (IOException e) {
+            throw new LocalFileException(e);
+        }
+    }
+
+    private static void writeLocal(OutputStream output, byte[] buffer, int count) {
+        try {
+            output.write(buffer, 0, count);
+        } catch (IOException e) {
+            throw new LocalFileException(e);
+        }
+    }
+
+    private static void closeLocal(OutputStream output) {
+        try {
+            output.close();
+        } catch (IOException e) {
+            throw new LocalFileException(e);
+        }
+    }
+
+    private static boolean readFromFile(File file, TaskOutputReader reader) {
+        try {
+            InputStream input = new BufferedInputStream(new FileInputStream(file));
+            try {
+                reader.readFrom(input);
+            } finally {
+                input.close();
+            }
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not load task outputs from %s.", file), e);
+        }
+    }
+
+    public void store(final String key, TaskOutputWriter writer) {
+        final File packed = writeToTemporaryFile(writer);
+        boolean uploading = false;
+        try {
+            local.store(key, new CopyFromFile(packed));
+            if (!remoteDisabled) {
+                uploader.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            upload(key, packed);
+                        } finally {
+                            packed.delete();
+                        }
+                    }
+                });
+                uploading = true;
+            }
+        } finally {
+            if (!uploading) {
+                packed.delete();
+            }
+        }
+    }
+
+    private void upload(String key, File packed) {
+        if (remoteDisabled) {
+            return;
+        }
+        try {
+            remote.store(key, new CopyFromFile(packed));
+        } catch (Exception e) {
+            disableRemote("store task outputs in", e);
+        }
+    }
+
+    private void disableRemote(String action, Exception e) {
+        remoteDisabled = true;
+        LOGGER.warn(String.format("Could not %s %s, it will not be used for the rest of the build: %s", action, remote.getDescription(), e.getMessage()));
+        LOGGER.debug("Remote task output cache failure.", e);
+    }
+
+    private static File writeToTemporaryFile(TaskOutputWriter writer) {
+        File file = null;
+        try {
+            file = File.createTempFile("task-output", ".tmp");
+            OutputStream output = new BufferedOutputStream(new FileOutputStream(file));
+            try {
+                writer.writeTo(output);
+            } finally {
+                output.close();
+            }
+            return file;
+        } catch (IOException e) {
+            if (file != null) {
+                file.delete();
+            }
+            throw new UncheckedIOException("Could not write task outputs to a temporary file.", e);
+        }
+    }
+
+    public void close() throws IOException {
+        try {
+            uploader.stop();
+        } finally {
+            if (local instanceof Closeable) {
+                ((Closeable) local).close();
+            }
+        }
+    }
+
+    private static class CopyFromFile implements TaskOutputWriter {
+        private final File file;
+
+        public CopyFromFile(File file) {
+            this.file = file;
+        }
+
+        public void writeTo(OutputStream output) throws IOException {
+            InputStream input = new FileInputStream(file);
+            try {
+                IOUtils.copyLarge(input, output);
+            } finally {
+                input.close();
+            }
+        }
+    }
+
+    /**
+     * Thrown when the outputs downloaded from the remote cache cannot be written locally.
+     */
+    private static class LocalFileException extends RuntimeException {
+        public LocalFileException(IOException cause) {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.cache;
+
+import org.gradle.api.Nullable;
+
+/**
+ * Creates the remote cache that task outputs are shared through. Implementations are registered as services by the modules that provide
+ * a remote transport.
+ */
+public interface RemoteTaskOutputCacheFactory {
+    /**
+     * Creates the remote cache to use for this build.
+     *
+     * @return the remote cache, or null if no remote cache is configured.
+     */
+    @Nullable
+    TaskOutputCache createRemoteCache();
+}
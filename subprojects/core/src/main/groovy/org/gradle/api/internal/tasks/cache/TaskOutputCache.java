@@ -0,0 +1,47 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A store of packed task outputs, indexed by the cache key of the task execution that produced them.
+ */
+public interface TaskOutputCache {
+    /**
+     * Passes the outputs stored for the given key to the given reader.
+     *
+     * @return true if outputs were found for the key, false otherwise.
+     */
+    boolean load(String key, TaskOutputReader reader);
+
+    /**
+     * Stores the outputs written by the given writer for the given key, replacing any outputs already stored for the key.
+     */
+    void store(String key, TaskOutputWriter writer);
+
+    String getDescription();
+
+    interface TaskOutputReader {
+        void readFrom(InputStream input) throws IOException;
+    }
+
+    interface TaskOutputWriter {
+        void writeTo(OutputStream output) throws IOException;
+    }
+}
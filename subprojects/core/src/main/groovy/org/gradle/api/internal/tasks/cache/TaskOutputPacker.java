@@ -0,0 +1,156 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.cache;
+
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.util.GFileUtils;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Packs the declared output files of a task into a zip, and unpacks them again.
+ *
+ * <p>The outputs are sorted by path. Each output is stored under its index in this order: an output file as an entry named {@code <index>}, and an
+ * output directory as an entry named {@code <index>/} followed by its contents. Outputs that do not exist are not stored.</p>
+ */
+public class TaskOutputPacker {
+    public void pack(TaskInternal task, OutputStream output) throws IOException {
+        ZipOutputStream zipOutput = new ZipOutputStream(output);
+        List<File> outputFiles = getOutputFiles(task);
+        for (int i = 0; i < outputFiles.size(); i++) {
+            File outputFile = outputFiles.get(i);
+            if (outputFile.isDirectory()) {
+                packDirectory(outputFile, String.valueOf(i) + "/", zipOutput);
+            } else if (outputFile.isFile()) {
+                packFile(outputFile, String.valueOf(i), zipOutput);
+            }
+        }
+        zipOutput.finish();
+    }
+
+    private void packDirectory(File directory, String path, ZipOutputStream zipOutput) throws IOException {
+        zipOutput.putNextEntry(new ZipEntry(path));
+        zipOutput.closeEntry();
+        File[] children = directory.listFiles();
+        if (children == null) {
+            throw new IOException(String.format("Could not list contents of directory '%s'.", directory));
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                packDirectory(child, path + child.getName() + "/", zipOutput);
+            } else {
+                packFile(child, path + child.getName(), zipOutput);
+            }
+        }
+    }
+
+    private void packFile(File file, String path, ZipOutputStream zipOutput) throws IOException {
+        ZipEntry entry = new ZipEntry(path);
+        entry.setTime(file.lastModified());
+        zipOutput.putNextEntry(entry);
+        InputStream input = new FileInputStream(file);
+        try {
+            IOUtils.copyLarge(input, zipOutput);
+        } finally {
+            input.close();
+        }
+        zipOutput.closeEntry();
+    }
+
+    /**
+     * Replaces the declared outputs of the task with the outputs from the given stream. The outputs are first unpacked into the temporary directory
+     * of the task, and only replace the existing outputs once they have all been unpacked, so that the existing outputs are left in place when the
+     * stream cannot be read.
+     */
+    public void unpack(TaskInternal task, InputStream input) throws IOException {
+        List<File> outputFiles = getOutputFiles(task);
+        File unpackDir = new File(task.getTemporaryDir(), "unpacked-outputs");
+        GFileUtils.deleteQuietly(unpackDir);
+        try {
+            unpackTo(unpackDir, outputFiles.size(), input);
+            for (int i = 0; i < outputFiles.size(); i++) {
+                replace(outputFiles.get(i), new File(unpackDir, String.valueOf(i)));
+            }
+        } finally {
+            GFileUtils.deleteQuietly(unpackDir);
+        }
+    }
+
+    private void unpackTo(File unpackDir, int outputCount, InputStream input) throws IOException {
+        ZipInputStream zipInput = new ZipInputStream(input);
+        ZipEntry entry;
+        while ((entry = zipInput.getNextEntry()) != null) {
+            String name = entry.getName();
+            int separator = name.indexOf('/');
+            String index = separator < 0 ? name : name.substring(0, separator);
+            String path = separator < 0 ? "" : name.substring(separator + 1);
+            if (!isValidIndex(index, outputCount) || path.contains("..")) {
+                throw new IOException(String.format("Invalid entry '%s' in packed task outputs.", name));
+            }
+            File outputFile = new File(unpackDir, index);
+            File file = path.length() == 0 ? outputFile : new File(outputFile, path);
+            if (entry.isDirectory()) {
+                GFileUtils.mkdirs(file);
+            } else {
+                GFileUtils.parentMkdirs(file);
+                OutputStream output = new FileOutputStream(file);
+                try {
+                    IOUtils.copyLarge(zipInput, output);
+                } finally {
+                    output.close();
+                }
+                if (entry.getTime() >= 0) {
+                    file.setLastModified(entry.getTime());
+                }
+            }
+        }
+    }
+
+    private void replace(File outputFile, File unpackedFile) {
+        if (outputFile.isDirectory()) {
+            GFileUtils.deleteDirectory(outputFile);
+        } else if (outputFile.exists()) {
+            GFileUtils.forceDelete(outputFile);
+        }
+        if (unpackedFile.isDirectory()) {
+            GFileUtils.parentMkdirs(outputFile);
+            GFileUtils.moveDirectory(unpackedFile, outputFile);
+        } else if (unpackedFile.isFile()) {
+            GFileUtils.parentMkdirs(outputFile);
+            GFileUtils.moveFile(unpackedFile, outputFile);
+        }
+    }
+
+    private boolean isValidIndex(String index, int outputCount) {
+        try {
+            int value = Integer.parseInt(index);
+            return value >= 0 && value < outputCount && String.valueOf(value).equals(index);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private List<File> getOutputFiles(TaskInternal task) {
+        return new ArrayList<File>(new TreeSet<File>(task.getOutputs().getFiles().getFiles()));
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.execution;
+
+import com.google.common.hash.HashCode;
+import org.gradle.api.execution.TaskActionListener;
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.tasks.TaskExecuter;
+import org.gradle.api.internal.tasks.TaskExecutionContext;
+import org.gradle.api.internal.tasks.TaskStateInternal;
+import org.gradle.api.internal.tasks.cache.TaskOutputCache;
+import org.gradle.api.internal.tasks.cache.TaskOutputPacker;
+import org.gradle.api.tasks.CacheableTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A {@link TaskExecuter} which restores the outputs of a cacheable task from a {@link TaskOutputCache} instead of executing the task, and stores
+ * the outputs of the task in the cache after executing it. Restoring the outputs is reported to the {@link TaskActionListener} in the same way as
+ * executing the actions of the task, so that anything that holds state about the outputs of the task discards that state.
+ */
+public class SkipCachedTaskExecuter implements TaskExecuter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SkipCachedTaskExecuter.class);
+    private final TaskOutputCache cache;
+    private final TaskOutputPacker packer;
+    private final TaskActionListener listener;
+    private final TaskExecuter executer;
+
+    public SkipCachedTaskExecuter(TaskOutputCache cache, TaskOutputPacker packer, TaskActionListener listener, TaskExecuter executer) {
+        this.cache = cache;
+        this.packer = packer;
+        this.listener = listener;
+        this.executer = executer;
+    }
+
+    public void execute(final TaskInternal task, TaskStateInternal state, TaskExecutionContext context) {
+        String cacheKey = null;
+        if (task.getClass().isAnnotationPresent(CacheableTask.class)) {
+            HashCode hash = context.getTaskArtifactState().calculateCacheKey();
+            cacheKey = hash == null ? null : hash.toString();
+        }
+
+        if (cacheKey != null) {
+            try {
+                boolean found = cache.load(cacheKey, new TaskOutputCache.TaskOutputReader() {
+                    public void readFrom(InputStream input) throws IOException {
+                        listener.beforeActions(task);
+                        try {
+                            packer.unpack(task, input);
+                        } finally {
+                            listener.afterActions(task);
+                        }
+                    }
+                });
+                if (found) {
+                    LOGGER.info("Restored outputs of {} from {} (cache key {}).", task, cache.getDescription(), cacheKey);
+                    state.setDidWork(true);
+                    state.skipped("FROM-CACHE");
+                    return;
+                }
+            } catch (RuntimeException e) {
+                LOGGER.warn(String.format("Could not restore outputs of %s from %s. Executing the task instead.", task, cache.getDescription()), e);
+            }
+        }
+
+        executer.execute(task, state, context);
+
+        if (cacheKey != null && state.getFailure() == null) {
+            try {
+                cache.store(cacheKey, new TaskOutputCache.TaskOutputWriter() {
+                    public void writeTo(OutputStream output) throws IOException {
+                        packer.pack(task, output);
+                    }
+                });
+            } catch (RuntimeException e) {
+                LOGGER.warn(String.format("Could not store outputs of %s in %s.", task, cache.getDescription()), e);
+            }
+        }
+    }
+}
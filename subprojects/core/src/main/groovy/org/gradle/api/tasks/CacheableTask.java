@@ -0,0 +1,34 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.tasks;
+
+import org.gradle.api.Incubating;
+
+import java.lang.annotation.*;
+
+/**
+ * <p>Marks a task type whose outputs can be reused from an earlier execution with the same inputs, when the build is run with the
+ * {@code org.gradle.cache.tasks} system property set to {@code true}.</p>
+ *
+ * <p>The outputs of a task of this type must depend only on the task type, its declared input properties and its declared input files. When the
+ * outputs are restored, the declared output files and directories are replaced, so they must not be shared with other tasks.</p>
+ */
+@Incubating
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Inherited
+public @interface CacheableTask {
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.tasks;
+
+import org.gradle.api.Incubating;
+
+import java.lang.annotation.*;
+
+/**
+ * <p>Marks a task type as safe to execute at the same time as other tasks of the same project, when the build is run with {@code --parallel}.</p>
+ *
+ * <p>Two tasks of the same project are only executed at the same time when both of them are of a type with this annotation, both declare
+ * outputs, and none of the outputs of one task is the same as, inside of, or contains an output of the other task.</p>
+ */
+@Incubating
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Inherited
+public @interface ParallelizableTask {
+}
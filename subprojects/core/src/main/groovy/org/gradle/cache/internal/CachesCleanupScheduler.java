@@ -0,0 +1,95 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.concurrent.StoppableExecutor;
+import org.gradle.util.GradleVersion;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Cleans up the caches directories used by the builds of a long-living process, in the background between builds.
+ *
+ * <p>A cleanup must not run while a build is using the caches, as the locks of this process would conflict with each other. Call {@link #cancelCleanup()}
+ * before starting a build.</p>
+ */
+public class CachesCleanupScheduler implements Stoppable {
+    private static final Logger LOGGER = Logging.getLogger(CachesCleanupScheduler.class);
+    private final FileLockManager lockManager;
+    private final StoppableExecutor executor;
+    private final Object lock = new Object();
+    private final Set<CachesDirectoryCleanup> running = new HashSet<CachesDirectoryCleanup>();
+
+    public CachesCleanupScheduler(FileLockManager lockManager, ExecutorFactory executorFactory) {
+        this.lockManager = lockManager;
+        this.executor = executorFactory.create("Cache cleanup");
+    }
+
+    /**
+     * Cleans up the given caches directory in the background, if it is due to be cleaned up.
+     */
+    public void scheduleCleanup(File cachesDir) {
+        final CachesDirectoryCleanup cleanup = new CachesDirectoryCleanup(cachesDir, GradleVersion.current(), lockManager);
+        synchronized (lock) {
+            running.add(cleanup);
+        }
+        executor.execute(new Runnable() {
+            public void run() {
+                try {
+                    cleanup.cleanupIfDue();
+                } catch (Throwable t) {
+                    LOGGER.debug("Could not clean up caches.", t);
+                } finally {
+                    synchronized (lock) {
+                        running.remove(cleanup);
+                        lock.notifyAll();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Cancels any cleanup that is in progress, and blocks until it has stopped. The cleanup does not wait for the locks of caches that are in use,
+     * so this only waits for the cleanup to finish with the cache that it currently holds, if any.
+     */
+    public void cancelCleanup() {
+        synchronized (lock) {
+            for (CachesDirectoryCleanup cleanup : running) {
+                cleanup.cancel();
+            }
+            while (!running.isEmpty()) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+        }
+    }
+
+    public void stop() {
+        cancelCleanup();
+        executor.stop();
+    }
+}
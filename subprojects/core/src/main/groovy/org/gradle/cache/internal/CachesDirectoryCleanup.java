@@ -0,0 +1,252 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
+import org.gradle.util.GFileUtils;
+import org.gradle.util.GradleVersion;
+
+import java.io.File;
+
+import static org.gradle.cache.internal.FileLockManager.LockMode.Exclusive;
+import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
+
+/**
+ * Removes the caches in a Gradle user home caches directory that have not been used for some time, and compacts the indexed caches that are still in use.
+ *
+ * <p>A cache is used when it is opened, see {@link DefaultPersistentDirectoryStore}. Only the caches in the per-version directories created by
+ * {@link DefaultCacheScopeMapping} are cleaned up, and the contents of a cache are never touched without holding its lock. The lock is taken without waiting
+ * and without asking its owner to release it, and a cache that cannot be locked is skipped. Whether a cache is unused is checked again once its lock is held.
+ * Directories that do not contain a cache are only removed when they are empty.
+ * Only the caches of the current version are compacted, as the indexed caches of other versions may use a different format. The caches in the
+ * project directories, such as the task history, are not cleaned up.</p>
+ */
+public class CachesDirectoryCleanup {
+    public static final String RETENTION_DAYS_PROPERTY = "org.gradle.cache.cleanup.retention";
+    public static final int DEFAULT_RETENTION_DAYS = 30;
+    static final String MARKER_FILE_NAME = "cleanup.properties";
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final int MAX_CACHE_DEPTH = 4;
+    private static final Logger LOGGER = Logging.getLogger(CachesDirectoryCleanup.class);
+    private final File cachesDir;
+    private final GradleVersion currentVersion;
+    private final FileLockManager lockManager;
+    private final long retentionPeriod;
+    private volatile boolean cancelled;
+
+    public CachesDirectoryCleanup(File cachesDir, GradleVersion currentVersion, FileLockManager lockManager) {
+        this(cachesDir, currentVersion, lockManager, Integer.getInteger(RETENTION_DAYS_PROPERTY, DEFAULT_RETENTION_DAYS) * DAY);
+    }
+
+    CachesDirectoryCleanup(File cachesDir, GradleVersion currentVersion, FileLockManager lockManager, long retentionPeriod) {
+        this.cachesDir = cachesDir;
+        this.currentVersion = currentVersion;
+        this.lockManager = lockManager;
+        this.retentionPeriod = retentionPeriod;
+    }
+
+    /**
+     * Requests that a running cleanup stops as soon as it has finished with the current cache. A cache that is locked after the cleanup has been cancelled is released straight away.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Cleans up the caches directory, unless it has already been cleaned up during the last day.
+     */
+    public void cleanupIfDue() {
+        File marker = new File(cachesDir, MARKER_FILE_NAME);
+        long now = System.currentTimeMillis();
+        if (!cachesDir.isDirectory() || marker.lastModified() > now - DAY) {
+            return;
+        }
+        // Touch the marker first, so that other processes do not start a cleanup in the meantime
+        GFileUtils.touch(marker);
+        cleanup(now - retentionPeriod);
+    }
+
+    void cleanup(long unusedSince) {
+        LOGGER.debug("Cleaning up caches in {}.", cachesDir);
+        File[] versionDirs = cachesDir.listFiles();
+        if (versionDirs == null) {
+            return;
+        }
+        for (File versionDir : versionDirs) {
+            if (cancelled) {
+                return;
+            }
+            if (!versionDir.isDirectory() || !isVersionDir(versionDir)) {
+                continue;
+            }
+            boolean current = versionDir.getName().equals(currentVersion.getVersion());
+            cleanupDir(versionDir, unusedSince, current, MAX_CACHE_DEPTH);
+            if (!current && versionDir.delete()) {
+                LOGGER.info("Removed unused caches directory {}.", versionDir);
+            }
+        }
+    }
+
+    private void cleanupDir(File dir, long unusedSince, boolean compact, int depth) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (cancelled) {
+                return;
+            }
+            if (!child.isDirectory()) {
+                continue;
+            }
+            if (isCache(child)) {
+                if (child.lastModified() < unusedSince) {
+                    deleteCache(child, unusedSince);
+                } else if (compact) {
+                    compactCache(child);
+                }
+            } else if (depth > 1) {
+                cleanupDir(child, unusedSince, compact, depth - 1);
+                // Only removes the directory when it is empty, so that a cache created in the meantime is kept
+                child.delete();
+            }
+        }
+    }
+
+    private void deleteCache(File cacheDir, long unusedSince) {
+        FileLock lock = lock(cacheDir);
+        if (lock == null) {
+            return;
+        }
+        File lockFile = null;
+        long lastModified;
+        try {
+            if (cacheDir.lastModified() >= unusedSince) {
+                // Used by another process since it was found
+                return;
+            }
+            LOGGER.info("Removing unused cache {}.", cacheDir);
+            File[] files = cacheDir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (lock.isLockFile(file)) {
+                        lockFile = file;
+                    } else {
+                        GFileUtils.forceDelete(file);
+                    }
+                }
+            }
+            lastModified = cacheDir.lastModified();
+        } catch (RuntimeException e) {
+            LOGGER.debug(String.format("Could not remove cache %s.", cacheDir), e);
+            return;
+        } finally {
+            lock.close();
+        }
+        // The lock file can only be removed once the lock has been released. Leave it in place if another process has started to use the cache in the meantime.
+        String[] names = cacheDir.list();
+        if (lockFile != null && cacheDir.lastModified() == lastModified && names != null && names.length == 1 && names[0].equals(lockFile.getName())) {
+            lockFile.delete();
+        }
+        cacheDir.delete();
+    }
+
+    private void compactCache(File cacheDir) {
+        File[] files = cacheDir.listFiles();
+        if (files == null || !containsIndexedCache(files)) {
+            return;
+        }
+        FileLock lock = lock(cacheDir);
+        if (lock == null) {
+            return;
+        }
+        try {
+            if (!lock.getUnlockedCleanly()) {
+                // The cache will be rebuilt the next time it is used
+                return;
+            }
+            for (File file : files) {
+                if (cancelled) {
+                    return;
+                }
+                if (isIndexedCache(file)) {
+                    compactIndexedCache(file);
+                }
+            }
+        } finally {
+            lock.close();
+        }
+    }
+
+    private void compactIndexedCache(File file) {
+        BTreePersistentIndexedCache<Object, Object> cache = new BTreePersistentIndexedCache<Object, Object>(file, null, null);
+        try {
+            if (cache.compact()) {
+                LOGGER.info("Compacted {}.", file);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.debug(String.format("Could not compact %s.", file), e);
+        } finally {
+            cache.close();
+        }
+    }
+
+    private FileLock lock(File cacheDir) {
+        File propertiesFile = new File(cacheDir, "cache.properties");
+        File lockTarget = propertiesFile.isFile() ? propertiesFile : cacheDir;
+        FileLock lock;
+        try {
+            lock = lockManager.lock(lockTarget, mode(Exclusive).nonBlocking(), String.format("cache directory %s (%s)", cacheDir.getName(), cacheDir));
+        } catch (RuntimeException e) {
+            // In use by this process or another process
+            LOGGER.debug(String.format("Could not lock %s, skipping it.", cacheDir), e);
+            return null;
+        }
+        if (cancelled) {
+            lock.close();
+            return null;
+        }
+        return lock;
+    }
+
+    private boolean isVersionDir(File dir) {
+        try {
+            GradleVersion.version(dir.getName());
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private boolean isCache(File dir) {
+        return new File(dir, "cache.properties").isFile() || new File(dir, dir.getName() + ".lock").isFile();
+    }
+
+    private boolean containsIndexedCache(File[] files) {
+        for (File file : files) {
+            if (isIndexedCache(file)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isIndexedCache(File file) {
+        return file.isFile() && file.getName().endsWith(".bin");
+    }
+}
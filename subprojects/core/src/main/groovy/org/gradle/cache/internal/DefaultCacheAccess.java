@@ -21,6 +21,8 @@ import org.gradle.api.logging.Logging;
 import org.gradle.cache.CacheOpenException;
 import org.gradle.cache.PersistentIndexedCacheParameters;
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
+import org.gradle.cache.internal.btree.BlockCacheStatistics;
+import org.gradle.cache.internal.logstructured.LogStructuredPersistentIndexedCache;
 import org.gradle.cache.internal.cacheops.CacheAccessOperationsStack;
 import org.gradle.cache.internal.filelock.LockOptions;
 import org.gradle.internal.Factories;
@@ -60,13 +62,20 @@ public class    DefaultCacheAccess implements CacheCoordinator {
     private boolean contended;
     private final CacheAccessOperationsStack operations;
     private int cacheClosedCount;
+    private final BlockCacheStatistics blockCacheStatistics;
 
     public DefaultCacheAccess(String cacheDisplayName, File lockTarget, File baseDir, FileLockManager lockManager, CacheInitializationAction initializationAction) {
+        this(cacheDisplayName, lockTarget, baseDir, lockManager, initializationAction, null);
+    }
+
+    public DefaultCacheAccess(String cacheDisplayName, File lockTarget, File baseDir, FileLockManager lockManager, CacheInitializationAction initializationAction,
+                              BlockCacheStatistics blockCacheStatistics) {
         this.cacheDisplayName = cacheDisplayName;
         this.lockTarget = lockTarget;
         this.baseDir = baseDir;
         this.lockManager = lockManager;
         this.initializationAction = initializationAction;
+        this.blockCacheStatistics = blockCacheStatistics;
         this.operations = new CacheAccessOperationsStack();
     }
 
@@ -186,18 +195,23 @@ public class    DefaultCacheAccess implements CacheCoordinator {
             wasStarted = onStartWork();
             return factory.create();
         } finally {
+            boolean releaseFileLock;
             lock.lock();
             try {
-                try {
-                    if (wasStarted) {
-                        onEndWork();
-                    }
-                } finally {
+                releaseFileLock = wasStarted && mustReleaseFileLock();
+                if (!releaseFileLock) {
                     releaseOwnership();
                 }
             } finally {
                 lock.unlock();
             }
+            if (releaseFileLock) {
+                try {
+                    closeFileLock();
+                } finally {
+                    releaseOwnership();
+                }
+            }
         }
     }
 
@@ -241,7 +255,8 @@ public class    DefaultCacheAccess implements CacheCoordinator {
     }
 
     private boolean startLongRunningOperation(String operationDisplayName) {
-        boolean wasEnded;
+        boolean wasEnded = false;
+        boolean releaseFileLock = false;
         lock.lock();
         try {
             if (lockOptions == null || lockOptions.getMode() == Shared) {
@@ -249,11 +264,21 @@ public class    DefaultCacheAccess implements CacheCoordinator {
             }
             if (operations.isInCacheAction()) {
                 checkThreadIsOwner();
-                wasEnded = onEndWork();
+                wasEnded = fileLock != null;
+                releaseFileLock = mustReleaseFileLock();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (releaseFileLock) {
+            // This thread still owns the cache, so the file lock can be closed without holding the state lock
+            closeFileLock();
+        }
+        lock.lock();
+        try {
+            if (operations.isInCacheAction()) {
                 owner = null;
                 condition.signalAll();
-            } else {
-                wasEnded = false;
             }
             operations.pushLongRunningOperation(operationDisplayName);
         } finally {
@@ -263,18 +288,21 @@ public class    DefaultCacheAccess implements CacheCoordinator {
     }
 
     private void finishLongRunningOperation(boolean wasEnded) {
+        boolean inCacheAction;
         lock.lock();
         try {
             operations.popLongRunningOperation();
-            if (operations.isInCacheAction()) {
+            inCacheAction = operations.isInCacheAction();
+            if (inCacheAction) {
                 restoreOwner();
-                if (wasEnded) {
-                    onStartWork();
-                }
             }
         } finally {
             lock.unlock();
         }
+        if (inCacheAction && wasEnded) {
+            // Acquire the file lock without holding the state lock, as the contention action needs the state lock
+            onStartWork();
+        }
     }
 
     private void checkThreadIsOwner() {
@@ -309,9 +337,13 @@ public class    DefaultCacheAccess implements CacheCoordinator {
     }
 
     public <K, V> MultiProcessSafePersistentIndexedCache<K, V> newCache(final PersistentIndexedCacheParameters<K, V> parameters) {
-        final File cacheFile = new File(baseDir, parameters.getCacheName() + ".bin");
-        Factory<BTreePersistentIndexedCache<K, V>> indexedCacheFactory = new Factory<BTreePersistentIndexedCache<K, V>>() {
-            public BTreePersistentIndexedCache<K, V> create() {
+        final boolean logStructured = parameters.isLogStructured();
+        final File cacheFile = new File(baseDir, parameters.getCacheName() + (logStructured ? ".log" : ".bin"));
+        Factory<FileBackedPersistentIndexedCache<K, V>> indexedCacheFactory = new Factory<FileBackedPersistentIndexedCache<K, V>>() {
+            public FileBackedPersistentIndexedCache<K, V> create() {
+                if (logStructured) {
+                    return doCreateLogStructuredCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
+                }
                 return doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
             }
         };
@@ -334,14 +366,18 @@ public class    DefaultCacheAccess implements CacheCoordinator {
     }
 
     <K, V> BTreePersistentIndexedCache<K, V> doCreateCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
-        return new BTreePersistentIndexedCache<K, V>(cacheFile, keySerializer, valueSerializer);
+        return new BTreePersistentIndexedCache<K, V>(cacheFile, keySerializer, valueSerializer, blockCacheStatistics);
+    }
+
+    <K, V> FileBackedPersistentIndexedCache<K, V> doCreateLogStructuredCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        return new LogStructuredPersistentIndexedCache<K, V>(cacheFile, keySerializer, valueSerializer);
     }
 
     private boolean onStartWork() {
         if (fileLock != null) {
             return false;
         }
-        fileLock = lockManager.lock(lockTarget, lockOptions.withMode(Exclusive), cacheDisplayName, operations.getDescription());
+        fileLock = lockManager.lock(lockTarget, lockOptions.withMode(Exclusive).withLeasing(), cacheDisplayName, operations.getDescription());
         if (initializationAction.requiresInitialization(fileLock)) {
             fileLock.writeFile(new Runnable() {
                 public void run() {
@@ -359,14 +395,8 @@ public class    DefaultCacheAccess implements CacheCoordinator {
         return true;
     }
 
-    private boolean onEndWork() {
-        if (fileLock == null) {
-            return false;
-        }
-        if (contended || fileLock.getMode() == Shared) {
-            closeFileLock();
-        }
-        return true;
+    private boolean mustReleaseFileLock() {
+        return fileLock != null && (contended || fileLock.getMode() == Shared);
     }
 
     private FileLock getLock() {
@@ -416,14 +446,15 @@ public class    DefaultCacheAccess implements CacheCoordinator {
                     }
 
                     takeOwnership("Other process requested access to " + cacheDisplayName);
-                    try {
-                        closeFileLock();
-                    } finally {
-                        releaseOwnership();
-                    }
                 } finally {
                     lock.unlock();
                 }
+                // Close the file lock as the owner, but without holding the state lock, so that the lock manager is never called while holding it
+                try {
+                    closeFileLock();
+                } finally {
+                    releaseOwnership();
+                }
             }
         };
     }
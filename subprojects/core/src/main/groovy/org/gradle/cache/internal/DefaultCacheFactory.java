@@ -17,6 +17,7 @@ package org.gradle.cache.internal;
 
 import org.gradle.api.Action;
 import org.gradle.cache.*;
+import org.gradle.cache.internal.btree.BlockCacheStatistics;
 import org.gradle.cache.internal.filelock.LockOptions;
 import org.gradle.internal.Factory;
 import org.gradle.internal.concurrent.CompositeStoppable;
@@ -32,10 +33,16 @@ import java.util.concurrent.locks.ReentrantLock;
 public class DefaultCacheFactory implements CacheFactory {
     private final Map<File, DirCacheReference> dirCaches = new HashMap<File, DirCacheReference>();
     private final FileLockManager lockManager;
+    private final BlockCacheStatistics blockCacheStatistics;
     private final Lock lock = new ReentrantLock();
 
     public DefaultCacheFactory(FileLockManager fileLockManager) {
+        this(fileLockManager, null);
+    }
+
+    public DefaultCacheFactory(FileLockManager fileLockManager, BlockCacheStatistics blockCacheStatistics) {
         this.lockManager = fileLockManager;
+        this.blockCacheStatistics = blockCacheStatistics;
     }
 
     void onOpen(Object cache) {
@@ -76,7 +83,7 @@ public class DefaultCacheFactory implements CacheFactory {
         File canonicalDir = GFileUtils.canonicalise(cacheDir);
         DirCacheReference dirCacheReference = dirCaches.get(canonicalDir);
         if (dirCacheReference == null) {
-            ReferencablePersistentCache cache = new DefaultPersistentDirectoryCache(canonicalDir, displayName, validator, properties, lockOptions, action, lockManager);
+            ReferencablePersistentCache cache = new DefaultPersistentDirectoryCache(canonicalDir, displayName, validator, properties, lockOptions, action, lockManager, blockCacheStatistics);
             cache.open();
             dirCacheReference = new DirCacheReference(cache, properties, lockOptions);
             dirCaches.put(canonicalDir, dirCacheReference);
@@ -98,7 +105,7 @@ public class DefaultCacheFactory implements CacheFactory {
         File canonicalDir = GFileUtils.canonicalise(storeDir);
         DirCacheReference dirCacheReference = dirCaches.get(canonicalDir);
         if (dirCacheReference == null) {
-            ReferencablePersistentCache cache = new DefaultPersistentDirectoryStore(canonicalDir, displayName, lockOptions, lockManager);
+            ReferencablePersistentCache cache = new DefaultPersistentDirectoryStore(canonicalDir, displayName, lockOptions, lockManager, blockCacheStatistics);
             cache.open();
             dirCacheReference = new DirCacheReference(cache, Collections.<String, Object>emptyMap(), lockOptions);
             dirCaches.put(canonicalDir, dirCacheReference);
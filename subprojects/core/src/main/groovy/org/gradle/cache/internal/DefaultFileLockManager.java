@@ -28,6 +28,11 @@ import org.gradle.util.GFileUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 
@@ -35,32 +40,61 @@ import static org.gradle.internal.UncheckedException.throwAsUncheckedException;
 
 /**
  * Uses file system locks on a lock file per target file.
+ *
+ * <p>When lock leasing is enabled, an exclusive lock requested with {@link LockOptions#isLeasable()} is not released when it is closed. Instead, the file system lock is kept until another process
+ * asks for it, so that the lock can be reused by the next operation of this process without acquiring it again.</p>
  */
-public class DefaultFileLockManager implements FileLockManager {
+public class DefaultFileLockManager implements FileLockManager, Stoppable {
     private static final Logger LOGGER = Logging.getLogger(DefaultFileLockManager.class);
     public static final int DEFAULT_LOCK_TIMEOUT = 60000;
+    private static final long LOCK_WAIT_REPORTING_THRESHOLD = 100;
 
     private final Set<File> lockedFiles = new CopyOnWriteArraySet<File>();
+    private final Map<File, DefaultFileLock> leasedLocks = new HashMap<File, DefaultFileLock>();
+    private final Set<File> releasingLeases = new HashSet<File>();
     private final ProcessMetaDataProvider metaDataProvider;
     private final int lockTimeoutMs;
     private final IdGenerator<Long> generator;
     private final FileLockContentionHandler fileLockContentionHandler;
     private final long shortTimeoutMs = 10000;
+    private final boolean leaseLocks;
+    private final FileLockStatistics statistics;
 
     public DefaultFileLockManager(ProcessMetaDataProvider metaDataProvider, FileLockContentionHandler fileLockContentionHandler) {
         this(metaDataProvider, DEFAULT_LOCK_TIMEOUT, fileLockContentionHandler);
     }
 
+    public DefaultFileLockManager(ProcessMetaDataProvider metaDataProvider, FileLockContentionHandler fileLockContentionHandler, boolean leaseLocks) {
+        this(metaDataProvider, DEFAULT_LOCK_TIMEOUT, fileLockContentionHandler, new RandomLongIdGenerator(), leaseLocks);
+    }
+
+    public DefaultFileLockManager(ProcessMetaDataProvider metaDataProvider, FileLockContentionHandler fileLockContentionHandler, boolean leaseLocks,
+                                  FileLockStatistics statistics) {
+        this(metaDataProvider, DEFAULT_LOCK_TIMEOUT, fileLockContentionHandler, new RandomLongIdGenerator(), leaseLocks, statistics);
+    }
+
     public DefaultFileLockManager(ProcessMetaDataProvider metaDataProvider, int lockTimeoutMs, FileLockContentionHandler fileLockContentionHandler) {
         this(metaDataProvider, lockTimeoutMs, fileLockContentionHandler, new RandomLongIdGenerator());
     }
 
     DefaultFileLockManager(ProcessMetaDataProvider metaDataProvider, int lockTimeoutMs, FileLockContentionHandler fileLockContentionHandler,
                            IdGenerator<Long> generator) {
+        this(metaDataProvider, lockTimeoutMs, fileLockContentionHandler, generator, false);
+    }
+
+    DefaultFileLockManager(ProcessMetaDataProvider metaDataProvider, int lockTimeoutMs, FileLockContentionHandler fileLockContentionHandler,
+                           IdGenerator<Long> generator, boolean leaseLocks) {
+        this(metaDataProvider, lockTimeoutMs, fileLockContentionHandler, generator, leaseLocks, null);
+    }
+
+    DefaultFileLockManager(ProcessMetaDataProvider metaDataProvider, int lockTimeoutMs, FileLockContentionHandler fileLockContentionHandler,
+                           IdGenerator<Long> generator, boolean leaseLocks, FileLockStatistics statistics) {
         this.metaDataProvider = metaDataProvider;
         this.lockTimeoutMs = lockTimeoutMs;
         this.fileLockContentionHandler = fileLockContentionHandler;
         this.generator = generator;
+        this.leaseLocks = leaseLocks;
+        this.statistics = statistics;
     }
 
     public FileLock lock(File target, LockOptions options, String targetDisplayName) throws LockTimeoutException {
@@ -72,10 +106,20 @@ public class DefaultFileLockManager implements FileLockManager {
             throw new UnsupportedOperationException(String.format("No %s mode lock implementation available.", options));
         }
         File canonicalTarget = GFileUtils.canonicalise(target);
-        if (!lockedFiles.add(canonicalTarget)) {
-            throw new IllegalStateException(String.format("Cannot lock %s as it has already been locked by this process.", targetDisplayName));
-        }
+        DefaultFileLock leasedLock = lockTarget(canonicalTarget, targetDisplayName);
         try {
+            if (leasedLock != null) {
+                if (leasedLock.canRenew(options)) {
+                    try {
+                        leasedLock.renew(targetDisplayName, operationDisplayName);
+                    } catch (Throwable t) {
+                        leasedLock.release(true);
+                        throw t;
+                    }
+                    return leasedLock;
+                }
+                leasedLock.release(false);
+            }
             int port = fileLockContentionHandler.reservePort();
             return new DefaultFileLock(canonicalTarget, options, targetDisplayName, operationDisplayName, port);
         } catch (Throwable t) {
@@ -84,6 +128,44 @@ public class DefaultFileLockManager implements FileLockManager {
         }
     }
 
+    /**
+     * Marks the given target as locked by this process, waiting for any leased lock on it that is being released. Returns the leased lock on the target, if any.
+     */
+    private DefaultFileLock lockTarget(File target, String targetDisplayName) {
+        synchronized (leasedLocks) {
+            while (releasingLeases.contains(target)) {
+                try {
+                    leasedLocks.wait();
+                } catch (InterruptedException e) {
+                    throw throwAsUncheckedException(e);
+                }
+            }
+            if (!lockedFiles.add(target)) {
+                throw new IllegalStateException(String.format("Cannot lock %s as it has already been locked by this process.", targetDisplayName));
+            }
+            return leasedLocks.remove(target);
+        }
+    }
+
+    /**
+     * Releases all leased locks.
+     */
+    public void stop() {
+        List<DefaultFileLock> locks;
+        synchronized (leasedLocks) {
+            locks = new ArrayList<DefaultFileLock>(leasedLocks.values());
+        }
+        CompositeStoppable stoppable = new CompositeStoppable();
+        for (final DefaultFileLock lock : locks) {
+            stoppable.add(new Stoppable() {
+                public void stop() {
+                    lock.releaseLease();
+                }
+            });
+        }
+        stoppable.stop();
+    }
+
     public void allowContention(FileLock fileLock, Runnable whenContended) {
         DefaultFileLock internalLock = (DefaultFileLock) fileLock;
         fileLockContentionHandler.start(internalLock.lockId, whenContended);
@@ -93,13 +175,16 @@ public class DefaultFileLockManager implements FileLockManager {
         private final File lockFile;
         private final File target;
         private final LockMode mode;
-        private final String displayName;
-        private final String operationDisplayName;
+        private final boolean crossVersion;
+        private String displayName;
+        private String operationDisplayName;
         private java.nio.channels.FileLock lock;
         private LockFileAccess lockFileAccess;
         private LockState lockState;
         private int port;
         private final long lockId;
+        private final boolean leasable;
+        private volatile boolean leased;
 
         public DefaultFileLock(File target, LockOptions options, String displayName, String operationDisplayName, int port) throws Throwable {
             this.port = port;
@@ -118,13 +203,15 @@ public class DefaultFileLockManager implements FileLockManager {
                 lockFile = new File(target.getParentFile(), target.getName() + ".lock");
             }
 
+            crossVersion = options.isUseCrossVersionImplementation();
+            leasable = options.isLeasable();
             GFileUtils.mkdirs(lockFile.getParentFile());
             lockFile.createNewFile();
 
-            LockStateSerializer stateProtocol = options.isUseCrossVersionImplementation() ? new Version1LockStateSerializer() : new DefaultLockStateSerializer();
+            LockStateSerializer stateProtocol = crossVersion ? new Version1LockStateSerializer() : new DefaultLockStateSerializer();
             lockFileAccess = new LockFileAccess(lockFile, new LockStateAccess(stateProtocol));
             try {
-                lockState = lock(options.getMode());
+                lockState = lock(options.getMode(), options.isNonBlocking());
             } catch (Throwable t) {
                 // Also releases any locks
                 lockFileAccess.close();
@@ -178,7 +265,7 @@ public class DefaultFileLockManager implements FileLockManager {
         }
 
         private void assertOpen() {
-            if (lock == null) {
+            if (lock == null || leased) {
                 throw new IllegalStateException("This lock has been closed.");
             }
         }
@@ -191,6 +278,83 @@ public class DefaultFileLockManager implements FileLockManager {
         }
 
         public void close() {
+            if (leased || lockFileAccess != null && lease()) {
+                return;
+            }
+            release(true);
+        }
+
+        private boolean lease() {
+            if (!leaseLocks || !leasable || mode != LockMode.Exclusive || crossVersion || port == -1) {
+                return false;
+            }
+            fileLockContentionHandler.stop(lockId);
+            try {
+                fileLockContentionHandler.start(lockId, new Runnable() {
+                    public void run() {
+                        LOGGER.debug("Releasing leased lock on {}, as it has been requested by another process.", displayName);
+                        releaseLease();
+                    }
+                });
+            } catch (IllegalStateException e) {
+                // No longer listening for lock requests
+                return false;
+            }
+            // Make the lock available for renewal before allowing the target to be locked again
+            synchronized (leasedLocks) {
+                leased = true;
+                leasedLocks.put(target, this);
+            }
+            lockedFiles.remove(target);
+            LOGGER.debug("Keeping lock on {} until it is requested by another process.", displayName);
+            return true;
+        }
+
+        private boolean canRenew(LockOptions options) {
+            return options.getMode() == LockMode.Exclusive && options.isLeasable() && !options.isUseCrossVersionImplementation();
+        }
+
+        private void renew(String displayName, String operationDisplayName) throws Throwable {
+            fileLockContentionHandler.stop(lockId);
+            this.displayName = displayName;
+            this.operationDisplayName = operationDisplayName;
+            leased = false;
+            LOGGER.debug("Reusing leased lock on {}.", displayName);
+            java.nio.channels.FileLock informationRegionLock = lockInformationRegion(LockMode.Exclusive, System.currentTimeMillis() + shortTimeoutMs);
+            if (informationRegionLock == null) {
+                throw new IllegalStateException(String.format("Unable to lock the information region for %s", displayName));
+            }
+            try {
+                lockFileAccess.writeLockInfo(port, lockId, metaDataProvider.getProcessIdentifier(), operationDisplayName);
+            } finally {
+                informationRegionLock.release();
+            }
+        }
+
+        private void releaseLease() {
+            synchronized (leasedLocks) {
+                // The lease may have been renewed in the meantime
+                if (leasedLocks.get(target) != this || !lockedFiles.add(target)) {
+                    return;
+                }
+                leasedLocks.remove(target);
+                releasingLeases.add(target);
+            }
+            try {
+                release(true);
+            } finally {
+                synchronized (leasedLocks) {
+                    releasingLeases.remove(target);
+                    leasedLocks.notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Releases the file system lock. The target remains locked by this process when {@code unlockTarget} is false, so that the caller can lock it again.
+         */
+        private void release(final boolean unlockTarget) {
+            leased = false;
             CompositeStoppable stoppable = new CompositeStoppable();
             stoppable.add(new Stoppable() {
                 public void stop() {
@@ -237,7 +401,9 @@ public class DefaultFileLockManager implements FileLockManager {
                 public void stop() {
                     lock = null;
                     lockFileAccess = null;
-                    lockedFiles.remove(target);
+                    if (unlockTarget) {
+                        lockedFiles.remove(target);
+                    }
                 }
             });
             stoppable.stop();
@@ -247,12 +413,20 @@ public class DefaultFileLockManager implements FileLockManager {
             return mode;
         }
 
-        private LockState lock(FileLockManager.LockMode lockMode) throws Throwable {
+        private LockState lock(FileLockManager.LockMode lockMode, boolean nonBlocking) throws Throwable {
             LOGGER.debug("Waiting to acquire {} lock on {}.", lockMode.toString().toLowerCase(), displayName);
-            long waitUntil = System.currentTimeMillis() + lockTimeoutMs;
+            long startTime = System.currentTimeMillis();
 
             // Lock the state region, with the requested mode
-            java.nio.channels.FileLock stateRegionLock = lockStateRegion(lockMode, waitUntil);
+            java.nio.channels.FileLock stateRegionLock;
+            if (nonBlocking) {
+                stateRegionLock = lockFileAccess.tryLockState(lockMode == LockMode.Shared);
+                if (stateRegionLock == null) {
+                    throw new LockTimeoutException(String.format("Could not lock %s without waiting, as it is currently in use by another Gradle instance.%nLock file: %s", displayName, lockFile));
+                }
+            } else {
+                stateRegionLock = lockStateRegion(lockMode, startTime + lockTimeoutMs);
+            }
             if (stateRegionLock == null) {
                 LockInfo lockInfo = readInformationRegion(System.currentTimeMillis() + shortTimeoutMs);
                 throw new LockTimeoutException(String.format("Timeout waiting to lock %s. It is currently in use by another Gradle instance.%nOwner PID: %s%nOur PID: %s%nOwner Operation: %s%nOur operation: %s%nLock file: %s",
@@ -282,7 +456,15 @@ public class DefaultFileLockManager implements FileLockManager {
                     // Just read the state region
                     lockState = lockFileAccess.readLockState();
                 }
-                LOGGER.debug("Lock acquired.");
+                long waitTime = System.currentTimeMillis() - startTime;
+                if (statistics != null) {
+                    statistics.lockAcquired(displayName, waitTime);
+                }
+                if (waitTime >= LOCK_WAIT_REPORTING_THRESHOLD) {
+                    LOGGER.info("Waited {} ms to acquire {} lock on {}.", waitTime, lockMode.toString().toLowerCase(), displayName);
+                } else {
+                    LOGGER.debug("Lock acquired.");
+                }
                 lock = stateRegionLock;
                 return lockState;
             } catch (Throwable t) {
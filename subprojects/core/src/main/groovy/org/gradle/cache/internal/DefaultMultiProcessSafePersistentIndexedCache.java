@@ -16,20 +16,45 @@
 package org.gradle.cache.internal;
 
 import org.gradle.cache.PersistentIndexedCache;
-import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
 import org.gradle.internal.Factory;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Buffers puts and removes in memory, and writes them to the backing cache in a single batch when the buffer is full or when the cache is closed.
+ * The cache is closed before the file lock is released, so other processes see the updates. The buffer is only accessed through the file access,
+ * so it is only used by the thread that holds the lock.
+ */
 public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements MultiProcessSafePersistentIndexedCache<K, V> {
+    static final int DEFAULT_MAX_PENDING_UPDATES = 500;
+    private static final Object REMOVED = new Object();
+    private static final Object NOT_PENDING = new Object();
     private final FileAccess fileAccess;
-    private final Factory<BTreePersistentIndexedCache<K, V>> factory;
-    private BTreePersistentIndexedCache<K, V> cache;
+    private final Factory<? extends FileBackedPersistentIndexedCache<K, V>> factory;
+    private final int maxPendingUpdates;
+    private final Map<K, Object> pendingUpdates = new LinkedHashMap<K, Object>();
+    private FileBackedPersistentIndexedCache<K, V> cache;
+
+    public DefaultMultiProcessSafePersistentIndexedCache(Factory<? extends FileBackedPersistentIndexedCache<K, V>> factory, FileAccess fileAccess) {
+        this(factory, fileAccess, DEFAULT_MAX_PENDING_UPDATES);
+    }
 
-    public DefaultMultiProcessSafePersistentIndexedCache(Factory<BTreePersistentIndexedCache<K, V>> factory, FileAccess fileAccess) {
+    DefaultMultiProcessSafePersistentIndexedCache(Factory<? extends FileBackedPersistentIndexedCache<K, V>> factory, FileAccess fileAccess, int maxPendingUpdates) {
         this.factory = factory;
         this.fileAccess = fileAccess;
+        this.maxPendingUpdates = maxPendingUpdates;
     }
 
     public V get(final K key) {
+        Object pendingValue = withBuffer(new Factory<Object>() {
+            public Object create() {
+                return pendingUpdates.containsKey(key) ? pendingUpdates.get(key) : NOT_PENDING;
+            }
+        });
+        if (pendingValue != NOT_PENDING) {
+            return pendingValue == REMOVED ? null : (V) pendingValue;
+        }
         final PersistentIndexedCache<K, V> cache = getCache();
         try {
             return fileAccess.readFile(new Factory<V>() {
@@ -42,28 +67,70 @@ public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements Mult
         }
     }
 
-    public void put(final K key, final V value) {
-        final PersistentIndexedCache<K, V> cache = getCache();
-        // Use writeFile because the cache can internally recover from datafile
-        // corruption, so we don't care at this level if it's corrupt
-        fileAccess.writeFile(new Runnable() {
-            public void run() {
-                cache.put(key, value);
+    public void put(K key, V value) {
+        addPendingUpdate(key, value);
+    }
+
+    public void remove(K key) {
+        addPendingUpdate(key, REMOVED);
+    }
+
+    private void addPendingUpdate(final K key, final Object value) {
+        boolean full = withBuffer(new Factory<Boolean>() {
+            public Boolean create() {
+                // Remove first, so the entry moves to the end of the batch
+                pendingUpdates.remove(key);
+                pendingUpdates.put(key, value);
+                return pendingUpdates.size() >= maxPendingUpdates;
             }
         });
+        if (full) {
+            flush();
+        }
     }
 
-    public void remove(final K key) {
+    private void flush() {
+        boolean empty = withBuffer(new Factory<Boolean>() {
+            public Boolean create() {
+                return pendingUpdates.isEmpty();
+            }
+        });
+        if (empty) {
+            return;
+        }
         final PersistentIndexedCache<K, V> cache = getCache();
         // Use writeFile because the cache can internally recover from datafile
         // corruption, so we don't care at this level if it's corrupt
         fileAccess.writeFile(new Runnable() {
             public void run() {
-                cache.remove(key);
+                try {
+                    for (Map.Entry<K, Object> entry : pendingUpdates.entrySet()) {
+                        if (entry.getValue() == REMOVED) {
+                            cache.remove(entry.getKey());
+                        } else {
+                            cache.put(entry.getKey(), (V) entry.getValue());
+                        }
+                    }
+                } finally {
+                    pendingUpdates.clear();
+                }
             }
         });
     }
 
+    /**
+     * Runs the given action against the buffer of pending updates. Uses readFile, which checks that the lock is held by the current thread without
+     * writing to the lock file.
+     */
+    private <T> T withBuffer(Factory<T> action) {
+        try {
+            return fileAccess.readFile(action);
+        } catch (FileIntegrityViolationException e) {
+            // The lock is held, but the file was not unlocked cleanly. The buffer does not depend on the contents of the file
+            return action.create();
+        }
+    }
+
     public void onStartWork(String operationDisplayName, FileLock.State currentCacheState) {
     }
 
@@ -71,6 +138,14 @@ public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements Mult
     }
 
     public void close() {
+        try {
+            flush();
+        } finally {
+            closeCache();
+        }
+    }
+
+    private void closeCache() {
         if (cache != null) {
             try {
                 fileAccess.writeFile(new Runnable() {
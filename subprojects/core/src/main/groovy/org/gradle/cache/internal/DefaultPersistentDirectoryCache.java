@@ -18,6 +18,7 @@ package org.gradle.cache.internal;
 import org.gradle.api.Action;
 import org.gradle.cache.CacheValidator;
 import org.gradle.cache.PersistentCache;
+import org.gradle.cache.internal.btree.BlockCacheStatistics;
 import org.gradle.cache.internal.filelock.LockOptions;
 import org.gradle.util.GFileUtils;
 import org.gradle.util.GUtil;
@@ -37,7 +38,12 @@ public class DefaultPersistentDirectoryCache extends DefaultPersistentDirectoryS
     private boolean didRebuild;
 
     public DefaultPersistentDirectoryCache(File dir, String displayName, CacheValidator validator, Map<String, ?> properties, LockOptions lockOptions, Action<? super PersistentCache> initAction, FileLockManager lockManager) {
-        super(dir, displayName, lockOptions, lockManager);
+        this(dir, displayName, validator, properties, lockOptions, initAction, lockManager, null);
+    }
+
+    public DefaultPersistentDirectoryCache(File dir, String displayName, CacheValidator validator, Map<String, ?> properties, LockOptions lockOptions, Action<? super PersistentCache> initAction, FileLockManager lockManager,
+                                           BlockCacheStatistics blockCacheStatistics) {
+        super(dir, displayName, lockOptions, lockManager, blockCacheStatistics);
         this.validator = validator;
         this.initAction = initAction;
         propertiesFile = new File(dir, "cache.properties");
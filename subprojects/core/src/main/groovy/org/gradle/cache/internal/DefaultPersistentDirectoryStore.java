@@ -18,6 +18,7 @@ package org.gradle.cache.internal;
 import org.gradle.cache.CacheOpenException;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.PersistentIndexedCacheParameters;
+import org.gradle.cache.internal.btree.BlockCacheStatistics;
 import org.gradle.cache.internal.filelock.LockOptions;
 import org.gradle.internal.Factory;
 import org.gradle.messaging.serialize.Serializer;
@@ -26,16 +27,23 @@ import org.gradle.util.GFileUtils;
 import java.io.File;
 
 public class DefaultPersistentDirectoryStore implements ReferencablePersistentCache {
+    static final long LAST_USED_RESOLUTION = 60 * 60 * 1000L;
     private final File dir;
     private final LockOptions lockOptions;
     private final FileLockManager lockManager;
     private final String displayName;
+    private final BlockCacheStatistics blockCacheStatistics;
     private CacheCoordinator cacheAccess;
 
     public DefaultPersistentDirectoryStore(File dir, String displayName, LockOptions lockOptions, FileLockManager fileLockManager) {
+        this(dir, displayName, lockOptions, fileLockManager, null);
+    }
+
+    public DefaultPersistentDirectoryStore(File dir, String displayName, LockOptions lockOptions, FileLockManager fileLockManager, BlockCacheStatistics blockCacheStatistics) {
         this.dir = dir;
         this.lockOptions = lockOptions;
         this.lockManager = fileLockManager;
+        this.blockCacheStatistics = blockCacheStatistics;
         this.displayName = displayName != null ? String.format("%s (%s)", displayName, dir) : String.format("cache directory %s (%s)", dir.getName(), dir);
     }
 
@@ -47,12 +55,18 @@ public class DefaultPersistentDirectoryStore implements ReferencablePersistentCa
         } catch (Throwable e) {
             throw new CacheOpenException(String.format("Could not open %s.", this), e);
         }
+        // Record when the cache was last used, so that unused caches can be cleaned up. Only do this when the last record is stale, to avoid
+        // writing to the file system every time the cache is opened
+        long now = System.currentTimeMillis();
+        if (dir.lastModified() < now - LAST_USED_RESOLUTION) {
+            dir.setLastModified(now);
+        }
 
         return this;
     }
 
     private CacheCoordinator createCacheAccess() {
-        return new DefaultCacheAccess(displayName, getLockTarget(), dir, lockManager, getInitAction());
+        return new DefaultCacheAccess(displayName, getLockTarget(), dir, lockManager, getInitAction(), blockCacheStatistics);
     }
 
     protected File getLockTarget() {
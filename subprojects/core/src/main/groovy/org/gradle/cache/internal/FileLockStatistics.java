@@ -0,0 +1,41 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Accumulates the time spent waiting to acquire file locks, per lock target. Shared by all builds of the process.
+ */
+public class FileLockStatistics {
+    private final Map<String, Long> waitTimes = new HashMap<String, Long>();
+
+    public synchronized void lockAcquired(String targetDisplayName, long waitTimeMillis) {
+        if (waitTimeMillis <= 0) {
+            return;
+        }
+        Long total = waitTimes.get(targetDisplayName);
+        waitTimes.put(targetDisplayName, total == null ? waitTimeMillis : total + waitTimeMillis);
+    }
+
+    /**
+     * Returns a snapshot of the total wait time in milliseconds for each lock target that has been waited for.
+     */
+    public synchronized Map<String, Long> getWaitTimes() {
+        return new HashMap<String, Long>(waitTimes);
+    }
+}
@@ -15,8 +15,9 @@
  */
 package org.gradle.cache.internal.btree;
 
+import com.google.common.cache.CacheStats;
 import org.gradle.api.UncheckedIOException;
-import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.internal.FileBackedPersistentIndexedCache;
 import org.gradle.messaging.serialize.Serializer;
 import org.gradle.messaging.serialize.kryo.KryoBackedDecoder;
 import org.gradle.messaging.serialize.kryo.KryoBackedEncoder;
@@ -41,15 +42,31 @@ import java.util.*;
 // todo - free list leaks disk space
 // todo - merge adjacent free blocks
 // todo - use more efficient lookup for free block with nearest size
-public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache<K, V> {
+public class BTreePersistentIndexedCache<K, V> implements FileBackedPersistentIndexedCache<K, V> {
+    /**
+     * System property to read cache files through memory mapped regions, on platforms that support it.
+     */
+    public static final String MAPPED_FILES_PROPERTY = "org.gradle.cache.mapped";
+    /**
+     * System property to set the maximum number of bytes of index, free list and data blocks to keep in memory for each cache.
+     */
+    public static final String BLOCK_CACHE_SIZE_PROPERTY = "org.gradle.cache.blockcache.size";
+    static final long DEFAULT_BLOCK_CACHE_SIZE = 2 * 1024 * 1024;
+    private static final long MIN_COMPACTION_SAVING = 64 * 1024;
+    private static final long MAX_UNFLUSHED_COPY_BYTES = 8 * 1024 * 1024;
     private static final Logger LOGGER = LoggerFactory.getLogger(BTreePersistentIndexedCache.class);
     private final File cacheFile;
     private final Serializer<K> keySerializer;
     private final Serializer<V> serializer;
     private final short maxChildIndexEntries;
     private final int minIndexChildNodes;
+    private final int maxFreeListEntries;
     private final StateCheckBlockStore store;
+    private final CachingBlockStore cachingStore;
+    private final BlockCacheStatistics statistics;
+    private CacheStats reportedStats = new CacheStats(0, 0, 0, 0, 0, 0);
     private HeaderBlock header;
+    private long unflushedCopyBytes;
 
     public BTreePersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
         this(cacheFile, keySerializer, valueSerializer, (short) 512, 512);
@@ -57,12 +74,33 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
 
     public BTreePersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer,
                                        short maxChildIndexEntries, int maxFreeListEntries) {
+        this(cacheFile, keySerializer, valueSerializer, maxChildIndexEntries, maxFreeListEntries, useMappedFiles());
+    }
+
+    /**
+     * Creates a cache that adds the counts of its block cache to the given statistics when it is closed.
+     */
+    public BTreePersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer, BlockCacheStatistics statistics) {
+        this(cacheFile, keySerializer, valueSerializer, (short) 512, 512, useMappedFiles(), statistics);
+    }
+
+    public BTreePersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                                       short maxChildIndexEntries, int maxFreeListEntries, boolean mappedFiles) {
+        this(cacheFile, keySerializer, valueSerializer, maxChildIndexEntries, maxFreeListEntries, mappedFiles, null);
+    }
+
+    private BTreePersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                                        short maxChildIndexEntries, int maxFreeListEntries, boolean mappedFiles, BlockCacheStatistics statistics) {
         this.cacheFile = cacheFile;
+        this.statistics = statistics;
         this.keySerializer = keySerializer;
         this.serializer = valueSerializer;
         this.maxChildIndexEntries = maxChildIndexEntries;
         this.minIndexChildNodes = maxChildIndexEntries / 2;
-        BlockStore cachingStore = new CachingBlockStore(new FileBackedBlockStore(cacheFile), IndexBlock.class, FreeListBlockStore.FreeListBlock.class);
+        this.maxFreeListEntries = maxFreeListEntries;
+        BlockStore fileStore = mappedFiles ? new MappedFileBlockStore(cacheFile) : new FileBackedBlockStore(cacheFile);
+        cachingStore = new CachingBlockStore(fileStore, Long.getLong(BLOCK_CACHE_SIZE_PROPERTY, DEFAULT_BLOCK_CACHE_SIZE),
+                IndexBlock.class, FreeListBlockStore.FreeListBlock.class, DataBlock.class);
         store = new StateCheckBlockStore(new FreeListBlockStore(cachingStore, maxFreeListEntries));
         try {
             open();
@@ -71,6 +109,10 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
         }
     }
 
+    private static boolean useMappedFiles() {
+        return Boolean.getBoolean(MAPPED_FILES_PROPERTY) && MappedFileBlockStore.isSupported();
+    }
+
     @Override
     public String toString() {
         return String.format("cache %s (%s)", cacheFile.getName(), cacheFile);
@@ -189,8 +231,21 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
         }
     }
 
+    /**
+     * Returns the hit, miss and eviction counts of the in-memory block cache, accumulated since this cache was created.
+     */
+    public CacheStats getBlockCacheStats() {
+        return cachingStore.getStats();
+    }
+
     public void close() {
-        LOGGER.debug("Closing {}", this);
+        CacheStats stats = cachingStore.getStats();
+        LOGGER.debug("Closing {}. Block cache: {}", this, stats);
+        if (statistics != null) {
+            // The cache may be reopened, so only add the counts since it was last closed
+            statistics.add(stats.minus(reportedStats));
+            reportedStats = stats;
+        }
         try {
             store.close();
         } catch (Exception e) {
@@ -202,6 +257,86 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
         return store.isOpen();
     }
 
+    /**
+     * Rewrites the live entries of this cache to a new file, which then replaces the cache file. Does nothing when the live entries use
+     * at least half of the cache file, or when little space would be saved. Space used by removed and replaced entries is otherwise only
+     * reused by later writes.
+     *
+     * @return true if the cache file was rewritten.
+     */
+    public boolean compact() {
+        File compactedFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".compacted");
+        try {
+            long liveSize = header.getBlock().getSize() + liveSize(header.getRoot());
+            long fileSize = cacheFile.length();
+            long unusedSize = fileSize - liveSize;
+            if (unusedSize <= liveSize || unusedSize < MIN_COMPACTION_SAVING) {
+                return false;
+            }
+            LOGGER.debug("Compacting {}: {} bytes used by live entries, file is {} bytes.", this, liveSize, fileSize);
+            compactedFile.delete();
+            BTreePersistentIndexedCache<K, V> compacted = new BTreePersistentIndexedCache<K, V>(compactedFile, keySerializer, serializer,
+                    maxChildIndexEntries, maxFreeListEntries, false);
+            try {
+                copyEntries(header.getRoot(), compacted);
+                compacted.store.flush();
+            } finally {
+                compacted.close();
+            }
+            store.close();
+            if (!cacheFile.delete() || !compactedFile.renameTo(cacheFile)) {
+                throw new IOException(String.format("Could not replace %s with %s.", cacheFile, compactedFile));
+            }
+            doOpen();
+            return true;
+        } catch (Exception e) {
+            compactedFile.delete();
+            throw new UncheckedIOException(String.format("Could not compact %s.", this), e);
+        }
+    }
+
+    private long liveSize(IndexBlock current) throws Exception {
+        long size = current.getBlock().getSize();
+        for (IndexEntry entry : current.entries) {
+            if (!entry.childIndexBlock.isNull()) {
+                size += liveSize(store.read(entry.childIndexBlock, IndexBlock.class));
+            }
+            size += store.read(entry.dataBlock, DataBlock.class).getBlock().getSize();
+        }
+        if (!current.tailPos.isNull()) {
+            size += liveSize(store.read(current.tailPos, IndexBlock.class));
+        }
+        return size;
+    }
+
+    private void copyEntries(IndexBlock current, BTreePersistentIndexedCache<K, V> target) throws Exception {
+        for (IndexEntry entry : current.entries) {
+            if (!entry.childIndexBlock.isNull()) {
+                copyEntries(store.read(entry.childIndexBlock, IndexBlock.class), target);
+            }
+            DataBlock block = store.read(entry.dataBlock, DataBlock.class);
+            target.putSerialised(entry.hashCode, block.serialisedValue);
+        }
+        if (!current.tailPos.isNull()) {
+            copyEntries(store.read(current.tailPos, IndexBlock.class), target);
+        }
+    }
+
+    private void putSerialised(long hashCode, byte[] serialisedValue) throws Exception {
+        Lookup lookup = header.getRoot().find(hashCode);
+        DataBlock block = new DataBlock();
+        block.serialisedValue = serialisedValue;
+        block.size = serialisedValue.length;
+        store.write(block);
+        lookup.indexBlock.put(hashCode, block.getPos());
+        // Write the copied entries in batches, which only holds a bounded number of blocks in memory for large caches
+        unflushedCopyBytes += serialisedValue.length;
+        if (unflushedCopyBytes >= MAX_UNFLUSHED_COPY_BYTES) {
+            store.flush();
+            unflushedCopyBytes = 0;
+        }
+    }
+
     private void rebuild() throws Exception {
         LOGGER.warn(String.format("%s is corrupt. Discarding.", this));
         store.clear();
@@ -638,13 +773,11 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
     private class DataBlock extends BlockPayload {
         private int size;
         private byte[] serialisedValue;
-        private V value;
 
         private DataBlock() {
         }
 
         public DataBlock(V value) throws Exception {
-            this.value = value;
             setValue(value);
             size = serialisedValue.length;
         }
@@ -658,10 +791,8 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
         }
 
         public V getValue() throws Exception {
-            if (value == null) {
-                value = serializer.read(new KryoBackedDecoder(new ByteArrayInputStream(serialisedValue)));
-            }
-            return value;
+            // Always deserialize, as the block may be cached and the caller may modify the value
+            return serializer.read(new KryoBackedDecoder(new ByteArrayInputStream(serialisedValue)));
         }
 
         @Override
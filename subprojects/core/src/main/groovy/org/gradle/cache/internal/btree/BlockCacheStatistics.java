@@ -0,0 +1,36 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal.btree;
+
+import com.google.common.cache.CacheStats;
+
+/**
+ * Sums the hit, miss and eviction counts of the block caches of the indexed caches of a process. The counts of a cache are added when it is closed.
+ */
+public class BlockCacheStatistics {
+    private CacheStats total = new CacheStats(0, 0, 0, 0, 0, 0);
+
+    public synchronized void add(CacheStats stats) {
+        total = total.plus(stats);
+    }
+
+    /**
+     * Returns the counts of all caches closed so far. Use {@link CacheStats#minus(CacheStats)} to get the counts for a period of time.
+     */
+    public synchronized CacheStats getTotal() {
+        return total;
+    }
+}
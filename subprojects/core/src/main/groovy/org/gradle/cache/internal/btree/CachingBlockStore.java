@@ -15,19 +15,43 @@
  */
 package org.gradle.cache.internal.btree;
 
-import org.apache.commons.collections.map.LRUMap;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
 
 import java.util.*;
 
+/**
+ * Keeps recently used blocks of the given types in memory, evicting the least recently used blocks once their total size exceeds the given number
+ * of bytes. Also defers writes until the store is flushed.
+ */
 public class CachingBlockStore implements BlockStore {
     private final BlockStore store;
     private final Map<BlockPointer, BlockPayload> dirty = new LinkedHashMap<BlockPointer, BlockPayload>();
-    private final Map<BlockPointer, BlockPayload> indexBlockCache = new LRUMap(100);
+    private final Cache<BlockPointer, BlockPayload> blockCache;
     private final Set<Class<?>> cachableTypes = new HashSet<Class<?>>();
 
-    public CachingBlockStore(BlockStore store, Class<? extends BlockPayload>... cacheableBlockTypes) {
+    public CachingBlockStore(BlockStore store, long maxCachedBytes, Class<? extends BlockPayload>... cacheableBlockTypes) {
         this.store = store;
         cachableTypes.addAll(Arrays.asList(cacheableBlockTypes));
+        blockCache = CacheBuilder.newBuilder()
+                .concurrencyLevel(1)
+                .maximumWeight(maxCachedBytes)
+                .weigher(new Weigher<BlockPointer, BlockPayload>() {
+                    public int weigh(BlockPointer pos, BlockPayload block) {
+                        return block.getSize();
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the hit, miss and eviction counts of the block cache.
+     */
+    public CacheStats getStats() {
+        return blockCache.stats();
     }
 
     public void open(Runnable initAction, Factory factory) {
@@ -36,13 +60,13 @@ public class CachingBlockStore implements BlockStore {
 
     public void close() {
         flush();
-        indexBlockCache.clear();
+        blockCache.invalidateAll();
         store.close();
     }
 
     public void clear() {
         dirty.clear();
-        indexBlockCache.clear();
+        blockCache.invalidateAll();
         store.clear();
     }
 
@@ -62,7 +86,7 @@ public class CachingBlockStore implements BlockStore {
 
     public void remove(BlockPayload block) {
         dirty.remove(block.getPos());
-        indexBlockCache.remove(block.getPos());
+        blockCache.invalidate(block.getPos());
         store.remove(block);
     }
 
@@ -77,7 +101,10 @@ public class CachingBlockStore implements BlockStore {
         if (block != null) {
             return block;
         }
-        block = payloadType.cast(indexBlockCache.get(pos));
+        if (!cachableTypes.contains(payloadType)) {
+            return store.read(pos, payloadType);
+        }
+        block = payloadType.cast(blockCache.getIfPresent(pos));
         if (block != null) {
             return block;
         }
@@ -94,7 +121,7 @@ public class CachingBlockStore implements BlockStore {
 
     private <T extends BlockPayload> void maybeCache(T block) {
         if (cachableTypes.contains(block.getClass())) {
-            indexBlockCache.put(block.getPos(), block);
+            blockCache.put(block.getPos(), block);
         }
     }
 }
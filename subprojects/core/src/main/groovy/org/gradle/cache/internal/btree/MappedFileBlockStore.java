@@ -0,0 +1,362 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.internal.os.OperatingSystem;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link BlockStore} that reads blocks through memory mapped regions of the cache file, using the same file format as {@link FileBackedBlockStore}.
+ *
+ * <p>The file is mapped in fixed size regions. A new region is mapped once the file has grown past the end of the last mapped region, so regions
+ * are never remapped and the file is never extended by the mapping itself. Blocks in the unmapped tail of the file are read using positional
+ * reads. Writes always use positional writes.</p>
+ */
+public class MappedFileBlockStore implements BlockStore {
+    static final int REGION_SIZE = 1024 * 1024;
+    private final File cacheFile;
+    private final int regionSize;
+    private final List<MappedByteBuffer> regions = new ArrayList<MappedByteBuffer>();
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private long fileLength;
+    private long nextBlock;
+    private Factory factory;
+
+    public MappedFileBlockStore(File cacheFile) {
+        this(cacheFile, REGION_SIZE);
+    }
+
+    MappedFileBlockStore(File cacheFile, int regionSize) {
+        this.cacheFile = cacheFile;
+        this.regionSize = regionSize;
+    }
+
+    /**
+     * Mapped files cannot be truncated on Windows, which the store needs to do when it is cleared.
+     */
+    public static boolean isSupported() {
+        return !OperatingSystem.current().isWindows();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("cache '%s'", cacheFile);
+    }
+
+    public void open(Runnable runnable, Factory factory) {
+        this.factory = factory;
+        try {
+            cacheFile.getParentFile().mkdirs();
+            file = new RandomAccessFile(cacheFile, "rw");
+            channel = file.getChannel();
+            fileLength = channel.size();
+            nextBlock = fileLength;
+            mapRegions();
+            if (fileLength == 0) {
+                runnable.run();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void close() {
+        regions.clear();
+        try {
+            file.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void clear() {
+        // Discard the regions before truncating, so that nothing reads the pages past the end of the file
+        regions.clear();
+        try {
+            file.setLength(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        fileLength = 0;
+        nextBlock = 0;
+    }
+
+    public void attach(BlockPayload block) {
+        if (block.getBlock() == null) {
+            block.setBlock(new BlockImpl(block));
+        }
+    }
+
+    public void remove(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        blockImpl.detach();
+    }
+
+    public void flush() {
+    }
+
+    public <T extends BlockPayload> T readFirst(Class<T> payloadType) {
+        return read(new BlockPointer(0), payloadType);
+    }
+
+    public <T extends BlockPayload> T read(BlockPointer pos, Class<T> payloadType) {
+        assert !pos.isNull();
+        try {
+            T payload = payloadType.cast(factory.create(payloadType));
+            BlockImpl block = new BlockImpl(payload, pos);
+            block.read();
+            return payload;
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void write(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        try {
+            blockImpl.write();
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long alloc(long length) {
+        long pos = nextBlock;
+        nextBlock += length;
+        return pos;
+    }
+
+    private void mapRegions() throws IOException {
+        long mappedLength = (long) regions.size() * regionSize;
+        while (mappedLength + regionSize <= fileLength) {
+            regions.add(channel.map(FileChannel.MapMode.READ_ONLY, mappedLength, regionSize));
+            mappedLength += regionSize;
+        }
+    }
+
+    private void readFully(long pos, byte[] buffer, int offset, int length) throws IOException {
+        while (length > 0) {
+            int regionIndex = (int) (pos / regionSize);
+            int count;
+            if (regionIndex < regions.size()) {
+                ByteBuffer region = regions.get(regionIndex).duplicate();
+                int regionOffset = (int) (pos % regionSize);
+                count = Math.min(length, regionSize - regionOffset);
+                region.position(regionOffset);
+                region.get(buffer, offset, count);
+            } else {
+                count = channel.read(ByteBuffer.wrap(buffer, offset, length), pos);
+                if (count < 0) {
+                    throw new EOFException();
+                }
+            }
+            pos += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    private void writeFully(long pos, byte[] buffer, int length) throws IOException {
+        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, length);
+        while (byteBuffer.hasRemaining()) {
+            channel.write(byteBuffer, pos + byteBuffer.position());
+        }
+    }
+
+    private final class BlockImpl extends Block {
+        private static final int HEADER_SIZE = 2 + INT_SIZE;
+        private static final int TAIL_SIZE = LONG_SIZE;
+        static final int BLOCK_MARKER = 0xCC;
+
+        private BlockPointer pos;
+        private int payloadSize;
+
+        private BlockImpl(BlockPayload payload, BlockPointer pos) {
+            this(payload);
+            setPos(pos);
+        }
+
+        public BlockImpl(BlockPayload payload) {
+            super(payload);
+            pos = null;
+            payloadSize = -1;
+        }
+
+        @Override
+        public boolean hasPos() {
+            return pos != null;
+        }
+
+        @Override
+        public BlockPointer getPos() {
+            if (pos == null) {
+                pos = new BlockPointer(alloc(getSize()));
+            }
+            return pos;
+        }
+
+        @Override
+        public void setPos(BlockPointer pos) {
+            assert this.pos == null && !pos.isNull();
+            this.pos = pos;
+        }
+
+        public int getSize() {
+            if (payloadSize < 0) {
+                payloadSize = getPayload().getSize();
+            }
+            return payloadSize + HEADER_SIZE + TAIL_SIZE;
+        }
+
+        @Override
+        public void setSize(int size) {
+            int newPayloadSize = size - HEADER_SIZE - TAIL_SIZE;
+            assert newPayloadSize >= payloadSize;
+            payloadSize = newPayloadSize;
+        }
+
+        public void write() throws Exception {
+            long pos = getPos().getPos();
+            BlockPayload payload = getPayload();
+
+            ExposingByteArrayOutputStream bytes = new ExposingByteArrayOutputStream(getSize());
+            DataOutputStream outputStream = new DataOutputStream(bytes);
+
+            // Write header and body
+            outputStream.writeByte(BLOCK_MARKER);
+            outputStream.writeByte(payload.getType());
+            outputStream.writeInt(payloadSize);
+            payload.write(outputStream);
+            outputStream.flush();
+
+            // Write checksum
+            CRC32 checksum = new CRC32();
+            checksum.update(bytes.getBuffer(), 0, bytes.size());
+            outputStream.writeLong(checksum.getValue());
+            outputStream.flush();
+
+            writeFully(pos, bytes.getBuffer(), bytes.size());
+
+            // Pad
+            long finalSize = pos + HEADER_SIZE + TAIL_SIZE + payloadSize;
+            if (fileLength < finalSize) {
+                if (pos + bytes.size() < finalSize) {
+                    file.setLength(finalSize);
+                }
+                fileLength = finalSize;
+                mapRegions();
+            }
+        }
+
+        public void read() throws Exception {
+            long pos = getPos().getPos();
+            assert pos >= 0;
+            if (pos + HEADER_SIZE >= fileLength) {
+                throw blockCorruptedException();
+            }
+
+            BlockPayload payload = getPayload();
+
+            // Read header
+            byte[] header = new byte[HEADER_SIZE];
+            readFully(pos, header, 0, HEADER_SIZE);
+            if (header[0] != (byte) BLOCK_MARKER) {
+                throw blockCorruptedException();
+            }
+            if (header[1] != (byte) payload.getType()) {
+                throw blockCorruptedException();
+            }
+            payloadSize = new DataInputStream(new ByteArrayInputStream(header, 2, INT_SIZE)).readInt();
+            if (payloadSize < 0 || pos + HEADER_SIZE + TAIL_SIZE + payloadSize > fileLength) {
+                throw blockCorruptedException();
+            }
+
+            // Read body. The checksum immediately follows the bytes used by the payload, which may be fewer than the size of the block
+            byte[] body = new byte[payloadSize + TAIL_SIZE];
+            readFully(pos + HEADER_SIZE, body, 0, body.length);
+            int payloadBytes = findVerifiedPayloadBytes(header, body);
+            if (payloadBytes < 0) {
+                throw blockCorruptedException();
+            }
+
+            // Decode only the verified bytes, and check that the payload uses all of them
+            ByteArrayInputStream bodyStream = new ByteArrayInputStream(body, 0, payloadBytes);
+            try {
+                payload.read(new DataInputStream(bodyStream));
+            } catch (EOFException e) {
+                throw blockCorruptedException();
+            }
+            if (bodyStream.available() != 0) {
+                throw blockCorruptedException();
+            }
+        }
+
+        /**
+         * Finds the number of payload bytes, by looking for the first position in the body that is followed by the checksum of the header and
+         * the body up to that position. Returns -1 when there is no such position.
+         */
+        private int findVerifiedPayloadBytes(byte[] header, byte[] body) {
+            CRC32 checksum = new CRC32();
+            checksum.update(header);
+            for (int payloadBytes = 0; payloadBytes <= payloadSize; payloadBytes++) {
+                if (checksum.getValue() == readLong(body, payloadBytes)) {
+                    return payloadBytes;
+                }
+                if (payloadBytes < payloadSize) {
+                    checksum.update(body[payloadBytes]);
+                }
+            }
+            return -1;
+        }
+
+        private long readLong(byte[] buffer, int offset) {
+            long value = 0;
+            for (int i = 0; i < LONG_SIZE; i++) {
+                value = (value << 8) | (buffer[offset + i] & 0xFF);
+            }
+            return value;
+        }
+
+        public RuntimeException blockCorruptedException() {
+            return new CorruptedCacheException(String.format("Corrupted %s found in %s.", this,
+                    MappedFileBlockStore.this));
+        }
+    }
+
+    private static class ExposingByteArrayOutputStream extends ByteArrayOutputStream {
+        private ExposingByteArrayOutputStream(int size) {
+            super(size);
+        }
+
+        public byte[] getBuffer() {
+            return buf;
+        }
+    }
+}
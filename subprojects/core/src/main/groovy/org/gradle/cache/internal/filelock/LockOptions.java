@@ -23,8 +23,23 @@ public interface LockOptions {
 
     boolean isUseCrossVersionImplementation();
 
+    /**
+     * Returns true when the lock may be kept by this process after it has been closed, so that it can be reused without acquiring it again.
+     */
+    boolean isLeasable();
+
+    /**
+     * Returns true when the lock should fail immediately, without asking its owner to release it, when it is held by another process.
+     */
+    boolean isNonBlocking();
+
     /**
      * Creates a copy of these options with the given mode.
      */
     LockOptions withMode(FileLockManager.LockMode mode);
+
+    /**
+     * Creates a copy of these options that allows the lock to be leased.
+     */
+    LockOptions withLeasing();
 }
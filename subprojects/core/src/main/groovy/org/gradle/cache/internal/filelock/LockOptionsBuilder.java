@@ -21,14 +21,18 @@ public class LockOptionsBuilder implements LockOptions {
 
     private FileLockManager.LockMode mode;
     private boolean crossVersion;
+    private boolean leasable;
+    private boolean nonBlocking;
 
-    private LockOptionsBuilder(FileLockManager.LockMode mode, boolean crossVersion) {
+    private LockOptionsBuilder(FileLockManager.LockMode mode, boolean crossVersion, boolean leasable, boolean nonBlocking) {
         this.mode = mode;
         this.crossVersion = crossVersion;
+        this.leasable = leasable;
+        this.nonBlocking = nonBlocking;
     }
 
     public static LockOptionsBuilder mode(FileLockManager.LockMode lockMode) {
-        return new LockOptionsBuilder(lockMode, false);
+        return new LockOptionsBuilder(lockMode, false, false, false);
     }
 
     public LockOptionsBuilder useCrossVersionImplementation() {
@@ -36,6 +40,11 @@ public class LockOptionsBuilder implements LockOptions {
         return this;
     }
 
+    public LockOptionsBuilder nonBlocking() {
+        nonBlocking = true;
+        return this;
+    }
+
     public FileLockManager.LockMode getMode() {
         return mode;
     }
@@ -44,13 +53,25 @@ public class LockOptionsBuilder implements LockOptions {
         return crossVersion;
     }
 
+    public boolean isLeasable() {
+        return leasable;
+    }
+
+    public boolean isNonBlocking() {
+        return nonBlocking;
+    }
+
     public LockOptions withMode(FileLockManager.LockMode mode) {
-        return new LockOptionsBuilder(mode, crossVersion);
+        return new LockOptionsBuilder(mode, crossVersion, leasable, nonBlocking);
+    }
+
+    public LockOptions withLeasing() {
+        return new LockOptionsBuilder(mode, crossVersion, true, nonBlocking);
     }
 
     @Override
     public String toString() {
-        return mode + " (simple=" + crossVersion + ")";
+        return mode + " (simple=" + crossVersion + ", leasable=" + leasable + ", nonBlocking=" + nonBlocking + ")";
     }
 
     @Override
@@ -67,6 +88,12 @@ public class LockOptionsBuilder implements LockOptions {
         if (crossVersion != that.crossVersion) {
             return false;
         }
+        if (leasable != that.leasable) {
+            return false;
+        }
+        if (nonBlocking != that.nonBlocking) {
+            return false;
+        }
         if (mode != that.mode) {
             return false;
         }
@@ -78,6 +105,8 @@ public class LockOptionsBuilder implements LockOptions {
     public int hashCode() {
         int result = mode.hashCode();
         result = 31 * result + (crossVersion ? 1 : 0);
+        result = 31 * result + (leasable ? 1 : 0);
+        result = 31 * result + (nonBlocking ? 1 : 0);
         return result;
     }
 }
@@ -0,0 +1,466 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal.logstructured;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.internal.FileBackedPersistentIndexedCache;
+import org.gradle.messaging.serialize.Serializer;
+import org.gradle.messaging.serialize.kryo.KryoBackedDecoder;
+import org.gradle.messaging.serialize.kryo.KryoBackedEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A persistent cache that appends every update to the end of a log file, and keeps an in-memory index from each key to its most recent entry in the
+ * log. Puts and removes are sequential writes, and entries are never updated in place.
+ *
+ * <p>When the cache is closed, the index is written to a separate index file, and is read back from this file the next time the cache is opened.
+ * The index file is deleted when the cache is opened, so it is only used when the log has not been written to since the cache was last closed
+ * cleanly. Otherwise, the index is rebuilt by reading the whole log, and any incomplete or corrupt entries at the end of the log, for example those
+ * left by a process that crashed part way through a write, are discarded. The checksum of each entry is verified when it is read.</p>
+ *
+ * <p>When the cache is closed and most of the log is made up of stale entries, the live entries are copied to a new log, which then replaces the
+ * old one.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+public class LogStructuredPersistentIndexedCache<K, V> implements FileBackedPersistentIndexedCache<K, V> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogStructuredPersistentIndexedCache.class);
+    private static final int MAGIC = 0x474c4f47;
+    private static final int INDEX_MAGIC = 0x474c4958;
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 8;
+    private static final int ENTRY_HEADER_SIZE = 8;
+    private static final int CHECKSUM_SIZE = 4;
+    private static final int REMOVED = -1;
+    static final long DEFAULT_MIN_COMPACTION_SIZE = 1024 * 1024;
+
+    private final File cacheFile;
+    private final File compactedFile;
+    private final File indexFile;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final long minCompactionSize;
+    private final Map<EntryKey, Entry> index = new HashMap<EntryKey, Entry>();
+    private RandomAccessFile file;
+    private long end;
+    private long liveBytes;
+
+    public LogStructuredPersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this(cacheFile, keySerializer, valueSerializer, DEFAULT_MIN_COMPACTION_SIZE);
+    }
+
+    LogStructuredPersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer, long minCompactionSize) {
+        this.cacheFile = cacheFile;
+        this.compactedFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".compacted");
+        this.indexFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".index");
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.minCompactionSize = minCompactionSize;
+        try {
+            open();
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not open %s.", this), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("cache %s (%s)", cacheFile.getName(), cacheFile);
+    }
+
+    private void open() throws IOException {
+        LOGGER.debug("Opening {}", this);
+        recoverCompaction();
+        cacheFile.getParentFile().mkdirs();
+        file = new RandomAccessFile(cacheFile, "rw");
+        try {
+            boolean validHeader = readHeader();
+            boolean indexRead = validHeader && readIndex();
+            // Discard the index before the log is written to, so that it is not used if the cache is not closed cleanly
+            if (indexFile.exists() && !indexFile.delete()) {
+                throw new IOException(String.format("Could not delete %s.", indexFile));
+            }
+            if (!validHeader) {
+                if (file.length() > 0) {
+                    LOGGER.warn(String.format("%s is corrupt. Discarding.", this));
+                }
+                file.setLength(0);
+                file.writeInt(MAGIC);
+                file.writeInt(VERSION);
+                end = FILE_HEADER_SIZE;
+            } else if (!indexRead) {
+                readEntries();
+            }
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Finishes or discards a compaction that was interrupted. The compacted file only replaces the cache file once it has been completely written,
+     * so it is complete if the cache file is missing, and may be incomplete otherwise.
+     */
+    private void recoverCompaction() throws IOException {
+        if (!compactedFile.exists()) {
+            return;
+        }
+        if (cacheFile.exists()) {
+            if (!compactedFile.delete()) {
+                throw new IOException(String.format("Could not delete %s.", compactedFile));
+            }
+        } else if (!compactedFile.renameTo(cacheFile)) {
+            throw new IOException(String.format("Could not rename %s to %s.", compactedFile, cacheFile));
+        }
+    }
+
+    private boolean readHeader() throws IOException {
+        if (file.length() < FILE_HEADER_SIZE) {
+            return false;
+        }
+        file.seek(0);
+        return file.readInt() == MAGIC && file.readInt() == VERSION;
+    }
+
+    /**
+     * Reads the index written when the cache was last closed. Returns false when there is no index, or when it is incomplete, corrupt or does not
+     * match the log.
+     */
+    private boolean readIndex() throws IOException {
+        if (!indexFile.exists()) {
+            return false;
+        }
+        Map<EntryKey, Entry> entries = new HashMap<EntryKey, Entry>();
+        long indexEnd;
+        long indexLiveBytes;
+        CheckedInputStream checkedInput = new CheckedInputStream(new BufferedInputStream(new FileInputStream(indexFile)), new CRC32());
+        DataInputStream input = new DataInputStream(checkedInput);
+        try {
+            if (input.readInt() != INDEX_MAGIC || input.readInt() != VERSION) {
+                return false;
+            }
+            indexEnd = input.readLong();
+            indexLiveBytes = input.readLong();
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                long pos = input.readLong();
+                int keyLength = input.readInt();
+                int valueLength = input.readInt();
+                if (keyLength < 0 || valueLength < 0) {
+                    return false;
+                }
+                byte[] key = new byte[keyLength];
+                input.readFully(key);
+                entries.put(new EntryKey(key), new Entry(pos, keyLength, valueLength));
+            }
+            int expectedChecksum = (int) checkedInput.getChecksum().getValue();
+            if (input.readInt() != expectedChecksum) {
+                return false;
+            }
+        } catch (EOFException e) {
+            return false;
+        } finally {
+            input.close();
+        }
+        if (indexEnd != file.length()) {
+            return false;
+        }
+        index.putAll(entries);
+        end = indexEnd;
+        liveBytes = indexLiveBytes;
+        return true;
+    }
+
+    private void writeIndex() throws IOException {
+        FileOutputStream outputStream = new FileOutputStream(indexFile);
+        try {
+            CheckedOutputStream checkedOutput = new CheckedOutputStream(new BufferedOutputStream(outputStream), new CRC32());
+            DataOutputStream output = new DataOutputStream(checkedOutput);
+            output.writeInt(INDEX_MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(end);
+            output.writeLong(liveBytes);
+            output.writeInt(index.size());
+            for (Map.Entry<EntryKey, Entry> mapEntry : index.entrySet()) {
+                Entry entry = mapEntry.getValue();
+                output.writeLong(entry.pos);
+                output.writeInt(entry.keyLength);
+                output.writeInt(entry.valueLength);
+                output.write(mapEntry.getKey().bytes);
+            }
+            output.writeInt((int) checkedOutput.getChecksum().getValue());
+            output.flush();
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    private void readEntries() throws IOException {
+        long length = file.length();
+        long pos = FILE_HEADER_SIZE;
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+        try {
+            input.skipBytes(FILE_HEADER_SIZE);
+            CRC32 checksum = new CRC32();
+            while (length - pos >= ENTRY_HEADER_SIZE + CHECKSUM_SIZE) {
+                int keyLength = input.readInt();
+                int valueLength = input.readInt();
+                if (keyLength < 0 || valueLength < REMOVED
+                        || pos + ENTRY_HEADER_SIZE + (long) keyLength + Math.max(valueLength, 0) + CHECKSUM_SIZE > length) {
+                    break;
+                }
+                Entry entry = new Entry(pos, keyLength, valueLength);
+                byte[] key = new byte[keyLength];
+                input.readFully(key);
+                byte[] value = new byte[Math.max(valueLength, 0)];
+                input.readFully(value);
+                checksum.reset();
+                updateChecksum(checksum, keyLength);
+                updateChecksum(checksum, valueLength);
+                checksum.update(key);
+                checksum.update(value);
+                if (input.readInt() != (int) checksum.getValue()) {
+                    break;
+                }
+                if (valueLength == REMOVED) {
+                    discard(index.remove(new EntryKey(key)));
+                } else {
+                    discard(index.put(new EntryKey(key), entry));
+                    liveBytes += entry.size;
+                }
+                pos += entry.size;
+            }
+        } finally {
+            input.close();
+        }
+        if (pos < length) {
+            LOGGER.warn(String.format("Discarding incomplete or corrupt entries at the end of %s.", this));
+            file.setLength(pos);
+        }
+        end = pos;
+    }
+
+    public V get(K key) {
+        try {
+            EntryKey entryKey = new EntryKey(serialize(keySerializer, key));
+            Entry entry = index.get(entryKey);
+            if (entry == null) {
+                return null;
+            }
+            byte[] bytes = new byte[entry.size];
+            file.seek(entry.pos);
+            file.readFully(bytes);
+            if (!isValid(entry, entryKey, bytes)) {
+                LOGGER.warn(String.format("Entry '%s' in %s is corrupt. Discarding.", key, this));
+                discard(index.remove(entryKey));
+                return null;
+            }
+            int valueOffset = ENTRY_HEADER_SIZE + entry.keyLength;
+            return valueSerializer.read(new KryoBackedDecoder(new ByteArrayInputStream(bytes, valueOffset, entry.valueLength)));
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not read entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    private static boolean isValid(Entry entry, EntryKey entryKey, byte[] bytes) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (input.readInt() != entry.keyLength || input.readInt() != entry.valueLength) {
+            return false;
+        }
+        byte[] key = new byte[entry.keyLength];
+        input.readFully(key);
+        if (!Arrays.equals(key, entryKey.bytes)) {
+            return false;
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes, 0, bytes.length - CHECKSUM_SIZE);
+        input.skipBytes(entry.valueLength);
+        return input.readInt() == (int) checksum.getValue();
+    }
+
+    public void put(K key, V value) {
+        try {
+            byte[] serialisedKey = serialize(keySerializer, key);
+            Entry entry = append(serialisedKey, serialize(valueSerializer, value));
+            discard(index.put(new EntryKey(serialisedKey), entry));
+            liveBytes += entry.size;
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not add entry '%s' to %s.", key, this), e);
+        }
+    }
+
+    public void remove(K key) {
+        try {
+            EntryKey entryKey = new EntryKey(serialize(keySerializer, key));
+            if (!index.containsKey(entryKey)) {
+                return;
+            }
+            append(entryKey.bytes, null);
+            discard(index.remove(entryKey));
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not remove entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    public void close() {
+        LOGGER.debug("Closing {}", this);
+        try {
+            try {
+                if (end > minCompactionSize && liveBytes < (end - FILE_HEADER_SIZE) / 2) {
+                    compact();
+                }
+            } finally {
+                file.close();
+            }
+            writeIndex();
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            index.clear();
+        }
+    }
+
+    /**
+     * Copies the live entries to a new file, and then replaces the cache file with the new file.
+     */
+    private void compact() throws IOException {
+        LOGGER.debug("Compacting {}. {} of {} bytes are in use.", this, liveBytes, end);
+        long pos = FILE_HEADER_SIZE;
+        FileOutputStream outputStream = new FileOutputStream(compactedFile);
+        try {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            byte[] buffer = new byte[4096];
+            for (Map.Entry<EntryKey, Entry> mapEntry : index.entrySet()) {
+                Entry entry = mapEntry.getValue();
+                if (buffer.length < entry.size) {
+                    buffer = new byte[entry.size];
+                }
+                file.seek(entry.pos);
+                file.readFully(buffer, 0, entry.size);
+                output.write(buffer, 0, entry.size);
+                mapEntry.setValue(new Entry(pos, entry.keyLength, entry.valueLength));
+                pos += entry.size;
+            }
+            output.flush();
+            outputStream.getFD().sync();
+        } finally {
+            outputStream.close();
+        }
+        file.close();
+        // Delete first, as renameTo() does not replace an existing file on all platforms
+        if (!cacheFile.delete() || !compactedFile.renameTo(cacheFile)) {
+            throw new IOException(String.format("Could not replace %s with %s.", cacheFile, compactedFile));
+        }
+        end = pos;
+    }
+
+    private Entry append(byte[] key, byte[] value) throws IOException {
+        int valueLength = value == null ? REMOVED : value.length;
+        Entry entry = new Entry(end, key.length, valueLength);
+        ExposingByteArrayOutputStream bytes = new ExposingByteArrayOutputStream(entry.size);
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(key.length);
+        output.writeInt(valueLength);
+        output.write(key);
+        if (value != null) {
+            output.write(value);
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes.getBuffer(), 0, bytes.size());
+        output.writeInt((int) checksum.getValue());
+        output.flush();
+        file.seek(end);
+        file.write(bytes.getBuffer(), 0, bytes.size());
+        end += entry.size;
+        return entry;
+    }
+
+    private void discard(Entry entry) {
+        if (entry != null) {
+            liveBytes -= entry.size;
+        }
+    }
+
+    private static void updateChecksum(CRC32 checksum, int value) {
+        checksum.update(value >>> 24);
+        checksum.update(value >>> 16);
+        checksum.update(value >>> 8);
+        checksum.update(value);
+    }
+
+    private static <T> byte[] serialize(Serializer<T> serializer, T value) throws Exception {
+        ByteArrayOutputStream outStr = new ByteArrayOutputStream();
+        KryoBackedEncoder encoder = new KryoBackedEncoder(outStr);
+        serializer.write(encoder, value);
+        encoder.flush();
+        return outStr.toByteArray();
+    }
+
+    private static class ExposingByteArrayOutputStream extends ByteArrayOutputStream {
+        private ExposingByteArrayOutputStream(int size) {
+            super(size);
+        }
+
+        byte[] getBuffer() {
+            return buf;
+        }
+    }
+
+    private static class Entry {
+        final long pos;
+        final int keyLength;
+        final int valueLength;
+        final int size;
+
+        private Entry(long pos, int keyLength, int valueLength) {
+            this.pos = pos;
+            this.keyLength = keyLength;
+            this.valueLength = valueLength;
+            this.size = ENTRY_HEADER_SIZE + keyLength + Math.max(valueLength, 0) + CHECKSUM_SIZE;
+        }
+    }
+
+    private static class EntryKey {
+        final byte[] bytes;
+        final int hashCode;
+
+        private EntryKey(byte[] bytes) {
+            this.bytes = bytes;
+            this.hashCode = Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof EntryKey && Arrays.equals(bytes, ((EntryKey) obj).bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -21,8 +21,10 @@ import org.gradle.api.Task;
 import org.gradle.api.Transformer;
 import org.gradle.api.internal.TaskInternal;
 import org.gradle.api.internal.tasks.CachingTaskDependencyResolveContext;
+import org.gradle.api.internal.tasks.TaskStateInternal;
 import org.gradle.api.specs.Spec;
 import org.gradle.api.specs.Specs;
+import org.gradle.api.tasks.ParallelizableTask;
 import org.gradle.execution.MultipleBuildFailures;
 import org.gradle.execution.TaskFailureHandler;
 import org.gradle.internal.UncheckedException;
@@ -33,6 +35,7 @@ import org.gradle.internal.graph.GraphNodeRenderer;
 import org.gradle.logging.StyledTextOutput;
 import org.gradle.util.CollectionUtils;
 
+import java.io.File;
 import java.io.StringWriter;
 import java.util.*;
 import java.util.concurrent.locks.Condition;
@@ -42,6 +45,13 @@ import java.util.concurrent.locks.ReentrantLock;
 /**
  * A reusable implementation of TaskExecutionPlan. The {@link #addToTaskGraph(java.util.Collection)} and {@link #clear()} methods are NOT threadsafe, and callers must synchronize
  * access to these methods.
+ *
+ * <p>While the plan executes, each task keeps a count of its dependencies that have not completed, and the tasks whose count drops to zero are kept
+ * in a queue of ready tasks ordered by their position in the plan. Picking the next task and completing a task therefore only touch the task, its
+ * direct dependents and the ready queue, rather than the whole plan.</p>
+ *
+ * <p>When a {@link TaskDurationHistory} is used, ready tasks are ordered by the estimated duration of the longest chain of tasks that must wait
+ * for them, so that the tasks which gate the most work are started first. Otherwise, ready tasks are started in plan order.</p>
  */
 class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     private final Lock lock = new ReentrantLock();
@@ -54,7 +64,19 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     private Spec<? super Task> filter = Specs.satisfyAll();
 
     private TaskFailureHandler failureHandler = new RethrowingFailureHandler();
-    private final List<String> runningProjects = new ArrayList<String>();
+    private TaskDurationHistory durationHistory;
+    private final Map<String, List<TaskInfo>> runningProjects = new HashMap<String, List<TaskInfo>>();
+    private final Map<TaskInfo, List<String>> outputPaths = new HashMap<TaskInfo, List<String>>();
+    private final TreeSet<TaskInfo> readyTasks = new TreeSet<TaskInfo>(new Comparator<TaskInfo>() {
+        public int compare(TaskInfo task1, TaskInfo task2) {
+            if (task1.getCriticalPathDuration() != task2.getCriticalPathDuration()) {
+                return task1.getCriticalPathDuration() > task2.getCriticalPathDuration() ? -1 : 1;
+            }
+            return task1.getPlanIndex() - task2.getPlanIndex();
+        }
+    });
+    private boolean scheduled;
+    private int incompleteTasks;
 
     public void addToTaskGraph(Collection<? extends Task> tasks) {
         List<TaskInfo> queue = new ArrayList<TaskInfo>();
@@ -196,6 +218,7 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     }
 
     public void determineExecutionPlan() {
+        scheduled = false;
         List<TaskInfo> nodeQueue = new ArrayList<TaskInfo>(entryTasks);
         Set<TaskInfo> visitingNodes = new HashSet<TaskInfo>();
         Stack<TaskDependencyGraphEdge> walkedShouldRunAfterEdges = new Stack<TaskDependencyGraphEdge>();
@@ -361,6 +384,9 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             executionPlan.clear();
             failures.clear();
             runningProjects.clear();
+            outputPaths.clear();
+            readyTasks.clear();
+            scheduled = false;
         } finally {
             lock.unlock();
         }
@@ -378,22 +404,19 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         this.failureHandler = handler;
     }
 
+    public void useDurationHistory(TaskDurationHistory durationHistory) {
+        this.durationHistory = durationHistory;
+    }
+
     public TaskInfo getTaskToExecute() {
         lock.lock();
         try {
+            startScheduling();
             while (true) {
-                TaskInfo nextMatching = null;
-                boolean allTasksComplete = true;
-                for (TaskInfo taskInfo : executionPlan.values()) {
-                    allTasksComplete = allTasksComplete && taskInfo.isComplete();
-                    if (taskInfo.isReady() && taskInfo.allDependenciesComplete() && !runningProjects.contains(taskInfo.getTask().getProject().getPath())) {
-                        nextMatching = taskInfo;
-                        break;
-                    }
-                }
-                if (allTasksComplete) {
+                if (incompleteTasks == 0) {
                     return null;
                 }
+                TaskInfo nextMatching = nextReadyTask();
                 if (nextMatching == null) {
                     try {
                         condition.await();
@@ -401,12 +424,14 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                         throw new RuntimeException(e);
                     }
                 } else {
+                    readyTasks.remove(nextMatching);
                     if (nextMatching.allDependenciesSuccessful()) {
                         nextMatching.startExecution();
-                        runningProjects.add(nextMatching.getTask().getProject().getPath());
+                        startRunning(nextMatching);
                         return nextMatching;
                     } else {
                         nextMatching.skipExecution();
+                        completed(nextMatching);
                         condition.signalAll();
                     }
                 }
@@ -416,7 +441,176 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         }
     }
 
+    private TaskInfo nextReadyTask() {
+        for (TaskInfo taskInfo : readyTasks) {
+            if (canRunWithRunningTasks(taskInfo)) {
+                return taskInfo;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Only one task of a project runs at a time, unless all of the running tasks of the project are parallelizable and have disjoint outputs.
+     */
+    private boolean canRunWithRunningTasks(TaskInfo taskInfo) {
+        List<TaskInfo> runningTasks = runningProjects.get(taskInfo.getTask().getProject().getPath());
+        if (runningTasks == null) {
+            return true;
+        }
+        if (!isParallelizable(taskInfo)) {
+            return false;
+        }
+        for (TaskInfo runningTask : runningTasks) {
+            if (!isParallelizable(runningTask) || outputsOverlap(taskInfo, runningTask)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isParallelizable(TaskInfo taskInfo) {
+        TaskInternal task = taskInfo.getTask();
+        return task.getClass().isAnnotationPresent(ParallelizableTask.class) && task.getOutputs().getHasOutput();
+    }
+
+    private boolean outputsOverlap(TaskInfo task1, TaskInfo task2) {
+        for (String path1 : getOutputPaths(task1)) {
+            for (String path2 : getOutputPaths(task2)) {
+                if (path1.equals(path2) || path1.startsWith(path2 + File.separator) || path2.startsWith(path1 + File.separator)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private List<String> getOutputPaths(TaskInfo taskInfo) {
+        List<String> paths = outputPaths.get(taskInfo);
+        if (paths == null) {
+            paths = new ArrayList<String>();
+            for (File file : taskInfo.getTask().getOutputs().getFiles()) {
+                paths.add(file.getAbsolutePath());
+            }
+            outputPaths.put(taskInfo, paths);
+        }
+        return paths;
+    }
+
+    private void startRunning(TaskInfo taskInfo) {
+        String projectPath = taskInfo.getTask().getProject().getPath();
+        List<TaskInfo> runningTasks = runningProjects.get(projectPath);
+        if (runningTasks == null) {
+            runningTasks = new ArrayList<TaskInfo>();
+            runningProjects.put(projectPath, runningTasks);
+        }
+        runningTasks.add(taskInfo);
+    }
+
+    private void stopRunning(TaskInfo taskInfo) {
+        String projectPath = taskInfo.getTask().getProject().getPath();
+        List<TaskInfo> runningTasks = runningProjects.get(projectPath);
+        runningTasks.remove(taskInfo);
+        if (runningTasks.isEmpty()) {
+            runningProjects.remove(projectPath);
+        }
+    }
+
+    /**
+     * Calculates the scheduling state of the tasks in the plan, the first time the plan is used after it has been determined.
+     */
+    private void startScheduling() {
+        if (scheduled) {
+            return;
+        }
+        scheduled = true;
+        readyTasks.clear();
+        incompleteTasks = 0;
+        int planIndex = 0;
+        for (TaskInfo taskInfo : executionPlan.values()) {
+            taskInfo.startScheduling(planIndex++);
+        }
+        for (TaskInfo taskInfo : executionPlan.values()) {
+            Set<TaskInfo> dependencies = new HashSet<TaskInfo>(taskInfo.getDependencySuccessors());
+            dependencies.addAll(taskInfo.getMustSuccessors());
+            for (TaskInfo dependency : dependencies) {
+                if (executionPlan.get(dependency.getTask()) != dependency) {
+                    // Not part of the plan, so never executes
+                    continue;
+                }
+                dependency.addDependent(taskInfo);
+                if (!dependency.isComplete()) {
+                    taskInfo.dependencyReopened();
+                }
+            }
+            if (!taskInfo.isComplete()) {
+                incompleteTasks++;
+            }
+        }
+        if (durationHistory != null) {
+            calculateCriticalPaths();
+        }
+        for (TaskInfo taskInfo : executionPlan.values()) {
+            addIfReady(taskInfo);
+        }
+    }
+
+    private void calculateCriticalPaths() {
+        Map<Task, Long> durations = durationHistory.getPreviousDurations(executionPlan.keySet());
+        List<TaskInfo> tasks = new ArrayList<TaskInfo>(executionPlan.values());
+        // Every task comes after its dependencies in the plan, so the dependents of a task have been visited by the time it is reached
+        for (int i = tasks.size() - 1; i >= 0; i--) {
+            TaskInfo taskInfo = tasks.get(i);
+            long longestDependentPath = 0;
+            for (TaskInfo dependent : taskInfo.getDependents()) {
+                longestDependentPath = Math.max(longestDependentPath, dependent.getCriticalPathDuration());
+            }
+            Long duration = durations.get(taskInfo.getTask());
+            taskInfo.setCriticalPathDuration(longestDependentPath + (duration == null ? 0 : duration));
+        }
+    }
+
+    private void addIfReady(TaskInfo taskInfo) {
+        if (taskInfo.isReady() && taskInfo.getIncompleteDependencies() == 0) {
+            readyTasks.add(taskInfo);
+        }
+    }
+
+    /**
+     * Called after the given task has moved to a complete state.
+     */
+    private void completed(TaskInfo taskInfo) {
+        incompleteTasks--;
+        readyTasks.remove(taskInfo);
+        for (TaskInfo dependent : taskInfo.getDependents()) {
+            dependent.dependencyCompleted();
+            addIfReady(dependent);
+        }
+    }
+
+    /**
+     * Called after the given task, which was previously complete because it was not going to run, has been enforced to run.
+     */
+    private void reopened(TaskInfo taskInfo) {
+        incompleteTasks++;
+        for (TaskInfo dependent : taskInfo.getDependents()) {
+            dependent.dependencyReopened();
+            readyTasks.remove(dependent);
+        }
+    }
+
+    /**
+     * Up-to-date, skipped and failed executions say nothing about how long it takes to run the actions of a task, so are not recorded.
+     */
+    private static boolean ranActions(TaskInternal task) {
+        TaskStateInternal state = task.getState();
+        return state.getExecuted() && !state.getSkipped() && state.getFailure() == null;
+    }
+
     public void taskComplete(TaskInfo taskInfo) {
+        if (durationHistory != null && taskInfo.getExecutionFailure() == null && ranActions(taskInfo.getTask())) {
+            durationHistory.recordDuration(taskInfo.getTask(), System.currentTimeMillis() - taskInfo.getExecutionStartTime());
+        }
         lock.lock();
         try {
             enforceFinalizerTasks(taskInfo);
@@ -425,7 +619,8 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             }
 
             taskInfo.finishExecution();
-            runningProjects.remove(taskInfo.getTask().getProject().getPath());
+            completed(taskInfo);
+            stopRunning(taskInfo);
             condition.signalAll();
         } finally {
             lock.unlock();
@@ -445,7 +640,12 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             enforceWithDependencies(dependencyNode);
         }
         if (node.getMustNotRun() || node.isRequired()) {
+            boolean wasComplete = node.isComplete();
             node.enforceRun();
+            if (wasComplete) {
+                reopened(node);
+            }
+            addIfReady(node);
         }
     }
 
@@ -474,6 +674,7 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         for (TaskInfo taskInfo : executionPlan.values()) {
             if (taskInfo.isRequired()) {
                 taskInfo.skipExecution();
+                completed(taskInfo);
             }
         }
     }
@@ -481,7 +682,8 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     public void awaitCompletion() {
         lock.lock();
         try {
-            while (!allTasksComplete()) {
+            startScheduling();
+            while (incompleteTasks > 0) {
                 try {
                     condition.await();
                 } catch (InterruptedException e) {
@@ -506,15 +708,6 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         throw UncheckedException.throwAsUncheckedException(failures.get(0));
     }
 
-    private boolean allTasksComplete() {
-        for (TaskInfo taskInfo : executionPlan.values()) {
-            if (!taskInfo.isComplete()) {
-                return false;
-            }
-        }
-        return true;
-    }
-
     private static class RethrowingFailureHandler implements TaskFailureHandler {
         public void onTaskFailure(Task task) {
             task.getState().rethrowFailure();
@@ -48,7 +48,15 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
     private TaskGraphState taskGraphState = TaskGraphState.EMPTY;
 
     public DefaultTaskGraphExecuter(ListenerManager listenerManager, TaskPlanExecutor taskPlanExecutor) {
+        this(listenerManager, taskPlanExecutor, null);
+    }
+
+    /**
+     * @param durationHistory The history used to start the tasks that gate the most work first, or null to execute tasks in plan order.
+     */
+    public DefaultTaskGraphExecuter(ListenerManager listenerManager, TaskPlanExecutor taskPlanExecutor, TaskDurationHistory durationHistory) {
         this.taskPlanExecutor = taskPlanExecutor;
+        taskExecutionPlan.useDurationHistory(durationHistory);
         graphListeners = listenerManager.createAnonymousBroadcaster(TaskExecutionGraphListener.class);
         taskListeners = listenerManager.createAnonymousBroadcaster(TaskExecutionListener.class);
     }
@@ -21,6 +21,7 @@ import org.gradle.api.Task;
 import org.gradle.api.execution.TaskExecutionListener;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
+import org.gradle.api.tasks.ParallelizableTask;
 import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.concurrent.StoppableExecutor;
 
@@ -56,8 +57,12 @@ class ParallelTaskPlanExecutor extends AbstractTaskPlanExecutor {
     }
 
     private void startAdditionalWorkers(TaskExecutionPlan taskExecutionPlan, TaskExecutionListener taskListener, Executor executor) {
-        List<Project> projects = getAllProjects(taskExecutionPlan);
-        int numExecutors = Math.min(executorCount, projects.size());
+        int numExecutors = executorCount;
+        if (!hasParallelizableTasks(taskExecutionPlan)) {
+            // At most one task per project runs at a time
+            List<Project> projects = getAllProjects(taskExecutionPlan);
+            numExecutors = Math.min(executorCount, projects.size());
+        }
 
         LOGGER.info("Using {} parallel executor threads", numExecutors);
 
@@ -67,6 +72,15 @@ class ParallelTaskPlanExecutor extends AbstractTaskPlanExecutor {
         }
     }
 
+    private boolean hasParallelizableTasks(TaskExecutionPlan taskExecutionPlan) {
+        for (Task task : taskExecutionPlan.getTasks()) {
+            if (task.getClass().isAnnotationPresent(ParallelizableTask.class)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private List<Project> getAllProjects(TaskExecutionPlan taskExecutionPlan) {
         final Set<Project> uniqueProjects = new LinkedHashSet<Project>();
         for (Task task : taskExecutionPlan.getTasks()) {
@@ -16,9 +16,10 @@
 
 package org.gradle.execution.taskgraph;
 
-import com.google.common.collect.Iterables;
 import org.gradle.api.internal.TaskInternal;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.TreeSet;
 
 public class TaskInfo implements Comparable<TaskInfo> {
@@ -36,6 +37,11 @@ public class TaskInfo implements Comparable<TaskInfo> {
     private final TreeSet<TaskInfo> mustSuccessors = new TreeSet<TaskInfo>();
     private final TreeSet<TaskInfo> shouldSuccessors = new TreeSet<TaskInfo>();
     private final TreeSet<TaskInfo> finalizers = new TreeSet<TaskInfo>();
+    private final List<TaskInfo> dependents = new ArrayList<TaskInfo>();
+    private int planIndex;
+    private int incompleteDependencies;
+    private long criticalPathDuration;
+    private long executionStartTime;
 
     public TaskInfo(TaskInternal task) {
         this.task = task;
@@ -87,6 +93,7 @@ public class TaskInfo implements Comparable<TaskInfo> {
     public void startExecution() {
         assert isReady();
         state = TaskExecutionState.EXECUTING;
+        executionStartTime = System.currentTimeMillis();
     }
 
     public void finishExecution() {
@@ -129,15 +136,6 @@ public class TaskInfo implements Comparable<TaskInfo> {
         return this.getTask().getState().getFailure();
     }
 
-    public boolean allDependenciesComplete() {
-        for (TaskInfo dependency : Iterables.concat(mustSuccessors, dependencySuccessors)) {
-            if (!dependency.isComplete()) {
-                return false;
-            }
-        }
-        return true;
-    }
-
     public boolean allDependenciesSuccessful() {
         for (TaskInfo dependency : dependencySuccessors) {
             if (!dependency.isSuccessful()) {
@@ -196,6 +194,68 @@ public class TaskInfo implements Comparable<TaskInfo> {
         shouldSuccessors.remove(toNode);
     }
 
+    /**
+     * Resets the scheduling state of this task, which is maintained by the execution plan while the plan is executed.
+     */
+    public void startScheduling(int planIndex) {
+        this.planIndex = planIndex;
+        incompleteDependencies = 0;
+        criticalPathDuration = 0;
+        dependents.clear();
+    }
+
+    /**
+     * The time at which this task started executing.
+     */
+    public long getExecutionStartTime() {
+        return executionStartTime;
+    }
+
+    /**
+     * The position of this task in the execution plan. Ready tasks are started in this order.
+     */
+    public int getPlanIndex() {
+        return planIndex;
+    }
+
+    /**
+     * The tasks in the execution plan that must wait for this task to complete.
+     */
+    public List<TaskInfo> getDependents() {
+        return dependents;
+    }
+
+    /**
+     * The estimated time in milliseconds from the start of this task until the end of the longest chain of tasks that must wait for it.
+     */
+    public long getCriticalPathDuration() {
+        return criticalPathDuration;
+    }
+
+    public void setCriticalPathDuration(long criticalPathDuration) {
+        this.criticalPathDuration = criticalPathDuration;
+    }
+
+    public void addDependent(TaskInfo dependent) {
+        dependents.add(dependent);
+    }
+
+    /**
+     * The number of dependencies and must run after successors of this task that have not completed.
+     */
+    public int getIncompleteDependencies() {
+        return incompleteDependencies;
+    }
+
+    public void dependencyCompleted() {
+        assert incompleteDependencies > 0;
+        incompleteDependencies--;
+    }
+
+    public void dependencyReopened() {
+        incompleteDependencies++;
+    }
+
     public int compareTo(TaskInfo otherInfo) {
         return task.compareTo(otherInfo.getTask());
     }
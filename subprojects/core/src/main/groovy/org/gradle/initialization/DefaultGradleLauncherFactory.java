@@ -24,10 +24,12 @@ import org.gradle.api.internal.GradleInternal;
 import org.gradle.api.logging.Logging;
 import org.gradle.api.logging.StandardOutputListener;
 import org.gradle.cache.CacheRepository;
+import org.gradle.cache.internal.CachesCleanupScheduler;
 import org.gradle.configuration.BuildConfigurer;
 import org.gradle.execution.BuildExecuter;
 import org.gradle.initialization.buildsrc.BuildSourceBuilder;
 import org.gradle.initialization.layout.BuildLayoutFactory;
+import org.gradle.internal.environment.GradleBuildEnvironment;
 import org.gradle.internal.featurelifecycle.ScriptUsageLocationReporter;
 import org.gradle.internal.progress.BuildProgressFilter;
 import org.gradle.internal.progress.BuildProgressLogger;
@@ -45,6 +47,8 @@ import org.gradle.profile.ProfileEventAdapter;
 import org.gradle.profile.ReportGeneratingProfileListener;
 import org.gradle.util.DeprecationLogger;
 
+import java.io.File;
+
 public class DefaultGradleLauncherFactory implements GradleLauncherFactory {
     private final ServiceRegistry sharedServices;
     private final NestedBuildTracker tracker;
@@ -103,6 +107,9 @@ public class DefaultGradleLauncherFactory implements GradleLauncherFactory {
             listenerManager.useLogger(new BuildLogger(Logging.getLogger(BuildLogger.class), serviceRegistry.get(StyledTextOutputFactory.class), startParameter, requestMetaData));
         }
         listenerManager.addListener(tracker);
+        if (tracker.getCurrentBuild() == null && sharedServices.get(GradleBuildEnvironment.class).isLongLivingProcess()) {
+            scheduleCachesCleanup(startParameter, listenerManager);
+        }
 
         listenerManager.addListener(serviceRegistry.get(ProfileEventAdapter.class));
         if (startParameter.isProfile()) {
@@ -137,4 +144,16 @@ public class DefaultGradleLauncherFactory implements GradleLauncherFactory {
                 serviceRegistry
         );
     }
+
+    private void scheduleCachesCleanup(StartParameter startParameter, ListenerManager listenerManager) {
+        final CachesCleanupScheduler cleanupScheduler = sharedServices.get(CachesCleanupScheduler.class);
+        final File cachesDir = new File(startParameter.getGradleUserHomeDir(), "caches");
+        // Stop cleaning up while this build uses the caches, and clean up once the build has finished
+        cleanupScheduler.cancelCleanup();
+        listenerManager.addListener(new BuildCompletionListener() {
+            public void completed() {
+                cleanupScheduler.scheduleCleanup(cachesDir);
+            }
+        });
+    }
 }
@@ -44,6 +44,8 @@ import org.gradle.cache.CacheValidator;
 import org.gradle.cache.internal.CacheFactory;
 import org.gradle.cache.internal.DefaultCacheRepository;
 import org.gradle.cache.internal.DefaultCacheScopeMapping;
+import org.gradle.cache.internal.FileLockStatistics;
+import org.gradle.cache.internal.btree.BlockCacheStatistics;
 import org.gradle.configuration.*;
 import org.gradle.configuration.project.*;
 import org.gradle.groovy.scripts.DefaultScriptCompilerFactory;
@@ -276,7 +278,8 @@ public class BuildScopeServices extends DefaultServiceRegistry {
     }
 
     protected ProfileEventAdapter createProfileEventAdapter() {
-        return new ProfileEventAdapter(get(BuildRequestMetaData.class), get(TimeProvider.class), get(ListenerManager.class).getBroadcaster(ProfileListener.class));
+        return new ProfileEventAdapter(get(BuildRequestMetaData.class), get(TimeProvider.class), get(ListenerManager.class).getBroadcaster(ProfileListener.class), get(BlockCacheStatistics.class),
+                get(FileLockStatistics.class));
     }
 
     protected PluginRegistry createPluginRegistry() {
@@ -17,14 +17,18 @@
 package org.gradle.internal.service.scopes;
 
 import org.gradle.StartParameter;
+import org.gradle.api.JavaVersion;
 import org.gradle.api.internal.*;
+import org.gradle.api.internal.changedetection.state.FileWatcher;
 import org.gradle.api.internal.changedetection.state.InMemoryTaskArtifactCache;
+import org.gradle.api.internal.changedetection.state.WatchedFileSnapshotCache;
 import org.gradle.api.internal.classpath.DefaultModuleRegistry;
 import org.gradle.api.internal.classpath.DefaultPluginModuleRegistry;
 import org.gradle.api.internal.classpath.ModuleRegistry;
 import org.gradle.api.internal.classpath.PluginModuleRegistry;
 import org.gradle.api.internal.file.*;
 import org.gradle.cache.internal.*;
+import org.gradle.cache.internal.btree.BlockCacheStatistics;
 import org.gradle.cache.internal.locklistener.DefaultFileLockContentionHandler;
 import org.gradle.cache.internal.locklistener.FileLockContentionHandler;
 import org.gradle.cli.CommandLineConverter;
@@ -36,6 +40,7 @@ import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.environment.GradleBuildEnvironment;
 import org.gradle.internal.nativeplatform.ProcessEnvironment;
 import org.gradle.internal.nativeplatform.filesystem.FileSystem;
+import org.gradle.internal.os.OperatingSystem;
 import org.gradle.internal.reflect.DirectInstantiator;
 import org.gradle.internal.reflect.Instantiator;
 import org.gradle.internal.service.ServiceLocator;
@@ -46,6 +51,8 @@ import org.gradle.listener.ListenerManager;
 import org.gradle.messaging.remote.MessagingServer;
 import org.gradle.messaging.remote.internal.MessagingServices;
 import org.gradle.messaging.remote.internal.inet.InetAddressFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.List;
 
@@ -53,6 +60,16 @@ import java.util.List;
  * Defines the services shared by all builds in a given process.
  */
 public class GlobalScopeServices {
+    /**
+     * System property to enable watching the file system for changes, so that file snapshots can be retained between builds in the daemon.
+     */
+    public static final String FILE_WATCHING_PROPERTY = "org.gradle.file.watch";
+    /**
+     * System property to keep exclusive cache locks between builds in the daemon, until another process asks for them.
+     */
+    public static final String LOCK_LEASING_PROPERTY = "org.gradle.cache.lockLeasing";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GlobalScopeServices.class);
 
     private GradleBuildEnvironment environment;
 
@@ -107,8 +124,12 @@ public class GlobalScopeServices {
         return new DefaultPluginModuleRegistry(moduleRegistry);
     }
 
-    protected CacheFactory createCacheFactory(FileLockManager fileLockManager) {
-        return new DefaultCacheFactory(fileLockManager);
+    BlockCacheStatistics createBlockCacheStatistics() {
+        return new BlockCacheStatistics();
+    }
+
+    protected CacheFactory createCacheFactory(FileLockManager fileLockManager, BlockCacheStatistics blockCacheStatistics) {
+        return new DefaultCacheFactory(fileLockManager, blockCacheStatistics);
     }
 
     DefaultClassLoaderRegistry createClassLoaderRegistry(ClassPathRegistry classPathRegistry, ClassLoaderFactory classLoaderFactory) {
@@ -143,17 +164,46 @@ public class GlobalScopeServices {
         return new DefaultExecutorFactory();
     }
 
-    FileLockManager createFileLockManager(ProcessEnvironment processEnvironment, FileLockContentionHandler fileLockContentionHandler) {
+    FileLockStatistics createFileLockStatistics() {
+        return new FileLockStatistics();
+    }
+
+    FileLockManager createFileLockManager(ProcessEnvironment processEnvironment, FileLockContentionHandler fileLockContentionHandler, FileLockStatistics fileLockStatistics) {
         return new DefaultFileLockManager(
                 new DefaultProcessMetaDataProvider(
                         processEnvironment),
-                fileLockContentionHandler);
+                fileLockContentionHandler,
+                environment.isLongLivingProcess() && Boolean.getBoolean(LOCK_LEASING_PROPERTY),
+                fileLockStatistics);
+    }
+
+    CachesCleanupScheduler createCachesCleanupScheduler(FileLockManager fileLockManager, ExecutorFactory executorFactory) {
+        return new CachesCleanupScheduler(fileLockManager, executorFactory);
     }
 
     InMemoryTaskArtifactCache createInMemoryTaskArtifactCache() {
         return new InMemoryTaskArtifactCache();
     }
 
+    WatchedFileSnapshotCache createWatchedFileSnapshotCache() {
+        return new WatchedFileSnapshotCache(createFileWatcher());
+    }
+
+    private FileWatcher createFileWatcher() {
+        // Only the Linux WatchService reports changes promptly, the other implementations poll the file system
+        if (!environment.isLongLivingProcess() || !Boolean.getBoolean(FILE_WATCHING_PROPERTY) || !OperatingSystem.current().isLinux()
+                || !JavaVersion.current().isJava7Compatible()) {
+            return null;
+        }
+        String watcherClass = "org.gradle.api.internal.changedetection.state.jdk7.Jdk7FileWatcher";
+        try {
+            return (FileWatcher) getClass().getClassLoader().loadClass(watcherClass).newInstance();
+        } catch (Exception e) {
+            LOGGER.warn(String.format("Unable to create %s. Continuing without file watching.", watcherClass), e);
+            return null;
+        }
+    }
+
     DefaultFileLockContentionHandler createFileLockContentionHandler(ExecutorFactory executorFactory, MessagingServices messagingServices) {
         return new DefaultFileLockContentionHandler(
                 executorFactory,
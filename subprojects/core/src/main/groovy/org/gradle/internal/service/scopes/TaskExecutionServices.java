@@ -21,34 +21,66 @@ import org.gradle.api.internal.changedetection.TaskArtifactStateRepository;
 import org.gradle.api.internal.changedetection.changes.DefaultTaskArtifactStateRepository;
 import org.gradle.api.internal.changedetection.changes.ShortCircuitTaskArtifactStateRepository;
 import org.gradle.api.internal.changedetection.state.*;
-import org.gradle.api.internal.hash.DefaultHasher;
+import org.gradle.api.internal.hash.FileHashFunction;
+import org.gradle.api.internal.hash.FileHashListener;
 import org.gradle.api.internal.tasks.TaskExecuter;
+import org.gradle.api.internal.tasks.cache.LocalDirectoryTaskOutputCache;
+import org.gradle.api.internal.tasks.cache.LocalFirstTaskOutputCache;
+import org.gradle.api.internal.tasks.cache.RemoteTaskOutputCacheFactory;
+import org.gradle.api.internal.tasks.cache.TaskOutputCache;
+import org.gradle.api.internal.tasks.cache.TaskOutputPacker;
 import org.gradle.api.internal.tasks.execution.*;
 import org.gradle.api.invocation.Gradle;
 import org.gradle.cache.CacheRepository;
 import org.gradle.cache.internal.CacheDecorator;
+import org.gradle.execution.taskgraph.TaskDurationHistory;
 import org.gradle.execution.taskgraph.TaskPlanExecutor;
 import org.gradle.execution.taskgraph.TaskPlanExecutorFactory;
 import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.environment.GradleBuildEnvironment;
 import org.gradle.internal.id.RandomLongIdGenerator;
 import org.gradle.internal.reflect.Instantiator;
+import org.gradle.internal.service.ServiceRegistry;
 import org.gradle.listener.ListenerManager;
 import org.gradle.messaging.serialize.DefaultSerializerRegistry;
 import org.gradle.messaging.serialize.SerializerRegistry;
 
 public class TaskExecutionServices {
-    TaskExecuter createTaskExecuter(TaskArtifactStateRepository repository, ListenerManager listenerManager) {
+    /**
+     * System property to override the number of threads used to snapshot the files of a single task input or output.
+     */
+    public static final String SNAPSHOT_WORKERS_PROPERTY = "org.gradle.snapshot.workers";
+    /**
+     * System property to reuse the outputs of cacheable tasks from earlier executions with the same inputs.
+     */
+    public static final String TASK_OUTPUT_CACHE_PROPERTY = "org.gradle.cache.tasks";
+
+    TaskExecuter createTaskExecuter(TaskArtifactStateRepository repository, ListenerManager listenerManager, TaskOutputCache taskOutputCache) {
+        TaskActionListener taskActionListener = listenerManager.getBroadcaster(TaskActionListener.class);
+        TaskExecuter executer = new PostExecutionAnalysisTaskExecuter(
+                new ExecuteActionsTaskExecuter(
+                        taskActionListener
+                ));
+        if (Boolean.getBoolean(TASK_OUTPUT_CACHE_PROPERTY)) {
+            executer = new SkipCachedTaskExecuter(taskOutputCache, new TaskOutputPacker(), taskActionListener, executer);
+        }
         return new ExecuteAtMostOnceTaskExecuter(
                 new SkipOnlyIfTaskExecuter(
                         new SkipTaskWithNoActionsExecuter(
                                 new SkipEmptySourceFilesTaskExecuter(
                                         new ValidatingTaskExecuter(
-                                                new SkipUpToDateTaskExecuter(repository,
-                                                        new PostExecutionAnalysisTaskExecuter(
-                                                                new ExecuteActionsTaskExecuter(
-                                                                        listenerManager.getBroadcaster(TaskActionListener.class)
-                                                                ))))))));
+                                                new SkipUpToDateTaskExecuter(repository, executer))))));
+    }
+
+    TaskOutputCache createTaskOutputCache(CacheRepository cacheRepository, ExecutorFactory executorFactory, ServiceRegistry services) {
+        TaskOutputCache local = new LocalDirectoryTaskOutputCache(cacheRepository, LocalDirectoryTaskOutputCache.DEFAULT_MAX_SIZE);
+        for (RemoteTaskOutputCacheFactory factory : services.getAll(RemoteTaskOutputCacheFactory.class)) {
+            TaskOutputCache remote = factory.createRemoteCache();
+            if (remote != null) {
+                return new LocalFirstTaskOutputCache(local, remote, executorFactory);
+            }
+        }
+        return local;
     }
 
     TaskArtifactStateCacheAccess createCacheAccess(Gradle gradle, CacheRepository cacheRepository, InMemoryTaskArtifactCache inMemoryTaskArtifactCache, GradleBuildEnvironment environment) {
@@ -61,12 +93,27 @@ public class TaskExecutionServices {
         return new DefaultTaskArtifactStateCacheAccess(gradle, cacheRepository, decorator);
     }
 
-    FileSnapshotter createFileSnapshotter(TaskArtifactStateCacheAccess cacheAccess) {
-        return new CachingFileSnapshotter(new DefaultHasher(), cacheAccess);
+    InMemoryFileSnapshotCache createInMemoryFileSnapshotCache(ListenerManager listenerManager) {
+        InMemoryFileSnapshotCache cache = new InMemoryFileSnapshotCache();
+        listenerManager.addListener(cache);
+        return cache;
+    }
+
+    FileSnapshotter createFileSnapshotter(TaskArtifactStateCacheAccess cacheAccess, InMemoryFileSnapshotCache inMemoryFileSnapshotCache, WatchedFileSnapshotCache watchedFileSnapshotCache,
+                                          ListenerManager listenerManager) {
+        if (watchedFileSnapshotCache.isEnabled()) {
+            // Files may have changed since the previous build
+            watchedFileSnapshotCache.expectChanges();
+            listenerManager.addListener(watchedFileSnapshotCache);
+        }
+        return new CachingFileSnapshotter(FileHashFunction.fromSystemProperty(), cacheAccess, inMemoryFileSnapshotCache, watchedFileSnapshotCache,
+                listenerManager.getBroadcaster(FileHashListener.class));
     }
 
-    TaskArtifactStateRepository createTaskArtifactStateRepository(Instantiator instantiator, TaskArtifactStateCacheAccess cacheAccess, StartParameter startParameter, FileSnapshotter fileSnapshotter) {
-        FileCollectionSnapshotter fileCollectionSnapshotter = new DefaultFileCollectionSnapshotter(fileSnapshotter, cacheAccess);
+    TaskArtifactStateRepository createTaskArtifactStateRepository(Instantiator instantiator, TaskArtifactStateCacheAccess cacheAccess, StartParameter startParameter, FileSnapshotter fileSnapshotter,
+                                                                  ExecutorFactory executorFactory, WatchedFileSnapshotCache watchedFileSnapshotCache) {
+        FileCollectionSnapshotter fileCollectionSnapshotter = new DefaultFileCollectionSnapshotter(fileSnapshotter, cacheAccess, executorFactory, snapshotWorkerCount(startParameter),
+                watchedFileSnapshotCache);
 
         FileCollectionSnapshotter outputFilesSnapshotter = new OutputFilesCollectionSnapshotter(fileCollectionSnapshotter, new RandomLongIdGenerator(), cacheAccess);
 
@@ -91,6 +138,22 @@ public class TaskExecutionServices {
         );
     }
 
+    private int snapshotWorkerCount(StartParameter startParameter) {
+        Integer workers = Integer.getInteger(SNAPSHOT_WORKERS_PROPERTY);
+        if (workers != null) {
+            return Math.max(1, workers);
+        }
+        int parallelThreads = startParameter.getParallelThreadCount();
+        if (parallelThreads < 0) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        return Math.max(1, parallelThreads);
+    }
+
+    TaskDurationHistory createTaskDurationHistory(TaskArtifactStateCacheAccess cacheAccess) {
+        return new CacheBackedTaskDurationHistory(cacheAccess);
+    }
+
     TaskPlanExecutor createTaskExecutorFactory(StartParameter startParameter, ExecutorFactory executorFactory) {
         return new TaskPlanExecutorFactory(startParameter.getParallelThreadCount(), executorFactory).create();
     }
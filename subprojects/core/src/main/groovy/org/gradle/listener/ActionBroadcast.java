@@ -34,6 +34,10 @@ public class ActionBroadcast<T> implements Action<T> {
         actions.add(action);
     }
 
+    public boolean isEmpty() {
+        return actions.isEmpty();
+    }
+
     public void execute(T t) {
         for (Action<? super T> action : new ArrayList<Action<? super T>>(actions)) {
             action.execute(t);
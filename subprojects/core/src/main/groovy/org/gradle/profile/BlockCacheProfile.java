@@ -0,0 +1,37 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.profile;
+
+import com.google.common.cache.CacheStats;
+
+/**
+ * The hit, miss and eviction counts of the in-memory block caches of the indexed caches that were closed during the build.
+ */
+public class BlockCacheProfile {
+    private CacheStats stats = new CacheStats(0, 0, 0, 0, 0, 0);
+
+    public CacheStats getStats() {
+        return stats;
+    }
+
+    public void setStats(CacheStats stats) {
+        this.stats = stats;
+    }
+
+    public String getDescription() {
+        return String.format("Indexed Cache Blocks (%d hits, %d misses, %d evictions)", stats.hitCount(), stats.missCount(), stats.evictionCount());
+    }
+}
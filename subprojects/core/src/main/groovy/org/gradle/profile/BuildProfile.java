@@ -46,6 +46,9 @@ public class BuildProfile {
 
     private final Map<String, ProjectProfile> projects = new LinkedHashMap<String, ProjectProfile>();
     private final Map<String, ContinuousOperation> dependencySets = new LinkedHashMap<String, ContinuousOperation>();
+    private final FileHashingProfile fileHashing = new FileHashingProfile();
+    private final BlockCacheProfile blockCache = new BlockCacheProfile();
+    private final LockWaitProfile lockWait = new LockWaitProfile();
     private long profilingStarted;
     private long buildStarted;
     private long settingsEvaluated;
@@ -136,6 +139,27 @@ public class BuildProfile {
         return new CompositeOperation<ContinuousOperation>(profiles);
     }
 
+    /**
+     * Get the profiling container for the hashing of file contents.
+     */
+    public FileHashingProfile getFileHashing() {
+        return fileHashing;
+    }
+
+    /**
+     * Get the profiling container for the block caches of the indexed caches.
+     */
+    public BlockCacheProfile getBlockCache() {
+        return blockCache;
+    }
+
+    /**
+     * Get the profiling container for the time spent waiting for file locks.
+     */
+    public LockWaitProfile getLockWait() {
+        return lockWait;
+    }
+
     /**
      * Should be set with a time as soon as possible after startup.
      * @param profilingStarted
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.profile;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accumulates the time spent hashing file contents to detect changes. Files may be hashed concurrently, so the elapsed time is the sum of the
+ * time spent by each thread.
+ */
+public class FileHashingProfile extends Operation {
+    private long fileCount;
+    private long bytes;
+    private long elapsedNanos;
+
+    public synchronized void fileHashed(long length, long elapsedNanos) {
+        this.fileCount++;
+        this.bytes += length;
+        this.elapsedNanos += elapsedNanos;
+    }
+
+    public synchronized long getFileCount() {
+        return fileCount;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized long getElapsedTime() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    /**
+     * Returns the hashing throughput in megabytes per second, or 0 when nothing has been hashed.
+     */
+    public synchronized double getThroughput() {
+        if (elapsedNanos == 0) {
+            return 0;
+        }
+        return (bytes / (1024.0 * 1024.0)) / (elapsedNanos / 1000000000.0);
+    }
+
+    public String getDescription() {
+        BigDecimal throughput = BigDecimal.valueOf(getThroughput()).setScale(1, BigDecimal.ROUND_HALF_UP);
+        return String.format("File Hashing (%d files, %s MB/s)", getFileCount(), throughput);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.profile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The time spent waiting to acquire file locks during the build, per lock target.
+ */
+public class LockWaitProfile {
+    private Map<String, Long> waitTimes = new HashMap<String, Long>();
+
+    public Map<String, Long> getWaitTimes() {
+        return waitTimes;
+    }
+
+    public void setWaitTimes(Map<String, Long> waitTimes) {
+        this.waitTimes = waitTimes;
+    }
+
+    public long getElapsedTime() {
+        long total = 0;
+        for (Long waitTime : waitTimes.values()) {
+            total += waitTime;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the lock targets that have been waited for, longest wait first.
+     */
+    public List<String> getTargets() {
+        List<String> targets = new ArrayList<String>(waitTimes.keySet());
+        Collections.sort(targets, new Comparator<String>() {
+            public int compare(String o1, String o2) {
+                int result = waitTimes.get(o2).compareTo(waitTimes.get(o1));
+                return result != 0 ? result : o1.compareTo(o2);
+            }
+        });
+        return targets;
+    }
+
+    public String getDescription() {
+        return String.format("Waiting for File Locks (%d targets)", waitTimes.size());
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.gradle.profile;
 
+import com.google.common.cache.CacheStats;
 import org.gradle.BuildListener;
 import org.gradle.BuildResult;
 import org.gradle.api.Project;
@@ -24,26 +25,40 @@ import org.gradle.api.Task;
 import org.gradle.api.artifacts.DependencyResolutionListener;
 import org.gradle.api.artifacts.ResolvableDependencies;
 import org.gradle.api.execution.TaskExecutionListener;
+import org.gradle.api.internal.hash.FileHashListener;
 import org.gradle.api.initialization.Settings;
 import org.gradle.api.invocation.Gradle;
 import org.gradle.api.tasks.TaskState;
+import org.gradle.cache.internal.FileLockStatistics;
+import org.gradle.cache.internal.btree.BlockCacheStatistics;
 import org.gradle.initialization.BuildCompletionListener;
 import org.gradle.initialization.BuildRequestMetaData;
 import org.gradle.internal.TimeProvider;
 
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Adapts various events to build a {@link BuildProfile} model, and then notifies a {@link ReportGeneratingProfileListener} when the model is ready.
  */
-public class ProfileEventAdapter implements BuildListener, ProjectEvaluationListener, TaskExecutionListener, DependencyResolutionListener, BuildCompletionListener {
+public class ProfileEventAdapter implements BuildListener, ProjectEvaluationListener, TaskExecutionListener, DependencyResolutionListener, BuildCompletionListener, FileHashListener {
     private final BuildRequestMetaData buildMetaData;
     private final TimeProvider timeProvider;
     private final ProfileListener listener;
+    private final BlockCacheStatistics blockCacheStatistics;
+    private final FileLockStatistics fileLockStatistics;
     private BuildProfile buildProfile;
+    private CacheStats blockCacheStatsAtStart;
+    private Map<String, Long> lockWaitTimesAtStart;
 
-    public ProfileEventAdapter(BuildRequestMetaData buildMetaData, TimeProvider timeProvider, ProfileListener listener) {
+    public ProfileEventAdapter(BuildRequestMetaData buildMetaData, TimeProvider timeProvider, ProfileListener listener, BlockCacheStatistics blockCacheStatistics,
+                               FileLockStatistics fileLockStatistics) {
         this.buildMetaData = buildMetaData;
         this.timeProvider = timeProvider;
         this.listener = listener;
+        this.blockCacheStatistics = blockCacheStatistics;
+        this.fileLockStatistics = fileLockStatistics;
     }
 
     // BuildListener
@@ -52,6 +67,9 @@ public class ProfileEventAdapter implements BuildListener, ProjectEvaluationList
         buildProfile = new BuildProfile(gradle.getStartParameter());
         buildProfile.setBuildStarted(now);
         buildProfile.setProfilingStarted(buildMetaData.getBuildTimeClock().getStartTime());
+        // The statistics are shared by the builds of this process
+        blockCacheStatsAtStart = blockCacheStatistics.getTotal();
+        lockWaitTimesAtStart = fileLockStatistics.getWaitTimes();
     }
 
     public void settingsEvaluated(Settings settings) {
@@ -72,6 +90,8 @@ public class ProfileEventAdapter implements BuildListener, ProjectEvaluationList
 
     public void completed() {
         buildProfile.setBuildFinished(timeProvider.getCurrentTime());
+        buildProfile.getBlockCache().setStats(blockCacheStatistics.getTotal().minus(blockCacheStatsAtStart));
+        buildProfile.getLockWait().setWaitTimes(lockWaitTimesSinceStart());
         try {
             listener.buildFinished(buildProfile);
         } finally {
@@ -79,6 +99,18 @@ public class ProfileEventAdapter implements BuildListener, ProjectEvaluationList
         }
     }
 
+    private Map<String, Long> lockWaitTimesSinceStart() {
+        Map<String, Long> waitTimes = new HashMap<String, Long>();
+        for (Map.Entry<String, Long> entry : fileLockStatistics.getWaitTimes().entrySet()) {
+            Long atStart = lockWaitTimesAtStart.get(entry.getKey());
+            long waitTime = atStart == null ? entry.getValue() : entry.getValue() - atStart;
+            if (waitTime > 0) {
+                waitTimes.put(entry.getKey(), waitTime);
+            }
+        }
+        return waitTimes;
+    }
+
     // ProjectEvaluationListener
     public void beforeEvaluate(Project project) {
         long now = timeProvider.getCurrentTime();
@@ -118,5 +150,9 @@ public class ProfileEventAdapter implements BuildListener, ProjectEvaluationList
         long now = timeProvider.getCurrentTime();
         buildProfile.getDependencySetProfile(dependencies.getPath()).setFinish(now);
     }
-}
 
+    // FileHashListener
+    public void fileHashed(File file, long length, long elapsedNanos) {
+        buildProfile.getFileHashing().fileHashed(length, elapsedNanos);
+    }
+}
@@ -101,6 +101,24 @@ public class ProfileReportRenderer {
                                     htmlWriter.startElement("td").characters("Task Execution").endElement();
                                     htmlWriter.startElement("td").attribute("class", "numeric").characters(DURATION_FORMAT.format(model.getElapsedTotalExecutionTime())).endElement();
                                 htmlWriter.endElement();
+                                htmlWriter.startElement("tr");
+                                    htmlWriter.startElement("td").characters(model.getFileHashing().getDescription()).endElement();
+                                    htmlWriter.startElement("td").attribute("class", "numeric").characters(DURATION_FORMAT.format(model.getFileHashing().getElapsedTime())).endElement();
+                                htmlWriter.endElement();
+                                htmlWriter.startElement("tr");
+                                    htmlWriter.startElement("td").characters(model.getBlockCache().getDescription()).endElement();
+                                    htmlWriter.startElement("td").attribute("class", "numeric").characters("").endElement();
+                                htmlWriter.endElement();
+                                htmlWriter.startElement("tr");
+                                    htmlWriter.startElement("td").characters(model.getLockWait().getDescription()).endElement();
+                                    htmlWriter.startElement("td").attribute("class", "numeric").characters(DURATION_FORMAT.format(model.getLockWait().getElapsedTime())).endElement();
+                                htmlWriter.endElement();
+                                for (String target : model.getLockWait().getTargets()) {
+                                    htmlWriter.startElement("tr");
+                                        htmlWriter.startElement("td").characters(target).endElement();
+                                        htmlWriter.startElement("td").attribute("class", "numeric").characters(DURATION_FORMAT.format(model.getLockWait().getWaitTimes().get(target))).endElement();
+                                    htmlWriter.endElement();
+                                }
                             htmlWriter.endElement();
                         htmlWriter.endElement();
                         htmlWriter.startElement("div").attribute("class", "tab").attribute("id", "tab1");
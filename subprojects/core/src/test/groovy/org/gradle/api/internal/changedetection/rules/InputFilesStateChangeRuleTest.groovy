@@ -16,19 +16,24 @@
 
 package org.gradle.api.internal.changedetection.rules
 
+import com.google.common.hash.HashCode
 import org.gradle.api.internal.changedetection.state.FileCollectionSnapshot
 import org.gradle.api.internal.changedetection.state.TaskExecution
 import org.gradle.util.ChangeListener
 import spock.lang.Specification
 
 public class InputFilesStateChangeRuleTest extends Specification {
-    def inputSnapshot = Mock(FileCollectionSnapshot)
+    def inputSnapshot = Mock(FileCollectionSnapshot) {
+        getHash() >> HashCode.fromInt(1)
+    }
     def previousInputSnapshot = Mock(FileCollectionSnapshot)
+    def previousInputHash = HashCode.fromInt(2)
     FileCollectionSnapshot.ChangeIterator<String> changeIterator = Mock()
 
     TaskStateChanges createStateChanges() {
         def previousExecution = Stub(TaskExecution) {
             getInputFilesSnapshot() >> previousInputSnapshot
+            getInputFilesHash() >> previousInputHash
         }
         return InputFilesStateChangeRule.create(previousExecution, Mock(TaskExecution), inputSnapshot)
     }
@@ -42,6 +47,21 @@ public class InputFilesStateChangeRuleTest extends Specification {
         messages == ["Input file history is not available."]
     }
 
+    def "emits no changes without loading previous input snapshot when hashes match"() {
+        def previousExecution = Mock(TaskExecution)
+
+        when:
+        def changes = InputFilesStateChangeRule.create(previousExecution, Mock(TaskExecution), inputSnapshot).iterator().collect()
+
+        then:
+        1 * previousExecution.getInputFilesHash() >> HashCode.fromInt(1)
+        0 * previousExecution.getInputFilesSnapshot()
+        0 * inputSnapshot.iterateChangesSince(_)
+
+        and:
+        changes.empty
+    }
+
     def "emits change for file changes since previous input snapshot"() {
         when:
         def messages = createStateChanges().iterator().collect {it.message}
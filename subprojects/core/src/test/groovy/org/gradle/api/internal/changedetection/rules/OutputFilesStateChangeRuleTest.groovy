@@ -16,6 +16,7 @@
 
 package org.gradle.api.internal.changedetection.rules
 
+import com.google.common.hash.HashCode
 import org.gradle.api.internal.TaskInternal
 import org.gradle.api.internal.TaskOutputsInternal
 import org.gradle.api.internal.changedetection.state.FileCollectionSnapshot
@@ -26,8 +27,11 @@ import org.gradle.util.ChangeListener
 import spock.lang.Specification;
 
 public class OutputFilesStateChangeRuleTest extends Specification {
-    def outputSnapshot = Mock(FileCollectionSnapshot)
+    def outputSnapshot = Mock(FileCollectionSnapshot) {
+        getHash() >> HashCode.fromInt(1)
+    }
     def previousOutputSnapshot = Mock(FileCollectionSnapshot)
+    def previousOutputHash = HashCode.fromInt(2)
 
     TaskStateChanges createStateChanges() {
         def taskOutputs = Stub(TaskOutputsInternal) {
@@ -42,6 +46,7 @@ public class OutputFilesStateChangeRuleTest extends Specification {
 
         def previousExecution = Stub(TaskExecution) {
             getOutputFilesSnapshot() >> previousOutputSnapshot
+            getOutputFilesHash() >> previousOutputHash
         }
         return OutputFilesStateChangeRule.create(task, previousExecution, Mock(TaskExecution), snapshotter)
     }
@@ -57,6 +62,18 @@ public class OutputFilesStateChangeRuleTest extends Specification {
         !it.hasNext()
     }
 
+    def "emits no changes when output files hash matches previous execution"() {
+        when:
+        previousOutputHash = HashCode.fromInt(1)
+        def messages = createStateChanges().iterator().collect {it.message}
+
+        then:
+        0 * outputSnapshot.iterateChangesSince(_)
+
+        and:
+        messages.empty
+    }
+
     def "emits change for file changes since previous output snapshot"() {
         FileCollectionSnapshot.ChangeIterator<String> changeIterator = Mock()
         when:
@@ -16,8 +16,10 @@
 
 package org.gradle.api.internal.changedetection.state
 
+import org.gradle.api.internal.hash.FileHashFunction
 import org.gradle.api.internal.hash.Hasher
 import org.gradle.cache.PersistentIndexedCache
+import org.gradle.internal.Factory
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.junit.Rule
 import spock.lang.Specification
@@ -47,6 +49,7 @@ class CachingFileSnapshotterTest extends Specification {
 
         and:
         1 * cache.get(file) >> null
+        1 * cacheAccess.longRunningOperation("Hash $file", _) >> { String name, Factory action -> action.create() }
         1 * target.hash(file) >> hash
         1 * cache.put(file, _) >> { File key, CachingFileSnapshotter.FileInfo fileInfo ->
             fileInfo.hash == hash
@@ -65,6 +68,7 @@ class CachingFileSnapshotterTest extends Specification {
 
         and:
         1 * cache.get(file) >> new CachingFileSnapshotter.FileInfo(hash, 1024, file.lastModified())
+        1 * cacheAccess.longRunningOperation("Hash $file", _) >> { String name, Factory action -> action.create() }
         1 * target.hash(file) >> hash
         1 * cache.put(file, _) >> { File key, CachingFileSnapshotter.FileInfo fileInfo ->
             fileInfo.hash == hash
@@ -83,6 +87,7 @@ class CachingFileSnapshotterTest extends Specification {
 
         and:
         1 * cache.get(file) >> new CachingFileSnapshotter.FileInfo(hash, file.length(), 124)
+        1 * cacheAccess.longRunningOperation("Hash $file", _) >> { String name, Factory action -> action.create() }
         1 * target.hash(file) >> hash
         1 * cache.put(file, _) >> { File key, CachingFileSnapshotter.FileInfo fileInfo ->
             fileInfo.hash == hash
@@ -92,6 +97,21 @@ class CachingFileSnapshotterTest extends Specification {
         0 * _._
     }
 
+    def hashesFileWhenHashFunctionHasChanged() {
+        when:
+        def result = hasher.snapshot(file)
+
+        then:
+        result.hash == hash
+
+        and:
+        1 * cache.get(file) >> new CachingFileSnapshotter.FileInfo("other".bytes, file.length(), file.lastModified(), FileHashFunction.MURMUR3_128)
+        1 * cacheAccess.longRunningOperation("Hash $file", _) >> { String name, Factory action -> action.create() }
+        1 * target.hash(file) >> hash
+        1 * cache.put(file, _)
+        0 * _._
+    }
+
     def doesNotHashFileWhenTimestampAndLengthHaveNotChanged() {
         when:
         def result = hasher.snapshot(file)
@@ -103,4 +123,19 @@ class CachingFileSnapshotterTest extends Specification {
         1 * cache.get(file) >> new CachingFileSnapshotter.FileInfo(hash, file.length(), file.lastModified())
         0 * _._
     }
+
+    def doesNotUsePersistentCacheWhenFileAlreadySnapshottedInThisBuild() {
+        given:
+        1 * cache.get(file) >> new CachingFileSnapshotter.FileInfo(hash, file.length(), file.lastModified())
+        hasher.snapshot(file)
+
+        when:
+        def result = hasher.snapshot(file)
+
+        then:
+        result.hash == hash
+
+        and:
+        0 * _._
+    }
 }
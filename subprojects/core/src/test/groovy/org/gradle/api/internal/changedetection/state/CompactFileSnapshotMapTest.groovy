@@ -0,0 +1,121 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.util.ChangeListener
+import spock.lang.Specification
+
+import static org.gradle.api.internal.changedetection.state.DefaultFileCollectionSnapshotter.*
+
+class CompactFileSnapshotMapTest extends Specification {
+    def sep = File.separator
+
+    def "contains the same entries as the source map"() {
+        def source = [
+                ("${sep}a${sep}b${sep}c.txt".toString()): new FileHashSnapshot("hash1".bytes),
+                ("${sep}a${sep}b".toString()): new DirSnapshot(),
+                ("${sep}a${sep}b${sep}d.txt".toString()): new FileHashSnapshot("hash-2".bytes),
+                ("${sep}a${sep}missing".toString()): new MissingFileSnapshot(),
+                (sep): new DirSnapshot(),
+                "relative": new FileHashSnapshot(new byte[0])
+        ]
+
+        when:
+        def map = CompactFileSnapshotMap.of(source)
+
+        then:
+        map.size() == source.size()
+        map.keySet() == source.keySet()
+        source.each { key, value ->
+            assert map.containsKey(key)
+            assert map[key].isUpToDate(value)
+            assert value.isUpToDate(map[key])
+        }
+        map.entrySet().every { source[it.key].isUpToDate(it.value) }
+        !map.containsKey("${sep}a${sep}b${sep}other.txt".toString())
+        map.get("${sep}a${sep}b${sep}e.txt".toString()) == null
+        map.get(12) == null
+    }
+
+    def "shares parent directory strings between maps"() {
+        def path = "${sep}a${sep}b${sep}c.txt".toString()
+
+        when:
+        def map1 = CompactFileSnapshotMap.of([(path): new DirSnapshot()])
+        def map2 = CompactFileSnapshotMap.of([(new String(path)): new DirSnapshot()])
+
+        then:
+        map1.parents[0].is(map2.parents[0])
+    }
+
+    def "maps with the same content have the same root hash"() {
+        def a = path("a", "b", "c.txt")
+        def b = path("a", "d.txt")
+
+        expect:
+        CompactFileSnapshotMap.of([(a): new FileHashSnapshot("1".bytes), (b): new DirSnapshot()]).rootHash == CompactFileSnapshotMap.of([(b): new DirSnapshot(), (a): new FileHashSnapshot("1".bytes)]).rootHash
+        CompactFileSnapshotMap.of([(a): new FileHashSnapshot("1".bytes)]).rootHash != CompactFileSnapshotMap.of([(a): new FileHashSnapshot("2".bytes)]).rootHash
+        CompactFileSnapshotMap.of([(a): new FileHashSnapshot("1".bytes)]).rootHash != CompactFileSnapshotMap.of([(b): new FileHashSnapshot("1".bytes)]).rootHash
+    }
+
+    def "maps with the same content relative to a directory have the same relative hash"() {
+        def checkout1 = new File(path("work", "checkout1"))
+        def checkout2 = new File(path("work", "checkout2"))
+        def outside = path("lib", "x.jar")
+        def map1 = CompactFileSnapshotMap.of([(path("work", "checkout1", "src", "a.txt")): new FileHashSnapshot("1".bytes), (outside): new FileHashSnapshot("2".bytes)])
+        def map2 = CompactFileSnapshotMap.of([(path("work", "checkout2", "src", "a.txt")): new FileHashSnapshot("1".bytes), (outside): new FileHashSnapshot("2".bytes)])
+        def changed = CompactFileSnapshotMap.of([(path("work", "checkout2", "src", "a.txt")): new FileHashSnapshot("3".bytes), (outside): new FileHashSnapshot("2".bytes)])
+
+        expect:
+        map1.rootHash != map2.rootHash
+        map1.getRelativeHash(checkout1) == map2.getRelativeHash(checkout2)
+        map1.getRelativeHash(checkout1) != changed.getRelativeHash(checkout2)
+        map1.getRelativeHash(checkout1) != map2.getRelativeHash(checkout1)
+    }
+
+    def "reports changes in changed directories only"() {
+        def listener = Mock(ChangeListener)
+        def unchanged = (1..20).collectEntries { [(path("a", "unchanged", "sub$it", "f.txt")): new FileHashSnapshot("$it".bytes)] }
+        def old = CompactFileSnapshotMap.of(unchanged + [
+                (path("a", "changed", "1.txt")): new FileHashSnapshot("1".bytes),
+                (path("a", "changed", "2.txt")): new FileHashSnapshot("2".bytes),
+                (path("a", "changed", "3.txt")): new FileHashSnapshot("3".bytes)])
+        def current = CompactFileSnapshotMap.of(unchanged + [
+                (path("a", "changed", "1.txt")): new FileHashSnapshot("1".bytes),
+                (path("a", "changed", "2.txt")): new FileHashSnapshot("other".bytes),
+                (path("a", "changed", "4.txt")): new MissingFileSnapshot()])
+
+        when:
+        def changes = current.iterateChangesSince(old)
+        while (changes.next(listener)) {}
+
+        then:
+        1 * listener.changed({ it.key == path("a", "changed", "2.txt") })
+        1 * listener.removed({ it.key == path("a", "changed", "3.txt") })
+        1 * listener.added({ it.key == path("a", "changed", "4.txt") })
+        0 * _
+    }
+
+    def "can create empty map"() {
+        expect:
+        CompactFileSnapshotMap.of([:]).isEmpty()
+    }
+
+    private String path(String... elements) {
+        return sep + elements.join(sep)
+    }
+}
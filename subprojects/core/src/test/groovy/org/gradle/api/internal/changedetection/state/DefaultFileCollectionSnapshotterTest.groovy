@@ -17,6 +17,7 @@ package org.gradle.api.internal.changedetection.state
 
 import org.gradle.api.file.FileCollection
 import org.gradle.api.file.FileTree
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.hash.HashUtil
 import org.gradle.test.fixtures.file.TestFile
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
@@ -201,6 +202,27 @@ public class DefaultFileCollectionSnapshotterTest extends Specification {
         0 * _
     }
 
+    def snapshotsLargeFileCollectionUsingMultipleWorkers() {
+        def executorFactory = new DefaultExecutorFactory()
+        def parallelSnapshotter = new DefaultFileCollectionSnapshotter(fileSnapshotter, cacheAccess, executorFactory, 4, new WatchedFileSnapshotCache(null))
+        def inputs = (1..DefaultFileCollectionSnapshotter.MIN_FILES_PER_WORKER * 4).collect { tmpDir.createFile("file$it").write(it as String) }
+        inputs << tmpDir.createDir('dir') << tmpDir.file('missing')
+
+        when:
+        FileCollectionSnapshot parallel = parallelSnapshotter.snapshot(files(inputs as File[]))
+        FileCollectionSnapshot sequential = snapshotter.snapshot(files(inputs as File[]))
+        sequential.iterateChangesSince(parallel).next(listener)
+
+        then:
+        parallel.files.files as Set == inputs.findAll { it.file } as Set
+        _ * listener.stopped >> false
+        _ * listener.resumeAfter >> null
+        0 * _
+
+        cleanup:
+        executorFactory.stop()
+    }
+
     def canCreateEmptySnapshot() {
         TestFile file = tmpDir.createFile('file')
 
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.api.Task
+import org.gradle.api.file.FileCollection
+import org.gradle.api.tasks.TaskOutputs
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class InMemoryFileSnapshotCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def cache = new InMemoryFileSnapshotCache()
+    def info = new CachingFileSnapshotter.FileInfo("hash".bytes, 12, 34)
+
+    def "discards snapshots of output files and files in output directories after task actions have run"() {
+        def outputFile = tmpDir.file("out.txt")
+        def outputDir = tmpDir.file("classes")
+        def nestedFile = outputDir.file("a/b.class")
+        def siblingFile = tmpDir.file("classes2/c.class")
+        def inputFile = tmpDir.file("in.txt")
+        def task = Stub(Task) {
+            getOutputs() >> Stub(TaskOutputs) {
+                getFiles() >> Stub(FileCollection) {
+                    iterator() >> { [outputFile, outputDir].iterator() }
+                }
+            }
+        }
+
+        given:
+        [outputFile, outputDir, nestedFile, siblingFile, inputFile].each { cache.put(it.absolutePath, info) }
+
+        when:
+        cache.afterActions(task)
+
+        then:
+        cache.get(outputFile.absolutePath) == null
+        cache.get(outputDir.absolutePath) == null
+        cache.get(nestedFile.absolutePath) == null
+        cache.get(siblingFile.absolutePath) == info
+        cache.get(inputFile.absolutePath) == info
+    }
+}
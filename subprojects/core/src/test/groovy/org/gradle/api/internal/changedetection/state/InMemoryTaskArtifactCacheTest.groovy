@@ -16,6 +16,7 @@
 
 package org.gradle.api.internal.changedetection.state
 
+import org.gradle.cache.internal.FileLock
 import org.gradle.cache.internal.MultiProcessSafePersistentIndexedCache
 import spock.lang.Specification
 
@@ -133,4 +134,57 @@ class InMemoryTaskArtifactCacheTest extends Specification {
         0 * target._
     }
 
+    def "reuses cached entries in later builds when backing cache has not been updated"() {
+        def state1 = Stub(FileLock.State)
+        def state2 = Stub(FileLock.State) {
+            hasBeenUpdatedSince(state1) >> false
+        }
+        def cache = cacheFactory.decorate("path/fileSnapshots.bin", "fileSnapshots", target)
+
+        when:
+        cache.onStartWork("build 1", state1)
+        cache.get("key")
+        cache.onEndWork(state1)
+
+        then:
+        1 * target.get("key") >> "result"
+
+        when:
+        def nextBuildCache = cacheFactory.decorate("path/fileSnapshots.bin", "fileSnapshots", target)
+        nextBuildCache.onStartWork("build 2", state2)
+        def result = nextBuildCache.get("key")
+
+        then:
+        result == "result"
+
+        and:
+        0 * target._
+    }
+
+    def "discards cached entries when backing cache has been updated by another process"() {
+        def state1 = Stub(FileLock.State)
+        def state2 = Stub(FileLock.State) {
+            hasBeenUpdatedSince(state1) >> true
+        }
+        def cache = cacheFactory.decorate("path/fileSnapshots.bin", "fileSnapshots", target)
+
+        when:
+        cache.onStartWork("build 1", state1)
+        cache.get("key")
+        cache.onEndWork(state1)
+
+        then:
+        1 * target.get("key") >> "result"
+
+        when:
+        def nextBuildCache = cacheFactory.decorate("path/fileSnapshots.bin", "fileSnapshots", target)
+        nextBuildCache.onStartWork("build 2", state2)
+        def result = nextBuildCache.get("key")
+
+        then:
+        result == "new result"
+
+        and:
+        1 * target.get("key") >> "new result"
+    }
 }
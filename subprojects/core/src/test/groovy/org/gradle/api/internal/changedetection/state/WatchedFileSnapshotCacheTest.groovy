@@ -0,0 +1,193 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.api.Task
+import org.gradle.api.internal.TaskOutputsInternal
+import org.gradle.api.internal.file.collections.SimpleFileCollection
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class WatchedFileSnapshotCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def watcher = Mock(FileWatcher)
+    def cache = new WatchedFileSnapshotCache(watcher)
+    def info = new CachingFileSnapshotter.FileInfo("hash".bytes, 12, 34)
+    def dir = tmpDir.createDir("dir")
+    def file = dir.file("a.txt")
+    def otherFile = tmpDir.file("other/b.txt")
+
+    def setup() {
+        // Drain the changes that may have happened before the cache was created
+        cache.getUnchanged(tmpDir.file("unknown.txt"))
+    }
+
+    def "waits for pending changes before serving snapshots when changes are expected"() {
+        given:
+        _ * watcher.watch(_) >> true
+        cache.retain(file, info, cache.watchParent(file))
+
+        when:
+        def result = cache.getUnchanged(file)
+
+        then:
+        1 * watcher.pollChanges(_)
+        0 * watcher.waitForChanges(_)
+        result == info
+
+        when:
+        cache.expectChanges()
+        result = cache.getUnchanged(file)
+
+        then:
+        1 * watcher.waitForChanges(_) >> { FileWatcher.ChangeListener listener -> listener.changed(dir, true) }
+        0 * watcher.pollChanges(_)
+        result == null
+    }
+
+    def "expects changes after a task has executed"() {
+        def task = Stub(Task) {
+            getOutputs() >> Stub(TaskOutputsInternal) {
+                getFiles() >> new SimpleFileCollection(otherFile)
+            }
+        }
+
+        given:
+        _ * watcher.watch(_) >> true
+        cache.retain(file, info, cache.watchParent(file))
+        cache.retain(otherFile, info, cache.watchParent(otherFile))
+
+        when:
+        cache.afterActions(task)
+        def other = cache.getUnchanged(otherFile)
+        def result = cache.getUnchanged(file)
+
+        then:
+        1 * watcher.waitForChanges(_)
+        1 * watcher.pollChanges(_)
+        other == null
+        result == info
+    }
+
+    def "discards all snapshots when too many snapshots have been retained"() {
+        def cache = new WatchedFileSnapshotCache(watcher, 2)
+        def file3 = dir.file("c.txt")
+
+        given:
+        _ * watcher.watch(_) >> true
+        cache.retain(file, info, cache.watchParent(file))
+        cache.retain(otherFile, info, cache.watchParent(otherFile))
+
+        when:
+        cache.retain(file3, info, cache.watchParent(file3))
+
+        then:
+        cache.getUnchanged(file) == null
+        cache.getUnchanged(otherFile) == null
+        cache.getUnchanged(file3) == null
+    }
+
+    def "retains snapshot of file in watched directory until a change to the directory is reported"() {
+        when:
+        def directory = cache.watchParent(file)
+        cache.retain(file, info, directory)
+        def result = cache.getUnchanged(file)
+
+        then:
+        1 * watcher.watch(dir) >> true
+        result == info
+
+        when:
+        result = cache.getUnchanged(file)
+
+        then:
+        1 * watcher.pollChanges(_) >> { FileWatcher.ChangeListener listener -> listener.changed(dir, true) }
+        result == null
+    }
+
+    def "keeps snapshots of files in other directories when a directory changes"() {
+        given:
+        _ * watcher.watch(_) >> true
+        cache.retain(file, info, cache.watchParent(file))
+        cache.retain(otherFile, info, cache.watchParent(otherFile))
+
+        when:
+        def result = cache.getUnchanged(otherFile)
+        def changed = cache.getUnchanged(file)
+
+        then:
+        2 * watcher.pollChanges(_) >> { FileWatcher.ChangeListener listener -> listener.changed(dir, true) } >> {}
+        result == info
+        changed == null
+    }
+
+    def "does not retain snapshot when directory changes while file is being snapshotted"() {
+        given:
+        _ * watcher.watch(dir) >> true
+        def directory = cache.watchParent(file)
+
+        when:
+        cache.getUnchanged(otherFile)
+        cache.retain(file, info, directory)
+        def result = cache.getUnchanged(file)
+
+        then:
+        2 * watcher.pollChanges(_) >> { FileWatcher.ChangeListener listener -> listener.changed(dir, true) } >> {}
+        result == null
+    }
+
+    def "does not retain snapshot when directory cannot be watched"() {
+        when:
+        def directory = cache.watchParent(file)
+        cache.retain(file, info, directory)
+        def result = cache.getUnchanged(file)
+
+        then:
+        1 * watcher.watch(dir) >> false
+        directory == null
+        result == null
+    }
+
+    def "discards all snapshots when changes have been lost"() {
+        given:
+        _ * watcher.watch(_) >> true
+        cache.retain(file, info, cache.watchParent(file))
+        cache.retain(otherFile, info, cache.watchParent(otherFile))
+
+        when:
+        def result = cache.getUnchanged(file)
+        def other = cache.getUnchanged(otherFile)
+
+        then:
+        2 * watcher.pollChanges(_) >> { FileWatcher.ChangeListener listener -> listener.overflow() } >> {}
+        result == null
+        other == null
+    }
+
+    def "retains nothing when no watcher is available"() {
+        def cache = new WatchedFileSnapshotCache(null)
+
+        when:
+        cache.retain(file, info, cache.watchParent(file))
+
+        then:
+        !cache.enabled
+        cache.getUnchanged(file) == null
+    }
+}
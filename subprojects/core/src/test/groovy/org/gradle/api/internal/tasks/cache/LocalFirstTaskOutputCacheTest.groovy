@@ -0,0 +1,165 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.cache
+
+import org.gradle.api.UncheckedIOException
+import org.gradle.api.internal.tasks.cache.TaskOutputCache.TaskOutputReader
+import org.gradle.api.internal.tasks.cache.TaskOutputCache.TaskOutputWriter
+import org.gradle.internal.concurrent.ExecutorFactory
+import org.gradle.internal.concurrent.StoppableExecutor
+import spock.lang.Specification
+
+class LocalFirstTaskOutputCacheTest extends Specification {
+    def local = new InMemoryTaskOutputCache()
+    def remote = Mock(TaskOutputCache)
+    def uploader = Mock(StoppableExecutor)
+    def executorFactory = Stub(ExecutorFactory) {
+        create(_) >> uploader
+    }
+    def cache = new LocalFirstTaskOutputCache(local, remote, executorFactory)
+
+    def "loads from local cache without using remote cache"() {
+        local.entries["key"] = "local".bytes
+
+        when:
+        def result = load("key")
+
+        then:
+        result == "local"
+        0 * remote._
+    }
+
+    def "copies outputs found in remote cache to local cache"() {
+        when:
+        def result = load("key")
+
+        then:
+        1 * remote.load("key", _) >> { String key, TaskOutputReader reader ->
+            reader.readFrom(new ByteArrayInputStream("remote".bytes))
+            true
+        }
+        result == "remote"
+        new String(local.entries["key"]) == "remote"
+    }
+
+    def "does not find outputs missing from both caches"() {
+        when:
+        def result = load("key")
+
+        then:
+        1 * remote.load("key", _) >> false
+        result == null
+    }
+
+    def "stores outputs in local cache and uploads them to remote cache in the background"() {
+        def uploaded = new ByteArrayOutputStream()
+
+        when:
+        store("key", "outputs")
+
+        then:
+        new String(local.entries["key"]) == "outputs"
+        1 * uploader.execute(_) >> { Runnable runnable -> runnable.run() }
+        1 * remote.store("key", _) >> { String key, TaskOutputWriter writer -> writer.writeTo(uploaded) }
+        uploaded.toString() == "outputs"
+    }
+
+    def "stops using remote cache after a failure"() {
+        when:
+        def result = load("key")
+
+        then:
+        1 * remote.load("key", _) >> { throw new UncheckedIOException("broken") }
+        result == null
+
+        when:
+        load("other")
+        store("key", "outputs")
+
+        then:
+        0 * remote._
+        0 * uploader.execute(_)
+        new String(local.entries["key"]) == "outputs"
+    }
+
+    def "keeps using remote cache when outputs from remote cache cannot be stored in local cache"() {
+        local.failStores = true
+
+        when:
+        def result = load("key")
+
+        then:
+        1 * remote.load("key", _) >> { String key, TaskOutputReader reader ->
+            reader.readFrom(new ByteArrayInputStream("remote".bytes))
+            true
+        }
+        result == "remote"
+        local.entries.isEmpty()
+
+        when:
+        load("other")
+
+        then:
+        1 * remote.load("other", _) >> false
+    }
+
+    def "waits for uploads to finish when closed"() {
+        when:
+        cache.close()
+
+        then:
+        1 * uploader.stop()
+    }
+
+    private String load(String key) {
+        String result = null
+        def found = cache.load(key, { InputStream input -> result = input.text } as TaskOutputReader)
+        assert found == (result != null)
+        return result
+    }
+
+    private void store(String key, String content) {
+        cache.store(key, { OutputStream output -> output.write(content.bytes) } as TaskOutputWriter)
+    }
+
+    private static class InMemoryTaskOutputCache implements TaskOutputCache {
+        final Map<String, byte[]> entries = [:]
+        boolean failStores
+
+        boolean load(String key, TaskOutputReader reader) {
+            def content = entries[key]
+            if (content == null) {
+                return false
+            }
+            reader.readFrom(new ByteArrayInputStream(content))
+            return true
+        }
+
+        void store(String key, TaskOutputWriter writer) {
+            if (failStores) {
+                throw new UncheckedIOException("broken")
+            }
+            def output = new ByteArrayOutputStream()
+            writer.writeTo(output)
+            entries[key] = output.toByteArray()
+        }
+
+        String getDescription() {
+            return "in-memory cache"
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.cache
+
+import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.TaskOutputsInternal
+import org.gradle.api.internal.file.collections.SimpleFileCollection
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class TaskOutputPackerTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def task = Stub(TaskInternal)
+    def outputs = Stub(TaskOutputsInternal)
+    def packer = new TaskOutputPacker()
+
+    def setup() {
+        task.outputs >> outputs
+        task.temporaryDir >> tmpDir.file("build/tmp/task")
+    }
+
+    def "unpacks output files and directories that were packed"() {
+        def outputDir = tmpDir.file("build/classes")
+        def outputFile = tmpDir.file("build/report.txt")
+        def missingFile = tmpDir.file("build/missing.txt")
+        outputs.files >> new SimpleFileCollection(outputDir, outputFile, missingFile)
+        outputDir.file("a/One.class").text = "one"
+        outputDir.file("a/b/Two.class").text = "two"
+        outputDir.file("empty").createDir()
+        outputFile.text = "report"
+
+        when:
+        def packed = new ByteArrayOutputStream()
+        packer.pack(task, packed)
+        outputDir.file("a/One.class").text = "changed"
+        outputDir.file("Stale.class").text = "stale"
+        outputFile.delete()
+        missingFile.text = "stale"
+        packer.unpack(task, new ByteArrayInputStream(packed.toByteArray()))
+
+        then:
+        outputDir.file("a/One.class").text == "one"
+        outputDir.file("a/b/Two.class").text == "two"
+        outputDir.file("empty").directory
+        !outputDir.file("Stale.class").exists()
+        outputFile.text == "report"
+        !missingFile.exists()
+    }
+
+    def "leaves existing outputs in place when packed outputs cannot be unpacked"() {
+        def outputDir = tmpDir.file("build/classes")
+        def outputFile = tmpDir.file("build/report.txt")
+        outputs.files >> new SimpleFileCollection(outputDir, outputFile)
+        outputDir.file("One.class").text = "existing"
+        outputFile.text = "existing"
+
+        def packed = new ByteArrayOutputStream()
+        def zipOutput = new ZipOutputStream(packed)
+        zipOutput.putNextEntry(new ZipEntry("0/One.class"))
+        zipOutput.write("unpacked".bytes)
+        zipOutput.putNextEntry(new ZipEntry("2"))
+        zipOutput.close()
+
+        when:
+        packer.unpack(task, new ByteArrayInputStream(packed.toByteArray()))
+
+        then:
+        thrown(IOException)
+        outputDir.file("One.class").text == "existing"
+        outputFile.text == "existing"
+        !tmpDir.file("build/tmp/task/unpacked-outputs").exists()
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.execution
+
+import com.google.common.hash.HashCode
+import org.gradle.api.execution.TaskActionListener
+import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.changedetection.TaskArtifactState
+import org.gradle.api.internal.tasks.TaskExecuter
+import org.gradle.api.internal.tasks.TaskExecutionContext
+import org.gradle.api.internal.tasks.TaskStateInternal
+import org.gradle.api.internal.tasks.cache.TaskOutputCache
+import org.gradle.api.internal.tasks.cache.TaskOutputPacker
+import org.gradle.api.tasks.CacheableTask
+import spock.lang.Specification
+
+class SkipCachedTaskExecuterTest extends Specification {
+    def delegate = Mock(TaskExecuter)
+    def task = Mock(CacheableTaskInternal)
+    def taskState = Mock(TaskStateInternal)
+    def taskContext = Mock(TaskExecutionContext)
+    def taskArtifactState = Mock(TaskArtifactState)
+    def cache = Mock(TaskOutputCache)
+    def packer = Mock(TaskOutputPacker)
+    def listener = Mock(TaskActionListener)
+    def cacheKey = HashCode.fromString("0123456789abcdef")
+
+    def executer = new SkipCachedTaskExecuter(cache, packer, listener, delegate)
+
+    def "restores outputs from cache instead of executing task"() {
+        when:
+        executer.execute(task, taskState, taskContext)
+
+        then:
+        1 * taskContext.taskArtifactState >> taskArtifactState
+        1 * taskArtifactState.calculateCacheKey() >> cacheKey
+        1 * cache.load("0123456789abcdef", _) >> { String key, TaskOutputCache.TaskOutputReader reader ->
+            reader.readFrom(new ByteArrayInputStream(new byte[0]))
+            return true
+        }
+        1 * listener.beforeActions(task)
+
+        then:
+        1 * packer.unpack(task, _)
+
+        then:
+        1 * listener.afterActions(task)
+        _ * cache.description >> "cache"
+
+        then:
+        1 * taskState.setDidWork(true)
+        1 * taskState.skipped("FROM-CACHE")
+        0 * _
+    }
+
+    def "executes task and stores outputs in cache when outputs are not found"() {
+        when:
+        executer.execute(task, taskState, taskContext)
+
+        then:
+        1 * taskContext.taskArtifactState >> taskArtifactState
+        1 * taskArtifactState.calculateCacheKey() >> cacheKey
+        1 * cache.load("0123456789abcdef", _) >> false
+
+        then:
+        1 * delegate.execute(task, taskState, taskContext)
+        _ * taskState.failure >> null
+
+        then:
+        1 * cache.store("0123456789abcdef", _) >> { String key, TaskOutputCache.TaskOutputWriter writer ->
+            writer.writeTo(new ByteArrayOutputStream())
+        }
+        1 * packer.pack(task, _)
+        0 * _
+    }
+
+    def "does not store outputs when task fails"() {
+        when:
+        executer.execute(task, taskState, taskContext)
+
+        then:
+        1 * taskContext.taskArtifactState >> taskArtifactState
+        1 * taskArtifactState.calculateCacheKey() >> cacheKey
+        1 * cache.load("0123456789abcdef", _) >> false
+        1 * delegate.execute(task, taskState, taskContext)
+        _ * taskState.failure >> new RuntimeException()
+        0 * _
+    }
+
+    def "executes task when outputs cannot be restored"() {
+        when:
+        executer.execute(task, taskState, taskContext)
+
+        then:
+        1 * taskContext.taskArtifactState >> taskArtifactState
+        1 * taskArtifactState.calculateCacheKey() >> cacheKey
+        1 * cache.load("0123456789abcdef", _) >> { throw new RuntimeException("broken") }
+        _ * cache.description >> "cache"
+
+        then:
+        1 * delegate.execute(task, taskState, taskContext)
+        _ * taskState.failure >> null
+        1 * cache.store("0123456789abcdef", _)
+        0 * _
+    }
+
+    def "notifies listener and executes task when outputs cannot be unpacked"() {
+        when:
+        executer.execute(task, taskState, taskContext)
+
+        then:
+        1 * taskContext.taskArtifactState >> taskArtifactState
+        1 * taskArtifactState.calculateCacheKey() >> cacheKey
+        1 * cache.load("0123456789abcdef", _) >> { String key, TaskOutputCache.TaskOutputReader reader ->
+            reader.readFrom(new ByteArrayInputStream(new byte[0]))
+            return true
+        }
+        1 * listener.beforeActions(task)
+        1 * packer.unpack(task, _) >> { throw new RuntimeException("broken") }
+        1 * listener.afterActions(task)
+        _ * cache.description >> "cache"
+
+        then:
+        1 * delegate.execute(task, taskState, taskContext)
+        _ * taskState.failure >> null
+        1 * cache.store("0123456789abcdef", _)
+        0 * _
+    }
+
+    def "executes task without using cache when task has no cache key"() {
+        when:
+        executer.execute(task, taskState, taskContext)
+
+        then:
+        1 * taskContext.taskArtifactState >> taskArtifactState
+        1 * taskArtifactState.calculateCacheKey() >> null
+        1 * delegate.execute(task, taskState, taskContext)
+        0 * _
+    }
+
+    def "executes task without using cache when task type is not cacheable"() {
+        def task = Mock(TaskInternal)
+
+        when:
+        executer.execute(task, taskState, taskContext)
+
+        then:
+        1 * delegate.execute(task, taskState, taskContext)
+        0 * _
+    }
+
+    @CacheableTask
+    static abstract class CacheableTaskInternal implements TaskInternal {
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal
+
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.GradleVersion
+import org.junit.Rule
+import spock.lang.Specification
+
+class CachesDirectoryCleanupTest extends Specification {
+    static final long DAY = 24L * 60 * 60 * 1000
+    @Rule
+    public final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider();
+    final FileLockManager lockManager = Mock()
+    final FileLock lock = Mock()
+    final cachesDir = tmpDir.createDir("caches")
+    final currentVersionDir = cachesDir.file(GradleVersion.current().version)
+    final cleanup = new CachesDirectoryCleanup(cachesDir, GradleVersion.current(), lockManager, 30 * DAY)
+
+    def setup() {
+        _ * lock.isLockFile(_) >> { File file -> file.name.endsWith(".lock") }
+        _ * lock.unlockedCleanly >> true
+    }
+
+    def "removes caches that have not been used during the retention period"() {
+        def unused = cache(currentVersionDir.file("scripts/unused/ProjectScript/cp_proj"), 40)
+        def used = cache(currentVersionDir.file("scripts/used/ProjectScript/cp_proj"), 10)
+
+        when:
+        cleanup.cleanupIfDue()
+
+        then:
+        1 * lockManager.lock(unused.file("cache.properties"), _, _) >> lock
+        1 * lock.close()
+        0 * lockManager._
+
+        and:
+        unused.assertDoesNotExist()
+        currentVersionDir.file("scripts/unused").assertDoesNotExist()
+        used.assertIsDir()
+    }
+
+    def "removes directory of another version once all of its caches have been removed"() {
+        def oldVersionDir = cachesDir.file("1.12")
+        def unused = cache(oldVersionDir.file("taskArtifacts"), 40)
+
+        when:
+        cleanup.cleanupIfDue()
+
+        then:
+        1 * lockManager.lock(unused.file("cache.properties"), _, _) >> lock
+
+        and:
+        oldVersionDir.assertDoesNotExist()
+    }
+
+    def "does not compact caches of other versions"() {
+        def used = cache(cachesDir.file("1.12/taskArtifacts"), 10)
+        used.file("taskArtifacts.bin").createFile()
+
+        when:
+        cleanup.cleanupIfDue()
+
+        then:
+        0 * lockManager._
+
+        and:
+        used.file("taskArtifacts.bin").assertIsFile()
+    }
+
+    def "ignores directories that are not version specific"() {
+        def shared = cache(cachesDir.file("modules-2"), 40)
+
+        when:
+        cleanup.cleanupIfDue()
+
+        then:
+        0 * lockManager._
+
+        and:
+        shared.assertIsDir()
+    }
+
+    def "skips caches that cannot be locked"() {
+        def unused = cache(currentVersionDir.file("taskArtifacts"), 40)
+
+        when:
+        cleanup.cleanupIfDue()
+
+        then:
+        1 * lockManager.lock(unused.file("cache.properties"), _, _) >> { throw new LockTimeoutException("locked") }
+
+        and:
+        unused.assertIsDir()
+    }
+
+    def "locks caches without waiting for them"() {
+        def unused = cache(currentVersionDir.file("taskArtifacts"), 40)
+
+        when:
+        cleanup.cleanupIfDue()
+
+        then:
+        1 * lockManager.lock(unused.file("cache.properties"), { it.mode == FileLockManager.LockMode.Exclusive && it.nonBlocking }, _) >> lock
+    }
+
+    def "does not remove cache that has been used since it was found"() {
+        def unused = cache(currentVersionDir.file("taskArtifacts"), 40)
+
+        when:
+        cleanup.cleanupIfDue()
+
+        then:
+        1 * lockManager.lock(unused.file("cache.properties"), _, _) >> {
+            unused.lastModified = System.currentTimeMillis()
+            lock
+        }
+        1 * lock.close()
+
+        and:
+        unused.file("content/file.txt").assertIsFile()
+    }
+
+    def "keeps lock file of cache that is used again once its contents have been removed"() {
+        def unused = cache(currentVersionDir.file("taskArtifacts"), 40)
+
+        when:
+        cleanup.cleanupIfDue()
+
+        then:
+        1 * lockManager.lock(unused.file("cache.properties"), _, _) >> lock
+        1 * lock.close() >> {
+            unused.file("cache.properties").createFile()
+        }
+
+        and:
+        unused.file("content").assertDoesNotExist()
+        unused.file("cache.properties.lock").assertIsFile()
+        unused.file("cache.properties").assertIsFile()
+    }
+
+    def "releases cache that is locked after the cleanup has been cancelled"() {
+        def unused = cache(currentVersionDir.file("taskArtifacts"), 40)
+
+        when:
+        cleanup.cleanupIfDue()
+
+        then:
+        1 * lockManager.lock(unused.file("cache.properties"), _, _) >> {
+            cleanup.cancel()
+            lock
+        }
+        1 * lock.close()
+
+        and:
+        unused.file("content/file.txt").assertIsFile()
+    }
+
+    def "does not clean up again within a day"() {
+        def unused = cache(currentVersionDir.file("taskArtifacts"), 40)
+        cachesDir.file(CachesDirectoryCleanup.MARKER_FILE_NAME).createFile()
+
+        when:
+        cleanup.cleanupIfDue()
+
+        then:
+        0 * lockManager._
+
+        and:
+        unused.assertIsDir()
+    }
+
+    def "stops when cancelled"() {
+        def unused = cache(currentVersionDir.file("taskArtifacts"), 40)
+
+        when:
+        cleanup.cancel()
+        cleanup.cleanupIfDue()
+
+        then:
+        0 * lockManager._
+
+        and:
+        unused.assertIsDir()
+    }
+
+    private TestFile cache(TestFile dir, int daysSinceUsed) {
+        dir.file("cache.properties").createFile()
+        dir.file("cache.properties.lock").createFile()
+        dir.file("content/file.txt").createFile()
+        dir.lastModified = System.currentTimeMillis() - daysSinceUsed * DAY
+        return dir
+    }
+}
@@ -197,7 +197,7 @@ class DefaultCacheAccessTest extends ConcurrentSpec {
         access.useCache("some action", action)
 
         then:
-        1 * lockManager.lock(lockFile, mode(Exclusive), "<display-name>", "some action") >> lock
+        1 * lockManager.lock(lockFile, mode(Exclusive).withLeasing(), "<display-name>", "some action") >> lock
         1 * lockManager.allowContention(lock, _ as Runnable) >> { FileLock l, Runnable r -> contentionAction = r }
         1 * initializationAction.requiresInitialization(lock) >> true
         1 * lock.writeFile(_) >> { Runnable r -> r.run() }
@@ -217,7 +217,7 @@ class DefaultCacheAccessTest extends ConcurrentSpec {
         access.useCache("some action", action)
 
         then:
-        1 * lockManager.lock(lockFile, mode(Exclusive), "<display-name>", "some action") >> lock
+        1 * lockManager.lock(lockFile, mode(Exclusive).withLeasing(), "<display-name>", "some action") >> lock
         1 * lockManager.allowContention(lock, _ as Runnable) >> { FileLock l, Runnable r -> contentionAction = r }
         1 * initializationAction.requiresInitialization(lock) >> true
         1 * lock.writeFile(_) >> { Runnable r -> r.run() }
@@ -268,7 +268,7 @@ class DefaultCacheAccessTest extends ConcurrentSpec {
         access.useCache("some operation", action)
 
         then:
-        1 * lockManager.lock(lockFile, mode(Exclusive), "<display-name>", "some operation") >> lock
+        1 * lockManager.lock(lockFile, mode(Exclusive).withLeasing(), "<display-name>", "some operation") >> lock
         1 * initializationAction.requiresInitialization(lock) >> false
         _ * lock.state
         1 * lockManager.allowContention(lock, _ as Runnable)
@@ -294,7 +294,7 @@ class DefaultCacheAccessTest extends ConcurrentSpec {
         access.useCache("some operation", action)
 
         then:
-        1 * lockManager.lock(lockFile, mode(Exclusive), "<display-name>", _) >> lock
+        1 * lockManager.lock(lockFile, mode(Exclusive).withLeasing(), "<display-name>", _) >> lock
         1 * action.create() >> {
             access.useCache("nested operation") {
                 assert access.owner == Thread.currentThread()
@@ -313,7 +313,7 @@ class DefaultCacheAccessTest extends ConcurrentSpec {
         access.useCache("some operation", action)
 
         then:
-        1 * lockManager.lock(lockFile, mode(Exclusive), "<display-name>", "some operation") >> lock
+        1 * lockManager.lock(lockFile, mode(Exclusive).withLeasing(), "<display-name>", "some operation") >> lock
         1 * action.create() >> { assert access.owner == Thread.currentThread() }
 
         when:
@@ -386,7 +386,7 @@ class DefaultCacheAccessTest extends ConcurrentSpec {
             access.whenContended().run()
         }
         1 * lock.close()
-        1 * lockManager.lock(lockFile, mode(Exclusive), "<display-name>", _) >> lock
+        1 * lockManager.lock(lockFile, mode(Exclusive).withLeasing(), "<display-name>", _) >> lock
     }
 
     def "long running operation closes the lock if contended before action"() {
@@ -405,7 +405,32 @@ class DefaultCacheAccessTest extends ConcurrentSpec {
         then:
         1 * action.create()
         1 * lock.close()
-        1 * lockManager.lock(lockFile, mode(Exclusive), "<display-name>", _) >> lock
+        1 * lockManager.lock(lockFile, mode(Exclusive).withLeasing(), "<display-name>", _) >> lock
+    }
+
+    def "does not hold the state lock while acquiring or releasing the file lock"() {
+        Factory<String> action = Mock()
+
+        when:
+        access.open(mode(Exclusive))
+
+        then:
+        1 * lockManager.lock(lockFile, mode(Exclusive), "<display-name>") >> lock
+
+        when:
+        access.longRunningOperation("some operation", action)
+
+        then:
+        1 * action.create() >> {
+            access.whenContended().run()
+        }
+        1 * lock.close() >> {
+            assert !access.@lock.heldByCurrentThread
+        }
+        1 * lockManager.lock(lockFile, mode(Exclusive).withLeasing(), "<display-name>", _) >> {
+            assert !access.@lock.heldByCurrentThread
+            lock
+        }
     }
 
     def "top-level long running operation does not lock file"() {
@@ -469,7 +494,7 @@ class DefaultCacheAccessTest extends ConcurrentSpec {
         access.useCache("some operation", action)
 
         then:
-        1 * lockManager.lock(lockFile, mode(Exclusive), "<display-name>", _) >> lock
+        1 * lockManager.lock(lockFile, mode(Exclusive).withLeasing(), "<display-name>", _) >> lock
 
         when:
         access.whenContended().run()
@@ -509,7 +534,7 @@ class DefaultCacheAccessTest extends ConcurrentSpec {
         access.useCache("use cache", { access.fileAccess.updateFile(runnable)})
 
         then:
-        1 * lockManager.lock(lockFile, mode(Exclusive), "<display-name>", "use cache") >> lock
+        1 * lockManager.lock(lockFile, mode(Exclusive).withLeasing(), "<display-name>", "use cache") >> lock
         1 * lock.updateFile(runnable)
     }
 
@@ -517,7 +542,7 @@ class DefaultCacheAccessTest extends ConcurrentSpec {
         def runnable = Mock(Runnable)
 
         given:
-        lockManager.lock(lockFile, mode(Exclusive), "<display-name>", "use cache") >> lock
+        lockManager.lock(lockFile, mode(Exclusive).withLeasing(), "<display-name>", "use cache") >> lock
         access.open(mode(None))
         access.useCache("use cache", runnable)
 
@@ -539,7 +564,7 @@ class DefaultCacheAccessTest extends ConcurrentSpec {
 
     def "can close cache when there is no owner"() {
         given:
-        lockManager.lock(lockFile, mode(Exclusive), "<display-name>", "use cache") >> lock
+        lockManager.lock(lockFile, mode(Exclusive).withLeasing(), "<display-name>", "use cache") >> lock
         lock.writeFile(_) >> { Runnable r -> r.run() }
         access.open(mode(None))
         def cache = access.newCache(new PersistentIndexedCacheParameters('cache', String.class, Integer.class))
@@ -17,8 +17,12 @@
 package org.gradle.cache.internal
 
 import org.gradle.cache.internal.filelock.LockOptionsBuilder
+import org.gradle.cache.internal.locklistener.FileLockContentionHandler
 import org.gradle.test.fixtures.file.TestFile
 
+import java.nio.channels.OverlappingFileLockException
+import java.util.concurrent.CountDownLatch
+
 import static org.gradle.cache.internal.FileLockManager.LockMode.Exclusive
 import static org.gradle.cache.internal.FileLockManager.LockMode.Shared
 
@@ -278,4 +282,133 @@ class DefaultFileLockManagerWithNewProtocolTest extends AbstractFileLockManagerT
             assert str.read() < 0
         }
     }
+
+    def "leases exclusive lock until it is requested by another process"() {
+        given:
+        def handler = Mock(FileLockContentionHandler)
+        def leasingManager = new DefaultFileLockManager(metaDataProvider, 5000, handler, generator, true)
+        Runnable whenRequested = null
+        _ * handler.reservePort() >> 34
+        _ * handler.start(678L, _) >> { long id, Runnable action -> whenRequested = action }
+
+        when:
+        def lock = leasingManager.lock(testFile, options().withMode(Exclusive).withLeasing(), "foo", "operation")
+        lock.writeFile {}
+        def state = lock.state
+        lock.close()
+
+        then:
+        whenRequested != null
+        isLocked(testFileLock)
+
+        when:
+        def renewed = leasingManager.lock(testFile, options().withMode(Exclusive).withLeasing(), "foo", "operation")
+
+        then:
+        renewed.is(lock)
+        !renewed.state.hasBeenUpdatedSince(state)
+        renewed.unlockedCleanly
+
+        when:
+        renewed.close()
+        whenRequested.run()
+
+        then:
+        !isLocked(testFileLock)
+    }
+
+    def "releases leased lock when locked in a mode that cannot reuse it"() {
+        given:
+        def leasingManager = new DefaultFileLockManager(metaDataProvider, 5000, contentionHandler, generator, true)
+        leasingManager.lock(testFile, options().withMode(Exclusive).withLeasing(), "foo").close()
+
+        when:
+        def lock = leasingManager.lock(testFile, options().withMode(Shared), "foo")
+
+        then:
+        lock.mode == Shared
+
+        cleanup:
+        lock?.close()
+    }
+
+    def "releases leased locks when stopped"() {
+        given:
+        def leasingManager = new DefaultFileLockManager(metaDataProvider, 5000, contentionHandler, generator, true)
+        leasingManager.lock(testFile, options().withMode(Exclusive).withLeasing(), "foo").close()
+
+        when:
+        leasingManager.stop()
+
+        then:
+        !isLocked(testFileLock)
+    }
+
+    def "does not lease shared lock"() {
+        given:
+        def leasingManager = new DefaultFileLockManager(metaDataProvider, 5000, contentionHandler, generator, true)
+
+        when:
+        leasingManager.lock(testFile, options().withMode(Shared), "foo").close()
+
+        then:
+        !isLocked(testFileLock)
+    }
+
+    def "does not lease lock that was not requested as leasable"() {
+        given:
+        def leasingManager = new DefaultFileLockManager(metaDataProvider, 5000, contentionHandler, generator, true)
+
+        when:
+        leasingManager.lock(testFile, options().withMode(Exclusive), "foo").close()
+
+        then:
+        !isLocked(testFileLock)
+    }
+
+    def "waits for leased lock that is being released by another thread"() {
+        given:
+        def handler = Mock(FileLockContentionHandler)
+        def leasingManager = new DefaultFileLockManager(metaDataProvider, 5000, handler, generator, true)
+        def releaseStarted = new CountDownLatch(1)
+        def releasing = false
+        Runnable whenRequested = null
+        _ * handler.reservePort() >> 34
+        _ * handler.start(678L, _) >> { long id, Runnable action -> whenRequested = action }
+        _ * handler.stop(678L) >> {
+            if (releasing) {
+                releaseStarted.countDown()
+                Thread.sleep(200)
+            }
+        }
+        def leased = leasingManager.lock(testFile, options().withMode(Exclusive).withLeasing(), "foo", "operation")
+        leased.close()
+
+        when:
+        releasing = true
+        def releaser = Thread.start { whenRequested.run() }
+        releaseStarted.await()
+        def lock = leasingManager.lock(testFile, options().withMode(Exclusive), "foo", "operation")
+
+        then:
+        !lock.is(leased)
+        lock.mode == Exclusive
+
+        cleanup:
+        releaser?.join()
+        lock?.close()
+    }
+
+    private boolean isLocked(TestFile lockFile) {
+        def file = new RandomAccessFile(lockFile, "rw")
+        try {
+            def lock = file.channel.tryLock()
+            lock?.release()
+            return lock == null
+        } catch (OverlappingFileLockException e) {
+            return true
+        } finally {
+            file.close()
+        }
+    }
 }
@@ -59,6 +59,31 @@ class DefaultPersistentDirectoryStoreTest extends Specification {
         notThrown(RuntimeException)
     }
 
+    def "open records when the cache was last used"() {
+        given:
+        cacheDir.createDir()
+        cacheDir.lastModified = 0
+
+        when:
+        store.open()
+
+        then:
+        cacheDir.lastModified() > 0
+    }
+
+    def "open does not record use of a recently used cache"() {
+        given:
+        cacheDir.createDir()
+        def recentlyUsed = System.currentTimeMillis() - DefaultPersistentDirectoryStore.LAST_USED_RESOLUTION.intdiv(2)
+        cacheDir.lastModified = recentlyUsed
+
+        when:
+        store.open()
+
+        then:
+        cacheDir.lastModified() == old(cacheDir.lastModified())
+    }
+
     def "open locks cache directory with requested mode"() {
         final store = new DefaultPersistentDirectoryStore(cacheDir, "<display>", mode(Shared), lockManager)
 
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal
+
+import spock.lang.Specification
+
+class FileLockStatisticsTest extends Specification {
+    def statistics = new FileLockStatistics()
+
+    def "accumulates wait time per lock target"() {
+        when:
+        statistics.lockAcquired("cache a", 100)
+        statistics.lockAcquired("cache b", 20)
+        statistics.lockAcquired("cache a", 50)
+
+        then:
+        statistics.waitTimes == ["cache a": 150L, "cache b": 20L]
+    }
+
+    def "ignores locks acquired without waiting"() {
+        when:
+        statistics.lockAcquired("cache a", 0)
+
+        then:
+        statistics.waitTimes.isEmpty()
+    }
+
+    def "returns a snapshot of the wait times"() {
+        given:
+        statistics.lockAcquired("cache a", 100)
+        def snapshot = statistics.waitTimes
+
+        when:
+        statistics.lockAcquired("cache a", 50)
+
+        then:
+        snapshot == ["cache a": 100L]
+        statistics.waitTimes == ["cache a": 150L]
+    }
+}
@@ -30,6 +30,7 @@ class MultiProcessSafePersistentIndexedCacheTest extends Specification {
         cache.get("value")
 
         then:
+        2 * fileAccess.readFile(!null) >> { Factory action -> action.create() }
         1 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
         1 * factory.create() >> backingCache
     }
@@ -45,34 +46,92 @@ class MultiProcessSafePersistentIndexedCacheTest extends Specification {
         result == "result"
 
         and:
-        1 * fileAccess.readFile(!null) >> { Factory action -> action.create() }
+        2 * fileAccess.readFile(!null) >> { Factory action -> action.create() }
         1 * backingCache.get("value") >> "result"
         0 * _._
     }
 
-    def "holds write lock while putting entry into cache"() {
+    def "buffers put and remove until cache is closed"() {
         given:
         cacheOpened()
 
         when:
         cache.put("key", "value")
+        cache.remove("other")
+
+        then:
+        2 * fileAccess.readFile(!null) >> { Factory action -> action.create() }
+        0 * _._
+
+        when:
+        cache.close()
+
+        then:
+        1 * fileAccess.readFile(!null) >> { Factory action -> action.create() }
 
         then:
         1 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
+
+        then:
         1 * backingCache.put("key", "value")
+
+        then:
+        1 * backingCache.remove("other")
+
+        then:
+        1 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
+        1 * backingCache.close()
         0 * _._
     }
 
-    def "holds write lock while removing entry from cache"() {
+    def "get returns buffered value"() {
         given:
         cacheOpened()
 
         when:
-        cache.remove("key")
+        cache.put("key", "value")
+        cache.remove("other")
+
+        then:
+        cache.get("key") == "value"
+        cache.get("other") == null
+        4 * fileAccess.readFile(!null) >> { Factory action -> action.create() }
+        0 * _._
+    }
+
+    def "holds write lock while writing buffered updates when buffer is full"() {
+        given:
+        def cache = new DefaultMultiProcessSafePersistentIndexedCache<String, String>(factory, fileAccess, 2)
+        1 * fileAccess.readFile(!null) >> { Factory action -> action.create() }
+        cache.put("key", "value")
+
+        when:
+        cache.put("key", "new value")
+
+        then:
+        1 * fileAccess.readFile(!null) >> { Factory action -> action.create() }
+        0 * _._
+
+        when:
+        cache.put("other", "value")
+
+        then:
+        2 * fileAccess.readFile(!null) >> { Factory action -> action.create() }
+        1 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
+        1 * factory.create() >> backingCache
 
         then:
         1 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
-        1 * backingCache.remove("key")
+        1 * backingCache.put("key", "new value")
+        1 * backingCache.put("other", "value")
+        0 * _._
+
+        when:
+        cache.get("key")
+
+        then:
+        2 * fileAccess.readFile(!null) >> { Factory action -> action.create() }
+        1 * backingCache.get("key") >> "new value"
         0 * _._
     }
 
@@ -84,6 +143,7 @@ class MultiProcessSafePersistentIndexedCacheTest extends Specification {
         cache.close()
 
         then:
+        1 * fileAccess.readFile(!null) >> { Factory action -> action.create() }
         1 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
         1 * backingCache.close()
         0 * _._
@@ -97,6 +157,7 @@ class MultiProcessSafePersistentIndexedCacheTest extends Specification {
         cache.close()
 
         then:
+        1 * fileAccess.readFile(!null) >> { Factory action -> action.create() }
         1 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
         1 * backingCache.close()
         0 * _._
@@ -107,6 +168,7 @@ class MultiProcessSafePersistentIndexedCacheTest extends Specification {
         cache.close()
 
         then:
+        1 * fileAccess.readFile(!null) >> { Factory action -> action.create() }
         0 * _._
     }
 
@@ -117,6 +179,7 @@ class MultiProcessSafePersistentIndexedCacheTest extends Specification {
         cache.close()
 
         then:
+        1 * fileAccess.readFile(!null) >> { Factory action -> action.create() }
         1 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
         1 * backingCache.close()
         0 * _._
@@ -125,10 +188,44 @@ class MultiProcessSafePersistentIndexedCacheTest extends Specification {
         cache.close()
 
         then:
+        1 * fileAccess.readFile(!null) >> { Factory action -> action.create() }
+        0 * _._
+    }
+
+    def "buffers updates only when lock is held by current thread"() {
+        given:
+        cacheOpened()
+
+        when:
+        cache.put("key", "value")
+
+        then:
+        1 * fileAccess.readFile(!null) >> { throw new IllegalStateException("not locked") }
+        thrown(IllegalStateException)
+    }
+
+    def "buffers updates when file was not unlocked cleanly"() {
+        given:
+        cacheOpened()
+
+        when:
+        cache.put("key", "value")
+
+        then:
+        1 * fileAccess.readFile(!null) >> { throw new FileIntegrityViolationException("dirty") }
+        0 * _._
+
+        when:
+        def result = cache.get("key")
+
+        then:
+        result == "value"
+        1 * fileAccess.readFile(!null) >> { Factory action -> action.create() }
         0 * _._
     }
 
     def cacheOpened() {
+        2 * fileAccess.readFile(!null) >> { Factory action -> action.create() }
         1 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
         1 * factory.create() >> backingCache
         
@@ -15,6 +15,7 @@
  */
 package org.gradle.cache.internal.btree;
 
+import com.google.common.cache.CacheStats;
 import org.gradle.messaging.serialize.DefaultSerializer;
 import org.gradle.messaging.serialize.Serializer;
 import org.gradle.test.fixtures.file.TestFile;
@@ -234,6 +235,25 @@ public class BTreePersistentIndexedCacheTest {
         cache.verify();
     }
 
+    @Test
+    public void addsBlockCacheCountsToStatisticsWhenClosed() {
+        BlockCacheStatistics statistics = new BlockCacheStatistics();
+        BTreePersistentIndexedCache<String, Integer> cache = new BTreePersistentIndexedCache<String, Integer>(cacheFile, stringSerializer, integerSerializer, statistics);
+        cache.put("key_1", 1);
+        cache.get("key_1");
+        cache.reset();
+        cache.get("key_1");
+
+        CacheStats afterReset = statistics.getTotal();
+        assertThat(afterReset.requestCount(), greaterThan(0L));
+
+        cache.close();
+
+        // Counts added when the cache was reset are not added again
+        assertThat(statistics.getTotal(), equalTo(cache.getBlockCacheStats()));
+        assertThat(statistics.getTotal().requestCount(), greaterThan(afterReset.requestCount()));
+    }
+
     @Test
     public void canUseFileAsKey() {
         BTreePersistentIndexedCache<File, Integer> cache = new BTreePersistentIndexedCache<File, Integer>(cacheFile, new DefaultSerializer<File>(), integerSerializer);
@@ -258,6 +278,45 @@ public class BTreePersistentIndexedCacheTest {
         assertThat(cache.get(key2), equalTo(2));
     }
 
+    @Test
+    public void compactionDiscardsSpaceUsedByRemovedEntries() {
+        BTreePersistentIndexedCache<String, String> cache = new BTreePersistentIndexedCache<String, String>(cacheFile, stringSerializer, stringSerializer, (short) 4, 100);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(String.format("key_%d", i), String.format("a longer value for entry %d", i));
+        }
+        for (int i = 10; i < 1000; i++) {
+            cache.remove(String.format("key_%d", i));
+        }
+        long len = cacheFile.length();
+
+        assertThat(cache.compact(), equalTo(true));
+
+        assertThat(cacheFile.length(), lessThan(len));
+        cache.verify();
+        for (int i = 0; i < 10; i++) {
+            assertThat(cache.get(String.format("key_%d", i)), equalTo(String.format("a longer value for entry %d", i)));
+        }
+        for (int i = 10; i < 1000; i++) {
+            assertNull(cache.get(String.format("key_%d", i)));
+        }
+
+        cache.reset();
+        cache.verify();
+        assertThat(cache.get("key_5"), equalTo("a longer value for entry 5"));
+        assertThat(cache.compact(), equalTo(false));
+    }
+
+    @Test
+    public void doesNotCompactWhenMostOfFileIsUsed() {
+        checkAdds(1, 2, 3, 4, 5, 6, 7, 8);
+        long len = cacheFile.length();
+
+        assertThat(cache.compact(), equalTo(false));
+
+        assertThat(cacheFile.length(), equalTo(len));
+        cache.verify();
+    }
+
     private void checkAdds(Integer... values) {
         checkAdds(Arrays.asList(values));
     }
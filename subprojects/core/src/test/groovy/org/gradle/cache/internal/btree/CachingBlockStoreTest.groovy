@@ -0,0 +1,97 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal.btree
+
+import org.gradle.cache.internal.btree.MappedFileBlockStoreTest.TestBlock
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class CachingBlockStoreTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def factory = { Class type -> new TestBlock() } as BlockStore.Factory
+    def backingStore = new FileBackedBlockStore(tmpDir.file("cache.bin"))
+
+    def "keeps recently used blocks in memory up to the given number of bytes"() {
+        given:
+        def store = new CachingBlockStore(backingStore, 250, TestBlock)
+        store.open({}, factory)
+        def blocks = (0..2).collect { write(store, "a" * 98) }
+        store.flush()
+
+        when:
+        def last = store.read(blocks[2].pos, TestBlock)
+        def first = store.read(blocks[0].pos, TestBlock)
+
+        then:
+        last.is(blocks[2])
+        !first.is(blocks[0])
+        first.value == blocks[0].value
+
+        and:
+        def stats = store.stats
+        stats.hitCount() == 1
+        stats.missCount() == 1
+        stats.evictionCount() == 2
+
+        cleanup:
+        store.close()
+    }
+
+    def "does not cache blocks of other types"() {
+        given:
+        def store = new CachingBlockStore(backingStore, 1000, FreeListBlockStore.FreeListBlock)
+        store.open({}, factory)
+        def block = write(store, "value")
+        store.flush()
+
+        when:
+        def result = store.read(block.pos, TestBlock)
+
+        then:
+        !result.is(block)
+        result.value == "value"
+        store.stats.requestCount() == 0
+
+        cleanup:
+        store.close()
+    }
+
+    def "discards cached blocks when they are removed"() {
+        given:
+        def store = new CachingBlockStore(backingStore, 1000, TestBlock)
+        store.open({}, factory)
+        def block = write(store, "value")
+        store.flush()
+
+        when:
+        store.remove(block)
+
+        then:
+        !store.read(block.pos, TestBlock).is(block)
+        store.stats.hitCount() == 0
+
+        cleanup:
+        store.close()
+    }
+
+    private static TestBlock write(BlockStore store, String value) {
+        def block = new TestBlock(value: value)
+        store.write(block)
+        return block
+    }
+}
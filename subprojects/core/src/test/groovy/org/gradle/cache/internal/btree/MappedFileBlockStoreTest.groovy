@@ -0,0 +1,189 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree
+
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class MappedFileBlockStoreTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def cacheFile = tmpDir.file("cache.bin")
+    def factory = { Class type -> new TestBlock() } as BlockStore.Factory
+
+    def "reads blocks that span mapped regions and the unmapped tail of the file"() {
+        given:
+        def positions = writeBlocks(new MappedFileBlockStore(cacheFile, 64), 20)
+
+        when:
+        def store = new MappedFileBlockStore(cacheFile, 64)
+        store.open({}, factory)
+
+        then:
+        positions.eachWithIndex { pos, i ->
+            assert store.read(pos, TestBlock).value == value(i)
+        }
+
+        cleanup:
+        store?.close()
+    }
+
+    def "uses the same file format as the file backed store"() {
+        given:
+        def positions = writeBlocks(new MappedFileBlockStore(cacheFile, 64), 10)
+
+        when:
+        def store = new FileBackedBlockStore(cacheFile)
+        store.open({}, factory)
+
+        then:
+        positions.eachWithIndex { pos, i ->
+            assert store.read(pos, TestBlock).value == value(i)
+        }
+
+        cleanup:
+        store?.close()
+    }
+
+    def "detects corrupted block"() {
+        given:
+        def positions = writeBlocks(new MappedFileBlockStore(cacheFile, 64), 3)
+        def file = new RandomAccessFile(cacheFile, "rw")
+        file.seek(positions[1].pos + 8)
+        file.write(0xff)
+        file.close()
+
+        when:
+        def store = new MappedFileBlockStore(cacheFile, 64)
+        store.open({}, factory)
+        store.read(positions[1], TestBlock)
+
+        then:
+        thrown(CorruptedCacheException)
+
+        cleanup:
+        store?.close()
+    }
+
+    def "does not decode block whose checksum does not match"() {
+        given:
+        def positions = writeBlocks(new MappedFileBlockStore(cacheFile, 64), 3)
+        def file = new RandomAccessFile(cacheFile, "rw")
+        file.seek(positions[2].pos + 7)
+        file.write(0x7f)
+        file.close()
+        def created = []
+        def recordingFactory = { Class type -> def block = new TestBlock(); created << block; block } as BlockStore.Factory
+
+        when:
+        def store = new MappedFileBlockStore(cacheFile, 64)
+        store.open({}, recordingFactory)
+        store.read(positions[2], TestBlock)
+
+        then:
+        thrown(CorruptedCacheException)
+        created.size() == 1
+        !created[0].decoded
+
+        cleanup:
+        store?.close()
+    }
+
+    def "reads block with unused space after its payload"() {
+        given:
+        def store = new MappedFileBlockStore(cacheFile, 64)
+        store.open({}, factory)
+        def block = write(store, "some long value")
+        block.block.value = "short"
+        store.write(block)
+        store.close()
+
+        when:
+        store = new MappedFileBlockStore(cacheFile, 64)
+        store.open({}, factory)
+
+        then:
+        store.read(block.pos, TestBlock).value == "short"
+
+        cleanup:
+        store?.close()
+    }
+
+    def "can clear and reuse store"() {
+        given:
+        def store = new MappedFileBlockStore(cacheFile, 64)
+        store.open({}, factory)
+        5.times { write(store, value(it)) }
+
+        when:
+        store.clear()
+        def block = write(store, "new")
+
+        then:
+        block.pos.pos == 0
+        store.read(block.pos, TestBlock).value == "new"
+        cacheFile.length() == block.block.size
+
+        cleanup:
+        store.close()
+    }
+
+    private List<BlockPointer> writeBlocks(BlockStore store, int count) {
+        store.open({}, factory)
+        def positions = (0..<count).collect { write(store, value(it)).pos }
+        store.close()
+        return positions
+    }
+
+    private static TestBlock write(BlockStore store, String value) {
+        def block = new TestBlock(value: value)
+        store.attach(block)
+        store.write(block)
+        return block
+    }
+
+    private static String value(int index) {
+        return "value ${index} " * index
+    }
+
+    static class TestBlock extends BlockPayload {
+        String value = ""
+        boolean decoded
+
+        @Override
+        protected int getSize() {
+            return 2 + value.length()
+        }
+
+        @Override
+        protected int getType() {
+            return 0x55
+        }
+
+        @Override
+        protected void read(DataInputStream inputStream) {
+            decoded = true
+            value = inputStream.readUTF()
+        }
+
+        @Override
+        protected void write(DataOutputStream outputStream) {
+            outputStream.writeUTF(value)
+        }
+    }
+}
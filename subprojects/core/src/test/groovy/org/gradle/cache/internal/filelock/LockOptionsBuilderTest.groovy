@@ -22,7 +22,7 @@ import static org.gradle.cache.internal.FileLockManager.LockMode.*
 
 class LockOptionsBuilderTest extends Specification {
     def "can make copy of options"() {
-        def builder = LockOptionsBuilder.mode(Exclusive).useCrossVersionImplementation()
+        def builder = LockOptionsBuilder.mode(Exclusive).useCrossVersionImplementation().nonBlocking()
 
         when:
         def copy = builder.withMode(Shared)
@@ -31,5 +31,20 @@ class LockOptionsBuilderTest extends Specification {
         !copy.is(builder)
         copy.mode == Shared
         copy.useCrossVersionImplementation
+        copy.nonBlocking
+    }
+
+    def "can make leasable copy of options"() {
+        def builder = LockOptionsBuilder.mode(Exclusive)
+
+        when:
+        def copy = builder.withLeasing()
+
+        then:
+        !builder.leasable
+        copy.leasable
+        copy.mode == Exclusive
+        copy.withMode(Shared).leasable
+        copy != builder
     }
 }
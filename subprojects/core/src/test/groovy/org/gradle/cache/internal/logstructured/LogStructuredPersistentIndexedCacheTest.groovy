@@ -0,0 +1,281 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal.logstructured
+
+import org.gradle.messaging.serialize.DefaultSerializer
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class LogStructuredPersistentIndexedCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def cacheFile = tmpDir.file("cache.log")
+    def serializer = new DefaultSerializer<String>()
+    def cache = newCache()
+
+    def cleanup() {
+        cache.close()
+    }
+
+    def "persists added, replaced and removed entries"() {
+        when:
+        cache.put("a", "1")
+        cache.put("b", "2")
+        cache.put("c", "3")
+        cache.put("a", "4")
+        cache.remove("b")
+        cache.remove("unknown")
+
+        then:
+        cache.get("a") == "4"
+        cache.get("b") == null
+        cache.get("c") == "3"
+
+        when:
+        reopen()
+
+        then:
+        cache.get("a") == "4"
+        cache.get("b") == null
+        cache.get("c") == "3"
+    }
+
+    def "discards incomplete entry at end of file on open"() {
+        given:
+        cache.put("a", "1")
+        cache.put("b", "2")
+        cache.close()
+        def length = cacheFile.length()
+        truncate(length - 1)
+
+        when:
+        cache = newCache()
+
+        then:
+        cache.get("a") == "1"
+        cache.get("b") == null
+        cacheFile.length() < length
+
+        when:
+        cache.put("b", "3")
+        reopen()
+
+        then:
+        cache.get("a") == "1"
+        cache.get("b") == "3"
+    }
+
+    def "discards corrupt entries on open"() {
+        given:
+        cache.put("a", "1")
+        cache.close()
+        def length = cacheFile.length()
+        cache = newCache()
+        cache.put("b", "2")
+        cache.close()
+        corrupt(length + 10)
+
+        when:
+        cache = newCache()
+
+        then:
+        cache.get("a") == "1"
+        cache.get("b") == null
+    }
+
+    def "discards file with unknown format"() {
+        given:
+        cache.close()
+        cacheFile.text = "not a cache"
+
+        when:
+        cache = newCache()
+        cache.put("a", "1")
+        reopen()
+
+        then:
+        cache.get("a") == "1"
+    }
+
+    def "compacts file on close when most entries are stale"() {
+        given:
+        10.times { i ->
+            ["a", "b", "c"].each { cache.put(it, "value ${i}".toString()) }
+        }
+        cache.remove("c")
+        def length = cacheFile.length()
+
+        when:
+        cache.close()
+
+        then:
+        cacheFile.length() < length
+
+        when:
+        cache = newCache()
+
+        then:
+        cache.get("a") == "value 9"
+        cache.get("b") == "value 9"
+        cache.get("c") == null
+    }
+
+    def "uses compacted file when compaction was interrupted after deleting the cache file"() {
+        given:
+        cache.put("a", "1")
+        cache.close()
+        cacheFile.renameTo(tmpDir.file("cache.log.compacted"))
+
+        when:
+        cache = newCache()
+
+        then:
+        cache.get("a") == "1"
+        !tmpDir.file("cache.log.compacted").exists()
+    }
+
+    def "discards compacted file when compaction was interrupted while writing it"() {
+        given:
+        cache.put("a", "1")
+        cache.close()
+        tmpDir.file("cache.log.compacted").text = "partial"
+
+        when:
+        cache = newCache()
+
+        then:
+        cache.get("a") == "1"
+        !tmpDir.file("cache.log.compacted").exists()
+    }
+
+    def "writes index on close and discards it on open"() {
+        given:
+        cache.put("a", "1")
+        cache.put("b", "2")
+        cache.remove("a")
+
+        when:
+        cache.close()
+
+        then:
+        indexFile.file
+
+        when:
+        cache = newCache()
+
+        then:
+        !indexFile.exists()
+        cache.get("a") == null
+        cache.get("b") == "2"
+
+        when:
+        cache.put("c", "3")
+        reopen()
+
+        then:
+        cache.get("b") == "2"
+        cache.get("c") == "3"
+    }
+
+    def "reads log when index does not match log"() {
+        given:
+        cache.put("a", "1")
+        cache.close()
+        def index = indexFile.bytes
+        cache = newCache()
+        cache.put("b", "2")
+        cache.close()
+        indexFile.bytes = index
+
+        when:
+        cache = newCache()
+
+        then:
+        cache.get("a") == "1"
+        cache.get("b") == "2"
+    }
+
+    def "reads log when index is corrupt"() {
+        given:
+        cache.put("a", "1")
+        cache.put("b", "2")
+        cache.close()
+        def index = indexFile.bytes
+        index[index.length - 6] = (byte) (index[index.length - 6] ^ 0xff)
+        indexFile.bytes = index
+
+        when:
+        cache = newCache()
+
+        then:
+        cache.get("a") == "1"
+        cache.get("b") == "2"
+    }
+
+    def "uses index after compaction"() {
+        given:
+        10.times { i ->
+            ["a", "b", "c"].each { cache.put(it, "value ${i}".toString()) }
+        }
+        cache.remove("c")
+        reopen()
+
+        when:
+        cache.put("d", "4")
+        reopen()
+
+        then:
+        cache.get("a") == "value 9"
+        cache.get("b") == "value 9"
+        cache.get("c") == null
+        cache.get("d") == "4"
+    }
+
+    private File getIndexFile() {
+        return tmpDir.file("cache.log.index")
+    }
+
+    private LogStructuredPersistentIndexedCache<String, String> newCache() {
+        return new LogStructuredPersistentIndexedCache<String, String>(cacheFile, serializer, serializer, 200)
+    }
+
+    private void reopen() {
+        cache.close()
+        cache = newCache()
+    }
+
+    private void truncate(long length) {
+        def file = new RandomAccessFile(cacheFile, "rw")
+        try {
+            file.setLength(length)
+        } finally {
+            file.close()
+        }
+    }
+
+    private void corrupt(long pos) {
+        def file = new RandomAccessFile(cacheFile, "rw")
+        try {
+            file.seek(pos)
+            def b = file.read()
+            file.seek(pos)
+            file.write(b ^ 0xff)
+        } finally {
+            file.close()
+        }
+    }
+}
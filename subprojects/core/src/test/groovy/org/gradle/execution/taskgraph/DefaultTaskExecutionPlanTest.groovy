@@ -17,11 +17,13 @@
 package org.gradle.execution.taskgraph
 
 import org.gradle.api.CircularReferenceException
+import org.gradle.api.DefaultTask
 import org.gradle.api.Task
 import org.gradle.api.internal.TaskInternal
 import org.gradle.api.internal.project.DefaultProject
 import org.gradle.api.internal.tasks.TaskStateInternal
 import org.gradle.api.specs.Spec
+import org.gradle.api.tasks.ParallelizableTask
 import org.gradle.api.tasks.TaskDependency
 import org.gradle.execution.TaskFailureHandler
 import org.gradle.util.TextUtil
@@ -782,6 +784,111 @@ public class DefaultTaskExecutionPlanTest extends Specification {
         t3.task.project != t4.task.project
     }
 
+    def "returns task once all of its dependencies have completed"() {
+        given:
+        def projectA = createChildProject(root, "a")
+        def projectB = createChildProject(root, "b")
+
+        def fooA = projectA.task("foo")
+        def barB = projectB.task("bar")
+        def fooB = projectB.task("foo")
+        barB.dependsOn(fooA)
+
+        addToGraphAndPopulate([barB, fooB])
+
+        when:
+        def t1 = executionPlan.getTaskToExecute()
+        def t2 = executionPlan.getTaskToExecute()
+
+        then:
+        t1.task == fooA
+        t2.task == fooB
+
+        when:
+        executionPlan.taskComplete(t1)
+        executionPlan.taskComplete(t2)
+        def t3 = executionPlan.getTaskToExecute()
+        executionPlan.taskComplete(t3)
+
+        then:
+        t3.task == barB
+        executionPlan.getTaskToExecute() == null
+    }
+
+    def "starts ready task at the head of the longest chain of work first when duration history is available"() {
+        given:
+        Task a = task("a")
+        Task b = task("b")
+        Task c = task("c", dependsOn: [b])
+        def history = Mock(TaskDurationHistory)
+        executionPlan.useDurationHistory(history)
+        addToGraphAndPopulate([a, c])
+        [a, b, c].each { it.state.executed >> true }
+
+        when:
+        def tasks = executedTasks
+
+        then:
+        1 * history.getPreviousDurations([a, b, c] as Set) >> [(a): 10L, (b): 100L, (c): 100L]
+        3 * history.recordDuration(_, _)
+        tasks == [b, c, a]
+    }
+
+    def "records durations only for tasks that ran their actions"() {
+        given:
+        Task executed = task("executed")
+        Task upToDate = task("upToDate")
+        Task notExecuted = task("notExecuted")
+        def history = Mock(TaskDurationHistory)
+        executionPlan.useDurationHistory(history)
+        addToGraphAndPopulate([executed, upToDate, notExecuted])
+        executed.state.executed >> true
+        upToDate.state.executed >> true
+        upToDate.state.skipped >> true
+
+        when:
+        executedTasks
+
+        then:
+        1 * history.getPreviousDurations(_) >> [:]
+        1 * history.recordDuration(executed, _)
+        0 * history.recordDuration(_, _)
+    }
+
+    def "parallelizable tasks of the same project with disjoint outputs can run at the same time"() {
+        given:
+        def a = root.task("a", type: Parallel)
+        def b = root.task("b", type: Parallel)
+        def c = root.task("c", type: Parallel)
+        def d = root.task("d")
+        a.outputs.file("build/a")
+        b.outputs.dir("build/b")
+        c.outputs.file("build/b/c")
+        d.outputs.file("build/d")
+        addToGraphAndPopulate([a, b, c, d])
+
+        when:
+        def t1 = executionPlan.getTaskToExecute()
+        def t2 = executionPlan.getTaskToExecute()
+
+        then:
+        t1.task == a
+        t2.task == b
+
+        when:
+        executionPlan.taskComplete(t1)
+        executionPlan.taskComplete(t2)
+        def t3 = executionPlan.getTaskToExecute()
+        executionPlan.taskComplete(t3)
+        def t4 = executionPlan.getTaskToExecute()
+        executionPlan.taskComplete(t4)
+
+        then:
+        t3.task == c
+        t4.task == d
+        executionPlan.getTaskToExecute() == null
+    }
+
     void executes(Task... expectedTasks) {
         assert executionPlan.tasks == expectedTasks as List
         assert expectedTasks == expectedTasks as List
@@ -873,5 +980,8 @@ public class DefaultTaskExecutionPlanTest extends Specification {
         }
         return task;
     }
-}
 
+    @ParallelizableTask
+    static class Parallel extends DefaultTask {
+    }
+}
@@ -25,6 +25,7 @@ import org.gradle.api.internal.file.DefaultFileLookup;
 import org.gradle.api.internal.file.FileLookup;
 import org.gradle.api.internal.file.FileResolver;
 import org.gradle.api.internal.file.IdentityFileResolver;
+import org.gradle.cache.internal.CachesCleanupScheduler;
 import org.gradle.cache.internal.CacheFactory;
 import org.gradle.cache.internal.DefaultCacheFactory;
 import org.gradle.cache.internal.DefaultFileLockManager;
@@ -169,4 +170,9 @@ public class GlobalScopeServicesTest {
     public void providesADocumentationRegistry() throws Exception {
         assertThat(registry.get(DocumentationRegistry.class), instanceOf(DocumentationRegistry.class));
     }
+
+    @Test
+    public void providesACachesCleanupScheduler() throws Exception {
+        assertThat(registry.get(CachesCleanupScheduler.class), instanceOf(CachesCleanupScheduler.class));
+    }
 }
@@ -16,6 +16,7 @@
 
 package org.gradle.profile
 
+import com.google.common.cache.CacheStats
 import org.gradle.StartParameter
 import org.gradle.api.tasks.TaskState
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
@@ -56,6 +57,11 @@ class ProfileReportRendererTest extends Specification {
         model.getProjectProfile("b").getTaskProfile("b:foo").completed(Stub(TaskState)).setStart(time(12, 27, 0)).setFinish(time(12, 29, 30))
         model.getProjectProfile("b").getTaskProfile("b:bar").completed(Stub(TaskState)).setStart(time(12, 27, 0)).setFinish(time(12, 29, 0))
 
+        model.fileHashing.fileHashed(3 * 1024 * 1024, 1500000000)
+        model.fileHashing.fileHashed(1024 * 1024, 500000000)
+        model.blockCache.stats = new CacheStats(90, 10, 0, 0, 0, 2)
+        model.lockWait.waitTimes = ["artifact cache": 500L, "task history cache": 1500L]
+
         when:
         new ProfileReportRenderer().writeTo(model, file)
 
@@ -126,6 +132,26 @@ class ProfileReportRendererTest extends Specification {
 <td>Task Execution</td>
 <td class="numeric">6m30.00s</td>
 </tr>
+<tr>
+<td>File Hashing (2 files, 2.0 MB/s)</td>
+<td class="numeric">2.000s</td>
+</tr>
+<tr>
+<td>Indexed Cache Blocks (90 hits, 10 misses, 2 evictions)</td>
+<td class="numeric"></td>
+</tr>
+<tr>
+<td>Waiting for File Locks (2 targets)</td>
+<td class="numeric">2.000s</td>
+</tr>
+<tr>
+<td>task history cache</td>
+<td class="numeric">1.500s</td>
+</tr>
+<tr>
+<td>artifact cache</td>
+<td class="numeric">0.500s</td>
+</tr>
 </table>
 </div>
 <div class="tab" id="tab1">
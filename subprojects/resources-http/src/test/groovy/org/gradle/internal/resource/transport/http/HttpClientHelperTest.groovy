@@ -53,6 +53,21 @@ class HttpClientHelperTest extends Specification {
         System.getProperty("http.keepAlive", "true")
     }
 
+    def "uses a separate http context for each thread"() {
+        given:
+        def client = new HttpClientHelper(httpSettings)
+        def otherThreadContext = null
+
+        when:
+        def context = client.getHttpContext()
+        Thread.start { otherThreadContext = client.getHttpContext() }.join()
+
+        then:
+        client.getHttpContext().is(context)
+        otherThreadContext != null
+        !otherThreadContext.is(context)
+    }
+
     private HttpSettings getHttpSettings() {
         return Stub(HttpSettings) {
             getCredentials() >> Stub(PasswordCredentials)